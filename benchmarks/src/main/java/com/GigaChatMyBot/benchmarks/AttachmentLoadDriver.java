@@ -0,0 +1,117 @@
+package com.GigaChatMyBot.benchmarks;
+
+import com.GigaChatMyBot.telegram.MessageSplitter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный драйвер для документов без сети: N чатов присылают документы с подписью по одному, дожидаясь ответа.
+ * Файлы генерируются заглушкой Telegram и потоком передаются в заглушку GigaChat; --distinct-files задаёт,
+ * сколько разных файлов присылают чаты (повторные должны браться из кэша без скачивания).
+ * Печатает пропускную способность, число скачиваний и загрузок, объём переданных байтов,
+ * пик занятой кучи (он не должен расти с размером файла) и перцентили задержки.
+ * После прогона останавливает бота и заглушки и завершает JVM с кодом 1, если хотя бы один ответ потерян, иначе 0.
+ * Запуск:
+ * java -cp benchmarks/target/benchmarks.jar com.GigaChatMyBot.benchmarks.AttachmentLoadDriver \
+ *     --chats 50 --files 4 --file-kb 8192 --distinct-files 20 --max-large-transfers 4 --gigachat-latency-ms 300
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class AttachmentLoadDriver {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = WebhookLoadDriver.parseOptions(args);
+        int chats = Integer.parseInt(options.getOrDefault("chats", "50"));
+        int files = Integer.parseInt(options.getOrDefault("files", "4"));
+        long fileBytes = Long.parseLong(options.getOrDefault("file-kb", "8192")) * 1024;
+        int distinctFiles = Integer.parseInt(options.getOrDefault("distinct-files", "20"));
+        int maxLargeTransfers = Integer.parseInt(options.getOrDefault("max-large-transfers", "4"));
+        long timeoutMillis = Long.parseLong(options.getOrDefault("timeout-ms", "120000"));
+        StubBehavior gigaChatBehavior = new StubBehavior(
+                Long.parseLong(options.getOrDefault("gigachat-latency-ms", "300")),
+                Long.parseLong(options.getOrDefault("gigachat-jitter-ms", "200")), 0);
+        StubBehavior telegramBehavior = new StubBehavior(
+                Long.parseLong(options.getOrDefault("telegram-latency-ms", "30")),
+                Long.parseLong(options.getOrDefault("telegram-jitter-ms", "20")), 0);
+
+        LatencyStats latency = new LatencyStats();
+        LongAdder answered = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder lost = new LongAdder();
+        AtomicInteger updateIds = new AtomicInteger();
+        AtomicLong peakHeap = new AtomicLong();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        try (BotHarness harness = new BotHarness(gigaChatBehavior, telegramBehavior, 500, false, maxLargeTransfers)) {
+            for (int i = 0; i < distinctFiles; i++) {
+                harness.telegram.addFile("doc" + i, fileBytes);
+            }
+            String answer = harness.gigaChat.answer();
+            List<String> chunks = MessageSplitter.split(answer);
+            String lastChunk = chunks.get(chunks.size() - 1);
+            long start = System.nanoTime();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                CompletableFuture<Void> sampler = CompletableFuture.runAsync(() -> {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }, executor);
+                try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (int chat = 1; chat <= chats; chat++) {
+                        long chatId = chat;
+                        clients.execute(() -> {
+                            for (int i = 0; i < files; i++) {
+                                String fileId = "doc" + Math.floorMod(chatId * files + i, distinctFiles);
+                                CompletableFuture<String> reply = harness.telegram.expect(chatId,
+                                        text -> text.equals(lastChunk) || (!answer.contains(text) && !text.equals("…")));
+                                long sent = System.nanoTime();
+                                try {
+                                    harness.bot.onUpdateReceived(BotHarness.documentUpdate(updateIds.incrementAndGet(),
+                                            chatId, fileId, fileBytes, "Перескажи документ " + fileId));
+                                    String text = reply.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                                    latency.record(System.nanoTime() - sent);
+                                    (text.equals(lastChunk) ? answered : failed).increment();
+                                } catch (TimeoutException | ExecutionException e) {
+                                    lost.increment();
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                    return;
+                                } catch (Exception e) {
+                                    lost.increment();
+                                }
+                            }
+                        });
+                    }
+                }
+                executor.shutdownNow();
+            }
+            double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+            System.out.printf("Чатов %d по %d документов (%d КБ) за %.2f с: %.1f ответов/с%n",
+                    chats, files, fileBytes / 1024, seconds, (answered.sum() + failed.sum()) / seconds);
+            System.out.println("Ответов: " + answered.sum() + ", с ошибкой: " + failed.sum() + ", потеряно: " + lost.sum());
+            System.out.println("Telegram: скачиваний " + harness.telegram.downloads() + "; GigaChat: загрузок "
+                    + harness.gigaChat.uploads() + " (" + harness.gigaChat.uploadedBytes() / (1024 * 1024) + " МБ), запросов с вложениями "
+                    + harness.gigaChat.withAttachments());
+            System.out.println("Пик занятой кучи: " + peakHeap.get() / (1024 * 1024) + " МБ");
+            System.out.println("Задержка update → ответ: " + latency.summary());
+        }
+        System.exit(lost.sum() == 0 ? 0 : 1); // Пул executeAsync и обработчики HTTP-клиентов не должны держать JVM
+    }
+}
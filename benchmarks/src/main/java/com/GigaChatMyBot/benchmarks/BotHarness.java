@@ -0,0 +1,153 @@
+package com.GigaChatMyBot.benchmarks;
+
+import com.GigaChatMyBot.cluster.ClusterMembership;
+import com.GigaChatMyBot.cluster.ClusterRouter;
+import com.GigaChatMyBot.config.GigaChatSpringConfig;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.service.GigaChatService;
+import com.GigaChatMyBot.service.InMemoryConversationStore;
+import com.GigaChatMyBot.telegram.AttachmentUploader;
+import com.GigaChatMyBot.telegram.GigaChatTelegramBot;
+import com.GigaChatMyBot.telegram.MessageCoalescer;
+import com.GigaChatMyBot.telegram.TelegramRateLimiter;
+import com.GigaChatMyBot.telegram.UpdateDispatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бот целиком, собранный без Spring и подключённый к заглушкам GigaChat и Telegram:
+ * GigaChatService, UpdateDispatcher, MessageCoalescer (без склейки), TelegramRateLimiter (без лимитов),
+ * AttachmentUploader и GigaChatTelegramBot.
+ * Используется бенчмарком обработки update и нагрузочными драйверами EndToEndLoadDriver и AttachmentLoadDriver.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+final class BotHarness implements AutoCloseable {
+    private static final ObjectMapper JSON = new ObjectMapper(); // Разбор updates так же, как в webhook
+
+    final GigaChatStubServer gigaChat; // Заглушка GigaChat
+    final TelegramStubServer telegram; // Заглушка Telegram Bot API
+    final GigaChatService service; // Сервис, подключённый к заглушке GigaChat
+    final GigaChatTelegramBot bot; // Бот, отправляющий ответы в заглушку Telegram
+    private final AttachmentUploader attachments; // Передача файлов из заглушки Telegram в заглушку GigaChat
+    private final UpdateDispatcher dispatcher; // Диспетчер обработки updates
+    private final MessageCoalescer coalescer; // Склейка сообщений (выключена)
+    private final ClusterMembership membership; // Состав кластера (выключен)
+    private final ClusterRouter router; // Маршрутизация updates (всё обрабатывается здесь)
+
+    /**
+     * Запускает заглушки и собирает бота.
+     * @param gigaChatBehavior задержка и ошибки GigaChat
+     * @param telegramBehavior задержка и ошибки Telegram
+     * @param answerChars длина ответа GigaChat
+     * @param streaming отвечать ли в потоковом режиме
+     */
+    BotHarness(StubBehavior gigaChatBehavior, StubBehavior telegramBehavior, int answerChars, boolean streaming)
+            throws IOException {
+        this(gigaChatBehavior, telegramBehavior, answerChars, streaming, 4);
+    }
+
+    /**
+     * Запускает заглушки и собирает бота.
+     * @param gigaChatBehavior задержка и ошибки GigaChat
+     * @param telegramBehavior задержка и ошибки Telegram
+     * @param answerChars длина ответа GigaChat
+     * @param streaming отвечать ли в потоковом режиме
+     * @param maxLargeTransfers сколько больших файлов передаётся одновременно
+     */
+    BotHarness(StubBehavior gigaChatBehavior, StubBehavior telegramBehavior, int answerChars, boolean streaming,
+               int maxLargeTransfers) throws IOException {
+        BotMetrics metrics = BotMetrics.standalone();
+        this.gigaChat = new GigaChatStubServer(gigaChatBehavior, answerChars);
+        this.telegram = new TelegramStubServer(telegramBehavior);
+        GigaChatSpringConfig config = config(gigaChat);
+        config.setStreamingEnabled(streaming);
+        this.service = new GigaChatService(config, conversationStore(), metrics);
+        this.dispatcher = new UpdateDispatcher(10_000, 30, 100, 1_000_000, metrics);
+        this.coalescer = new MessageCoalescer(0, 0, Integer.MAX_VALUE, dispatcher, metrics);
+        TelegramRateLimiter rateLimiter = new TelegramRateLimiter(1_000_000, 1_000_000, 1_000_000, 10_000);
+        this.attachments = new AttachmentUploader(service, metrics, "stub", telegram.apiUrl(), 20, 1024,
+                maxLargeTransfers, 60_000, 120, "application/pdf,text/plain,image/jpeg", 10_000, 24);
+        this.membership = new ClusterMembership(false, "", "", 128, 1000, 3, metrics);
+        this.router = new ClusterRouter(membership, "", 2000, metrics);
+        this.bot = new GigaChatTelegramBot(service, dispatcher, coalescer, rateLimiter, metrics, attachments, router,
+                "stub", telegram.apiUrl(), 256);
+    }
+
+    /**
+     * Настройки сервиса для заглушки: без кэша ответов, с практически снятыми ограничением частоты и лимитами планировщика,
+     * чтобы измерялся сам путь запроса.
+     * @param stub заглушка GigaChat
+     * @return настройки
+     */
+    static GigaChatSpringConfig config(GigaChatStubServer stub) {
+        GigaChatSpringConfig config = new GigaChatSpringConfig();
+        config.setOauthUrl(stub.oauthUrl());
+        config.setChatUrl(stub.chatUrl());
+        config.setAuthorizationKeyBasic("Basic c3R1YjpzdHVi");
+        config.setScope("GIGACHAT_API_PERS");
+        config.setModelName("GigaChat");
+        config.setRateLimitPerSecond(1_000_000);
+        config.setRateLimitMaxPerSecond(1_000_000);
+        config.setSchedulerMaxConcurrency(1_000_000);
+        config.setSchedulerMaxInFlightPerChat(1_000_000);
+        config.setHttpMaxRetries(0);
+        return config;
+    }
+
+    /**
+     * История диалогов в памяти с настройками по умолчанию.
+     */
+    static InMemoryConversationStore conversationStore() {
+        return new InMemoryConversationStore(2000, 50_000, TimeUnit.HOURS.toMillis(1), 64L * 1024 * 1024);
+    }
+
+    /**
+     * Собирает текстовый update так, как его прислал бы Telegram.
+     * @param updateId идентификатор update
+     * @param chatId идентификатор чата
+     * @param text текст сообщения
+     * @return update
+     */
+    static Update textUpdate(int updateId, long chatId, String text) throws IOException {
+        return JSON.readValue("{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId
+                + ",\"date\":" + System.currentTimeMillis() / 1000
+                + ",\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"},"
+                + "\"from\":{\"id\":" + chatId + ",\"is_bot\":false,\"first_name\":\"load\"},"
+                + "\"text\":" + JSON.writeValueAsString(text) + "}}", Update.class);
+    }
+
+    /**
+     * Собирает update с документом так, как его прислал бы Telegram.
+     * @param updateId идентификатор update
+     * @param chatId идентификатор чата
+     * @param fileId идентификатор файла (file_unique_id — "u" + fileId, как в заглушке)
+     * @param bytes размер файла
+     * @param caption подпись к документу
+     * @return update
+     */
+    static Update documentUpdate(int updateId, long chatId, String fileId, long bytes, String caption) throws IOException {
+        return JSON.readValue("{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId
+                + ",\"date\":" + System.currentTimeMillis() / 1000
+                + ",\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"},"
+                + "\"from\":{\"id\":" + chatId + ",\"is_bot\":false,\"first_name\":\"load\"},"
+                + "\"document\":{\"file_id\":\"" + fileId + "\",\"file_unique_id\":\"u" + fileId + "\","
+                + "\"file_name\":\"" + fileId + ".pdf\",\"mime_type\":\"application/pdf\",\"file_size\":" + bytes + "},"
+                + "\"caption\":" + JSON.writeValueAsString(caption) + "}}", Update.class);
+    }
+
+    @Override
+    public void close() {
+        coalescer.shutdown();
+        dispatcher.shutdown();
+        attachments.close();
+        bot.onClosing(); // Останавливает пул executeAsync — его потоки не демоны и иначе не дают JVM завершиться
+        service.shutdown();
+        router.close();
+        membership.close();
+        telegram.close();
+        gigaChat.close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.GigaChatMyBot.benchmarks;
+
+import com.GigaChatMyBot.telegram.MessageSplitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Полная обработка update ботом: onUpdateReceived → диспетчер → GigaChatService → заглушка GigaChat →
+ * отправка ответа (частями, если он длинный) в заглушку Telegram. Замер заканчивается, когда последняя часть
+ * ответа дошла до заглушки Telegram. Каждый вызов идёт в новый чат, чтобы не упираться в очередь одного чата.
+ * Запуск: java -jar benchmarks/target/benchmarks.jar BotUpdateBenchmark
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class BotUpdateBenchmark {
+
+    @Param({"200", "10000"})
+    private int answerChars; // Длина ответа заглушки (10000 — ответ уходит тремя сообщениями)
+
+    @Param({"false", "true"})
+    private boolean streaming; // Потоковый режим ответа
+
+    private BotHarness harness;
+    private String lastChunk;
+    private final AtomicInteger updateIds = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws IOException {
+        harness = new BotHarness(StubBehavior.instant(), StubBehavior.instant(), answerChars, streaming);
+        List<String> chunks = MessageSplitter.split(harness.gigaChat.answer());
+        lastChunk = chunks.get(chunks.size() - 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    public String handleUpdate() throws Exception {
+        int updateId = updateIds.incrementAndGet();
+        CompletableFuture<String> reply = harness.telegram.expect(updateId, lastChunk::equals);
+        harness.bot.onUpdateReceived(BotHarness.textUpdate(updateId, updateId, "Расскажи что-нибудь"));
+        return reply.get(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,126 @@
+package com.GigaChatMyBot.benchmarks;
+
+import com.GigaChatMyBot.model.ChatMessage;
+import com.GigaChatMyBot.storage.MappedConversationStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Пропускная способность журнала истории MappedConversationStore:
+ * запись пары реплик (вопрос + ответ) и восстановление индекса при старте.
+ * Запуск: java -jar benchmarks/target/benchmarks.jar ConversationLogBenchmark
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class ConversationLogBenchmark {
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024; // Размер сегмента, как по умолчанию в приложении
+    private static final int TOKEN_BUDGET = 2000; // Бюджет токенов, как по умолчанию в приложении
+
+    /**
+     * Запись: открытое хранилище, в которое каждая итерация дописывает реплики случайных чатов.
+     */
+    @State(Scope.Benchmark)
+    public static class AppendState {
+        @Param({"1000", "100000"})
+        private int chats; // Число разных чатов
+
+        private Path directory;
+        private MappedConversationStore store;
+        private List<ChatMessage> exchange;
+        private long counter;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("conversation-log-append");
+            store = new MappedConversationStore(directory, SEGMENT_SIZE, TOKEN_BUDGET, TimeUnit.HOURS.toMillis(1));
+            exchange = List.of(
+                    ChatMessage.user(JsonCodecBenchmark.sampleText(200)),
+                    ChatMessage.assistant(JsonCodecBenchmark.sampleText(800)));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            store.close();
+            deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Восстановление: каталог с заранее записанным журналом, который открывается заново на каждом вызове.
+     */
+    @State(Scope.Benchmark)
+    public static class RecoveryState {
+        @Param({"100000"})
+        private int exchanges; // Сколько пар реплик записано в журнал
+
+        private Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("conversation-log-recovery");
+            List<ChatMessage> exchange = List.of(
+                    ChatMessage.user(JsonCodecBenchmark.sampleText(200)),
+                    ChatMessage.assistant(JsonCodecBenchmark.sampleText(800)));
+            try (MappedConversationStore store = new MappedConversationStore(directory, SEGMENT_SIZE, TOKEN_BUDGET,
+                    TimeUnit.HOURS.toMillis(1))) {
+                for (int i = 0; i < exchanges; i++) {
+                    store.append(i % 10_000, exchange);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(1)
+    public void append(AppendState state) {
+        state.store.append(state.counter++ % state.chats, state.exchange);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(1)
+    public int recover(RecoveryState state) throws IOException {
+        try (MappedConversationStore store = new MappedConversationStore(state.directory, SEGMENT_SIZE, TOKEN_BUDGET,
+                TimeUnit.HOURS.toMillis(1))) {
+            return store.segmentCount();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
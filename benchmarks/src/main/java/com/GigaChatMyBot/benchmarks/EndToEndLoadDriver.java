@@ -0,0 +1,96 @@
+package com.GigaChatMyBot.benchmarks;
+
+import com.GigaChatMyBot.telegram.MessageSplitter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сквозной нагрузочный драйвер без сети: поднимает заглушки GigaChat и Telegram в том же процессе, собирает бота
+ * (BotHarness) и моделирует N чатов, каждый из которых отправляет вопросы по одному, дожидаясь ответа.
+ * Печатает пропускную способность, число ответов с ошибкой и потерянных ответов, счётчики заглушек
+ * и перцентили задержки от update до доставки последней части ответа.
+ * После прогона останавливает бота и заглушки и завершает JVM с кодом 1, если хотя бы один ответ потерян, иначе 0.
+ * Запуск:
+ * java -cp benchmarks/target/benchmarks.jar com.GigaChatMyBot.benchmarks.EndToEndLoadDriver \
+ *     --chats 500 --messages 20 --gigachat-latency-ms 300 --gigachat-jitter-ms 200 --gigachat-error-rate 0.01 \
+ *     --telegram-latency-ms 30 --telegram-error-rate 0 --answer-chars 1500 --streaming false
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class EndToEndLoadDriver {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = WebhookLoadDriver.parseOptions(args);
+        int chats = Integer.parseInt(options.getOrDefault("chats", "100"));
+        int messages = Integer.parseInt(options.getOrDefault("messages", "10"));
+        int answerChars = Integer.parseInt(options.getOrDefault("answer-chars", "1500"));
+        boolean streaming = Boolean.parseBoolean(options.getOrDefault("streaming", "false"));
+        long timeoutMillis = Long.parseLong(options.getOrDefault("timeout-ms", "60000"));
+        StubBehavior gigaChatBehavior = new StubBehavior(
+                Long.parseLong(options.getOrDefault("gigachat-latency-ms", "300")),
+                Long.parseLong(options.getOrDefault("gigachat-jitter-ms", "200")),
+                Double.parseDouble(options.getOrDefault("gigachat-error-rate", "0")));
+        StubBehavior telegramBehavior = new StubBehavior(
+                Long.parseLong(options.getOrDefault("telegram-latency-ms", "30")),
+                Long.parseLong(options.getOrDefault("telegram-jitter-ms", "20")),
+                Double.parseDouble(options.getOrDefault("telegram-error-rate", "0")));
+
+        LatencyStats latency = new LatencyStats();
+        LongAdder answered = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder lost = new LongAdder();
+        AtomicInteger updateIds = new AtomicInteger();
+
+        try (BotHarness harness = new BotHarness(gigaChatBehavior, telegramBehavior, answerChars, streaming)) {
+            String answer = harness.gigaChat.answer();
+            List<String> chunks = MessageSplitter.split(answer);
+            String lastChunk = chunks.get(chunks.size() - 1);
+            long start = System.nanoTime();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int chat = 1; chat <= chats; chat++) {
+                    long chatId = chat;
+                    executor.execute(() -> {
+                        for (int i = 0; i < messages; i++) {
+                            // Ответ дошёл, когда пришла последняя часть или текст, которого нет в ответе (ошибка), кроме заглушки «…»
+                            CompletableFuture<String> reply = harness.telegram.expect(chatId,
+                                    text -> text.equals(lastChunk) || (!answer.contains(text) && !text.equals("…")));
+                            long sent = System.nanoTime();
+                            try {
+                                harness.bot.onUpdateReceived(BotHarness.textUpdate(updateIds.incrementAndGet(), chatId,
+                                        "Вопрос номер " + i));
+                                String text = reply.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                                latency.record(System.nanoTime() - sent);
+                                (text.equals(lastChunk) ? answered : failed).increment();
+                            } catch (TimeoutException | ExecutionException e) {
+                                lost.increment();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            } catch (Exception e) {
+                                lost.increment();
+                            }
+                        }
+                    });
+                }
+            }
+            double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+            System.out.printf("Чатов %d по %d вопросов за %.2f с: %.1f ответов/с%n",
+                    chats, messages, seconds, (answered.sum() + failed.sum()) / seconds);
+            System.out.println("Ответов: " + answered.sum() + ", с ошибкой: " + failed.sum() + ", потеряно: " + lost.sum());
+            System.out.println("GigaChat: запросов " + harness.gigaChat.completions() + ", ошибок " + harness.gigaChat.errors()
+                    + "; Telegram: sendMessage " + harness.telegram.sent() + ", editMessageText " + harness.telegram.edited()
+                    + ", ошибок " + harness.telegram.errors());
+            System.out.println("Задержка update → ответ: " + latency.summary());
+        }
+        System.exit(lost.sum() == 0 ? 0 : 1); // Пул executeAsync и обработчики HTTP-клиентов не должны держать JVM
+    }
+}
@@ -0,0 +1,70 @@
+package com.GigaChatMyBot.benchmarks;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.service.GigaChatService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы GigaChatService.askGigaChat на один вопрос: история чата, сборка и кодирование запроса,
+ * ограничитель частоты, токен, HTTP-обмен с локальной заглушкой GigaChat без задержки и разбор ответа.
+ * Вопросы приходят из случайных чатов, поэтому в запрос попадает и растущая история.
+ * Запуск: java -jar benchmarks/target/benchmarks.jar GigaChatServiceBenchmark
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class GigaChatServiceBenchmark {
+
+    @Param({"1000"})
+    private int chats; // Число разных чатов
+
+    @Param({"200", "4000"})
+    private int answerChars; // Длина ответа заглушки
+
+    private GigaChatStubServer stub;
+    private GigaChatService service;
+    private String prompt;
+
+    @Setup
+    public void setUp() throws IOException {
+        stub = new GigaChatStubServer(StubBehavior.instant(), answerChars);
+        service = new GigaChatService(BotHarness.config(stub), BotHarness.conversationStore(), BotMetrics.standalone());
+        prompt = JsonCodecBenchmark.sampleText(200);
+        String answer = service.askGigaChat(0, prompt);
+        if (!answer.equals(stub.answer())) {
+            throw new IllegalStateException("Заглушка GigaChat недоступна: " + answer);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+        stub.close();
+    }
+
+    @Benchmark
+    public String askGigaChat() {
+        return service.askGigaChat(ThreadLocalRandom.current().nextInt(chats), prompt);
+    }
+}
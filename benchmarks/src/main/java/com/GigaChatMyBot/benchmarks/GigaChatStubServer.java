@@ -0,0 +1,203 @@
+package com.GigaChatMyBot.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Заглушка GigaChat API в том же процессе: OAuth (/api/v2/oauth), chat completions (/api/v1/chat/completions)
+ * в обычном и потоковом (SSE) режимах и загрузка файлов (/api/v1/files) — тело читается потоком и только считается. Отвечает одним и тем же текстом заданной длины с настраиваемыми
+ * задержкой и долей ошибок (поровну 500 и 429 с Retry-After), чтобы нагрузочные прогоны шли без сети.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class GigaChatStubServer implements AutoCloseable {
+    private static final int STREAM_CHUNKS = 20; // На сколько фрагментов делить потоковый ответ
+
+    private final HttpServer server; // Встроенный HTTP-сервер JDK
+    // Обработчики запросов — на платформенных потоках: потоки тела запроса и ответа HttpServer синхронизированы
+    // и закрепляют виртуальный поток за носителем; на машине с одним ядром заглушка занимала бы единственный
+    // носитель, пока бот в той же JVM не может отправить ей следующую часть тела.
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final StubBehavior behavior; // Задержка и ошибки chat completions
+    private final String answer; // Текст ответа
+    private final byte[] completionBody; // Готовое тело обычного ответа
+    private final LongAdder completions = new LongAdder(); // Запросы chat completion
+    private final LongAdder errors = new LongAdder(); // Ответы с ошибкой
+    private final LongAdder uploads = new LongAdder(); // Загруженные файлы
+    private final LongAdder uploadedBytes = new LongAdder(); // Байты тел загрузок (вместе с заголовками multipart)
+    private final LongAdder withAttachments = new LongAdder(); // Запросы chat completion с вложениями
+
+    /**
+     * Запускает заглушку на свободном порту 127.0.0.1.
+     * @param behavior задержка и доля ошибок chat completions (OAuth отвечает сразу и без ошибок)
+     * @param answerChars длина текста ответа
+     */
+    GigaChatStubServer(StubBehavior behavior, int answerChars) throws IOException {
+        this(behavior, answerChars, 0);
+    }
+
+    /**
+     * Запускает заглушку на 127.0.0.1.
+     * @param behavior задержка и доля ошибок chat completions (OAuth отвечает сразу и без ошибок)
+     * @param answerChars длина текста ответа
+     * @param port порт (0 — любой свободный)
+     */
+    GigaChatStubServer(StubBehavior behavior, int answerChars, int port) throws IOException {
+        this.behavior = behavior;
+        this.answer = answerText(answerChars);
+        this.completionBody = ("{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"" + answer
+                + "\"},\"index\":0,\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":20,\"completion_tokens\":"
+                + answerChars / 4 + ",\"total_tokens\":" + (20 + answerChars / 4) + "}}").getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/api/v2/oauth", this::oauth);
+        server.createContext("/api/v1/chat/completions", this::completion);
+        server.createContext("/api/v1/files", this::upload);
+        server.start();
+    }
+
+    String oauthUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v2/oauth";
+    }
+
+    String chatUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/chat/completions";
+    }
+
+    /**
+     * @return текст, которым заглушка отвечает на каждый вопрос
+     */
+    String answer() {
+        return answer;
+    }
+
+    long completions() {
+        return completions.sum();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    long uploads() {
+        return uploads.sum();
+    }
+
+    long uploadedBytes() {
+        return uploadedBytes.sum();
+    }
+
+    long withAttachments() {
+        return withAttachments.sum();
+    }
+
+    private void oauth(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        long expiresAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30);
+        respond(exchange, 200, "application/json",
+                ("{\"access_token\":\"stub-token\",\"expires_at\":" + expiresAt + "}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void completion(HttpExchange exchange) throws IOException {
+        String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        completions.increment();
+        if (request.contains("\"attachments\"")) {
+            withAttachments.increment();
+        }
+        try {
+            behavior.delay();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+            return;
+        }
+        if (behavior.fail()) {
+            errors.increment();
+            boolean throttled = ThreadLocalRandom.current().nextBoolean();
+            if (throttled) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+            }
+            respond(exchange, throttled ? 429 : 500, "application/json",
+                    "{\"status\":500,\"message\":\"stub error\"}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (request.contains("\"stream\":true")) {
+            stream(exchange);
+        } else {
+            respond(exchange, 200, "application/json", completionBody);
+        }
+    }
+
+    /**
+     * Принимает файл: читает тело multipart частями, не накапливая его, и отвечает идентификатором файла.
+     */
+    private void upload(HttpExchange exchange) throws IOException {
+        byte[] buffer = new byte[16 * 1024];
+        long bytes = 0;
+        try (InputStream body = exchange.getRequestBody()) {
+            for (int n; (n = body.read(buffer)) > 0; ) {
+                bytes += n;
+            }
+        }
+        uploads.increment();
+        uploadedBytes.add(bytes);
+        respond(exchange, 200, "application/json", ("{\"id\":\"stub-file-" + uploads.sum() + "\",\"object\":\"file\","
+                + "\"bytes\":" + bytes + ",\"purpose\":\"general\"}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Отдаёт ответ как server-sent events: фрагменты текста, затем событие с finish_reason и usage, затем [DONE].
+     */
+    private void stream(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            int step = Math.max(1, answer.length() / STREAM_CHUNKS);
+            for (int from = 0; from < answer.length(); from += step) {
+                String delta = answer.substring(from, Math.min(answer.length(), from + step));
+                body.write(("data: {\"choices\":[{\"delta\":{\"content\":\"" + delta + "\"},\"index\":0}]}\n\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                body.flush();
+            }
+            body.write(("data: {\"choices\":[{\"delta\":{\"content\":\"\"},\"index\":0,\"finish_reason\":\"stop\"}],"
+                    + "\"usage\":{\"prompt_tokens\":20,\"completion_tokens\":" + answer.length() / 4 + "}}\n\n"
+                    + "data: [DONE]\n\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * Текст ответа заданной длины из повторяющихся предложений (без символов, требующих экранирования в JSON).
+     */
+    private static String answerText(int chars) {
+        String sentence = "Это ответ заглушки GigaChat для нагрузочного теста. ";
+        StringBuilder text = new StringBuilder(chars);
+        while (text.length() < chars) {
+            text.append(sentence);
+        }
+        return text.substring(0, chars).strip();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,161 @@
+package com.GigaChatMyBot.benchmarks;
+
+import com.GigaChatMyBot.gigachat.GigaChatJsonCodec;
+import com.GigaChatMyBot.model.ChatCompletion;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение потокового GigaChatJsonCodec с прежней обработкой JSON в GigaChatAPI
+ * (цепочки String.replace и поиск через indexOf) на телах 1 КБ, 32 КБ и 256 КБ.
+ * Запуск: java -jar benchmarks/target/benchmarks.jar JsonCodecBenchmark -prof gc
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    @Param({"1024", "32768", "262144"})
+    private int payloadSize; // Размер текста в запросе и ответе, символов
+
+    private final GigaChatJsonCodec codec = new GigaChatJsonCodec(); // Новый кодек
+    private String prompt; // Текст пользователя
+    private byte[] responseBody; // Ответ chat completion в UTF-8
+
+    @Setup
+    public void setUp() throws IOException {
+        prompt = sampleText(payloadSize);
+        responseBody = chatResponse(sampleText(payloadSize));
+    }
+
+    @Benchmark
+    public byte[] encodeLegacy() {
+        return LegacyJson.buildChatRequest("GigaChat", prompt).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeCodec() {
+        return codec.encodeChatRequest("GigaChat", prompt, false);
+    }
+
+    @Benchmark
+    public String decodeLegacy() {
+        // Прежний путь: BodyHandlers.ofString() декодировал тело в строку, затем indexOf-парсер
+        return LegacyJson.parseChatResponse(new String(responseBody, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public ChatCompletion decodeCodec() throws IOException {
+        return codec.decodeChatResponse(responseBody);
+    }
+
+    /**
+     * Текст с кириллицей, кавычками, переводами строк и табуляцией — всё, что требует экранирования.
+     */
+    static String sampleText(int size) {
+        String fragment = "Привет, \"GigaChat\"! Ответь\tна вопрос про C:\\путь\\к\\файлу.\n";
+        StringBuilder builder = new StringBuilder(size + fragment.length());
+        while (builder.length() < size) {
+            builder.append(fragment);
+        }
+        builder.setLength(size);
+        return builder.toString();
+    }
+
+    /**
+     * Ответ в формате GigaChat с заданным текстом ассистента.
+     */
+    static byte[] chatResponse(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length() * 2 + 256);
+        try (JsonGenerator generator = new JsonFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("choices");
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("message");
+            generator.writeStringField("content", content);
+            generator.writeStringField("role", "assistant");
+            generator.writeEndObject();
+            generator.writeNumberField("index", 0);
+            generator.writeStringField("finish_reason", "stop");
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeNumberField("created", 1706026848L);
+            generator.writeStringField("model", "GigaChat:1.0.26.20");
+            generator.writeObjectFieldStart("usage");
+            generator.writeNumberField("prompt_tokens", 18);
+            generator.writeNumberField("completion_tokens", content.length() / 4);
+            generator.writeNumberField("total_tokens", 18 + content.length() / 4);
+            generator.writeEndObject();
+            generator.writeStringField("object", "chat.completion");
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Копия прежней обработки JSON из GigaChatAPI — точка отсчёта для сравнения.
+     */
+    static final class LegacyJson {
+        private LegacyJson() {
+        }
+
+        static String buildChatRequest(String model, String prompt) {
+            return """
+                    {
+                        "model": "%s",
+                        "messages": [
+                            {
+                                "role": "user",
+                                "content": "%s"
+                            }
+                        ],
+                        "stream": false,
+                        "repetition_penalty": 1
+                    }
+                    """.formatted(model, escapeJson(prompt));
+        }
+
+        static String escapeJson(String text) {
+            return text.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+
+        static String parseChatResponse(String json) {
+            String marker = "\"content\":\"";
+            int index = json.indexOf(marker);
+            if (index < 0) {
+                return "Не удалось найти ответ в JSON.";
+            }
+            int start = index + marker.length();
+            int end = json.indexOf("\"", start);
+            while (end > start && json.charAt(end - 1) == '\\') {
+                end = json.indexOf("\"", end + 1);
+            }
+            if (end < 0) end = json.length();
+            String content = json.substring(start, end);
+            return content
+                    .replace("\\n", "\n")
+                    .replace("\\\"", "\"")
+                    .replace("\\\\", "\\");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.GigaChatMyBot.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накопитель задержек для нагрузочных драйверов: хранит все замеры и считает перцентили.
+ * Потокобезопасен; рассчитан на сотни тысяч замеров за прогон.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class LatencyStats {
+    private long[] samples = new long[1024]; // Задержки в наносекундах
+    private int count; // Число замеров
+
+    synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    /**
+     * @return строка с числом замеров и перцентилями p50/p99/p999/max в миллисекундах
+     */
+    synchronized String summary() {
+        if (count == 0) {
+            return "нет замеров";
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return String.format("n=%d p50=%.2f мс p99=%.2f мс p999=%.2f мс max=%.2f мс",
+                count, millis(sorted, 0.50), millis(sorted, 0.99), millis(sorted, 0.999),
+                sorted[count - 1] / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
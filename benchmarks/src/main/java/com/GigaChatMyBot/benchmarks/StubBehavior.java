@@ -0,0 +1,39 @@
+package com.GigaChatMyBot.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поведение заглушки сервера: задержка ответа и доля ошибок.
+ * @param latencyMillis базовая задержка ответа
+ * @param jitterMillis случайная добавка к задержке, от 0 до jitterMillis
+ * @param errorRate доля запросов, на которые заглушка отвечает ошибкой (0..1)
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+record StubBehavior(long latencyMillis, long jitterMillis, double errorRate) {
+
+    /**
+     * Без задержки и ошибок — для микробенчмарков.
+     */
+    static StubBehavior instant() {
+        return new StubBehavior(0, 0, 0);
+    }
+
+    /**
+     * Выдерживает задержку очередного ответа.
+     */
+    void delay() throws InterruptedException {
+        long millis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (millis > 0) {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+    }
+
+    /**
+     * @return true, если на очередной запрос нужно ответить ошибкой
+     */
+    boolean fail() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+}
@@ -0,0 +1,59 @@
+package com.GigaChatMyBot.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заглушки GigaChat и Telegram отдельным процессом на фиксированных портах — для проверки нескольких
+ * экземпляров бота (режим кластера) на одной машине без сети. Печатает свойства, с которыми нужно
+ * запустить экземпляры, и раз в --report-seconds — счётчики заглушек; работает до Ctrl+C.
+ * Пример: заглушки, три узла и нагрузка на webhook первого узла.
+ * java -cp benchmarks/target/benchmarks.jar com.GigaChatMyBot.benchmarks.StubServers --gigachat-port 9001 --telegram-port 9002
+ * java -jar target/GigaChatMyBot-*-exec.jar --server.port=8181 --management.server.port=9181 --bot.cluster.node-id=n1 ...
+ * java -jar target/GigaChatMyBot-*-exec.jar --server.port=8182 --management.server.port=9182 --bot.cluster.node-id=n2 ...
+ * java -jar target/GigaChatMyBot-*-exec.jar --server.port=8183 --management.server.port=9183 --bot.cluster.node-id=n3 ...
+ * java -cp benchmarks/target/benchmarks.jar com.GigaChatMyBot.benchmarks.WebhookLoadDriver \
+ *     --url http://127.0.0.1:8181/telegram/webhook --requests 20000 --chats 5000
+ * Вместо «...» — свойства заглушек (их печатает этот класс) и кластера, одинаковые на всех узлах: bot.cluster.enabled=true,
+ * bot.cluster.nodes=n1=http://127.0.0.1:8181,n2=http://127.0.0.1:8182,n3=http://127.0.0.1:8183, bot.cluster.secret.
+ * Распределение чатов по узлам видно в метрике bot.cluster.updates{route} ingress-узла и bot.cluster.received остальных.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class StubServers {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = WebhookLoadDriver.parseOptions(args);
+        int gigaChatPort = Integer.parseInt(options.getOrDefault("gigachat-port", "9001"));
+        int telegramPort = Integer.parseInt(options.getOrDefault("telegram-port", "9002"));
+        int answerChars = Integer.parseInt(options.getOrDefault("answer-chars", "1500"));
+        long reportSeconds = Long.parseLong(options.getOrDefault("report-seconds", "5"));
+        StubBehavior gigaChatBehavior = new StubBehavior(
+                Long.parseLong(options.getOrDefault("gigachat-latency-ms", "300")),
+                Long.parseLong(options.getOrDefault("gigachat-jitter-ms", "200")),
+                Double.parseDouble(options.getOrDefault("gigachat-error-rate", "0")));
+        StubBehavior telegramBehavior = new StubBehavior(
+                Long.parseLong(options.getOrDefault("telegram-latency-ms", "30")),
+                Long.parseLong(options.getOrDefault("telegram-jitter-ms", "20")),
+                Double.parseDouble(options.getOrDefault("telegram-error-rate", "0")));
+
+        GigaChatStubServer gigaChat = new GigaChatStubServer(gigaChatBehavior, answerChars, gigaChatPort);
+        TelegramStubServer telegram = new TelegramStubServer(telegramBehavior, telegramPort);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            telegram.close();
+            gigaChat.close();
+        }));
+        System.out.println("Свойства экземпляров бота:");
+        System.out.println("  --gigachat.oauth-url=" + gigaChat.oauthUrl());
+        System.out.println("  --gigachat.chat-url=" + gigaChat.chatUrl());
+        System.out.println("  \"--gigachat.authorization-key-basic=Basic c3R1YjpzdHVi\" --gigachat.scope=GIGACHAT_API_PERS");
+        System.out.println("  --telegram.bot.api-url=" + telegram.apiUrl() + " --telegram.bot.token=stub");
+        System.out.println("  --telegram.bot.mode=webhook --telegram.webhook.url=http://127.0.0.1"); // setWebhook уходит в заглушку
+        while (true) {
+            TimeUnit.SECONDS.sleep(reportSeconds);
+            System.out.println("GigaChat: запросов " + gigaChat.completions() + ", ошибок " + gigaChat.errors()
+                    + "; Telegram: sendMessage " + telegram.sent() + ", editMessageText " + telegram.edited()
+                    + ", ошибок " + telegram.errors());
+        }
+    }
+}
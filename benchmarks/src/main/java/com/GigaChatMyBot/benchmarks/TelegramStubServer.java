@@ -0,0 +1,222 @@
+package com.GigaChatMyBot.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Заглушка Telegram Bot API в том же процессе: принимает запросы вида /bot{token}/{method}.
+ * sendMessage и editMessageText отвечают объектом Message, остальные методы — true (getUpdates — пустым списком).
+ * Файлы, объявленные через addFile, отдаются getFile и скачиваются по /file/bot{token}/{path};
+ * содержимое генерируется при отдаче, в памяти не хранится.
+ * Задержка и доля ошибок (429 с retry_after) настраиваются; тексты отправленных сообщений можно ждать
+ * через expect — так нагрузочный драйвер узнаёт, что ответ дошёл до «пользователя».
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class TelegramStubServer implements AutoCloseable {
+    private static final ObjectMapper JSON = new ObjectMapper(); // Разбор тел запросов и сборка ответов
+
+    private final HttpServer server; // Встроенный HTTP-сервер JDK
+    private final ExecutorService executor = Executors.newCachedThreadPool(); // Обработчики запросов (платформенные потоки — см. GigaChatStubServer)
+    private final StubBehavior behavior; // Задержка и ошибки
+    private final AtomicInteger messageIds = new AtomicInteger(); // Идентификаторы отправленных сообщений
+    private final ConcurrentHashMap<String, Long> files = new ConcurrentHashMap<>(); // Размеры файлов по file_id
+    private final ConcurrentHashMap<Long, List<Waiter>> waiters = new ConcurrentHashMap<>(); // Ожидания текста по chatId
+    private final LongAdder sent = new LongAdder(); // Принятые sendMessage
+    private final LongAdder edited = new LongAdder(); // Принятые editMessageText
+    private final LongAdder errors = new LongAdder(); // Ответы с ошибкой
+    private final LongAdder downloads = new LongAdder(); // Скачанные файлы
+
+    /**
+     * Запускает заглушку на свободном порту 127.0.0.1.
+     * @param behavior задержка и доля ошибок ответов
+     */
+    TelegramStubServer(StubBehavior behavior) throws IOException {
+        this(behavior, 0);
+    }
+
+    /**
+     * Запускает заглушку на 127.0.0.1.
+     * @param behavior задержка и доля ошибок ответов
+     * @param port порт (0 — любой свободный)
+     */
+    TelegramStubServer(StubBehavior behavior, int port) throws IOException {
+        this.behavior = behavior;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return значение для telegram.bot.api-url
+     */
+    String apiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+    }
+
+    /**
+     * Ждёт сообщения или правки в чате, текст которых удовлетворяет условию.
+     * @param chatId идентификатор чата
+     * @param condition условие на текст
+     * @return future с текстом
+     */
+    CompletableFuture<String> expect(long chatId, Predicate<String> condition) {
+        Waiter waiter = new Waiter(condition, new CompletableFuture<>());
+        waiters.computeIfAbsent(chatId, id -> new CopyOnWriteArrayList<>()).add(waiter);
+        return waiter.result;
+    }
+
+    /**
+     * Объявляет файл, который бот сможет скачать.
+     * @param fileId идентификатор файла
+     * @param bytes размер файла
+     */
+    void addFile(String fileId, long bytes) {
+        files.put(fileId, bytes);
+    }
+
+    long downloads() {
+        return downloads.sum();
+    }
+
+    long sent() {
+        return sent.sum();
+    }
+
+    long edited() {
+        return edited.sum();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith("/file/")) {
+            download(exchange, path.substring(path.lastIndexOf('/') + 1));
+            return;
+        }
+        String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT); // Bot API не различает регистр, telegrambots шлёт /sendmessage
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        JsonNode request = body.length == 0 ? JSON.createObjectNode() : JSON.readTree(body); // telegrambots шлёт JSON
+        try {
+            behavior.delay();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+            return;
+        }
+        if ((method.equals("sendmessage") || method.equals("editmessagetext")) && behavior.fail()) {
+            errors.increment();
+            respond(exchange, 429, "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after 1\","
+                    + "\"parameters\":{\"retry_after\":1}}");
+            return;
+        }
+        switch (method) {
+            case "sendmessage", "editmessagetext" -> message(exchange, method, request);
+            case "getupdates" -> respond(exchange, 200, "{\"ok\":true,\"result\":[]}");
+            case "getfile" -> file(exchange, request);
+            case "getme" -> respond(exchange, 200,
+                    "{\"ok\":true,\"result\":{\"id\":1,\"is_bot\":true,\"first_name\":\"stub\",\"username\":\"stub_bot\"}}");
+            default -> respond(exchange, 200, "{\"ok\":true,\"result\":true}");
+        }
+    }
+
+    private void message(HttpExchange exchange, String method, JsonNode request) throws IOException {
+        (method.equals("sendmessage") ? sent : edited).increment();
+        long chatId = request.path("chat_id").asLong(); // chat_id приходит строкой
+        String text = request.path("text").asText();
+        ObjectNode message = JSON.createObjectNode()
+                .put("message_id", messageIds.incrementAndGet())
+                .put("date", System.currentTimeMillis() / 1000)
+                .put("text", text);
+        message.putObject("chat").put("id", chatId).put("type", "private");
+        ObjectNode response = JSON.createObjectNode().put("ok", true);
+        response.set("result", message);
+        respond(exchange, 200, JSON.writeValueAsString(response));
+        notifyWaiters(chatId, text);
+    }
+
+    private void file(HttpExchange exchange, JsonNode request) throws IOException {
+        String id = request.path("file_id").asText();
+        Long bytes = files.get(id);
+        if (bytes == null) {
+            respond(exchange, 400, "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: invalid file_id\"}");
+            return;
+        }
+        respond(exchange, 200, "{\"ok\":true,\"result\":{\"file_id\":\"" + id + "\",\"file_unique_id\":\"u" + id
+                + "\",\"file_size\":" + bytes + ",\"file_path\":\"documents/" + id + "\"}}");
+    }
+
+    /**
+     * Отдаёт содержимое файла частями (chunked), генерируя его на лету.
+     */
+    private void download(HttpExchange exchange, String fileId) throws IOException {
+        Long bytes = files.get(fileId);
+        if (bytes == null) {
+            respond(exchange, 404, "{\"ok\":false,\"error_code\":404,\"description\":\"Not Found\"}");
+            return;
+        }
+        downloads.increment();
+        byte[] chunk = new byte[16 * 1024];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) ('a' + i % 26);
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            for (long left = bytes; left > 0; left -= chunk.length) {
+                body.write(chunk, 0, (int) Math.min(chunk.length, left));
+            }
+        }
+    }
+
+    private void notifyWaiters(long chatId, String text) {
+        List<Waiter> chatWaiters = waiters.get(chatId);
+        if (chatWaiters == null) {
+            return;
+        }
+        for (Waiter waiter : chatWaiters) {
+            if (waiter.condition.test(text) && waiter.result.complete(text)) {
+                chatWaiters.remove(waiter);
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private record Waiter(Predicate<String> condition, CompletableFuture<String> result) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.GigaChatMyBot.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузочный драйвер webhook: воспроизводит записанные updates (JSON по одному на строку)
+ * POST-запросами на webhook запущенного бота и печатает пропускную способность, коды ответов
+ * и перцентили задержки ответа. Каждому запросу присваивается новый update_id; доля --duplicates
+ * отправляется повторно с уже использованным update_id, чтобы проверить отсев повторных доставок.
+ * --chats N заменяет идентификатор чата случайным от 1 до N, чтобы updates расходились по узлам кластера.
+ * Бот должен быть запущен с telegram.bot.mode=webhook (регистрацию webhook в Telegram можно не выполнять).
+ * Запуск:
+ * java -cp benchmarks/target/benchmarks.jar com.GigaChatMyBot.benchmarks.WebhookLoadDriver \
+ *     --url http://127.0.0.1:8080/telegram/webhook --secret SECRET --requests 20000 --concurrency 64
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class WebhookLoadDriver {
+    private static final Pattern UPDATE_ID = Pattern.compile("\"update_id\"\\s*:\\s*\\d+"); // Поле update_id в записи
+    private static final Pattern CHAT_ID = Pattern.compile("\"chat\"\\s*:\\s*\\{\\s*\"id\"\\s*:\\s*-?\\d+"); // Поле chat.id в записи
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        URI url = URI.create(options.getOrDefault("url", "http://127.0.0.1:8080/telegram/webhook"));
+        String secret = options.getOrDefault("secret", "");
+        int requests = Integer.parseInt(options.getOrDefault("requests", "10000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        double duplicates = Double.parseDouble(options.getOrDefault("duplicates", "0.05"));
+        int chats = Integer.parseInt(options.getOrDefault("chats", "0"));
+        List<String> recorded = loadUpdates(options.get("updates"));
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        LatencyStats latency = new LatencyStats();
+        ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder failures = new LongAdder();
+        AtomicInteger nextId = new AtomicInteger(1);
+        Semaphore inFlight = new Semaphore(concurrency);
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                int updateId = (i > 0 && ThreadLocalRandom.current().nextDouble() < duplicates)
+                        ? ThreadLocalRandom.current().nextInt(1, nextId.get())
+                        : nextId.getAndIncrement();
+                String body = UPDATE_ID.matcher(recorded.get(i % recorded.size())).replaceFirst("\"update_id\":" + updateId);
+                if (chats > 0) {
+                    body = CHAT_ID.matcher(body).replaceFirst("\"chat\":{\"id\":" + ThreadLocalRandom.current().nextInt(1, chats + 1));
+                }
+                HttpRequest request = HttpRequest.newBuilder(url)
+                        .header("Content-Type", "application/json")
+                        .header("X-Telegram-Bot-Api-Secret-Token", secret)
+                        .timeout(Duration.ofSeconds(30))
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                inFlight.acquire();
+                executor.execute(() -> {
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        latency.record(System.nanoTime() - sent);
+                        statuses.computeIfAbsent(response.statusCode(), s -> new LongAdder()).increment();
+                    } catch (IOException | InterruptedException e) {
+                        failures.increment();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        System.out.printf("Отправлено %d updates за %.2f с: %.0f запр/с, параллельно %d%n",
+                requests, seconds, requests / seconds, concurrency);
+        System.out.println("Коды ответов: " + statuses + ", сетевые ошибки: " + failures.sum());
+        System.out.println("Задержка ответа webhook: " + latency.summary());
+    }
+
+    /**
+     * Читает записанные updates из файла или, если файл не указан, из ресурса webhook-updates.jsonl.
+     */
+    private static List<String> loadUpdates(String file) throws IOException {
+        List<String> updates = new ArrayList<>();
+        InputStream input = (file != null)
+                ? Files.newInputStream(Path.of(file))
+                : WebhookLoadDriver.class.getResourceAsStream("/webhook-updates.jsonl");
+        if (input == null) {
+            throw new IOException("Ресурс webhook-updates.jsonl не найден");
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isBlank()) {
+                    updates.add(line);
+                }
+            }
+        }
+        if (updates.isEmpty()) {
+            throw new IOException("Нет записанных updates");
+        }
+        return updates;
+    }
+
+    /**
+     * Разбирает аргументы вида --name value.
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new ConcurrentHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Ожидался параметр вида --name value: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
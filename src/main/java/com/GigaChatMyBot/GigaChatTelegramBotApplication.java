@@ -2,6 +2,8 @@ package com.GigaChatMyBot;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.ConfigurableApplicationContext;
 
 /**
  * Основной класс приложения.
@@ -10,12 +12,21 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  */
 @SpringBootApplication
 public class GigaChatTelegramBotApplication {
+    private static final int STARTUP_STEPS_CAPACITY = 4096; // Сколько шагов старта Spring хранить для /actuator/startup
 
     /**
      * Точка входа в приложение.
-     * @param args аргументы командной строки
+     * Шаги старта контекста Spring записываются и доступны на /actuator/startup.
+     * При bot.lifecycle.training-run=true приложение завершается сразу после старта —
+     * так записывается архив CDS (-XX:ArchiveClassesAtExit), см. профиль cds в pom.xml.
+     * @param args аргументы командной строки
      */
     public static void main(String[] args) {
-        SpringApplication.run(GigaChatTelegramBotApplication.class, args);
+        SpringApplication application = new SpringApplication(GigaChatTelegramBotApplication.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS_CAPACITY));
+        ConfigurableApplicationContext context = application.run(args);
+        if (context.getEnvironment().getProperty("bot.lifecycle.training-run", Boolean.class, false)) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
@@ -0,0 +1,310 @@
+package com.GigaChatMyBot.cluster;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Состав кластера экземпляров бота (bot.cluster.enabled=true) без внешнего координатора.
+ * Список узлов задан статически (bot.cluster.nodes, одинаковый на всех узлах); каждый узел раз в
+ * bot.cluster.heartbeat-interval-ms опрашивает /cluster/health остальных. Узел жив, пока отвечает 200 —
+ * то есть пока принимает updates: во время прогрева и плавной остановки он отвечает 503 и из кольца выходит.
+ * После failure-threshold пропущенных ответов подряд (или сразу, если не удалась пересылка update) узел
+ * считается выбывшим, кольцо HashRing перестраивается и его чаты переходят к остальным; ответивший снова
+ * узел возвращается в кольцо и получает свои чаты обратно.
+ * Ведущий узел — живой узел с наименьшим идентификатором: в режиме polling только он получает updates из Telegram.
+ * Без кластера состав из одного узла: все чаты свои, узел всегда ведущий.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@Component // Регистрирует состав кластера как компонент Spring
+public final class ClusterMembership {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMembership.class); // Логгер изменений состава
+    public static final String HEALTH_PATH = "/cluster/health"; // Проверка готовности узла
+    public static final String UPDATES_PATH = "/cluster/updates"; // Приём пересланных updates
+
+    private final boolean enabled; // Включён ли режим кластера
+    private final String selfId; // Идентификатор этого узла
+    private final Map<String, Peer> peers; // Остальные узлы по идентификатору
+    private final int virtualNodes; // Точек кольца на узел
+    private final int failureThreshold; // Сколько пропущенных ответов подряд до исключения узла
+    private final long heartbeatIntervalMillis; // Интервал проверки узлов
+    private final Duration heartbeatTimeout; // Таймаут проверки узла
+    private final HttpClient http; // Клиент проверок готовности
+    private final ScheduledExecutorService scheduler; // Периодические проверки (null без кластера)
+    private final BotMetrics metrics; // Метрика числа живых узлов
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>(); // Кого уведомлять об изменении состава
+    private volatile HashRing ring; // Кольцо из этого узла и живых узлов
+    private volatile int alive = 1; // Живые узлы вместе с этим
+
+    /**
+     * Конструктор.
+     * @param enabled включён ли режим кластера
+     * @param selfId идентификатор этого узла
+     * @param nodes узлы кластера через запятую: id=http://host:port (этот узел тоже можно указать)
+     * @param virtualNodes сколько точек кольца занимает узел
+     * @param heartbeatIntervalMillis интервал проверки узлов
+     * @param failureThreshold сколько пропущенных ответов подряд до исключения узла
+     * @param metrics метрики
+     * @throws IllegalStateException если кластер включён, а идентификатор узла не задан
+     */
+    public ClusterMembership(@Value("${bot.cluster.enabled:false}") boolean enabled,
+                             @Value("${bot.cluster.node-id:}") String selfId,
+                             @Value("${bot.cluster.nodes:}") String nodes,
+                             @Value("${bot.cluster.virtual-nodes:128}") int virtualNodes,
+                             @Value("${bot.cluster.heartbeat-interval-ms:1000}") long heartbeatIntervalMillis,
+                             @Value("${bot.cluster.failure-threshold:3}") int failureThreshold,
+                             BotMetrics metrics) {
+        if (enabled && selfId.isBlank()) {
+            throw new IllegalStateException("bot.cluster.enabled=true, но bot.cluster.node-id не задан");
+        }
+        this.enabled = enabled;
+        this.selfId = enabled ? selfId.trim() : "local";
+        this.peers = enabled ? parsePeers(nodes, this.selfId) : Map.of();
+        this.virtualNodes = virtualNodes;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.heartbeatTimeout = Duration.ofMillis(heartbeatIntervalMillis);
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(heartbeatTimeout)
+                .build();
+        this.scheduler = enabled
+                ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "cluster-heartbeat");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+        this.metrics = metrics;
+        rebuild();
+    }
+
+    /**
+     * Регистрирует метрику и запускает периодические проверки узлов после создания компонента.
+     */
+    @PostConstruct
+    public void start() {
+        metrics.gauge("bot.cluster.nodes", "Живые узлы кластера вместе с этим", this, ClusterMembership::alive);
+        if (scheduler != null) {
+            scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+            logger.info("Режим кластера: узел {}, остальные узлы {}", selfId, peers.values());
+        }
+    }
+
+    private static Map<String, Peer> parsePeers(String nodes, String selfId) {
+        Map<String, Peer> peers = new LinkedHashMap<>();
+        for (String node : nodes.split(",")) {
+            if (node.isBlank()) {
+                continue;
+            }
+            int eq = node.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalStateException("Узел в bot.cluster.nodes должен иметь вид id=http://host:port: " + node);
+            }
+            String id = node.substring(0, eq).trim();
+            if (!id.equals(selfId)) {
+                peers.put(id, new Peer(id, URI.create(node.substring(eq + 1).trim())));
+            }
+        }
+        return Map.copyOf(peers);
+    }
+
+    /**
+     * @return true, если включён режим кластера
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return идентификатор этого узла
+     */
+    public String selfId() {
+        return selfId;
+    }
+
+    /**
+     * @param chatId идентификатор чата
+     * @return узел, которому принадлежит чат, или null, если чат принадлежит этому узлу
+     */
+    public Peer owner(long chatId) {
+        String owner = ring.owner(chatId);
+        return (owner == null || owner.equals(selfId)) ? null : peers.get(owner);
+    }
+
+    /**
+     * @return true, если этот узел — живой узел с наименьшим идентификатором
+     */
+    public boolean isLeader() {
+        for (Peer peer : peers.values()) {
+            if (peer.alive && peer.id.compareTo(selfId) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Подписывает на изменения состава кластера. Уведомление приходит в потоке, заметившем изменение.
+     * @param listener действие при изменении состава
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Проверяет все узлы и дожидается ответов (не дольше таймаута проверки).
+     * Нужна перед решениями, зависящими от состава, например перед запуском long polling на ведущем узле.
+     */
+    public void refresh() {
+        heartbeat().join();
+    }
+
+    /**
+     * Исключает узел из кольца сразу, не дожидаясь пропущенных проверок: пересылка ему не удалась.
+     * Следующая успешная проверка вернёт узел в кольцо.
+     * @param peer узел
+     */
+    public void markDead(Peer peer) {
+        boolean changed;
+        synchronized (this) {
+            peer.misses = failureThreshold;
+            changed = peer.alive;
+            peer.alive = false;
+            if (changed) {
+                rebuild();
+            }
+        }
+        if (changed) {
+            logger.warn("Узел {} исключён из кластера: пересылка не удалась", peer.id);
+            notifyListeners();
+        }
+    }
+
+    private CompletableFuture<Void> heartbeat() {
+        List<CompletableFuture<?>> checks = new ArrayList<>(peers.size());
+        for (Peer peer : peers.values()) {
+            HttpRequest request = HttpRequest.newBuilder(peer.uri(HEALTH_PATH))
+                    .timeout(heartbeatTimeout)
+                    .GET()
+                    .build();
+            checks.add(http.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        onHeartbeat(peer, error == null && response.statusCode() == 200);
+                        return null;
+                    }));
+        }
+        return CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new));
+    }
+
+    private void onHeartbeat(Peer peer, boolean ok) {
+        boolean changed;
+        synchronized (this) {
+            boolean wasAlive = peer.alive;
+            peer.misses = ok ? 0 : peer.misses + 1;
+            if (ok) {
+                peer.alive = true;
+            } else if (peer.misses >= failureThreshold) {
+                peer.alive = false;
+            }
+            changed = wasAlive != peer.alive;
+            if (changed) {
+                rebuild();
+            }
+        }
+        if (changed) {
+            logger.info("Узел {} {} кластер, живых узлов: {}", peer.id, peer.alive ? "вошёл в" : "вышел из", alive);
+            notifyListeners();
+        }
+    }
+
+    /**
+     * Строит кольцо из этого узла и живых узлов. Вызывается в конструкторе и под блокировкой.
+     */
+    private void rebuild() {
+        List<String> nodes = new ArrayList<>();
+        nodes.add(selfId);
+        peers.values().stream().filter(peer -> peer.alive).forEach(peer -> nodes.add(peer.id));
+        ring = new HashRing(nodes, virtualNodes);
+        alive = nodes.size();
+    }
+
+    private void notifyListeners() {
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                logger.error("Ошибка обработчика изменения состава кластера: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * @return число живых узлов вместе с этим
+     */
+    public int alive() {
+        return alive;
+    }
+
+    /**
+     * Останавливает проверки узлов при остановке контекста Spring.
+     */
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        http.close();
+    }
+
+    /**
+     * Другой узел кластера.
+     */
+    public static final class Peer {
+        private final String id; // Идентификатор узла
+        private final URI base; // Адрес веб-сервера узла
+        private volatile boolean alive; // Жив ли узел; до первой успешной проверки — нет
+        private int misses; // Пропущенные проверки подряд (под блокировкой ClusterMembership)
+
+        private Peer(String id, URI base) {
+            this.id = id;
+            this.base = base;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        /**
+         * @param path путь на веб-сервере узла
+         * @return адрес на узле
+         */
+        public URI uri(String path) {
+            return base.resolve(path);
+        }
+
+        @Override
+        public String toString() {
+            return id + "=" + base;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.GigaChatMyBot.cluster;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Маршрутизация updates в кластере: update чата, принадлежащего другому узлу, пересылается ему
+ * POST-запросом на /cluster/updates, чтобы все сообщения чата обрабатывал один узел — по порядку,
+ * с его историей диалога, кэшем и лимитами. Пересылка синхронная: update считается принятым, когда узел-владелец
+ * поставил его в свою очередь, поэтому порядок сообщений чата сохраняется, а заполненный владелец
+ * тормозит приём так же, как собственный диспетчер.
+ * Если владелец не ответил 200, он сразу исключается из кольца и update уходит следующему владельцу;
+ * когда живых владельцев не осталось или попытки исчерпаны, update обрабатывается на этом узле.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@Component // Регистрирует маршрутизатор как компонент Spring
+public class ClusterRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRouter.class); // Логгер неудачных пересылок
+    private static final ObjectMapper JSON = new ObjectMapper(); // Сериализация update для пересылки
+    public static final String SECRET_HEADER = "X-Cluster-Secret"; // Заголовок с общим секретом узлов
+    private static final int MAX_ATTEMPTS = 3; // Сколько владельцев пробовать, прежде чем обработать update здесь
+
+    private final ClusterMembership membership; // Состав кластера и кольцо
+    private final String secret; // Общий секрет узлов
+    private final Duration forwardTimeout; // Таймаут пересылки
+    private final HttpClient http; // Клиент пересылки (null без кластера)
+    private final AtomicLong local = new AtomicLong(); // Updates, обработанные на этом узле
+    private final AtomicLong forwarded = new AtomicLong(); // Updates, пересланные владельцу
+    private final AtomicLong failovers = new AtomicLong(); // Неудачные пересылки
+
+    /**
+     * Конструктор.
+     * @param membership состав кластера
+     * @param secret общий секрет узлов, передаётся в заголовке X-Cluster-Secret
+     * @param forwardTimeoutMillis таймаут пересылки update
+     * @param metrics метрики
+     * @throws IllegalStateException если кластер включён, а общий секрет не задан
+     */
+    public ClusterRouter(ClusterMembership membership,
+                         @Value("${bot.cluster.secret:}") String secret,
+                         @Value("${bot.cluster.forward-timeout-ms:2000}") long forwardTimeoutMillis,
+                         BotMetrics metrics) {
+        if (membership.isEnabled() && secret.isBlank()) {
+            throw new IllegalStateException("bot.cluster.enabled=true, но bot.cluster.secret не задан: "
+                    + "/cluster/updates принимал бы updates от кого угодно");
+        }
+        this.membership = membership;
+        this.secret = secret;
+        this.forwardTimeout = Duration.ofMillis(forwardTimeoutMillis);
+        this.http = membership.isEnabled()
+                ? HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(forwardTimeout).build()
+                : null;
+        metrics.counter("bot.cluster.updates", "Updates по способу обработки", "route", "local", local, AtomicLong::get);
+        metrics.counter("bot.cluster.updates", "Updates по способу обработки", "route", "forwarded",
+                forwarded, AtomicLong::get);
+        metrics.counter("bot.cluster.updates", "Updates по способу обработки", "route", "failover",
+                failovers, AtomicLong::get);
+    }
+
+    /**
+     * Пересылает update узлу-владельцу чата.
+     * @param update входящий update
+     * @return true — update принят другим узлом; false — его нужно обработать на этом узле
+     */
+    public boolean forward(Update update) {
+        Long chatId = chatId(update);
+        if (!membership.isEnabled() || chatId == null) {
+            local.incrementAndGet();
+            return false;
+        }
+        byte[] body = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            ClusterMembership.Peer owner = membership.owner(chatId);
+            if (owner == null) {
+                break;
+            }
+            try {
+                body = (body != null) ? body : JSON.writeValueAsBytes(update);
+            } catch (JsonProcessingException e) {
+                logger.error("Не удалось сериализовать update_id={} для пересылки: {}", update.getUpdateId(), e.getMessage());
+                break;
+            }
+            if (send(owner, body)) {
+                forwarded.incrementAndGet();
+                return true;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            failovers.incrementAndGet();
+            membership.markDead(owner);
+        }
+        local.incrementAndGet();
+        return false;
+    }
+
+    private boolean send(ClusterMembership.Peer owner, byte[] body) {
+        HttpRequest request = HttpRequest.newBuilder(owner.uri(ClusterMembership.UPDATES_PATH))
+                .header("Content-Type", "application/json")
+                .header(SECRET_HEADER, secret)
+                .timeout(forwardTimeout)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        try {
+            int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status != 200) {
+                logger.warn("Узел {} не принял update: HTTP {}", owner.id(), status);
+            }
+            return status == 200;
+        } catch (IOException e) {
+            logger.warn("Узел {} недоступен: {}", owner.id(), e.toString());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Long chatId(Update update) {
+        return update.hasMessage() ? update.getMessage().getChatId() : null;
+    }
+
+    /**
+     * Закрывает соединения с узлами при остановке контекста Spring.
+     */
+    @PreDestroy
+    public void close() {
+        if (http != null) {
+            http.close();
+        }
+    }
+}
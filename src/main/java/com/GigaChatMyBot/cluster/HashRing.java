@@ -0,0 +1,68 @@
+package com.GigaChatMyBot.cluster;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Кольцо консистентного хеширования чатов по узлам кластера.
+ * Каждый узел занимает virtualNodes точек кольца (первые 8 байт MD5 от "id#i"), чат принадлежит узлу,
+ * чья точка первой встречается по часовой стрелке от хеша chatId. Точки зависят только от идентификаторов узлов,
+ * поэтому все узлы с одинаковым составом кластера строят одинаковое кольцо, а при выходе узла
+ * к другим переходят только его чаты — примерно 1/N всех.
+ * Кольцо неизменяемое; при изменении состава строится новое.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public final class HashRing {
+    private final TreeMap<Long, String> points = new TreeMap<>(); // Точки кольца → идентификатор узла
+
+    /**
+     * Строит кольцо.
+     * @param nodes идентификаторы узлов
+     * @param virtualNodes сколько точек кольца занимает каждый узел
+     */
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        MessageDigest md5 = md5();
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                byte[] digest = md5.digest((node + "#" + i).getBytes(StandardCharsets.UTF_8));
+                points.putIfAbsent(ByteBuffer.wrap(digest).getLong(), node);
+            }
+        }
+    }
+
+    /**
+     * @param chatId идентификатор чата
+     * @return идентификатор узла, которому принадлежит чат, или null, если кольцо пустое
+     */
+    public String owner(long chatId) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(chatId));
+        return (point != null ? point : points.firstEntry()).getValue();
+    }
+
+    /**
+     * Перемешивает биты chatId (финализатор SplitMix64): соседние идентификаторы чатов расходятся по всему кольцу.
+     */
+    static long hash(long chatId) {
+        long z = chatId + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 недоступен", e); // MD5 есть в любой JRE
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.GigaChatMyBot.config;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.service.ConversationStore;
+import com.GigaChatMyBot.service.GigaChatService;
+import com.GigaChatMyBot.telegram.GigaChatTelegramBot;
+import com.GigaChatMyBot.telegram.MessageCoalescer;
+import com.GigaChatMyBot.telegram.UpdateDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.GetMe;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Жизненный цикл бота: прогрев при старте, приём updates только после прогрева и плавная остановка.
+ * Старт (Spring вызывает start() последним, после запуска веб-сервера):
+ * прогрев JSON-кодека, получение OAuth-токена, соединение HTTP/2 с Chat API, проверка токена бота (getMe),
+ * и только затем — long polling или регистрация webhook. Spring Boot переводит приложение в состояние
+ * готовности (readiness, /actuator/health/readiness) после возврата из start(), поэтому балансировщик
+ * не направит трафик на непрогретый экземпляр. Длительность каждой фазы — в метрике bot.startup.phase.
+ * Остановка (SIGTERM; Spring вызывает stop() первым, до остановки веб-сервера):
+ * прекращается приём updates, накопленные MessageCoalescer сообщения уходят в диспетчер,
+ * UpdateDispatcher дожидается обработки принятых сообщений (не дольше telegram.dispatcher.shutdown-timeout-seconds),
+ * после чего история диалогов сбрасывается на диск.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@Component // Регистрирует жизненный цикл как компонент Spring
+public class BotLifecycle implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(BotLifecycle.class); // Логгер фаз старта и остановки
+
+    private final GigaChatService gigaChatService; // Прогрев кодека, токена и соединения с GigaChat
+    private final GigaChatTelegramBot bot; // Проверка токена бота и соединения с Bot API
+    private final TelegramBotConfig ingestion; // Запуск и остановка приёма updates
+    private final MessageCoalescer coalescer; // Склейка сообщений: накопленное отправляется при остановке
+    private final UpdateDispatcher dispatcher; // Диспетчер: дожидается обработки принятых сообщений
+    private final ConversationStore conversationStore; // История диалогов: сохраняется после обработки
+    private final BotMetrics metrics; // Длительность фаз старта
+    private final long warmupTimeoutMillis; // Сколько всего ждать сетевых фаз прогрева
+    private final boolean warmupRequired; // Прерывать ли старт, если прогрев не удался
+    private final boolean trainingRun; // Пробный запуск для записи архива CDS: приём updates не запускается
+    private final Map<String, Long> phases = new LinkedHashMap<>(); // Длительность фаз старта в наносекундах
+    private volatile boolean running; // Запущен ли жизненный цикл
+
+    /**
+     * Конструктор.
+     * @param gigaChatService сервис GigaChat
+     * @param bot Telegram-бот
+     * @param ingestion запуск и остановка приёма updates
+     * @param coalescer склейка сообщений
+     * @param dispatcher диспетчер обработки сообщений
+     * @param conversationStore хранилище истории диалогов
+     * @param metrics метрики
+     * @param warmupTimeoutSeconds сколько секунд всего ждать сетевых фаз прогрева
+     * @param warmupRequired прерывать ли старт приложения, если прогрев не удался
+     * @param trainingRun пробный запуск без приёма updates (для записи архива CDS)
+     */
+    public BotLifecycle(GigaChatService gigaChatService, GigaChatTelegramBot bot, TelegramBotConfig ingestion,
+                        MessageCoalescer coalescer, UpdateDispatcher dispatcher, ConversationStore conversationStore,
+                        BotMetrics metrics,
+                        @Value("${bot.lifecycle.warmup-timeout-seconds:30}") long warmupTimeoutSeconds,
+                        @Value("${bot.lifecycle.warmup-required:false}") boolean warmupRequired,
+                        @Value("${bot.lifecycle.training-run:false}") boolean trainingRun) {
+        this.gigaChatService = gigaChatService;
+        this.bot = bot;
+        this.ingestion = ingestion;
+        this.coalescer = coalescer;
+        this.dispatcher = dispatcher;
+        this.conversationStore = conversationStore;
+        this.metrics = metrics;
+        this.warmupTimeoutMillis = TimeUnit.SECONDS.toMillis(warmupTimeoutSeconds);
+        this.warmupRequired = warmupRequired;
+        this.trainingRun = trainingRun;
+    }
+
+    /**
+     * Прогревает приложение и запускает приём updates.
+     * @throws IllegalStateException если прогрев или запуск приёма updates не удались
+     *         и bot.lifecycle.warmup-required=true
+     */
+    @Override
+    public void start() {
+        record("context", TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime()));
+        boolean warm = warmUp();
+        if (!warm && warmupRequired) {
+            throw new IllegalStateException("Прогрев не удался, приём updates не запущен (bot.lifecycle.warmup-required=true)");
+        }
+        if (!warm) {
+            logger.warn("Прогрев не удался, запускаем приём updates без него: первые запросы будут медленнее");
+        }
+        if (trainingRun) {
+            logger.info("Пробный запуск (bot.lifecycle.training-run=true): приём updates не запускается");
+        } else {
+            boolean ingesting = phase("ingestion", () -> {
+                ingestion.startIngestion();
+                return Boolean.TRUE;
+            }) != null;
+            if (!ingesting && warmupRequired) {
+                throw new IllegalStateException("Не удалось запустить приём updates (bot.lifecycle.warmup-required=true)");
+            }
+            if (!ingesting) {
+                logger.error("КРИТИЧЕСКАЯ ОШИБКА: приём updates не запущен, бот не будет получать сообщения");
+            }
+        }
+        record("total", TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime()));
+        running = true;
+        logger.info("Бот готов. Фазы старта, мс: {}", phasesMillis());
+    }
+
+    /**
+     * Прогрев: кодек, OAuth-токен, соединение с Chat API, проверка токена бота.
+     * Сетевые фазы вместе ограничены bot.lifecycle.warmup-timeout-seconds.
+     * @return true, если все фазы прошли успешно
+     */
+    private boolean warmUp() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupTimeoutMillis);
+        boolean codec = phase("codec", () -> {
+            gigaChatService.warmUpCodec();
+            return Boolean.TRUE;
+        }) != null;
+        String token = phase("oauth_token", () -> await(gigaChatService.warmUpTokenAsync(), deadline));
+        boolean connection = token != null
+                && phase("gigachat_connection", () -> await(gigaChatService.warmUpConnectionAsync(token), deadline)) != null;
+        boolean telegram = phase("telegram", () -> await(bot.executeAsync(new GetMe()), deadline)) != null;
+        return codec && connection && telegram;
+    }
+
+    /**
+     * Ждёт результат сетевой фазы прогрева не дольше общего срока.
+     * По истечении срока операция не отменяется: токен, полученный позже, всё равно пригодится первому запросу.
+     */
+    private static <T> T await(CompletableFuture<T> future, long deadlineNanos) throws Exception {
+        return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Выполняет фазу старта и запоминает её длительность.
+     * @return результат фазы или null, если фаза не удалась
+     */
+    private <T> T phase(String name, Callable<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Фаза старта {} прервана", name);
+            return null;
+        } catch (Exception e) {
+            logger.warn("Фаза старта {} не удалась: {}", name, e.toString());
+            return null;
+        } finally {
+            record(name, System.nanoTime() - start);
+        }
+    }
+
+    private void record(String name, long nanos) {
+        phases.put(name, nanos);
+        metrics.recordStartupPhase(name, nanos);
+    }
+
+    private Map<String, Long> phasesMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        phases.forEach((name, nanos) -> millis.put(name, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        return millis;
+    }
+
+    /**
+     * Прекращает приём updates, дожидается обработки принятых сообщений и сохраняет историю диалогов.
+     */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        long start = System.nanoTime();
+        ingestion.stopIngestion();
+        coalescer.shutdown();
+        logger.info("Приём updates остановлен, дожидаемся обработки {} сообщений", dispatcher.pending());
+        dispatcher.shutdown();
+        conversationStore.flush();
+        logger.info("Бот остановлен за {} мс", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
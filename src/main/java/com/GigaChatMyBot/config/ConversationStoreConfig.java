@@ -0,0 +1,50 @@
+package com.GigaChatMyBot.config;
+
+import com.GigaChatMyBot.service.ConversationStore;
+import com.GigaChatMyBot.service.InMemoryConversationStore;
+import com.GigaChatMyBot.storage.MappedConversationStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Выбор хранилища истории диалогов.
+ * gigachat.history-store=memory — история в памяти (теряется при перезапуске),
+ * gigachat.history-store=disk — журнал на диске в каталоге gigachat.history-dir.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@Configuration // Объявляет бины хранилища истории
+public class ConversationStoreConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationStoreConfig.class); // Логгер выбора хранилища
+
+    /**
+     * Создаёт хранилище истории по настройкам.
+     * Spring вызывает close() у дискового хранилища при остановке контекста.
+     * @param config конфигурация GigaChat
+     * @return хранилище истории
+     * @throws IOException если каталог журнала недоступен
+     */
+    @Bean
+    public ConversationStore conversationStore(GigaChatSpringConfig config) throws IOException {
+        if ("disk".equalsIgnoreCase(config.getHistoryStore())) {
+            logger.info("История диалогов хранится на диске: {}", config.getHistoryDir());
+            return new MappedConversationStore(
+                    Path.of(config.getHistoryDir()),
+                    config.getHistorySegmentSizeMb() * 1024 * 1024,
+                    config.getHistoryTokenBudget(),
+                    config.getHistoryCompactionIntervalSeconds() * 1000
+            );
+        }
+        logger.info("История диалогов хранится в памяти");
+        return new InMemoryConversationStore(
+                config.getHistoryTokenBudget(),
+                config.getHistoryMaxChats(),
+                config.getHistoryIdleMinutes() * 60_000,
+                config.getHistoryMaxMemoryMb() * 1024 * 1024
+        );
+    }
+}
@@ -23,6 +23,86 @@ public class GigaChatSpringConfig {
     private String scope;
     // Имя модели
     private String modelName;
+    // За сколько секунд до истечения OAuth-токена обновлять его в фоне
+    private long tokenRefreshMarginSeconds = 60;
+    // Потоковый режим ответа (SSE): пользователь видит текст по мере генерации
+    private boolean streamingEnabled = false;
+    // Системный промпт, добавляемый в начало каждого диалога (пусто — не добавлять)
+    private String systemPrompt;
+    // Бюджет токенов на историю одного чата (0 — бот не помнит предыдущие реплики)
+    private int historyTokenBudget = 2000;
+    // Максимальное число чатов, история которых хранится в памяти
+    private int historyMaxChats = 50_000;
+    // Через сколько минут простоя история чата вытесняется
+    private long historyIdleMinutes = 60;
+    // Жёсткий лимит памяти под историю всех чатов, МБ
+    private long historyMaxMemoryMb = 64;
+    // Где хранить историю: memory (в памяти) или disk (журнал на диске)
+    private String historyStore = "memory";
+    // Каталог журнала истории для history-store=disk
+    private String historyDir = "data/history";
+    // Размер сегмента журнала истории, МБ
+    private int historySegmentSizeMb = 16;
+    // Период фоновой компакции журнала истории, секунды
+    private long historyCompactionIntervalSeconds = 60;
+    // Кэш ответов на повторяющиеся вопросы без контекста (в чате переключается командой /cache on|off)
+    private boolean cacheEnabled = false;
+    // Максимальное число записей в кэше ответов
+    private int cacheMaxEntries = 10_000;
+    // Время жизни ответа в кэше, минуты
+    private long cacheTtlMinutes = 60;
+    // Лимит памяти под кэш ответов, МБ
+    private long cacheMaxMemoryMb = 32;
+    // Ответы больше этого размера не кэшируются, КБ
+    private int cacheMaxEntryKb = 16;
+    // Начальная скорость запросов к GigaChat, запросов в секунду (подстраивается по ответам 429)
+    private double rateLimitPerSecond = 10;
+    // Нижняя граница скорости запросов к GigaChat
+    private double rateLimitMinPerSecond = 0.5;
+    // Верхняя граница скорости запросов к GigaChat
+    private double rateLimitMaxPerSecond = 50;
+    // Сколько ждать очереди к GigaChat, прежде чем ответить пользователю «занято», мс
+    private long rateLimitMaxWaitMs = 10_000;
+    // Таймаут установки соединения с GigaChat, мс
+    private long httpConnectTimeoutMs = 5000;
+    // Сколько ждать заголовков ответа GigaChat, секунды
+    private long httpRequestTimeoutSeconds = 60;
+    // Предельная длительность запроса целиком, включая потоковый ответ, секунды
+    private long httpExchangeTimeoutSeconds = 300;
+    // Сколько раз повторять запрос после временной ошибки (сбой соединения, 5xx)
+    private int httpMaxRetries = 2;
+    // Задержка перед первым повтором, мс (дальше удваивается, со случайным разбросом)
+    private long httpRetryBaseDelayMs = 200;
+    // Верхняя граница задержки между повторами, мс
+    private long httpRetryMaxDelayMs = 2000;
+    // Сколько ошибок подряд приостанавливают запросы к GigaChat (circuit breaker)
+    private int circuitFailureThreshold = 5;
+    // На сколько секунд приостанавливать запросы перед пробным
+    private long circuitOpenSeconds = 30;
+    // Модели для маршрутизации через запятую, от быстрой к сильной (пусто — только modelName)
+    private String routingModels;
+    // Вопросы короче — в самую быструю модель
+    private int routingShortPromptChars = 300;
+    // Вопросы не короче — в самую сильную модель
+    private int routingLongPromptChars = 1500;
+    // Модель с большим p95 задержки считается медленной
+    private long routingMaxP95Ms = 20_000;
+    // Модель с большей долей ошибок за 5 минут считается нездоровой
+    private double routingMaxErrorRate = 0.5;
+    // Сколько всего ждать ответа GigaChat, включая очередь ограничителя, повторы и запасную модель
+    private long answerTimeoutSeconds = 300;
+    // Сколько запросов к Chat API выполняется одновременно; остальные ждут в честной очереди по чатам
+    private int schedulerMaxConcurrency = 32;
+    // Сколько запросов одного чата выполняется одновременно
+    private int schedulerMaxInFlightPerChat = 2;
+    // Сколько запрос может ждать в очереди планировщика, прежде чем пользователь получит ответ «занято»
+    private long schedulerMaxWaitMs = 10_000;
+    // Сколько запросов может ждать в очереди планировщика всего
+    private int schedulerMaxQueued = 5000;
+    // Чаты администраторов через запятую: их запросы получают больший вес в очереди
+    private String schedulerAdminChatIds;
+    // Вес чатов администраторов (у остальных 1)
+    private double schedulerAdminWeight = 8;
 
     // Геттеры и сеттеры
 
@@ -56,4 +136,244 @@ public class GigaChatSpringConfig {
     public void setModelName(String modelName) {
         this.modelName = modelName;
     }
+    public long getTokenRefreshMarginSeconds() {
+        return tokenRefreshMarginSeconds;
+    }
+    public void setTokenRefreshMarginSeconds(long tokenRefreshMarginSeconds) {
+        this.tokenRefreshMarginSeconds = tokenRefreshMarginSeconds;
+    }
+    public boolean isStreamingEnabled() {
+        return streamingEnabled;
+    }
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+    public String getSystemPrompt() {
+        return systemPrompt;
+    }
+    public void setSystemPrompt(String systemPrompt) {
+        this.systemPrompt = systemPrompt;
+    }
+    public int getHistoryTokenBudget() {
+        return historyTokenBudget;
+    }
+    public void setHistoryTokenBudget(int historyTokenBudget) {
+        this.historyTokenBudget = historyTokenBudget;
+    }
+    public int getHistoryMaxChats() {
+        return historyMaxChats;
+    }
+    public void setHistoryMaxChats(int historyMaxChats) {
+        this.historyMaxChats = historyMaxChats;
+    }
+    public long getHistoryIdleMinutes() {
+        return historyIdleMinutes;
+    }
+    public void setHistoryIdleMinutes(long historyIdleMinutes) {
+        this.historyIdleMinutes = historyIdleMinutes;
+    }
+    public long getHistoryMaxMemoryMb() {
+        return historyMaxMemoryMb;
+    }
+    public void setHistoryMaxMemoryMb(long historyMaxMemoryMb) {
+        this.historyMaxMemoryMb = historyMaxMemoryMb;
+    }
+    public String getHistoryStore() {
+        return historyStore;
+    }
+    public void setHistoryStore(String historyStore) {
+        this.historyStore = historyStore;
+    }
+    public String getHistoryDir() {
+        return historyDir;
+    }
+    public void setHistoryDir(String historyDir) {
+        this.historyDir = historyDir;
+    }
+    public int getHistorySegmentSizeMb() {
+        return historySegmentSizeMb;
+    }
+    public void setHistorySegmentSizeMb(int historySegmentSizeMb) {
+        this.historySegmentSizeMb = historySegmentSizeMb;
+    }
+    public long getHistoryCompactionIntervalSeconds() {
+        return historyCompactionIntervalSeconds;
+    }
+    public void setHistoryCompactionIntervalSeconds(long historyCompactionIntervalSeconds) {
+        this.historyCompactionIntervalSeconds = historyCompactionIntervalSeconds;
+    }
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+    public void setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+    public long getCacheTtlMinutes() {
+        return cacheTtlMinutes;
+    }
+    public void setCacheTtlMinutes(long cacheTtlMinutes) {
+        this.cacheTtlMinutes = cacheTtlMinutes;
+    }
+    public long getCacheMaxMemoryMb() {
+        return cacheMaxMemoryMb;
+    }
+    public void setCacheMaxMemoryMb(long cacheMaxMemoryMb) {
+        this.cacheMaxMemoryMb = cacheMaxMemoryMb;
+    }
+    public int getCacheMaxEntryKb() {
+        return cacheMaxEntryKb;
+    }
+    public void setCacheMaxEntryKb(int cacheMaxEntryKb) {
+        this.cacheMaxEntryKb = cacheMaxEntryKb;
+    }
+    public double getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+    public void setRateLimitPerSecond(double rateLimitPerSecond) {
+        this.rateLimitPerSecond = rateLimitPerSecond;
+    }
+    public double getRateLimitMinPerSecond() {
+        return rateLimitMinPerSecond;
+    }
+    public void setRateLimitMinPerSecond(double rateLimitMinPerSecond) {
+        this.rateLimitMinPerSecond = rateLimitMinPerSecond;
+    }
+    public double getRateLimitMaxPerSecond() {
+        return rateLimitMaxPerSecond;
+    }
+    public void setRateLimitMaxPerSecond(double rateLimitMaxPerSecond) {
+        this.rateLimitMaxPerSecond = rateLimitMaxPerSecond;
+    }
+    public long getRateLimitMaxWaitMs() {
+        return rateLimitMaxWaitMs;
+    }
+    public void setRateLimitMaxWaitMs(long rateLimitMaxWaitMs) {
+        this.rateLimitMaxWaitMs = rateLimitMaxWaitMs;
+    }
+    public long getHttpConnectTimeoutMs() {
+        return httpConnectTimeoutMs;
+    }
+    public void setHttpConnectTimeoutMs(long httpConnectTimeoutMs) {
+        this.httpConnectTimeoutMs = httpConnectTimeoutMs;
+    }
+    public long getHttpRequestTimeoutSeconds() {
+        return httpRequestTimeoutSeconds;
+    }
+    public void setHttpRequestTimeoutSeconds(long httpRequestTimeoutSeconds) {
+        this.httpRequestTimeoutSeconds = httpRequestTimeoutSeconds;
+    }
+    public long getHttpExchangeTimeoutSeconds() {
+        return httpExchangeTimeoutSeconds;
+    }
+    public void setHttpExchangeTimeoutSeconds(long httpExchangeTimeoutSeconds) {
+        this.httpExchangeTimeoutSeconds = httpExchangeTimeoutSeconds;
+    }
+    public int getHttpMaxRetries() {
+        return httpMaxRetries;
+    }
+    public void setHttpMaxRetries(int httpMaxRetries) {
+        this.httpMaxRetries = httpMaxRetries;
+    }
+    public long getHttpRetryBaseDelayMs() {
+        return httpRetryBaseDelayMs;
+    }
+    public void setHttpRetryBaseDelayMs(long httpRetryBaseDelayMs) {
+        this.httpRetryBaseDelayMs = httpRetryBaseDelayMs;
+    }
+    public long getHttpRetryMaxDelayMs() {
+        return httpRetryMaxDelayMs;
+    }
+    public void setHttpRetryMaxDelayMs(long httpRetryMaxDelayMs) {
+        this.httpRetryMaxDelayMs = httpRetryMaxDelayMs;
+    }
+    public int getCircuitFailureThreshold() {
+        return circuitFailureThreshold;
+    }
+    public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+        this.circuitFailureThreshold = circuitFailureThreshold;
+    }
+    public long getCircuitOpenSeconds() {
+        return circuitOpenSeconds;
+    }
+    public void setCircuitOpenSeconds(long circuitOpenSeconds) {
+        this.circuitOpenSeconds = circuitOpenSeconds;
+    }
+    public String getRoutingModels() {
+        return routingModels;
+    }
+    public void setRoutingModels(String routingModels) {
+        this.routingModels = routingModels;
+    }
+    public int getRoutingShortPromptChars() {
+        return routingShortPromptChars;
+    }
+    public void setRoutingShortPromptChars(int routingShortPromptChars) {
+        this.routingShortPromptChars = routingShortPromptChars;
+    }
+    public int getRoutingLongPromptChars() {
+        return routingLongPromptChars;
+    }
+    public void setRoutingLongPromptChars(int routingLongPromptChars) {
+        this.routingLongPromptChars = routingLongPromptChars;
+    }
+    public long getRoutingMaxP95Ms() {
+        return routingMaxP95Ms;
+    }
+    public void setRoutingMaxP95Ms(long routingMaxP95Ms) {
+        this.routingMaxP95Ms = routingMaxP95Ms;
+    }
+    public double getRoutingMaxErrorRate() {
+        return routingMaxErrorRate;
+    }
+    public void setRoutingMaxErrorRate(double routingMaxErrorRate) {
+        this.routingMaxErrorRate = routingMaxErrorRate;
+    }
+    public long getAnswerTimeoutSeconds() {
+        return answerTimeoutSeconds;
+    }
+    public void setAnswerTimeoutSeconds(long answerTimeoutSeconds) {
+        this.answerTimeoutSeconds = answerTimeoutSeconds;
+    }
+    public int getSchedulerMaxConcurrency() {
+        return schedulerMaxConcurrency;
+    }
+    public void setSchedulerMaxConcurrency(int schedulerMaxConcurrency) {
+        this.schedulerMaxConcurrency = schedulerMaxConcurrency;
+    }
+    public int getSchedulerMaxInFlightPerChat() {
+        return schedulerMaxInFlightPerChat;
+    }
+    public void setSchedulerMaxInFlightPerChat(int schedulerMaxInFlightPerChat) {
+        this.schedulerMaxInFlightPerChat = schedulerMaxInFlightPerChat;
+    }
+    public long getSchedulerMaxWaitMs() {
+        return schedulerMaxWaitMs;
+    }
+    public void setSchedulerMaxWaitMs(long schedulerMaxWaitMs) {
+        this.schedulerMaxWaitMs = schedulerMaxWaitMs;
+    }
+    public int getSchedulerMaxQueued() {
+        return schedulerMaxQueued;
+    }
+    public void setSchedulerMaxQueued(int schedulerMaxQueued) {
+        this.schedulerMaxQueued = schedulerMaxQueued;
+    }
+    public String getSchedulerAdminChatIds() {
+        return schedulerAdminChatIds;
+    }
+    public void setSchedulerAdminChatIds(String schedulerAdminChatIds) {
+        this.schedulerAdminChatIds = schedulerAdminChatIds;
+    }
+    public double getSchedulerAdminWeight() {
+        return schedulerAdminWeight;
+    }
+    public void setSchedulerAdminWeight(double schedulerAdminWeight) {
+        this.schedulerAdminWeight = schedulerAdminWeight;
+    }
 }
\ No newline at end of file
@@ -1,42 +1,160 @@
 package com.GigaChatMyBot.config;
 
 import org.springframework.stereotype.Component;
+import com.GigaChatMyBot.cluster.ClusterMembership;
 import com.GigaChatMyBot.telegram.GigaChatTelegramBot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.BotSession;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
-import jakarta.annotation.PostConstruct;
 
 /**
  * Конфигурация для регистрации Telegram-бота.
- * Выполняет инициализацию бота через TelegramBotsApi при старте приложения.
+ * Запускает приём updates в одном из режимов (telegram.bot.mode):
+ * polling — long polling через TelegramBotsApi; webhook — регистрация URL через setWebhook,
+ * updates принимает WebhookController на встроенном веб-сервере.
+ * Приём запускает и останавливает BotLifecycle: после прогрева при старте и первым делом при остановке.
+ * В режиме кластера long polling ведёт только ведущий узел (живой узел с наименьшим идентификатором):
+ * Telegram не разрешает нескольким клиентам получать updates одного бота. Если ведущий узел выбывает,
+ * polling запускает следующий. Webhook регистрируют все узлы — адрес у них общий.
  * @author vladimir_shi
  * @since 28.09.2025
  */
-@Component // Регистрирует класс как компонент Spring для авто-вызова @PostConstruct
+@Component // Регистрирует класс как компонент Spring
 public class TelegramBotConfig {
     private static final Logger logger = LoggerFactory.getLogger(TelegramBotConfig.class); // Логгер для регистрации и ошибок
     private final GigaChatTelegramBot bot; // Инжектируемый экземпляр бота
+    private final String mode; // Режим получения updates: polling или webhook
+    private final String webhookUrl; // Публичный адрес сервера для webhook (https://host)
+    private final String webhookPath; // Путь webhook на встроенном веб-сервере
+    private final String webhookSecretToken; // Секретный токен, который Telegram передаёт в каждом запросе
+    private final int webhookMaxConnections; // Сколько одновременных соединений Telegram может открыть к webhook
+    private final ClusterMembership membership; // Состав кластера: ведёт ли этот узел long polling
+    private volatile BotSession session; // Сессия long polling (null в режиме webhook и до запуска)
+    private volatile boolean ingesting; // Принимаются ли updates сейчас
 
     /**
      * Конструктор класса TelegramBotConfig.
      * @param bot - экземпляр GigaChatTelegramBot
+     * @param mode - режим получения updates: polling или webhook
+     * @param webhookUrl - публичный адрес сервера для webhook
+     * @param webhookPath - путь webhook
+     * @param webhookSecretToken - секретный токен webhook
+     * @param webhookMaxConnections - лимит одновременных соединений Telegram к webhook
+     * @param membership - состав кластера
      */
-    public TelegramBotConfig(GigaChatTelegramBot bot) {
+    public TelegramBotConfig(GigaChatTelegramBot bot,
+                             @Value("${telegram.bot.mode:polling}") String mode,
+                             @Value("${telegram.webhook.url:}") String webhookUrl,
+                             @Value("${telegram.webhook.path:/telegram/webhook}") String webhookPath,
+                             @Value("${telegram.webhook.secret-token:}") String webhookSecretToken,
+                             @Value("${telegram.webhook.max-connections:40}") int webhookMaxConnections,
+                             ClusterMembership membership) {
         this.bot = bot;
+        this.mode = mode;
+        this.webhookUrl = webhookUrl;
+        this.webhookPath = webhookPath;
+        this.webhookSecretToken = webhookSecretToken;
+        this.webhookMaxConnections = webhookMaxConnections;
+        this.membership = membership;
     }
 
-    @PostConstruct // Вызывается Spring после создания бина и инъекции — регистрирует бота
-    public void registerBot() {
+    /**
+     * Запускает приём updates: long polling (в кластере — только на ведущем узле) или регистрацию webhook.
+     * Приём считается запущенным только после успешной регистрации.
+     * @throws TelegramApiException если Telegram отклонил регистрацию бота или webhook
+     * @throws IllegalStateException если в режиме webhook не задан telegram.webhook.url
+     */
+    public void startIngestion() throws TelegramApiException {
+        if ("webhook".equals(mode)) {
+            registerWebhook();
+            ingesting = true;
+            return;
+        }
+        if (membership.isEnabled()) {
+            membership.addListener(this::onMembershipChanged);
+            membership.refresh(); // Ведущий узел определяется по ответам остальных
+        }
+        synchronized (this) {
+            updatePolling(true);
+            ingesting = true;
+        }
+    }
+
+    /**
+     * Прекращает приём updates. Long polling останавливается; webhook не удаляется — его адрес общий
+     * для всех экземпляров, а запросы к этому экземпляру WebhookController отклоняет кодом 503,
+     * и Telegram доставит их повторно.
+     */
+    public synchronized void stopIngestion() {
+        ingesting = false;
+        BotSession current = session;
+        if (current != null && current.isRunning()) {
+            current.stop();
+            logger.info("Long polling остановлен");
+        }
+    }
+
+    /**
+     * @return true, если приём updates запущен и ещё не остановлен
+     */
+    public boolean isIngesting() {
+        return ingesting;
+    }
+
+    /**
+     * Перезапускает или останавливает long polling после изменения состава кластера.
+     * Ошибка регистрации только логируется: следующее изменение состава попробует снова.
+     */
+    private synchronized void onMembershipChanged() {
         try {
+            updatePolling(ingesting);
+        } catch (TelegramApiException e) {
+            logger.error("Ошибка при регистрации бота: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Запускает long polling, если этот узел должен его вести, и останавливает, если больше не должен.
+     * Вызывается под блокировкой при запуске приёма и при изменении состава кластера.
+     * @param ingest должен ли узел принимать updates
+     * @throws TelegramApiException если Telegram отклонил регистрацию бота
+     */
+    private void updatePolling(boolean ingest) throws TelegramApiException {
+        boolean shouldPoll = ingest && membership.isLeader();
+        BotSession current = session;
+        boolean polling = current != null && current.isRunning();
+        if (shouldPoll && !polling) {
             logger.info("Инициализируем Telegram API и регистрируем бота...");
             TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-            botsApi.registerBot(bot);  // Регистрирует бота для long polling
+            session = botsApi.registerBot(bot);  // Регистрирует бота для long polling
             logger.info("Бот успешно зарегистрирован!");
-        } catch (TelegramApiException e) {
-            logger.error("Ошибка при регистрации бота: {}", e.getMessage(), e);
+        } else if (!shouldPoll && polling) {
+            current.stop();
+            logger.info("Long polling остановлен");
+        } else if (!shouldPoll && ingest) {
+            logger.info("Long polling ведёт другой узел кластера, этот узел обрабатывает пересланные ему updates");
+        }
+    }
+
+    /**
+     * Сообщает Telegram адрес webhook. Updates будут приходить POST-запросами в WebhookController.
+     */
+    private void registerWebhook() throws TelegramApiException {
+        if (webhookUrl.isBlank()) {
+            throw new IllegalStateException("telegram.bot.mode=webhook, но telegram.webhook.url не задан");
         }
+        logger.info("Регистрируем webhook: {}{}", webhookUrl, webhookPath);
+        SetWebhook setWebhook = SetWebhook.builder()
+                .url(webhookUrl + webhookPath)
+                .secretToken(webhookSecretToken.isBlank() ? null : webhookSecretToken)
+                .maxConnections(webhookMaxConnections)
+                .build();
+        bot.execute(setWebhook);
+        logger.info("Webhook успешно зарегистрирован!");
     }
 }
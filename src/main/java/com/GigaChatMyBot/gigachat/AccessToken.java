@@ -0,0 +1,22 @@
+package com.GigaChatMyBot.gigachat;
+
+/**
+ * OAuth-токен GigaChat вместе с моментом истечения.
+ * Значение expires_at приходит от OAuth endpoint в миллисекундах Unix-времени.
+ * @param value значение токена для заголовка Authorization
+ * @param expiresAtMillis момент истечения токена (epoch millis)
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public record AccessToken(String value, long expiresAtMillis) {
+
+    /**
+     * Проверяет, истечёт ли токен в ближайшие marginMillis миллисекунд.
+     * @param nowMillis текущее время (epoch millis)
+     * @param marginMillis запас до истечения
+     * @return true, если токен уже нельзя использовать с таким запасом
+     */
+    public boolean expiresWithin(long nowMillis, long marginMillis) {
+        return expiresAtMillis - nowMillis <= marginMillis;
+    }
+}
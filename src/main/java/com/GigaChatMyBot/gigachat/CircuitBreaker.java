@@ -0,0 +1,106 @@
+package com.GigaChatMyBot.gigachat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker по числу ошибок подряд.
+ * CLOSED — запросы идут как обычно; после failureThreshold ошибок подряд переходит в OPEN
+ * и openDurationMillis сразу отклоняет запросы. Затем пропускает один пробный запрос (HALF_OPEN):
+ * успех замыкает цепь, ошибка снова размыкает её.
+ * Класс потокобезопасен.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class); // Логгер для смены состояния
+
+    /**
+     * Состояние circuit breaker.
+     */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name; // Имя для логов (обычно хост)
+    private final int failureThreshold; // Сколько ошибок подряд размыкают цепь
+    private final long openDurationMillis; // Сколько цепь остаётся разомкнутой
+    private State state = State.CLOSED; // Текущее состояние
+    private int consecutiveFailures; // Ошибки подряд в состоянии CLOSED
+    private long openedAtMillis; // Когда цепь разомкнулась
+    private boolean probeInFlight; // Пробный запрос уже отправлен
+
+    /**
+     * Конструктор.
+     * @param name имя для логов
+     * @param failureThreshold сколько ошибок подряд размыкают цепь
+     * @param openDurationMillis сколько цепь остаётся разомкнутой перед пробным запросом
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    /**
+     * Проверяет, можно ли отправить запрос.
+     * @return false, если цепь разомкнута или пробный запрос уже выполняется
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAtMillis < openDurationMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                logger.info("Circuit breaker {}: пробный запрос", name);
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * Учитывает успешный запрос.
+     */
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("Circuit breaker {}: сервер снова отвечает, цепь замкнута", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    /**
+     * Учитывает ошибку запроса (сетевой сбой, таймаут или ответ 5xx).
+     */
+    public synchronized void onFailure() {
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                logger.warn("Circuit breaker {}: сервер не отвечает, запросы приостановлены на {} мс", name, openDurationMillis);
+            }
+            state = State.OPEN;
+            openedAtMillis = System.currentTimeMillis();
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Отменяет разрешение, выданное allowRequest, если запрос так и не был отправлен
+     * (например, ответ взят из кэша). Без этого пробный запрос в HALF_OPEN считался бы выполняющимся вечно.
+     */
+    public synchronized void release() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,20 @@
+package com.GigaChatMyBot.gigachat;
+
+import java.io.IOException;
+
+/**
+ * Запрос не отправлен: circuit breaker разомкнут, потому что сервер подряд отвечал ошибками.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L; // Версия сериализованной формы
+
+    /**
+     * Конструктор.
+     * @param host сервер, к которому запросы временно не отправляются
+     */
+    public CircuitOpenException(String host) {
+        super("Сервер " + host + " временно недоступен: запросы приостановлены");
+    }
+}
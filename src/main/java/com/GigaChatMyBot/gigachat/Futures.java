@@ -0,0 +1,86 @@
+package com.GigaChatMyBot.gigachat;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Вспомогательные методы для асинхронных вызовов GigaChat на CompletableFuture.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public final class Futures {
+    private Futures() {
+    }
+
+    /**
+     * Блокирующее ожидание результата для синхронных обёрток над асинхронным API.
+     * При прерывании ожидающего потока future отменяется, чтобы освободить соединение.
+     * @param future асинхронный результат
+     * @return результат
+     * @throws IOException ошибка вызова (в том числе GigaChatApiException и CircuitOpenException)
+     * @throws InterruptedException при прерывании ожидания
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Снимает обёртки CompletionException и ExecutionException, которые CompletableFuture
+     * добавляет к ошибкам зависимых стадий.
+     * @param error ошибка стадии
+     * @return исходная причина
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Передаёт отмену зависимой стадии исходной операции.
+     * Сам CompletableFuture отмену вверх по цепочке не передаёт, а без этого отменённый вызов
+     * продолжал бы занимать HTTP-соединение.
+     * @param dependent стадия, которую получает вызывающий код
+     * @param source операция, которую нужно отменить вместе с ней
+     * @return dependent
+     */
+    public static <T> CompletableFuture<T> propagateCancel(CompletableFuture<T> dependent, Future<?> source) {
+        dependent.whenComplete((result, error) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
+    }
+
+    /**
+     * Оборачивает проверяемое исключение для завершения стадии с ошибкой.
+     * @param error ошибка
+     * @return CompletionException с ошибкой в качестве причины
+     */
+    public static CompletionException wrap(Throwable error) {
+        return (error instanceof CompletionException completion) ? completion : new CompletionException(error);
+    }
+}
@@ -1,34 +1,68 @@
 package com.GigaChatMyBot.gigachat;
 
+import com.GigaChatMyBot.gigachat.ResilientHttpClient.RetryPolicy;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.model.ChatCompletion;
+import com.GigaChatMyBot.model.ChatMessage;
 import com.GigaChatMyBot.model.GigaChatModel;
+import com.GigaChatMyBot.model.TokenUsage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Класс реализует взаимодействие с API GigaChat.
  * Получает OAuth токен и отправляет запросы в чат GigaChat.
- * Использует HttpClient из Java 11+.
+ * Использует HttpClient из Java 11+ через ResilientHttpClient: таймауты, повторы временных ошибок,
+ * circuit breaker и переиспользование соединений HTTP/2.
+ * Основные методы асинхронные (суффикс Async, CompletableFuture); блокирующие — тонкие обёртки над ними.
  * @author vladimir_shi
  * @since 23.09.2025
  */
-public class GigaChatAPI {
+public class GigaChatAPI implements AutoCloseable {
     private final GigaChatModel config; // Конфигурация с URL, ключами и параметрами
-    private final HttpClient client; // HttpClient для сетевых запросов
+    private final ResilientHttpClient client; // HTTP-клиент с таймаутами, повторами и circuit breaker
+    private final BotMetrics metrics; // Задержки, расход токенов и ошибки
+    private final GigaChatJsonCodec codec = new GigaChatJsonCodec(); // Потоковый JSON-кодек запросов и ответов
     private static final Logger logger = LoggerFactory.getLogger(GigaChatAPI.class); // Логгер для ошибок и инициализации
+    private static final long DEFAULT_TOKEN_TTL_MILLIS = 30 * 60 * 1000L; // Время жизни токена GigaChat по умолчанию
 
     /**
      * Конструктор.
-     * Принимает объект конфигурации и инициализирует HttpClient.
+     * Принимает объект конфигурации и инициализирует HttpClient с настройками по умолчанию.
      * @param config конфигурация с URL, ключами и параметрами
      */
     public GigaChatAPI(GigaChatModel config) {
+        this(config, HttpClientSettings.defaults(), BotMetrics.standalone());
+    }
+
+    /**
+     * Конструктор.
+     * Принимает объект конфигурации, настройки HTTP-клиента и метрики.
+     * @param config конфигурация с URL, ключами и параметрами
+     * @param httpSettings таймауты, повторы и параметры circuit breaker
+     * @param metrics метрики задержек, токенов и ошибок
+     */
+    public GigaChatAPI(GigaChatModel config, HttpClientSettings httpSettings, BotMetrics metrics) {
         this.config = config;
-        this.client = HttpClient.newHttpClient();
+        this.client = new ResilientHttpClient(httpSettings);
+        this.metrics = metrics;
         logger.info("GigaChatAPI инициализирован с URL OAuth: {}, Chat: {}", config.getOauthUrl(), config.getChatUrl());
     }
 
@@ -40,6 +74,27 @@ public class GigaChatAPI {
      * @throws InterruptedException при прерывании
      */
     public String getAccessToken(String rqUid) throws IOException, InterruptedException {
+        AccessToken token = requestAccessToken(rqUid);
+        return (token == null) ? null : token.value();
+    }
+
+    /**
+     * Получает Access Token вместе со временем его истечения (expires_at).
+     * @param rqUid уникальный ID запроса
+     * @return токен или null при ошибке
+     * @throws IOException при сетевых ошибках
+     * @throws InterruptedException при прерывании
+     */
+    public AccessToken requestAccessToken(String rqUid) throws IOException, InterruptedException {
+        return Futures.await(requestAccessTokenAsync(rqUid));
+    }
+
+    /**
+     * Асинхронно получает Access Token вместе со временем его истечения (expires_at).
+     * @param rqUid уникальный ID запроса
+     * @return future с токеном или null, если сервер ответил ошибкой; с IOException при сетевых ошибках
+     */
+    public CompletableFuture<AccessToken> requestAccessTokenAsync(String rqUid) {
         // Тело запроса с указанием scope (области доступа)
         String requestBody = "scope=" + config.getScope();
         // Строим HTTP-запрос методом POST с нужными заголовками
@@ -52,34 +107,31 @@ public class GigaChatAPI {
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                 .build();
 
-        // Отправляем запрос и получаем ответ в виде строки
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-        // Если статус 200 — пытаемся извлечь токен из ответа
-        if (response.statusCode() == 200) {
-            return extractAccessToken(response.body());
-        } else {
-            logger.error("Не удалось получить access token. Статус: {}, Ответ: {}", response.statusCode(), response.body());
-            return null;
-        }
-    }
+        // Отправляем запрос и получаем ответ в виде байтов — кодек разбирает их без промежуточной строки
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<byte[]>> exchange = sendAsync(request, HttpResponse.BodyHandlers.ofByteArray(),
+                RetryPolicy.IDEMPOTENT);
+        return Futures.propagateCancel(exchange.thenApply(response -> {
+            metrics.recordOAuth(System.nanoTime() - start);
 
-    /**
-     * Парсит Access Token из JSON-ответа.
-     * Ищет "access_token":"значение".
-     * @param json JSON-строка
-     * @return токен или null
-     */
-    private String extractAccessToken(String json) {
-        String marker = "\"access_token\":\"";
-        int start = json.indexOf(marker);
-        if (start < 0) {
-            logger.warn("Маркер access_token не найден в JSON");
-            return null;
-        }
-        start += marker.length();
-        int end = json.indexOf("\"", start);
-        return (end < 0) ? null : json.substring(start, end);
+            // Если статус 200 — пытаемся извлечь токен из ответа
+            if (response.statusCode() == 200) {
+                AccessToken token;
+                try {
+                    token = codec.decodeAccessToken(response.body(), System.currentTimeMillis() + DEFAULT_TOKEN_TTL_MILLIS);
+                } catch (IOException e) {
+                    throw Futures.wrap(e);
+                }
+                if (token == null) {
+                    logger.warn("Поле access_token не найдено в JSON");
+                }
+                return token;
+            } else {
+                metrics.recordGigaChatError(String.valueOf(response.statusCode()));
+                logger.error("Не удалось получить access token. Статус: {}, Ответ: {}", response.statusCode(), bodyAsString(response));
+                return null;
+            }
+        }), exchange);
     }
 
     /**
@@ -87,87 +139,371 @@ public class GigaChatAPI {
      * Формирует JSON с моделью и промптом.
      * @param accessToken Bearer-токен
      * @param prompt текст запроса
-     * @return ответ GigaChat или ошибка
+     * @return ответ GigaChat
+     * @throws GigaChatApiException если API вернул статус, отличный от 200 (например, 401 при истёкшем токене)
      * @throws IOException при сетевых ошибках
      * @throws InterruptedException при прерывании
      */
     public String sendChatRequest(String accessToken, String prompt) throws IOException, InterruptedException {
-        // Формируем тело запроса, подставляя модель из конфигурации и экранируя JSON содержимое
-        String jsonRequestBody = """
-                {
-                    "model": "%s",
-                    "messages": [
-                        {
-                            "role": "user",
-                            "content": "%s"
-                        }
-                    ],
-                    "stream": false,
-                    "repetition_penalty": 1
+        ChatCompletion completion = requestChatCompletion(accessToken, List.of(ChatMessage.user(prompt)));
+        // Если поле контента не найдено — возвращаем ошибку
+        return (completion.content() == null) ? "Не удалось найти ответ в JSON." : completion.content();
+    }
+
+    /**
+     * Отправляет запрос на chat completion и возвращает разобранный ответ целиком:
+     * текст, причину завершения и расход токенов.
+     * @param accessToken Bearer-токен
+     * @param messages сообщения диалога (системный промпт, история, новый вопрос)
+     * @return результат chat completion
+     * @throws GigaChatApiException если API вернул статус, отличный от 200
+     * @throws IOException при сетевых ошибках или некорректном JSON
+     * @throws InterruptedException при прерывании
+     */
+    public ChatCompletion requestChatCompletion(String accessToken, List<ChatMessage> messages)
+            throws IOException, InterruptedException {
+        return requestChatCompletion(accessToken, config.getModelName(), messages);
+    }
+
+    /**
+     * Отправляет запрос на chat completion к указанной модели.
+     * @param accessToken Bearer-токен
+     * @param model имя модели
+     * @param messages сообщения диалога (системный промпт, история, новый вопрос)
+     * @return результат chat completion
+     * @throws GigaChatApiException если API вернул статус, отличный от 200
+     * @throws IOException при сетевых ошибках или некорректном JSON
+     * @throws InterruptedException при прерывании
+     */
+    public ChatCompletion requestChatCompletion(String accessToken, String model, List<ChatMessage> messages)
+            throws IOException, InterruptedException {
+        return Futures.await(requestChatCompletionAsync(accessToken, model, messages));
+    }
+
+    /**
+     * Асинхронно отправляет запрос на chat completion к указанной модели.
+     * Поток не занимается ни на время ожидания ответа, ни на паузы между повторами;
+     * отмена future прерывает HTTP-обмен.
+     * @param accessToken Bearer-токен
+     * @param model имя модели
+     * @param messages сообщения диалога (системный промпт, история, новый вопрос)
+     * @return future с результатом chat completion; с GigaChatApiException, если API вернул статус, отличный от 200,
+     * и с IOException при сетевых ошибках или некорректном JSON
+     */
+    public CompletableFuture<ChatCompletion> requestChatCompletionAsync(String accessToken, String model,
+                                                                       List<ChatMessage> messages) {
+        HttpRequest request = buildChatRequest(accessToken, model, messages, false);
+
+        // Отправляем запрос и получаем ответ в виде байтов. Не идемпотентен: каждая генерация расходует токены,
+        // поэтому после 500/504 и таймаута, когда сервер мог уже обработать запрос, он не повторяется
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<byte[]>> exchange = sendAsync(request, HttpResponse.BodyHandlers.ofByteArray(),
+                RetryPolicy.NON_IDEMPOTENT);
+        return Futures.propagateCancel(exchange.thenApply(response -> {
+            metrics.recordCompletion(false, System.nanoTime() - start);
+
+            // Если успешно (200), парсим ответ
+            if (response.statusCode() == 200) {
+                try {
+                    ChatCompletion completion = codec.decodeChatResponse(response.body());
+                    metrics.recordUsage(completion.usage());
+                    return completion;
+                } catch (IOException e) {
+                    throw Futures.wrap(e);
                 }
-                """.formatted(config.getModelName(), escapeJson(prompt));
+            } else {
+                metrics.recordGigaChatError(String.valueOf(response.statusCode()));
+                String body = bodyAsString(response);
+                logger.error("Ошибка в Chat API. Статус: {}, Ответ: {}", response.statusCode(), body);
+                throw Futures.wrap(new GigaChatApiException(response.statusCode(), body, retryAfterMillis(response)));
+            }
+        }), exchange);
+    }
 
-        // Формируем POST-запрос с Bearer токеном в заголовке Authorization
+    /**
+     * Отправляет запрос на chat completion в потоковом режиме (stream: true).
+     * Ответ приходит как server-sent events; каждый фрагмент текста передаётся в onDelta сразу по мере получения.
+     * Метод возвращает управление после события [DONE] или закрытия потока.
+     * @param accessToken Bearer-токен
+     * @param messages сообщения диалога (системный промпт, история, новый вопрос)
+     * @param onDelta получатель фрагментов ответа (вызывается из потока HttpClient)
+     * @return полный текст ответа, причина завершения и расход токенов
+     * @throws GigaChatApiException если API вернул статус, отличный от 200
+     * @throws IOException при сетевых ошибках
+     * @throws InterruptedException при прерывании
+     */
+    public ChatCompletion streamChatRequest(String accessToken, List<ChatMessage> messages, Consumer<String> onDelta)
+            throws IOException, InterruptedException {
+        return streamChatRequest(accessToken, config.getModelName(), messages, onDelta);
+    }
+
+    /**
+     * Отправляет запрос на chat completion к указанной модели в потоковом режиме.
+     * @param accessToken Bearer-токен
+     * @param model имя модели
+     * @param messages сообщения диалога (системный промпт, история, новый вопрос)
+     * @param onDelta получатель фрагментов ответа (вызывается из потока HttpClient)
+     * @return полный текст ответа, причина завершения и расход токенов
+     * @throws GigaChatApiException если API вернул статус, отличный от 200
+     * @throws IOException при сетевых ошибках
+     * @throws InterruptedException при прерывании
+     */
+    public ChatCompletion streamChatRequest(String accessToken, String model, List<ChatMessage> messages,
+                                            Consumer<String> onDelta) throws IOException, InterruptedException {
+        return Futures.await(streamChatRequestAsync(accessToken, model, messages, onDelta));
+    }
+
+    /**
+     * Асинхронно отправляет запрос на chat completion к указанной модели в потоковом режиме.
+     * Future завершается после события [DONE] или закрытия потока; отмена прерывает HTTP-обмен.
+     * Если сервер ответил обычным JSON вместо потока, весь текст передаётся в onDelta одним фрагментом.
+     * @param accessToken Bearer-токен
+     * @param model имя модели
+     * @param messages сообщения диалога (системный промпт, история, новый вопрос)
+     * @param onDelta получатель фрагментов ответа (вызывается из потока HttpClient)
+     * @return future с полным текстом ответа, причиной завершения и расходом токенов;
+     * с GigaChatApiException, если API вернул статус, отличный от 200, и с IOException при сетевых ошибках
+     */
+    public CompletableFuture<ChatCompletion> streamChatRequestAsync(String accessToken, String model,
+                                                                   List<ChatMessage> messages, Consumer<String> onDelta) {
+        HttpRequest request = buildChatRequest(accessToken, model, messages, true);
+
+        // Засекаем время до первого фрагмента: фрагменты приходят из одного подписчика по очереди
+        long start = System.nanoTime();
+        boolean[] firstSeen = new boolean[1];
+        Consumer<String> timedDelta = delta -> {
+            if (!firstSeen[0]) {
+                firstSeen[0] = true;
+                metrics.recordFirstToken(System.nanoTime() - start);
+            }
+            onDelta.accept(delta);
+        };
+
+        // При успехе читаем тело построчно как SSE, при ошибке — целиком, чтобы показать его в исключении.
+        // Если сервер проигнорировал stream: true и ответил обычным JSON, разбираем его целиком и отдаём текст одним фрагментом.
+        // Не идемпотентен: фрагменты уже могли уйти пользователю, поэтому сбой посреди потока не повторяется
+        CompletableFuture<HttpResponse<ChatCompletion>> exchange = sendAsync(request, responseInfo -> {
+            if (responseInfo.statusCode() != 200) {
+                return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                        body -> new ChatCompletion(body, null, TokenUsage.EMPTY));
+            }
+            if (isEventStream(responseInfo)) {
+                return HttpResponse.BodySubscribers.fromLineSubscriber(
+                        new SseLineSubscriber(codec::decodeStreamChunk, timedDelta), SseLineSubscriber::result,
+                        StandardCharsets.UTF_8, null);
+            }
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(),
+                    body -> decodeWholeResponse(body, timedDelta));
+        }, RetryPolicy.NON_IDEMPOTENT);
+        return Futures.propagateCancel(exchange.thenApply(response -> {
+            metrics.recordCompletion(true, System.nanoTime() - start);
+
+            if (response.statusCode() == 200) {
+                metrics.recordUsage(response.body().usage());
+                return response.body();
+            } else {
+                metrics.recordGigaChatError(String.valueOf(response.statusCode()));
+                String body = response.body().content();
+                logger.error("Ошибка в Chat API (stream). Статус: {}, Ответ: {}", response.statusCode(), body);
+                throw Futures.wrap(new GigaChatApiException(response.statusCode(), body, retryAfterMillis(response)));
+            }
+        }), exchange);
+    }
+
+    /**
+     * Проверяет, что ответ пришёл потоком server-sent events (Content-Type: text/event-stream).
+     */
+    private static boolean isEventStream(HttpResponse.ResponseInfo responseInfo) {
+        return responseInfo.headers().firstValue("Content-Type")
+                .map(type -> type.toLowerCase(Locale.ROOT).startsWith("text/event-stream"))
+                .orElse(false);
+    }
+
+    /**
+     * Разбирает обычный (не потоковый) ответ на потоковый запрос и передаёт его текст получателю одним фрагментом.
+     * @param body тело ответа в UTF-8
+     * @param onDelta получатель фрагментов ответа
+     * @return полный текст ответа, причина завершения и расход токенов
+     */
+    private ChatCompletion decodeWholeResponse(byte[] body, Consumer<String> onDelta) {
+        ChatCompletion completion;
+        try {
+            completion = codec.decodeChatResponse(body);
+        } catch (IOException e) {
+            throw Futures.wrap(e);
+        }
+        String content = (completion.content() == null) ? "" : completion.content();
+        if (!content.isEmpty()) {
+            onDelta.accept(content);
+        }
+        return new ChatCompletion(content, completion.finishReason(), completion.usage());
+    }
+
+    /**
+     * Загружает файл в хранилище GigaChat (POST /files, multipart/form-data, purpose=general).
+     * Тело запроса не собирается в памяти: содержимое файла читается из потока частями по мере отправки,
+     * поэтому источник может быть скачиванием, которое ещё идёт.
+     * Запрос не повторяется ни при каких ошибках (RetryPolicy.NONE): поток читается один раз, и повтор
+     * отправил бы файл пустым или обрезанным.
+     * @param accessToken Bearer-токен
+     * @param fileName имя файла
+     * @param mimeType MIME-тип содержимого
+     * @param content источник содержимого; вызывается HTTP-клиентом при начале отправки
+     * @param timeout сколько ждать ответа, включая отправку тела
+     * @return future с идентификатором файла для поля attachments; с GigaChatApiException, если сервер ответил ошибкой
+     */
+    public CompletableFuture<String> uploadFileAsync(String accessToken, String fileName, String mimeType,
+                                                     Supplier<InputStream> content, Duration timeout) {
+        String boundary = "----GigaChatMyBot" + UUID.randomUUID().toString().replace("-", "");
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"purpose\"\r\n\r\n"
+                + "general\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + headerValue(fileName) + "\"\r\n"
+                + "Content-Type: " + headerValue(mimeType) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(config.getChatUrl()))
+                .uri(URI.create(config.getChatUrl()).resolve("../files"))
                 .header("Authorization", "Bearer " + accessToken)
-                .header("Content-Type", "application/json")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
                 .header("Accept", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonRequestBody))
+                .timeout(timeout)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofByteArray(head),
+                        HttpRequest.BodyPublishers.ofInputStream(content),
+                        HttpRequest.BodyPublishers.ofByteArray(tail)))
                 .build();
 
-        // Отправляем запрос и получаем ответ в виде строки
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<byte[]>> exchange = sendAsync(request, HttpResponse.BodyHandlers.ofByteArray(),
+                RetryPolicy.NONE);
+        return Futures.propagateCancel(exchange.thenApply(response -> {
+            if (response.statusCode() != 200) {
+                metrics.recordGigaChatError(String.valueOf(response.statusCode()));
+                logger.error("Ошибка загрузки файла в GigaChat. Статус: {}, Ответ: {}", response.statusCode(), bodyAsString(response));
+                throw Futures.wrap(new GigaChatApiException(response.statusCode(), bodyAsString(response), retryAfterMillis(response)));
+            }
+            try {
+                String fileId = codec.decodeFileId(response.body());
+                if (fileId == null) {
+                    throw new IOException("Поле id не найдено в ответе на загрузку файла");
+                }
+                return fileId;
+            } catch (IOException e) {
+                throw Futures.wrap(e);
+            }
+        }), exchange);
+    }
 
-        // Если успешно (200), парсим ответ
-        if (response.statusCode() == 200) {
-            return parseChatResponse(response.body());
-        } else {
-            logger.error("Ошибка в Chat API. Статус: {}, Ответ: {}", response.statusCode(), response.body());
-            return "Ошибка при вызове GigaChat: " + response.statusCode() + "\n" + response.body();
-        }
+    /**
+     * Убирает из значения заголовка multipart символы, которые могли бы его разорвать (кавычки и переводы строк).
+     */
+    private static String headerValue(String value) {
+        return value.replace('"', '\'').replace('\r', ' ').replace('\n', ' ');
     }
 
     /**
-     * Базовое экранирование символов в JSON строке.
-     * Заменяет обратные слэши и кавычки, чтобы JSON был корректным.
-     * @param text текст для экранирования
-     * @return экранированный текст
+     * Прогревает JSON-кодек запросов и ответов.
+     * @throws IOException если пробный JSON не разобран
      */
-    private String escapeJson(String text) {
-        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    public void warmUpCodec() throws IOException {
+        codec.warmUp(config.getModelName());
     }
 
     /**
-     * Простейший парсер для извлечения содержимого сообщения ассистента из JSON-ответа.
-     * Ищет поле content в JSON и возвращает его значение с декодированием escape-последовательностей.
-     * @param json строка JSON с ответом чата
-     * @return текст ответа или сообщение об ошибке, если контент не найден
+     * Открывает соединение HTTP/2 с хостом Chat API запросом списка моделей (GET models на уровень выше chat/completions),
+     * чтобы TLS-рукопожатие и согласование протокола не достались первому вопросу пользователя.
+     * Тело ответа не читается: для прогрева важно само соединение, а не статус.
+     * @param accessToken Bearer-токен
+     * @return future с HTTP-статусом ответа; с IOException при сетевых ошибках
      */
-    private String parseChatResponse(String json) {
-        String marker = "\"content\":\"";
-        int index = json.indexOf(marker);
-        // Если поле контента не найдено — возвращаем ошибку
-        if (index < 0) {
-            return "Не удалось найти ответ в JSON.";
-        }
+    public CompletableFuture<Integer> openConnectionAsync(String accessToken) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(config.getChatUrl()).resolve("../models"))
+                .header("Authorization", "Bearer " + accessToken)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        CompletableFuture<HttpResponse<Void>> exchange = sendAsync(request, HttpResponse.BodyHandlers.discarding(), RetryPolicy.IDEMPOTENT);
+        return Futures.propagateCancel(exchange.thenApply(HttpResponse::statusCode), exchange);
+    }
+
+    /**
+     * Отправляет запрос через ResilientHttpClient, учитывая в метриках сетевые сбои.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                             RetryPolicy retry) {
+        CompletableFuture<HttpResponse<T>> exchange = client.sendAsync(request, handler, retry);
+        exchange.whenComplete((response, error) -> {
+            Throwable cause = (error == null) ? null : Futures.unwrap(error);
+            if (cause instanceof CircuitOpenException) {
+                metrics.recordGigaChatError("circuit_open");
+            } else if (cause instanceof HttpTimeoutException) {
+                metrics.recordGigaChatError("timeout");
+            } else if (cause instanceof IOException) {
+                metrics.recordGigaChatError("io");
+            }
+        });
+        return exchange;
+    }
+
+    /**
+     * Формирует POST-запрос на chat completion.
+     * @param accessToken Bearer-токен
+     * @param model имя модели
+     * @param messages сообщения диалога
+     * @param stream включить ли потоковый режим (SSE)
+     * @return готовый HTTP-запрос
+     */
+    private HttpRequest buildChatRequest(String accessToken, String model, List<ChatMessage> messages, boolean stream) {
+        // Формируем тело запроса: кодек пишет JSON за один проход с корректным экранированием
+        byte[] jsonRequestBody = codec.encodeChatRequest(model, messages, stream);
 
-        // Определяем начало и конец контента в JSON
-        int start = index + marker.length();
-        int end = json.indexOf("\"", start);
+        // Формируем POST-запрос с Bearer токеном в заголовке Authorization
+        return HttpRequest.newBuilder()
+                .uri(URI.create(config.getChatUrl()))
+                .header("Authorization", "Bearer " + accessToken)
+                .header("Content-Type", "application/json")
+                .header("Accept", stream ? "text/event-stream" : "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(jsonRequestBody))
+                .build();
+    }
 
-        // Обработка экранированных кавычек в содержимом
-        while (end > start && json.charAt(end - 1) == '\\') {
-            end = json.indexOf("\"", end + 1);
+    /**
+     * Читает заголовок Retry-After: число секунд или HTTP-дату.
+     * @param response HTTP-ответ
+     * @return задержка в миллисекундах или -1, если заголовка нет или он некорректен
+     */
+    private static long retryAfterMillis(HttpResponse<?> response) {
+        String value = response.headers().firstValue("Retry-After").orElse(null);
+        if (value == null) {
+            return -1;
         }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
 
-        if (end < 0) end = json.length();
+    /**
+     * Декодирует тело ответа об ошибке для логов и исключений.
+     * @param response HTTP-ответ
+     * @return тело ответа строкой
+     */
+    private static String bodyAsString(HttpResponse<byte[]> response) {
+        return new String(response.body(), StandardCharsets.UTF_8);
+    }
 
-        // Извлекаем сырой контент и заменяем escape-последовательности на реальные символы
-        String content = json.substring(start, end);
-        return content
-                .replace("\\n", "\n")
-                .replace("\\\"", "\"")
-                .replace("\\\\", "\\");
+    /**
+     * Закрывает соединения HTTP-клиента.
+     */
+    @Override
+    public void close() {
+        client.close();
     }
 }
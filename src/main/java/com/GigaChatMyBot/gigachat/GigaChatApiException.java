@@ -0,0 +1,65 @@
+package com.GigaChatMyBot.gigachat;
+
+import java.io.IOException;
+
+/**
+ * Ошибка HTTP-уровня от API GigaChat (ответ со статусом, отличным от 200).
+ * Хранит статус и тело ответа, чтобы вызывающий код мог отличить,
+ * например, истёкший токен (401) от прочих ошибок.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class GigaChatApiException extends IOException {
+    private static final long serialVersionUID = 1L; // Версия сериализованной формы
+    private final int statusCode; // HTTP-статус ответа
+    private final String responseBody; // Тело ответа с описанием ошибки
+    private final long retryAfterMillis; // Значение заголовка Retry-After или -1, если его нет
+
+    /**
+     * Конструктор.
+     * @param statusCode HTTP-статус ответа
+     * @param responseBody тело ответа
+     */
+    public GigaChatApiException(int statusCode, String responseBody) {
+        this(statusCode, responseBody, -1);
+    }
+
+    /**
+     * Конструктор.
+     * @param statusCode HTTP-статус ответа
+     * @param responseBody тело ответа
+     * @param retryAfterMillis значение заголовка Retry-After или -1, если его нет
+     */
+    public GigaChatApiException(int statusCode, String responseBody, long retryAfterMillis) {
+        super("GigaChat API вернул статус " + statusCode);
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * @return true, если токен отклонён сервером и его нужно обновить
+     */
+    public boolean isUnauthorized() {
+        return statusCode == 401;
+    }
+
+    /**
+     * @return true, если сервер ограничил частоту запросов (429)
+     */
+    public boolean isRateLimited() {
+        return statusCode == 429;
+    }
+}
@@ -0,0 +1,289 @@
+package com.GigaChatMyBot.gigachat;
+
+import com.GigaChatMyBot.model.ChatCompletion;
+import com.GigaChatMyBot.model.ChatMessage;
+import com.GigaChatMyBot.model.TokenUsage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Потоковый JSON-кодек для запросов и ответов GigaChat на базе Jackson Streaming API.
+ * Тело запроса пишется за один проход прямо в переиспользуемый буфер, с корректным экранированием
+ * управляющих символов и Unicode. Из ответа за один проход извлекаются только нужные поля
+ * (choices[0].message.content, finish_reason, usage) — без построения дерева и без промежуточных строк.
+ * Класс потокобезопасен.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class GigaChatJsonCodec {
+    private static final int POOL_SIZE = 64; // Сколько буферов держать для повторного использования
+    private static final int MAX_POOLED_BUFFER = 64 * 1024; // Буферы больше этого размера не возвращаются в пул
+
+    private static final byte[] WARMUP_RESPONSE = ("{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"ok\"},"
+            + "\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":1,\"total_tokens\":2}}")
+            .getBytes(StandardCharsets.UTF_8); // Пробный ответ chat completion для прогрева
+    private static final String WARMUP_CHUNK = "{\"choices\":[{\"delta\":{\"content\":\"ok\"},\"index\":0}]}"; // Пробное SSE-событие
+    private static final byte[] WARMUP_TOKEN = "{\"access_token\":\"warmup\",\"expires_at\":0}"
+            .getBytes(StandardCharsets.UTF_8); // Пробный ответ OAuth endpoint
+
+    private final JsonFactory factory = new JsonFactory(); // Фабрика парсеров и генераторов (потокобезопасна)
+    private final ArrayBlockingQueue<ByteArrayBuilder> buffers = new ArrayBlockingQueue<>(POOL_SIZE); // Пул буферов для тел запросов
+
+    /**
+     * Формирует тело запроса на chat completion из одного сообщения пользователя.
+     * @param model имя модели
+     * @param prompt текст пользователя
+     * @param stream включить ли потоковый режим (SSE)
+     * @return JSON в UTF-8
+     */
+    public byte[] encodeChatRequest(String model, String prompt, boolean stream) {
+        return encodeChatRequest(model, List.of(ChatMessage.user(prompt)), stream);
+    }
+
+    /**
+     * Формирует тело запроса на chat completion с историей диалога.
+     * @param model имя модели
+     * @param messages сообщения диалога от старых к новым
+     * @param stream включить ли потоковый режим (SSE)
+     * @return JSON в UTF-8
+     */
+    public byte[] encodeChatRequest(String model, List<ChatMessage> messages, boolean stream) {
+        ByteArrayBuilder buffer = acquireBuffer();
+        try (JsonGenerator generator = factory.createGenerator(buffer)) {
+            generator.writeStartObject();
+            generator.writeStringField("model", model);
+            generator.writeArrayFieldStart("messages");
+            for (ChatMessage message : messages) {
+                generator.writeStartObject();
+                generator.writeStringField("role", message.role());
+                generator.writeStringField("content", message.content());
+                if (!message.attachments().isEmpty()) {
+                    generator.writeArrayFieldStart("attachments");
+                    for (String fileId : message.attachments()) {
+                        generator.writeString(fileId);
+                    }
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeBooleanField("stream", stream);
+            generator.writeNumberField("repetition_penalty", 1);
+            generator.writeEndObject();
+            generator.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сформировать JSON запроса", e);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Извлекает из ответа chat completion текст, причину завершения и расход токенов.
+     * @param json тело ответа в UTF-8
+     * @return результат; content равен null, если в ответе нет текста
+     * @throws IOException если JSON некорректен
+     */
+    public ChatCompletion decodeChatResponse(byte[] json) throws IOException {
+        try (JsonParser parser = factory.createParser(json)) {
+            return readCompletion(parser, "message");
+        }
+    }
+
+    /**
+     * Извлекает фрагмент текста из SSE-события потокового ответа (choices[0].delta.content).
+     * @param json данные одного события
+     * @return фрагмент текста или null, если его нет
+     */
+    public String decodeStreamDelta(String json) {
+        ChatCompletion chunk = decodeStreamChunk(json);
+        return (chunk == null) ? null : chunk.content();
+    }
+
+    /**
+     * Разбирает SSE-событие потокового ответа целиком: фрагмент текста, причину завершения
+     * и расход токенов (GigaChat присылает usage в последнем событии).
+     * @param json данные одного события
+     * @return содержимое события или null, если JSON некорректен
+     */
+    public ChatCompletion decodeStreamChunk(String json) {
+        try (JsonParser parser = factory.createParser(json)) {
+            return readCompletion(parser, "delta");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Извлекает идентификатор файла из ответа на загрузку (POST /files).
+     * @param json тело ответа в UTF-8
+     * @return идентификатор файла или null, если поля id нет
+     * @throws IOException если JSON некорректен
+     */
+    public String decodeFileId(byte[] json) throws IOException {
+        try (JsonParser parser = factory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("id".equals(field) && token == JsonToken.VALUE_STRING) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Прогревает кодек при старте приложения: загружает классы Jackson, проходит все пути записи и разбора
+     * и заполняет пул буферов, чтобы первый вопрос пользователя не платил за это задержкой.
+     * @param model имя модели для пробного запроса
+     * @throws IOException если пробный JSON не разобран
+     */
+    public void warmUp(String model) throws IOException {
+        encodeChatRequest(model, List.of(ChatMessage.system("warmup"),
+                ChatMessage.user("прогрев \u2014 \"json\"", List.of("warmup"))), true);
+        decodeChatResponse(WARMUP_RESPONSE);
+        decodeStreamChunk(WARMUP_CHUNK);
+        decodeAccessToken(WARMUP_TOKEN, 0);
+        decodeFileId(WARMUP_TOKEN);
+    }
+
+    /**
+     * Извлекает access_token и expires_at из ответа OAuth endpoint.
+     * @param json тело ответа в UTF-8
+     * @param defaultExpiresAtMillis момент истечения, если expires_at в ответе нет
+     * @return токен или null, если access_token не найден
+     * @throws IOException если JSON некорректен
+     */
+    public AccessToken decodeAccessToken(byte[] json, long defaultExpiresAtMillis) throws IOException {
+        String value = null;
+        long expiresAt = defaultExpiresAtMillis;
+        try (JsonParser parser = factory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("access_token".equals(field) && token == JsonToken.VALUE_STRING) {
+                    value = parser.getText();
+                } else if ("expires_at".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+                    expiresAt = parser.getLongValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return (value == null) ? null : new AccessToken(value, expiresAt);
+    }
+
+    /**
+     * Читает корневой объект ответа, пропуская всё, кроме choices[0] и usage.
+     * @param parser парсер, стоящий перед корневым объектом
+     * @param messageField имя объекта с текстом в choices[0]: message или delta
+     */
+    private ChatCompletion readCompletion(JsonParser parser, String messageField) throws IOException {
+        String content = null;
+        String finishReason = null;
+        TokenUsage usage = TokenUsage.EMPTY;
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return new ChatCompletion(null, null, usage);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("choices".equals(field) && token == JsonToken.START_ARRAY) {
+                boolean first = true;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String choiceField = parser.currentName();
+                            JsonToken choiceToken = parser.nextToken();
+                            if (messageField.equals(choiceField) && choiceToken == JsonToken.START_OBJECT) {
+                                content = readContent(parser);
+                            } else if ("finish_reason".equals(choiceField) && choiceToken == JsonToken.VALUE_STRING) {
+                                finishReason = parser.getText();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    first = false;
+                }
+            } else if ("usage".equals(field) && token == JsonToken.START_OBJECT) {
+                usage = readUsage(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new ChatCompletion(content, finishReason, usage);
+    }
+
+    /**
+     * Читает поле content из объекта message/delta.
+     */
+    private String readContent(JsonParser parser) throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("content".equals(field) && token == JsonToken.VALUE_STRING) {
+                content = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Читает объект usage.
+     */
+    private TokenUsage readUsage(JsonParser parser) throws IOException {
+        int promptTokens = 0;
+        int completionTokens = 0;
+        int totalTokens = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "prompt_tokens" -> promptTokens = parser.getIntValue();
+                case "completion_tokens" -> completionTokens = parser.getIntValue();
+                case "total_tokens" -> totalTokens = parser.getIntValue();
+                default -> { }
+            }
+        }
+        return new TokenUsage(promptTokens, completionTokens, totalTokens);
+    }
+
+    private ByteArrayBuilder acquireBuffer() {
+        ByteArrayBuilder buffer = buffers.poll();
+        return (buffer != null) ? buffer : new ByteArrayBuilder(1024);
+    }
+
+    private void releaseBuffer(ByteArrayBuilder buffer) {
+        if (buffer.size() <= MAX_POOLED_BUFFER) {
+            buffer.reset();
+            buffers.offer(buffer);
+        }
+    }
+}
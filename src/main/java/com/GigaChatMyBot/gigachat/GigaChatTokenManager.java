@@ -0,0 +1,173 @@
+package com.GigaChatMyBot.gigachat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Менеджер OAuth-токена GigaChat.
+ * Хранит один токен на всё приложение и раздаёт его всем потокам.
+ * Обновляет токен в фоне заранее, до истечения expires_at.
+ * Если несколько вызовов одновременно видят истёкший токен, в OAuth уходит только один запрос (single-flight),
+ * остальные получают его future и не занимают потоки на ожидание.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class GigaChatTokenManager implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GigaChatTokenManager.class); // Логгер для обновлений токена
+    private static final long RETRY_DELAY_MILLIS = 5_000L; // Пауза перед повтором неудачного фонового обновления
+
+    private final GigaChatAPI api; // Клиент, выполняющий OAuth-запрос
+    private final long refreshMarginMillis; // За сколько до истечения токен считается устаревшим
+    private final AtomicReference<AccessToken> current = new AtomicReference<>(); // Текущий закэшированный токен
+    private final AtomicReference<CompletableFuture<AccessToken>> inFlight = new AtomicReference<>(); // Обновление, которое выполняется прямо сейчас
+    private final ScheduledExecutorService scheduler; // Поток для фонового обновления
+    private volatile ScheduledFuture<?> scheduledRefresh; // Запланированное фоновое обновление
+
+    /**
+     * Конструктор.
+     * @param api клиент GigaChat для OAuth-запросов
+     * @param refreshMarginMillis за сколько миллисекунд до истечения обновлять токен
+     */
+    public GigaChatTokenManager(GigaChatAPI api, long refreshMarginMillis) {
+        this.api = api;
+        this.refreshMarginMillis = refreshMarginMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gigachat-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Возвращает действующий токен, при необходимости обновляя его.
+     * @return значение токена для заголовка Authorization
+     * @throws IOException если токен получить не удалось
+     * @throws InterruptedException при прерывании ожидания
+     */
+    public String getToken() throws IOException, InterruptedException {
+        return Futures.await(getTokenAsync());
+    }
+
+    /**
+     * Асинхронно возвращает действующий токен. Если токен свежий, future уже завершён;
+     * иначе он завершится вместе с общим для всех вызывающих OAuth-запросом.
+     * Отмена возвращённого future не отменяет общий запрос.
+     * @return future со значением токена; с IOException, если токен получить не удалось
+     */
+    public CompletableFuture<String> getTokenAsync() {
+        AccessToken token = current.get();
+        if (token != null && !token.expiresWithin(System.currentTimeMillis(), refreshMarginMillis)) {
+            return CompletableFuture.completedFuture(token.value());
+        }
+        return refresh(token).thenApply(AccessToken::value);
+    }
+
+    /**
+     * Сбрасывает токен, отклонённый сервером (например, после ответа 401).
+     * Сбрасывается только если в кэше всё ещё тот же токен — иначе его уже обновил другой поток.
+     * @param tokenValue значение отклонённого токена
+     */
+    public void invalidate(String tokenValue) {
+        AccessToken token = current.get();
+        if (token != null && token.value().equals(tokenValue) && current.compareAndSet(token, null)) {
+            logger.info("Access token отклонён сервером и сброшен");
+        }
+    }
+
+    /**
+     * Обновляет токен так, чтобы одновременно выполнялся только один OAuth-запрос.
+     * Первый вызов отправляет запрос, остальные получают его future.
+     * @param stale токен, который вызывающий код считает устаревшим
+     * @return future со свежим токеном
+     */
+    private CompletableFuture<AccessToken> refresh(AccessToken stale) {
+        CompletableFuture<AccessToken> mine = new CompletableFuture<>();
+        CompletableFuture<AccessToken> existing = inFlight.compareAndExchange(null, mine);
+        if (existing != null) {
+            return existing;
+        }
+        // Пока мы ждали своей очереди, токен мог обновить другой поток
+        AccessToken token = current.get();
+        if (token != null && token != stale && !token.expiresWithin(System.currentTimeMillis(), refreshMarginMillis)) {
+            inFlight.set(null);
+            mine.complete(token);
+            return mine;
+        }
+        fetch().whenComplete((fresh, error) -> {
+            inFlight.set(null);
+            if (error != null) {
+                mine.completeExceptionally(Futures.unwrap(error));
+            } else {
+                mine.complete(fresh);
+            }
+        });
+        return mine;
+    }
+
+    /**
+     * Выполняет OAuth-запрос, кладёт токен в кэш и планирует фоновое обновление.
+     * @return future с новым токеном
+     */
+    private CompletableFuture<AccessToken> fetch() {
+        CompletableFuture<AccessToken> request;
+        try {
+            request = api.requestAccessTokenAsync(UUID.randomUUID().toString());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return request.thenApply(token -> {
+            if (token == null) {
+                throw Futures.wrap(new IOException("не удалось получить access token"));
+            }
+            current.set(token);
+            scheduleRefresh(token.expiresAtMillis() - refreshMarginMillis - System.currentTimeMillis());
+            logger.info("Получен новый access token, истекает через {} с",
+                    (token.expiresAtMillis() - System.currentTimeMillis()) / 1000);
+            return token;
+        });
+    }
+
+    /**
+     * Планирует фоновое обновление токена.
+     * @param delayMillis задержка до обновления
+     */
+    private void scheduleRefresh(long delayMillis) {
+        ScheduledFuture<?> previous = scheduledRefresh;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        scheduledRefresh = scheduler.schedule(this::refreshInBackground, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Фоновое обновление: вызывается заранее, пока текущий токен ещё действует.
+     * При ошибке повторяет попытку через RETRY_DELAY_MILLIS.
+     */
+    private void refreshInBackground() {
+        refresh(current.get()).whenComplete((token, error) -> {
+            if (error != null) {
+                logger.warn("Фоновое обновление access token не удалось: {}", Futures.unwrap(error).getMessage());
+                scheduleRefresh(RETRY_DELAY_MILLIS);
+            }
+        });
+    }
+
+    /**
+     * Останавливает фоновое обновление.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
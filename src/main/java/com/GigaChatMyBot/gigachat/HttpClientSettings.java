@@ -0,0 +1,34 @@
+package com.GigaChatMyBot.gigachat;
+
+import java.time.Duration;
+
+/**
+ * Настройки HTTP-клиента GigaChat: таймауты, повторы и circuit breaker.
+ * @param connectTimeout таймаут установки соединения
+ * @param requestTimeout сколько ждать заголовков ответа
+ * @param exchangeTimeout предельная длительность обмена целиком, включая чтение потокового ответа
+ * @param maxRetries сколько раз повторять запрос после временной ошибки
+ * @param retryBaseDelay задержка перед первым повтором (дальше удваивается)
+ * @param retryMaxDelay верхняя граница задержки между повторами
+ * @param circuitFailureThreshold сколько ошибок подряд размыкают circuit breaker
+ * @param circuitOpenDuration сколько circuit breaker остаётся разомкнутым перед пробным запросом
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public record HttpClientSettings(Duration connectTimeout,
+                                 Duration requestTimeout,
+                                 Duration exchangeTimeout,
+                                 int maxRetries,
+                                 Duration retryBaseDelay,
+                                 Duration retryMaxDelay,
+                                 int circuitFailureThreshold,
+                                 Duration circuitOpenDuration) {
+
+    /**
+     * @return настройки по умолчанию (совпадают со значениями по умолчанию в GigaChatSpringConfig)
+     */
+    public static HttpClientSettings defaults() {
+        return new HttpClientSettings(Duration.ofSeconds(5), Duration.ofSeconds(60), Duration.ofMinutes(5),
+                2, Duration.ofMillis(200), Duration.ofSeconds(2), 5, Duration.ofSeconds(30));
+    }
+}
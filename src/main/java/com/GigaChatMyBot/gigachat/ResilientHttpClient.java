@@ -0,0 +1,247 @@
+package com.GigaChatMyBot.gigachat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * HTTP-клиент GigaChat с таймаутами, повторами и circuit breaker.
+ * Соединения HTTP/2 переиспользуются; обработчики ответов выполняются на виртуальных потоках.
+ * Запросы выполняются асинхронно: ни ожидание ответа, ни паузы между повторами не занимают поток.
+ * Повторяются только временные ошибки, с экспоненциальной задержкой и случайным разбросом (full jitter).
+ * Что именно повторять, задаёт {@link RetryPolicy} запроса:
+ * <ul>
+ *     <li>ошибка соединения и ответы 502/503 — для любых запросов, кроме {@link RetryPolicy#NONE}:
+ *     запрос не дошёл до обработки;</li>
+ *     <li>прочие сетевые ошибки, таймауты и ответы 500/504 — только для идемпотентных запросов,
+ *     которые безопасно отправить повторно;</li>
+ *     <li>запросы {@link RetryPolicy#NONE} не повторяются вовсе: их тело читается из потока один раз,
+ *     и повтор отправил бы его пустым или неполным.</li>
+ * </ul>
+ * Для каждого хоста свой circuit breaker: пока он разомкнут, запросы сразу завершаются CircuitOpenException.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class ResilientHttpClient implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ResilientHttpClient.class); // Логгер для повторов
+
+    private final HttpClientSettings settings; // Таймауты и параметры повторов
+    private final ExecutorService executor; // Исполнитель для обработки ответов HttpClient
+    private final HttpClient client; // HttpClient с HTTP/2 и таймаутом соединения
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>(); // Circuit breaker по хосту
+
+    /**
+     * Какие ошибки запроса можно повторить.
+     */
+    public enum RetryPolicy {
+        IDEMPOTENT, // Все временные ошибки: запрос безопасно отправить повторно
+        NON_IDEMPOTENT, // Только ошибки, при которых запрос не дошёл до обработки: соединение, 502, 503
+        NONE // Без повторов: тело запроса нельзя отправить второй раз
+    }
+
+    /**
+     * Конструктор.
+     * @param settings таймауты, повторы и параметры circuit breaker
+     */
+    public ResilientHttpClient(HttpClientSettings settings) {
+        this.settings = settings;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gigachat-http-", 0).factory());
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(settings.connectTimeout())
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Отправляет запрос с повторами временных ошибок и ждёт ответ.
+     * Синхронная обёртка над {@link #sendAsync}.
+     * @param request запрос
+     * @param handler обработчик тела ответа
+     * @param retry какие ошибки можно повторить
+     * @return ответ (в том числе с кодом ошибки, если повторы исчерпаны или ошибка не временная)
+     * @throws CircuitOpenException если circuit breaker хоста разомкнут
+     * @throws IOException при сетевой ошибке или таймауте после всех повторов
+     * @throws InterruptedException при прерывании
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler, RetryPolicy retry)
+            throws IOException, InterruptedException {
+        return Futures.await(sendAsync(request, handler, retry));
+    }
+
+    /**
+     * Отправляет запрос с повторами временных ошибок, не занимая поток на время ожидания:
+     * обмен идёт через HttpClient.sendAsync, паузы перед повторами — через отложенный запуск.
+     * Ожидание заголовков ограничено requestTimeout, каждый обмен вместе с чтением тела — exchangeTimeout.
+     * Отмена возвращённого future прерывает текущий обмен и отменяет оставшиеся повторы.
+     * @param request запрос
+     * @param handler обработчик тела ответа
+     * @param retry какие ошибки можно повторить
+     * @return future с ответом (в том числе с кодом ошибки, если повторы исчерпаны или ошибка не временная);
+     * завершается CircuitOpenException, если circuit breaker хоста разомкнут, или IOException после всех повторов
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                            RetryPolicy retry) {
+        HttpRequest timed = request.timeout().isPresent()
+                ? request
+                : HttpRequest.newBuilder(request, (name, value) -> true).timeout(settings.requestTimeout()).build();
+        String host = request.uri().getHost();
+        CircuitBreaker breaker = breakers.computeIfAbsent(host, h -> new CircuitBreaker(h,
+                settings.circuitFailureThreshold(), settings.circuitOpenDuration().toMillis()));
+        Exchange<T> exchange = new Exchange<>(timed, handler, retry, host, breaker);
+        exchange.start(0);
+        return exchange.result;
+    }
+
+    /**
+     * Один запрос со всеми его попытками.
+     */
+    private final class Exchange<T> {
+        private final HttpRequest request; // Запрос с таймаутом ожидания заголовков
+        private final HttpResponse.BodyHandler<T> handler; // Обработчик тела ответа
+        private final RetryPolicy retry; // Какие ошибки можно повторить
+        private final String host; // Хост для логов и circuit breaker
+        private final CircuitBreaker breaker; // Circuit breaker хоста
+        private final CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>(); // Итог всех попыток
+        private volatile CompletableFuture<HttpResponse<T>> current; // Обмен, выполняемый сейчас
+
+        private Exchange(HttpRequest request, HttpResponse.BodyHandler<T> handler, RetryPolicy retry, String host,
+                         CircuitBreaker breaker) {
+            this.request = request;
+            this.handler = handler;
+            this.retry = retry;
+            this.host = host;
+            this.breaker = breaker;
+            result.whenComplete((response, error) -> {
+                CompletableFuture<HttpResponse<T>> running = current;
+                if (result.isCancelled() && running != null) {
+                    running.cancel(true);
+                }
+            });
+        }
+
+        /**
+         * Запускает попытку. Обмен, не уложившийся в exchangeTimeout, отменяется, освобождая соединение.
+         */
+        private void start(int attempt) {
+            if (result.isDone()) {
+                return;
+            }
+            if (!breaker.allowRequest()) {
+                result.completeExceptionally(new CircuitOpenException(host));
+                return;
+            }
+            CompletableFuture<HttpResponse<T>> future = client.sendAsync(request, handler);
+            current = future;
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+            future.copy()
+                    .orTimeout(settings.exchangeTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((response, error) -> {
+                        if (error == null) {
+                            onResponse(attempt, response);
+                            return;
+                        }
+                        Throwable cause = Futures.unwrap(error);
+                        if (cause instanceof TimeoutException) {
+                            future.cancel(true);
+                            cause = new HttpTimeoutException("Обмен с " + host + " не завершился за "
+                                    + settings.exchangeTimeout().toSeconds() + " с");
+                        }
+                        onError(attempt, cause);
+                    });
+        }
+
+        private void onResponse(int attempt, HttpResponse<T> response) {
+            int status = response.statusCode();
+            if (status < 500) {
+                breaker.onSuccess();
+                result.complete(response);
+                return;
+            }
+            breaker.onFailure();
+            if (attempt >= settings.maxRetries() || !isRetryable(status, retry) || result.isDone()) {
+                result.complete(response);
+                return;
+            }
+            retryLater(attempt, "HTTP " + status);
+        }
+
+        private void onError(int attempt, Throwable cause) {
+            if (result.isDone()) {
+                breaker.release(); // Обмен отменён вызывающим кодом — сервер тут ни при чём
+                return;
+            }
+            IOException error = (cause instanceof IOException io) ? io : new IOException(cause);
+            breaker.onFailure();
+            if (attempt >= settings.maxRetries() || !isRetryable(error, retry)) {
+                result.completeExceptionally(error);
+                return;
+            }
+            retryLater(attempt, error.toString());
+        }
+
+        /**
+         * Планирует повтор: случайная задержка от нуля до base * 2^attempt, но не больше retryMaxDelay.
+         */
+        private void retryLater(int attempt, String reason) {
+            long ceiling = Math.min(settings.retryMaxDelay().toMillis(), settings.retryBaseDelay().toMillis() << Math.min(attempt, 20));
+            long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            logger.warn("Запрос к {} не удался ({}), повтор {} через {} мс", host, reason, attempt + 1, delay);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor).execute(() -> start(attempt + 1));
+        }
+    }
+
+    private static boolean isRetryable(IOException e, RetryPolicy retry) {
+        if (retry == RetryPolicy.NONE) {
+            return false;
+        }
+        if (e instanceof ConnectException || e instanceof HttpConnectTimeoutException) {
+            return true;
+        }
+        return retry == RetryPolicy.IDEMPOTENT;
+    }
+
+    private static boolean isRetryable(int status, RetryPolicy retry) {
+        if (retry == RetryPolicy.NONE) {
+            return false;
+        }
+        return switch (status) {
+            case 502, 503 -> true;
+            case 500, 504 -> retry == RetryPolicy.IDEMPOTENT;
+            default -> false;
+        };
+    }
+
+    /**
+     * @param host хост
+     * @return состояние circuit breaker хоста (CLOSED, если запросов к нему ещё не было)
+     */
+    public CircuitBreaker.State circuitState(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        return (breaker == null) ? CircuitBreaker.State.CLOSED : breaker.getState();
+    }
+
+    /**
+     * Закрывает соединения и останавливает исполнитель.
+     */
+    @Override
+    public void close() {
+        client.close();
+        executor.shutdownNow();
+    }
+}
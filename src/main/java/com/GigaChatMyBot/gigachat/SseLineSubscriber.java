@@ -0,0 +1,97 @@
+package com.GigaChatMyBot.gigachat;
+
+import com.GigaChatMyBot.model.ChatCompletion;
+import com.GigaChatMyBot.model.TokenUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Построчный подписчик на тело ответа в формате server-sent events.
+ * Разбирает строки вида "data: {...}" по мере поступления, извлекает из каждого фрагмента текст
+ * и сразу передаёт его получателю. Причина завершения и расход токенов запоминаются из последних событий,
+ * где они есть. Строка "data: [DONE]" завершает поток: всё, что сервер пришлёт после неё, пропускается.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class SseLineSubscriber implements Flow.Subscriber<String> {
+    private static final Logger logger = LoggerFactory.getLogger(SseLineSubscriber.class); // Логгер для ошибок получателя
+    private static final String DATA_PREFIX = "data:"; // Префикс строки с данными события
+    private static final String DONE_MARKER = "[DONE]"; // Маркер конца потока GigaChat
+
+    private final Function<String, ChatCompletion> chunkDecoder; // Разбирает JSON-фрагмент (null — фрагмент некорректен)
+    private final Consumer<String> onDelta; // Получатель фрагментов текста
+    private final StringBuilder result = new StringBuilder(); // Полный текст ответа
+    private String finishReason; // Причина завершения из последнего события, где она указана
+    private TokenUsage usage = TokenUsage.EMPTY; // Расход токенов из последнего события, где он указан
+    private boolean done; // Получен ли маркер [DONE]
+
+    /**
+     * Конструктор.
+     * @param chunkDecoder функция разбора JSON-фрагмента
+     * @param onDelta получатель фрагментов текста
+     */
+    SseLineSubscriber(Function<String, ChatCompletion> chunkDecoder, Consumer<String> onDelta) {
+        this.chunkDecoder = chunkDecoder;
+        this.onDelta = onDelta;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (done || !line.startsWith(DATA_PREFIX)) {
+            return; // Пустые строки-разделители, комментарии и прочие поля события пропускаем
+        }
+        String data = line.substring(DATA_PREFIX.length()).trim();
+        if (DONE_MARKER.equals(data)) {
+            done = true;
+            return;
+        }
+        if (data.isEmpty()) {
+            return;
+        }
+        ChatCompletion chunk = chunkDecoder.apply(data);
+        if (chunk == null) {
+            return;
+        }
+        if (chunk.finishReason() != null) {
+            finishReason = chunk.finishReason();
+        }
+        if (chunk.usage().totalTokens() > 0) {
+            usage = chunk.usage();
+        }
+        String delta = chunk.content();
+        if (delta == null || delta.isEmpty()) {
+            return;
+        }
+        result.append(delta);
+        try {
+            onDelta.accept(delta);
+        } catch (RuntimeException e) {
+            logger.warn("Ошибка в получателе фрагмента ответа: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        logger.warn("Поток ответа GigaChat прерван: {}", throwable.getMessage());
+    }
+
+    @Override
+    public void onComplete() {
+        // Результат забирается через result() после завершения тела ответа
+    }
+
+    /**
+     * @return полный текст, собранный из всех фрагментов, с причиной завершения и расходом токенов
+     */
+    ChatCompletion result() {
+        return new ChatCompletion(result.toString(), finishReason, usage);
+    }
+}
@@ -0,0 +1,219 @@
+package com.GigaChatMyBot.metrics;
+
+import com.GigaChatMyBot.model.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Метрики бота на Micrometer: задержки GigaChat и Telegram, расход токенов, ошибки и очереди.
+ * Задержки пишутся гистограммами с перцентилями (percentile histogram), чтобы в Prometheus
+ * можно было считать p50/p95/p99 по любому окну и агрегировать их между экземплярами.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@Component // Регистрирует метрики как компонент Spring; реестр (Prometheus) подставляет Actuator
+public class BotMetrics {
+    private static final Duration MIN_LATENCY = Duration.ofMillis(1); // Нижняя граница корзин гистограмм задержек
+    private static final Duration MAX_LATENCY = Duration.ofMinutes(5); // Верхняя граница корзин гистограмм задержек
+
+    private final MeterRegistry registry; // Реестр метрик
+    private final Timer oauthLatency; // Получение OAuth-токена
+    private final Timer completionLatency; // Обычный запрос chat completion
+    private final Timer streamLatency; // Потоковый запрос chat completion целиком
+    private final Timer firstTokenLatency; // Время до первого фрагмента потокового ответа
+    private final Counter promptTokens; // Токены запросов по полю usage
+    private final Counter completionTokens; // Токены ответов по полю usage
+    private final Timer schedulerWait; // Ожидание запроса в очереди планировщика GigaChat
+    private final DistributionSummary chatQueueLength; // Сколько сообщений чата ждали обработки в момент прихода нового
+    private final ConcurrentHashMap<String, Timer> telegramTimers = new ConcurrentHashMap<>(); // Задержки Telegram по методу и исходу
+    private final ConcurrentHashMap<String, Counter> errorCounters = new ConcurrentHashMap<>(); // Ошибки GigaChat по статусу
+    private final ConcurrentHashMap<String, Counter> webhookCounters = new ConcurrentHashMap<>(); // Updates webhook по исходу
+    private final ConcurrentHashMap<String, Counter> clusterCounters = new ConcurrentHashMap<>(); // Updates от других узлов по исходу
+    private final ConcurrentHashMap<String, Counter> routingCounters = new ConcurrentHashMap<>(); // Решения маршрутизатора моделей
+    private final ConcurrentHashMap<String, Double> startupPhases = new ConcurrentHashMap<>(); // Длительность фаз старта в секундах
+
+    /**
+     * Конструктор.
+     * @param registry реестр метрик
+     */
+    public BotMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.oauthLatency = latency("gigachat.oauth.latency", "Получение OAuth-токена GigaChat").register(registry);
+        this.completionLatency = latency("gigachat.completion.latency", "Запрос chat completion к GigaChat")
+                .tag("mode", "sync").register(registry);
+        this.streamLatency = latency("gigachat.completion.latency", "Запрос chat completion к GigaChat")
+                .tag("mode", "stream").register(registry);
+        this.firstTokenLatency = latency("gigachat.completion.first_token", "Время до первого фрагмента потокового ответа")
+                .register(registry);
+        this.promptTokens = Counter.builder("gigachat.tokens").description("Токены по полю usage ответа GigaChat")
+                .tag("type", "prompt").register(registry);
+        this.completionTokens = Counter.builder("gigachat.tokens").description("Токены по полю usage ответа GigaChat")
+                .tag("type", "completion").register(registry);
+        this.schedulerWait = latency("gigachat.scheduler.wait", "Ожидание запроса к GigaChat в очереди планировщика")
+                .register(registry);
+        this.chatQueueLength = DistributionSummary.builder("bot.dispatcher.chat.queue")
+                .description("Сообщения чата, ожидавшие обработки, когда пришло новое")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(100.0)
+                .register(registry);
+    }
+
+    /**
+     * Метрики без внешнего реестра — для использования классов вне контекста Spring (бенчмарки, утилиты).
+     * @return метрики в собственном SimpleMeterRegistry
+     */
+    public static BotMetrics standalone() {
+        return new BotMetrics(new SimpleMeterRegistry());
+    }
+
+    private static Timer.Builder latency(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_LATENCY)
+                .maximumExpectedValue(MAX_LATENCY);
+    }
+
+    public void recordOAuth(long nanos) {
+        oauthLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param stream потоковый ли был запрос
+     * @param nanos длительность запроса
+     */
+    public void recordCompletion(boolean stream, long nanos) {
+        (stream ? streamLatency : completionLatency).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFirstToken(long nanos) {
+        firstTokenLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Учитывает расход токенов из поля usage ответа.
+     * @param usage расход токенов
+     */
+    public void recordUsage(TokenUsage usage) {
+        promptTokens.increment(usage.promptTokens());
+        completionTokens.increment(usage.completionTokens());
+    }
+
+    /**
+     * Учитывает ошибку обращения к GigaChat.
+     * @param status HTTP-статус или вид сбоя (io, timeout, circuit_open, rate_limited)
+     */
+    public void recordGigaChatError(String status) {
+        errorCounters.computeIfAbsent(status, s -> Counter.builder("gigachat.errors")
+                .description("Ошибки обращения к GigaChat по HTTP-статусу или виду сбоя")
+                .tag("status", s)
+                .register(registry)).increment();
+    }
+
+    /**
+     * Учитывает вызов Telegram Bot API.
+     * @param method метод API (sendMessage, editMessageText)
+     * @param nanos длительность вызова
+     * @param success успешен ли вызов
+     */
+    public void recordTelegramSend(String method, long nanos, boolean success) {
+        String outcome = success ? "success" : "error";
+        telegramTimers.computeIfAbsent(method + ':' + outcome, key -> latency("telegram.send.latency", "Вызов Telegram Bot API")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Учитывает update, пришедший через webhook.
+     * @param result исход: accepted, duplicate, unauthorized или not_ready
+     */
+    public void recordWebhookUpdate(String result) {
+        webhookCounters.computeIfAbsent(result, r -> Counter.builder("telegram.webhook.updates")
+                .description("Updates, пришедшие через webhook")
+                .tag("result", r)
+                .register(registry)).increment();
+    }
+
+    /**
+     * Учитывает update, пересланный другим узлом кластера.
+     * @param result исход: accepted, duplicate, unauthorized или not_ready
+     */
+    public void recordClusterUpdate(String result) {
+        clusterCounters.computeIfAbsent(result, r -> Counter.builder("bot.cluster.received")
+                .description("Updates, пересланные другими узлами кластера")
+                .tag("result", r)
+                .register(registry)).increment();
+    }
+
+    /**
+     * Учитывает решение маршрутизатора моделей.
+     * @param model выбранная модель
+     * @param reason причина выбора: prompt_length, override, fallback_unhealthy, fallback_error или no_healthy
+     */
+    public void recordRoutingDecision(String model, String reason) {
+        routingCounters.computeIfAbsent(model + ':' + reason, key -> Counter.builder("gigachat.routing.decisions")
+                .description("Решения маршрутизатора моделей GigaChat")
+                .tag("model", model)
+                .tag("reason", reason)
+                .register(registry)).increment();
+    }
+
+    /**
+     * Запоминает длительность фазы старта приложения. Значение не меняется до перезапуска,
+     * поэтому это показатель, а не таймер: его удобно сравнивать между экземплярами после выкладки.
+     * @param phase фаза: context, codec, oauth_token, gigachat_connection, telegram, ingestion или total
+     * @param nanos длительность фазы
+     */
+    public void recordStartupPhase(String phase, long nanos) {
+        startupPhases.put(phase, nanos / 1e9);
+        Gauge.builder("bot.startup.phase", startupPhases, phases -> phases.getOrDefault(phase, 0.0))
+                .description("Длительность фаз старта приложения")
+                .baseUnit("seconds")
+                .tag("phase", phase)
+                .register(registry);
+    }
+
+    public void recordSchedulerWait(long nanos) {
+        schedulerWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordChatQueueLength(int length) {
+        chatQueueLength.record(length);
+    }
+
+    /**
+     * Регистрирует показатель, который считывается при каждом сборе метрик.
+     * @param name имя метрики
+     * @param description описание
+     * @param target объект, из которого читается значение
+     * @param value функция чтения значения
+     */
+    public <T> void gauge(String name, String description, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(name, target, value).description(description).register(registry);
+    }
+
+    /**
+     * Регистрирует монотонный счётчик, который хранится в самом объекте (например, счётчики кэша).
+     * @param name имя метрики
+     * @param description описание
+     * @param tagKey имя тега
+     * @param tagValue значение тега
+     * @param target объект, из которого читается значение
+     * @param value функция чтения значения
+     */
+    public <T> void counter(String name, String description, String tagKey, String tagValue, T target,
+                            ToDoubleFunction<T> value) {
+        FunctionCounter.builder(name, target, value).description(description).tag(tagKey, tagValue).register(registry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.GigaChatMyBot.model;
+
+/**
+ * Результат chat completion: только те поля ответа GigaChat, которые нужны боту.
+ * @param content текст ответа ассистента (choices[0].message.content), null если его нет
+ * @param finishReason причина завершения генерации (choices[0].finish_reason)
+ * @param usage расход токенов
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public record ChatCompletion(String content, String finishReason, TokenUsage usage) {
+}
@@ -0,0 +1,51 @@
+package com.GigaChatMyBot.model;
+
+import java.util.List;
+
+/**
+ * Одно сообщение диалога в формате Chat API GigaChat.
+ * @param role роль автора: system, user или assistant
+ * @param content текст сообщения
+ * @param attachments идентификаторы файлов, загруженных в GigaChat (POST /files), к которым относится вопрос
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public record ChatMessage(String role, String content, List<String> attachments) {
+    public static final String SYSTEM = "system"; // Системная инструкция модели
+    public static final String USER = "user"; // Сообщение пользователя
+    public static final String ASSISTANT = "assistant"; // Ответ модели
+
+    public ChatMessage {
+        attachments = List.copyOf(attachments);
+    }
+
+    /**
+     * Сообщение без вложений.
+     * @param role роль автора
+     * @param content текст сообщения
+     */
+    public ChatMessage(String role, String content) {
+        this(role, content, List.of());
+    }
+
+    public static ChatMessage system(String content) {
+        return new ChatMessage(SYSTEM, content);
+    }
+
+    public static ChatMessage user(String content) {
+        return new ChatMessage(USER, content);
+    }
+
+    /**
+     * @param content текст вопроса
+     * @param attachments идентификаторы файлов в GigaChat
+     * @return вопрос пользователя с вложениями
+     */
+    public static ChatMessage user(String content, List<String> attachments) {
+        return new ChatMessage(USER, content, attachments);
+    }
+
+    public static ChatMessage assistant(String content) {
+        return new ChatMessage(ASSISTANT, content);
+    }
+}
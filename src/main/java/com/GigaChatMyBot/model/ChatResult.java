@@ -0,0 +1,66 @@
+package com.GigaChatMyBot.model;
+
+/**
+ * Итог асинхронного запроса к GigaChat: ответ вместе с расходом токенов или типизированная ошибка.
+ * В отличие от исключений, ошибка не теряется в цепочке CompletableFuture и не подменяется текстом для пользователя.
+ * @param status исход запроса
+ * @param content текст ответа (null, если запрос не удался)
+ * @param finishReason причина завершения генерации (null для ответа из кэша и при ошибке)
+ * @param usage расход токенов (пустой для ответа из кэша и при ошибке)
+ * @param model модель, которая ответила или должна была ответить
+ * @param httpStatus HTTP-статус ошибки GigaChat или 0, если ответа с ошибкой не было
+ * @param error исходная ошибка для логов: null при успехе и при истечении общего таймаута запроса,
+ *              HttpTimeoutException при таймауте HTTP-обмена
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public record ChatResult(Status status, String content, String finishReason, TokenUsage usage, String model,
+                         int httpStatus, Throwable error) {
+
+    /**
+     * Исход запроса.
+     */
+    public enum Status {
+        OK, // Ответ получен
+        RATE_LIMITED, // Ответ 429 или очередь ограничителя частоты переполнена
+        UNAVAILABLE, // Circuit breaker разомкнут: GigaChat недавно не отвечал
+        TIMEOUT, // Ответ не получен за отведённое время
+        FAILED // Прочие ошибки: сетевые сбои, ответы 4xx/5xx, некорректный JSON
+    }
+
+    /**
+     * @param model модель
+     * @param completion разобранный ответ GigaChat
+     * @return успешный результат
+     */
+    public static ChatResult success(String model, ChatCompletion completion) {
+        return new ChatResult(Status.OK, completion.content(), completion.finishReason(), completion.usage(), model, 0, null);
+    }
+
+    /**
+     * @param model модель, к которой относится ключ кэша
+     * @param content ответ из кэша
+     * @return успешный результат без расхода токенов
+     */
+    public static ChatResult cached(String model, String content) {
+        return new ChatResult(Status.OK, content, null, TokenUsage.EMPTY, model, 0, null);
+    }
+
+    /**
+     * @param status исход запроса
+     * @param model модель
+     * @param httpStatus HTTP-статус ошибки или 0
+     * @param error исходная ошибка
+     * @return неуспешный результат
+     */
+    public static ChatResult failure(Status status, String model, int httpStatus, Throwable error) {
+        return new ChatResult(status, null, null, TokenUsage.EMPTY, model, httpStatus, error);
+    }
+
+    /**
+     * @return true, если ответ получен
+     */
+    public boolean isSuccess() {
+        return status == Status.OK;
+    }
+}
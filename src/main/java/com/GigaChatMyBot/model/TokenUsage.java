@@ -0,0 +1,14 @@
+package com.GigaChatMyBot.model;
+
+/**
+ * Расход токенов на один запрос к GigaChat (поле usage ответа).
+ * @param promptTokens токены запроса
+ * @param completionTokens токены ответа
+ * @param totalTokens всего токенов
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public record TokenUsage(int promptTokens, int completionTokens, int totalTokens) {
+    // Пустое значение, если сервер не прислал usage
+    public static final TokenUsage EMPTY = new TokenUsage(0, 0, 0);
+}
@@ -0,0 +1,92 @@
+package com.GigaChatMyBot.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Адаптивный ограничитель запросов к внешнему API (AIMD поверх TokenBucket).
+ * Каждый успешный запрос немного повышает скорость, ответ 429 снижает её вдвое
+ * и приостанавливает выдачу на время из Retry-After (или на секунду, если заголовка нет).
+ * Снижение происходит не чаще раза в секунду, чтобы пачка одновременных 429 не обрушила скорость до минимума.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class AdaptiveRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveRateLimiter.class); // Логгер для изменений скорости
+    private static final double DECREASE_FACTOR = 0.5; // Во сколько раз снижать скорость после 429
+    private static final long DEFAULT_BACKOFF_MILLIS = 1000; // Пауза после 429 без Retry-After
+    private static final long DECREASE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1); // Минимальный интервал между снижениями
+
+    private final TokenBucket bucket; // Корзина токенов
+    private final double minRate; // Нижняя граница скорости
+    private final double maxRate; // Верхняя граница скорости
+    private final double increaseStep; // Прибавка скорости за каждый успешный запрос
+    private long lastDecreaseNanos; // Когда скорость снижалась последний раз
+
+    /**
+     * Конструктор.
+     * @param initialRate начальная скорость, запросов в секунду
+     * @param minRate нижняя граница скорости
+     * @param maxRate верхняя граница скорости
+     */
+    public AdaptiveRateLimiter(double initialRate, double minRate, double maxRate) {
+        this.bucket = new TokenBucket(initialRate, Math.max(1, initialRate));
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.increaseStep = Math.max(0.01, maxRate / 100);
+        this.lastDecreaseNanos = System.nanoTime() - DECREASE_WINDOW_NANOS;
+    }
+
+    /**
+     * Резервирует разрешение на запрос сразу, а ждать его предлагает асинхронно, не занимая поток.
+     * @param timeoutMillis максимальное время ожидания
+     * @return future, завершающийся, когда запрос можно выполнять;
+     * с RateLimitExceededException, если ждать пришлось бы дольше таймаута
+     */
+    public CompletableFuture<Void> whenAllowed(long timeoutMillis) {
+        long waitNanos = bucket.reserve(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        if (waitNanos < 0) {
+            return CompletableFuture.failedFuture(
+                    new RateLimitExceededException("Очередь к API переполнена: ожидание больше " + timeoutMillis + " мс"));
+        }
+        if (waitNanos == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Учитывает успешный запрос: скорость растёт на небольшой шаг до верхней границы.
+     */
+    public synchronized void onSuccess() {
+        double rate = bucket.getRate();
+        if (rate < maxRate) {
+            bucket.setRate(Math.min(maxRate, rate + increaseStep));
+        }
+    }
+
+    /**
+     * Учитывает ответ 429: снижает скорость и приостанавливает запросы.
+     * @param retryAfterMillis значение Retry-After или -1, если его нет
+     */
+    public synchronized void onThrottled(long retryAfterMillis) {
+        long now = System.nanoTime();
+        long pauseMillis = (retryAfterMillis > 0) ? retryAfterMillis : DEFAULT_BACKOFF_MILLIS;
+        bucket.pauseUntil(now + TimeUnit.MILLISECONDS.toNanos(pauseMillis));
+        if (now - lastDecreaseNanos >= DECREASE_WINDOW_NANOS) {
+            lastDecreaseNanos = now;
+            bucket.setRate(Math.max(minRate, bucket.getRate() * DECREASE_FACTOR));
+        }
+        logger.warn("API ответил 429: пауза {} мс, скорость снижена до {} запр/с", pauseMillis,
+                String.format("%.2f", bucket.getRate()));
+    }
+
+    /**
+     * @return текущая скорость, запросов в секунду
+     */
+    public double getRate() {
+        return bucket.getRate();
+    }
+}
@@ -0,0 +1,300 @@
+package com.GigaChatMyBot.ratelimit;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Планировщик запросов к GigaChat с взвешенной честной очередью (weighted fair queueing) по chatId.
+ * Одновременно выполняется не больше maxConcurrency запросов, остальные ждут в очереди.
+ * Каждый чат — отдельный поток заявок; заявка получает виртуальное время окончания
+ * finish = max(V, finish предыдущей заявки чата) + cost / weight, и первой выполняется заявка с наименьшим finish.
+ * Стоимость — оценка токенов запроса, поэтому короткие вопросы проходят раньше длинных,
+ * а чат, присылающий длинные промпты подряд, получает свою долю, но не вытесняет остальных.
+ * Чаты администраторов получают больший вес. У чата не может выполняться больше maxInFlightPerChat запросов сразу.
+ * Заявка, прождавшая дольше maxWaitMillis, или пришедшая при полной очереди, сразу отклоняется
+ * RateLimitExceededException, чтобы пользователь быстро получил ответ «занято».
+ * Класс потокобезопасен; будущие заявок завершаются вне блокировки.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public final class FairRequestScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(FairRequestScheduler.class); // Логгер для отказов
+
+    private final int maxConcurrency; // Сколько запросов выполняется одновременно
+    private final int maxInFlightPerChat; // Сколько запросов одного чата выполняется одновременно
+    private final long maxWaitMillis; // Сколько заявка может ждать в очереди
+    private final int maxQueued; // Сколько заявок может ждать всего
+    private final Set<Long> adminChatIds; // Чаты администраторов
+    private final double adminWeight; // Вес чатов администраторов (у остальных 1)
+    private final BotMetrics metrics; // Время ожидания в очереди
+
+    private final Map<Long, Flow> flows = new HashMap<>(); // Чаты с заявками в очереди или в работе
+    private final PriorityQueue<Flow> ready = new PriorityQueue<>(Comparator.comparingDouble(Flow::headFinish)); // Чаты, чью первую заявку можно запустить
+    private double virtualTime; // Виртуальное время: начало последней запущенной заявки
+    private int active; // Запросы, выполняемые сейчас
+    private int queued; // Заявки, ждущие в очереди
+
+    private final AtomicLong rejectedQueueFull = new AtomicLong(); // Отказы из-за переполненной очереди
+    private final AtomicLong rejectedTimeout = new AtomicLong(); // Отказы из-за слишком долгого ожидания
+
+    /**
+     * Конструктор.
+     * @param maxConcurrency сколько запросов выполняется одновременно
+     * @param maxInFlightPerChat сколько запросов одного чата выполняется одновременно
+     * @param maxWaitMillis сколько заявка может ждать в очереди
+     * @param maxQueued сколько заявок может ждать всего
+     * @param adminChatIds чаты администраторов
+     * @param adminWeight вес чатов администраторов
+     * @param metrics метрики очереди
+     */
+    public FairRequestScheduler(int maxConcurrency, int maxInFlightPerChat, long maxWaitMillis, int maxQueued,
+                                Set<Long> adminChatIds, double adminWeight, BotMetrics metrics) {
+        this.maxConcurrency = maxConcurrency;
+        this.maxInFlightPerChat = maxInFlightPerChat;
+        this.maxWaitMillis = maxWaitMillis;
+        this.maxQueued = maxQueued;
+        this.adminChatIds = Set.copyOf(adminChatIds);
+        this.adminWeight = adminWeight;
+        this.metrics = metrics;
+        metrics.gauge("gigachat.scheduler.queued", "Запросы к GigaChat, ждущие в очереди планировщика", this,
+                FairRequestScheduler::queued);
+        metrics.gauge("gigachat.scheduler.active", "Запросы к GigaChat, выпущенные планировщиком", this,
+                FairRequestScheduler::active);
+        metrics.gauge("gigachat.scheduler.chats", "Чаты с запросами в очереди или в работе", this,
+                FairRequestScheduler::chats);
+        metrics.counter("gigachat.scheduler.rejections", "Запросы, отклонённые планировщиком", "reason", "queue_full",
+                rejectedQueueFull, AtomicLong::get);
+        metrics.counter("gigachat.scheduler.rejections", "Запросы, отклонённые планировщиком", "reason", "timeout",
+                rejectedTimeout, AtomicLong::get);
+    }
+
+    /**
+     * Ставит заявку в очередь чата.
+     * Отмена возвращённого future, пока заявка ждёт, убирает её из очереди.
+     * @param chatId идентификатор чата
+     * @param cost стоимость запроса (оценка токенов)
+     * @return future с разрешением, которое нужно освободить после запроса;
+     * с RateLimitExceededException, если очередь полна или ожидание превысило maxWaitMillis
+     */
+    public CompletableFuture<Permit> acquire(long chatId, int cost) {
+        Entry entry;
+        List<Entry> started;
+        synchronized (this) {
+            if (queued >= maxQueued) {
+                rejectedQueueFull.incrementAndGet();
+                logger.warn("Запрос chatId={} отклонён: очередь к GigaChat переполнена ({} заявок)", chatId, queued);
+                return CompletableFuture.failedFuture(new RateLimitExceededException(
+                        "Очередь к GigaChat переполнена: " + queued + " заявок"));
+            }
+            Flow flow = flows.computeIfAbsent(chatId, Flow::new);
+            double start = Math.max(virtualTime, flow.lastFinish);
+            entry = new Entry(flow, start, start + Math.max(1, cost) / weight(chatId));
+            flow.lastFinish = entry.finish;
+            flow.queue.add(entry);
+            queued++;
+            makeReady(flow);
+            started = dispatch();
+        }
+        watch(entry);
+        start(started);
+        return entry.future;
+    }
+
+    /**
+     * @param chatId идентификатор чата
+     * @return вес чата: у администраторов adminWeight, у остальных 1
+     */
+    public double weight(long chatId) {
+        return adminChatIds.contains(chatId) ? adminWeight : 1;
+    }
+
+    /**
+     * Отклоняет заявку по таймауту и убирает из очереди заявку, future которой завершён до запуска (таймаут, отмена).
+     */
+    private void watch(Entry entry) {
+        CompletableFuture<Void> deadline = new CompletableFuture<Void>()
+                .completeOnTimeout(null, maxWaitMillis, TimeUnit.MILLISECONDS);
+        deadline.thenRun(() -> {
+            if (entry.future.completeExceptionally(new RateLimitExceededException(
+                    "Очередь к GigaChat: ожидание больше " + maxWaitMillis + " мс"))) {
+                rejectedTimeout.incrementAndGet();
+                logger.warn("Запрос chatId={} отклонён: ожидание в очереди больше {} мс", entry.flow.chatId, maxWaitMillis);
+            }
+        });
+        entry.future.whenComplete((permit, error) -> {
+            deadline.cancel(false);
+            if (error != null) {
+                abandon(entry);
+            }
+        });
+    }
+
+    private synchronized void abandon(Entry entry) {
+        if (entry.started) {
+            return;
+        }
+        Flow flow = entry.flow;
+        boolean rekey = flow.inReady && flow.queue.peek() == entry; // Ключ чата в куче — finish его первой заявки
+        if (rekey) {
+            ready.remove(flow);
+            flow.inReady = false;
+        }
+        flow.queue.remove(entry);
+        queued--;
+        if (rekey) {
+            makeReady(flow);
+        }
+        forgetIfIdle(flow);
+    }
+
+    /**
+     * Освобождает место запроса и запускает следующие заявки.
+     */
+    private void release(Flow flow) {
+        List<Entry> started;
+        synchronized (this) {
+            active--;
+            flow.inFlight--;
+            makeReady(flow);
+            forgetIfIdle(flow);
+            started = dispatch();
+        }
+        start(started);
+    }
+
+    /**
+     * Выбирает заявки для запуска, пока есть свободные места. Вызывается под блокировкой.
+     * @return заявки, future которых нужно завершить вне блокировки
+     */
+    private List<Entry> dispatch() {
+        List<Entry> started = List.of();
+        while (active < maxConcurrency && !ready.isEmpty()) {
+            Flow flow = ready.poll();
+            flow.inReady = false;
+            Entry entry = flow.queue.poll();
+            entry.started = true;
+            queued--;
+            active++;
+            flow.inFlight++;
+            virtualTime = Math.max(virtualTime, entry.start);
+            makeReady(flow);
+            if (started.isEmpty()) {
+                started = new ArrayList<>();
+            }
+            started.add(entry);
+        }
+        return started;
+    }
+
+    /**
+     * Отдаёт разрешения запущенным заявкам. Если заявку успели отменить, место сразу освобождается.
+     */
+    private void start(List<Entry> started) {
+        for (Entry entry : started) {
+            metrics.recordSchedulerWait(System.nanoTime() - entry.enqueuedNanos);
+            Permit permit = new Permit(entry.flow);
+            if (!entry.future.complete(permit)) {
+                permit.release();
+            }
+        }
+    }
+
+    /**
+     * Ставит чат в число готовых, если у него есть заявки и не исчерпан лимит одновременных запросов.
+     */
+    private void makeReady(Flow flow) {
+        if (!flow.inReady && !flow.queue.isEmpty() && flow.inFlight < maxInFlightPerChat) {
+            flow.inReady = true;
+            ready.add(flow);
+        }
+    }
+
+    private void forgetIfIdle(Flow flow) {
+        if (flow.queue.isEmpty() && flow.inFlight == 0) {
+            flows.remove(flow.chatId, flow);
+        }
+    }
+
+    public synchronized int queued() {
+        return queued;
+    }
+
+    public synchronized int active() {
+        return active;
+    }
+
+    public synchronized int chats() {
+        return flows.size();
+    }
+
+    /**
+     * Разрешение на запрос к GigaChat. Освобождается ровно один раз; повторные вызовы release ничего не делают.
+     */
+    public final class Permit {
+        private final Flow flow; // Чат, которому выдано разрешение
+        private final AtomicBoolean released = new AtomicBoolean(); // Освобождено ли разрешение
+
+        private Permit(Flow flow) {
+            this.flow = flow;
+        }
+
+        /**
+         * Освобождает место запроса.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                FairRequestScheduler.this.release(flow);
+            }
+        }
+    }
+
+    /**
+     * Заявки одного чата.
+     */
+    private static final class Flow {
+        private final long chatId; // Идентификатор чата
+        private final ArrayDeque<Entry> queue = new ArrayDeque<>(); // Заявки в порядке прихода
+        private double lastFinish; // Виртуальное время окончания последней заявки
+        private int inFlight; // Запросы чата, выполняемые сейчас
+        private boolean inReady; // Находится ли чат в очереди готовых
+
+        private Flow(long chatId) {
+            this.chatId = chatId;
+        }
+
+        private double headFinish() {
+            return queue.peek().finish;
+        }
+    }
+
+    /**
+     * Заявка на запрос.
+     */
+    private static final class Entry {
+        private final Flow flow; // Чат заявки
+        private final double start; // Виртуальное время начала
+        private final double finish; // Виртуальное время окончания
+        private final long enqueuedNanos = System.nanoTime(); // Когда заявка встала в очередь
+        private final CompletableFuture<Permit> future = new CompletableFuture<>(); // Разрешение для вызывающего кода
+        private boolean started; // Заявка выпущена из очереди
+
+        private Entry(Flow flow, double start, double finish) {
+            this.flow = flow;
+            this.start = start;
+            this.finish = finish;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.GigaChatMyBot.ratelimit;
+
+import java.io.IOException;
+
+/**
+ * Запрос не выполнен, потому что разрешения ограничителя пришлось бы ждать слишком долго.
+ * Вызывающий код должен быстро ответить пользователю «занято, попробуйте позже», а не копить ожидающие потоки.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class RateLimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L; // Версия сериализованной формы
+
+    /**
+     * Конструктор.
+     * @param message описание причины
+     */
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
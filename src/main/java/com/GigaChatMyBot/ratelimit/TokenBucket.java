@@ -0,0 +1,107 @@
+package com.GigaChatMyBot.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket с резервированием: каждый вызов забирает один токен, при нехватке токенов
+ * уходит «в долг» и получает время, через которое можно выполнять запрос.
+ * Если ждать пришлось бы дольше таймаута — токен не забирается и вызов получает отказ.
+ * Скорость можно менять на лету, а выдачу — приостанавливать (например, по Retry-After).
+ * Класс потокобезопасен; ожидание выполняется вне блокировки, поэтому не держит виртуальные потоки на мониторе.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class TokenBucket {
+    private final double burst; // Ёмкость: сколько запросов можно выполнить подряд без ожидания
+    private double permitsPerSecond; // Скорость пополнения
+    private double tokens; // Текущее число токенов; отрицательное — уже выданные в долг
+    private long lastRefillNanos; // Момент последнего пополнения
+    private long pausedUntilNanos; // До этого момента токены не пополняются
+
+    /**
+     * Конструктор. Корзина создаётся полной.
+     * @param permitsPerSecond скорость пополнения, запросов в секунду
+     * @param burst ёмкость корзины
+     */
+    public TokenBucket(double permitsPerSecond, double burst) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = lastRefillNanos;
+    }
+
+    /**
+     * Забирает токен, только если он доступен прямо сейчас.
+     * @return false, если токенов нет
+     */
+    public boolean tryAcquire() {
+        return reserve(System.nanoTime(), 0) == 0;
+    }
+
+    /**
+     * Резервирует токен без ожидания.
+     * @param nowNanos текущее время (System.nanoTime())
+     * @param timeoutNanos максимально допустимое ожидание
+     * @return через сколько наносекунд можно выполнять запрос или -1, если дольше таймаута
+     */
+    public synchronized long reserve(long nowNanos, long timeoutNanos) {
+        refill(nowNanos);
+        long waitNanos = Math.max(0, pausedUntilNanos - nowNanos);
+        if (tokens < 1) {
+            waitNanos += (long) Math.ceil((1 - tokens) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+        if (waitNanos > timeoutNanos) {
+            return -1;
+        }
+        tokens -= 1;
+        return waitNanos;
+    }
+
+    /**
+     * Возвращает токен, зарезервированный, но не использованный.
+     */
+    public synchronized void refund() {
+        tokens = Math.min(burst, tokens + 1);
+    }
+
+    /**
+     * Меняет скорость пополнения.
+     * @param permitsPerSecond новая скорость, запросов в секунду
+     */
+    public synchronized void setRate(double permitsPerSecond) {
+        refill(System.nanoTime());
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    public synchronized double getRate() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Приостанавливает выдачу токенов: до указанного момента корзина не пополняется,
+     * а накопленный запас сгорает, чтобы после паузы не ушла пачка запросов разом.
+     * @param untilNanos момент окончания паузы (System.nanoTime())
+     */
+    public synchronized void pauseUntil(long untilNanos) {
+        refill(System.nanoTime());
+        pausedUntilNanos = Math.max(pausedUntilNanos, untilNanos);
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * @return true, если корзина полная, то есть давно не использовалась
+     */
+    public synchronized boolean isFull() {
+        refill(System.nanoTime());
+        return tokens >= burst;
+    }
+
+    private void refill(long nowNanos) {
+        long from = Math.max(lastRefillNanos, pausedUntilNanos);
+        if (nowNanos > from) {
+            tokens = Math.min(burst, tokens + (nowNanos - from) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        }
+        lastRefillNanos = Math.max(lastRefillNanos, nowNanos);
+    }
+}
@@ -0,0 +1,95 @@
+package com.GigaChatMyBot.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Настройки, заданные в чате командами (например, /cache on|off).
+ * Как и история диалогов, хранятся в LRU-порядке: настройка давно неактивного чата
+ * вытесняется по времени простоя, а при превышении лимита числа чатов — самые старые,
+ * после чего чат снова работает с глобальной настройкой.
+ * @param <V> тип значения настройки
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class ChatOverrides<V> {
+    private final int maxChats; // Максимальное число чатов с настройкой
+    private final long idleTimeoutMillis; // Через сколько простоя настройка чата вытесняется
+    private final LinkedHashMap<Long, Setting<V>> chats = new LinkedHashMap<>(256, 0.75f, true); // Чаты в LRU-порядке
+
+    /**
+     * Конструктор.
+     * @param maxChats максимальное число чатов с настройкой
+     * @param idleTimeoutMillis время простоя, после которого настройка вытесняется
+     */
+    ChatOverrides(int maxChats, long idleTimeoutMillis) {
+        this.maxChats = maxChats;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * @param chatId идентификатор чата
+     * @param defaultValue значение, если настройка для чата не задана или вытеснена
+     * @return настройка чата
+     */
+    synchronized V getOrDefault(long chatId, V defaultValue) {
+        Setting<V> setting = chats.get(chatId);
+        if (setting == null) {
+            return defaultValue;
+        }
+        long now = System.currentTimeMillis();
+        if (now - setting.lastAccessMillis > idleTimeoutMillis) {
+            chats.remove(chatId);
+            return defaultValue;
+        }
+        setting.lastAccessMillis = now;
+        return setting.value;
+    }
+
+    /**
+     * Задаёт настройку чата.
+     * @param chatId идентификатор чата
+     * @param value новое значение
+     */
+    synchronized void put(long chatId, V value) {
+        long now = System.currentTimeMillis();
+        chats.put(chatId, new Setting<>(value, now));
+        evict(now);
+    }
+
+    /**
+     * @return число чатов с настройкой
+     */
+    synchronized int size() {
+        return chats.size();
+    }
+
+    /**
+     * Вытесняет настройки, начиная с давно неиспользуемых: простаивающие дольше idleTimeout
+     * и лишние сверх лимита числа чатов.
+     */
+    private void evict(long now) {
+        Iterator<Setting<V>> iterator = chats.values().iterator();
+        while (iterator.hasNext()) {
+            Setting<V> eldest = iterator.next();
+            if (now - eldest.lastAccessMillis <= idleTimeoutMillis && chats.size() <= maxChats) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Значение настройки и время последнего обращения к нему.
+     */
+    private static final class Setting<V> {
+        private final V value; // Значение настройки
+        private long lastAccessMillis; // Время последнего обращения
+
+        Setting(V value, long lastAccessMillis) {
+            this.value = value;
+            this.lastAccessMillis = lastAccessMillis;
+        }
+    }
+}
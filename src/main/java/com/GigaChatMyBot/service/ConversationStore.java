@@ -0,0 +1,41 @@
+package com.GigaChatMyBot.service;
+
+import com.GigaChatMyBot.model.ChatMessage;
+import java.util.List;
+
+/**
+ * Хранилище истории диалогов по chatId.
+ * Реализация сама ограничивает историю каждого чата бюджетом токенов,
+ * поэтому history() всегда возвращает контекст разумного размера.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public interface ConversationStore {
+
+    /**
+     * Возвращает сохранённые реплики чата от старых к новым (без системного промпта).
+     * @param chatId идентификатор чата
+     * @return копия истории; пустой список, если истории нет
+     */
+    List<ChatMessage> history(long chatId);
+
+    /**
+     * Добавляет реплики в конец истории чата и обрезает её до бюджета токенов.
+     * @param chatId идентификатор чата
+     * @param messages реплики в порядке следования
+     */
+    void append(long chatId, List<ChatMessage> messages);
+
+    /**
+     * Удаляет историю чата.
+     * @param chatId идентификатор чата
+     */
+    void clear(long chatId);
+
+    /**
+     * Сохраняет накопленные изменения на постоянный носитель. Вызывается при остановке,
+     * когда все принятые сообщения обработаны. Хранилищу в памяти сохранять нечего.
+     */
+    default void flush() {
+    }
+}
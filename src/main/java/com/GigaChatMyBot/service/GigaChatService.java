@@ -1,22 +1,77 @@
 package com.GigaChatMyBot.service;
 
+import com.GigaChatMyBot.gigachat.CircuitOpenException;
+import com.GigaChatMyBot.gigachat.Futures;
 import com.GigaChatMyBot.gigachat.GigaChatAPI;
+import com.GigaChatMyBot.gigachat.GigaChatApiException;
+import com.GigaChatMyBot.gigachat.GigaChatTokenManager;
+import com.GigaChatMyBot.gigachat.HttpClientSettings;
+import com.GigaChatMyBot.model.ChatCompletion;
+import com.GigaChatMyBot.model.ChatMessage;
+import com.GigaChatMyBot.model.ChatResult;
 import com.GigaChatMyBot.model.GigaChatModel;
 import com.GigaChatMyBot.config.GigaChatSpringConfig;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.ratelimit.AdaptiveRateLimiter;
+import com.GigaChatMyBot.ratelimit.FairRequestScheduler;
+import com.GigaChatMyBot.ratelimit.RateLimitExceededException;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import java.util.UUID;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Сервис для взаимодействия с API GigaChat.
  * Обрабатывает запросы пользователей, получая ответы от GigaChat через GigaChatAPI.
+ * Основной API асинхронный (sendAsync, sendStreamingAsync): тысячи запросов могут ждать ответа,
+ * не занимая потоков; askGigaChat и askGigaChatStreaming — блокирующие обёртки для бота.
  * @author vladimir_shi
  * @since 24.09.2025
  */
 @Service  // Аннотирует класс как сервис Spring для авто-инъекции в другие компоненты
 public class GigaChatService {
     private final GigaChatAPI gigaChatAPI;  // API-клиент для общения с GigaChat
+    private final GigaChatTokenManager tokenManager;  // Общий для всех потоков кэш OAuth-токена
+    private final boolean streamingEnabled;  // Отвечать ли в потоковом режиме (SSE)
+    private final ConversationStore conversationStore;  // История диалогов по chatId
+    private final ChatMessage systemPrompt;  // Системный промпт (null — не задан)
+    private final ModelRouter modelRouter;  // Выбор модели по длине вопроса, настройке чата и здоровью моделей
+    private final ResponseCache responseCache;  // Кэш ответов на вопросы без контекста
+    private final boolean cacheEnabledByDefault;  // Глобальная настройка кэша
+    private final ChatOverrides<Boolean> cacheOverrides;  // Настройка кэша, заданная в чате командой /cache
+    private final AdaptiveRateLimiter rateLimiter;  // Ограничитель частоты запросов к Chat API, подстраивается по 429
+    private final long rateLimitMaxWaitMillis;  // Сколько ждать очереди к Chat API, прежде чем ответить «занято»
+    private final FairRequestScheduler scheduler;  // Честная очередь запросов к Chat API по чатам
+    private final Duration answerTimeout;  // Сколько всего ждать ответа, включая очередь, повторы и запасную модель
+    private final BotMetrics metrics;  // Метрики задержек, токенов и ошибок
+    private final AtomicInteger inFlight = new AtomicInteger();  // Запросы к Chat API, выполняемые сейчас
+
+    private static final String BUSY_MESSAGE = "GigaChat сейчас перегружен, попробуйте повторить запрос позже.";  // Ответ при переполнении очереди или 429
+    private static final String UNAVAILABLE_MESSAGE = "GigaChat временно недоступен, попробуйте повторить запрос позже.";  // Ответ, пока circuit breaker разомкнут
+    private static final String ERROR_MESSAGE = "Не удалось получить ответ от GigaChat, попробуйте повторить запрос позже.";  // Ответ на прочие ошибки; подробности — только в логе
+    private static final int MAX_THROTTLED_ATTEMPTS = 3;  // Сколько раз пробовать запрос, получивший 429
+    private static final int ATTACHMENT_TOKENS = 1000;  // Оценка токенов на файл в вопросе — для стоимости в очереди планировщика
 
     private static final Logger logger = LoggerFactory.getLogger(GigaChatService.class);  // Логгер для сообщений об инициализации и ошибках
 
@@ -24,8 +79,10 @@ public class GigaChatService {
      * Конструктор сервиса GigaChatService.
      * Инициализирует API-клиент GigaChatAPI с конфигурацией из GigaChatSpringConfig.
      * @param springConfig - конфигурация GigaChatSpringConfig
+     * @param conversationStore - хранилище истории диалогов
+     * @param metrics - метрики задержек, токенов и ошибок
      */
-    public GigaChatService(GigaChatSpringConfig springConfig) {
+    public GigaChatService(GigaChatSpringConfig springConfig, ConversationStore conversationStore, BotMetrics metrics) {
         GigaChatModel config = new GigaChatModel(
                 springConfig.getOauthUrl(),
                 springConfig.getChatUrl(),
@@ -33,31 +90,733 @@ public class GigaChatService {
                 springConfig.getScope(),
                 springConfig.getModelName()
         );
-        this.gigaChatAPI = new GigaChatAPI(config);
-        logger.info("GigaChatService инициализирован с моделью: {}", config.getModelName());
+        HttpClientSettings httpSettings = new HttpClientSettings(
+                Duration.ofMillis(springConfig.getHttpConnectTimeoutMs()),
+                Duration.ofSeconds(springConfig.getHttpRequestTimeoutSeconds()),
+                Duration.ofSeconds(springConfig.getHttpExchangeTimeoutSeconds()),
+                springConfig.getHttpMaxRetries(),
+                Duration.ofMillis(springConfig.getHttpRetryBaseDelayMs()),
+                Duration.ofMillis(springConfig.getHttpRetryMaxDelayMs()),
+                springConfig.getCircuitFailureThreshold(),
+                Duration.ofSeconds(springConfig.getCircuitOpenSeconds()));
+        this.gigaChatAPI = new GigaChatAPI(config, httpSettings, metrics);
+        this.tokenManager = new GigaChatTokenManager(gigaChatAPI, springConfig.getTokenRefreshMarginSeconds() * 1000);
+        this.streamingEnabled = springConfig.isStreamingEnabled();
+        this.conversationStore = conversationStore;
+        String system = springConfig.getSystemPrompt();
+        this.systemPrompt = (system == null || system.isBlank()) ? null : ChatMessage.system(system);
+        this.modelRouter = new ModelRouter(
+                parseModels(springConfig.getRoutingModels(), config.getModelName()),
+                springConfig.getRoutingShortPromptChars(),
+                springConfig.getRoutingLongPromptChars(),
+                springConfig.getRoutingMaxP95Ms(),
+                springConfig.getRoutingMaxErrorRate(),
+                springConfig.getCircuitFailureThreshold(),
+                springConfig.getCircuitOpenSeconds() * 1000,
+                metrics);
+        this.responseCache = new ResponseCache(
+                springConfig.getCacheMaxEntries(),
+                springConfig.getCacheMaxMemoryMb() * 1024L * 1024L,
+                springConfig.getCacheMaxEntryKb() * 1024,
+                springConfig.getCacheTtlMinutes() * 60_000L);
+        this.cacheEnabledByDefault = springConfig.isCacheEnabled();
+        this.cacheOverrides = new ChatOverrides<>(
+                springConfig.getHistoryMaxChats(),
+                springConfig.getHistoryIdleMinutes() * 60_000L);
+        this.rateLimiter = new AdaptiveRateLimiter(
+                springConfig.getRateLimitPerSecond(),
+                springConfig.getRateLimitMinPerSecond(),
+                springConfig.getRateLimitMaxPerSecond());
+        this.rateLimitMaxWaitMillis = springConfig.getRateLimitMaxWaitMs();
+        this.scheduler = new FairRequestScheduler(
+                springConfig.getSchedulerMaxConcurrency(),
+                springConfig.getSchedulerMaxInFlightPerChat(),
+                springConfig.getSchedulerMaxWaitMs(),
+                springConfig.getSchedulerMaxQueued(),
+                parseChatIds(springConfig.getSchedulerAdminChatIds()),
+                springConfig.getSchedulerAdminWeight(),
+                metrics);
+        this.answerTimeout = Duration.ofSeconds(springConfig.getAnswerTimeoutSeconds());
+        this.metrics = metrics;
+        registerMetrics();
+        logger.info("GigaChatService инициализирован с моделями: {}", modelRouter.getModels());
+    }
+
+    /**
+     * Разбирает список моделей для маршрутизации.
+     * @param models модели через запятую (может быть пустым)
+     * @param defaultModel модель, если список пуст
+     * @return модели от быстрой к сильной
+     */
+    private static List<String> parseModels(String models, String defaultModel) {
+        List<String> parsed = (models == null) ? List.of() : Arrays.stream(models.split(","))
+                .map(String::strip)
+                .filter(name -> !name.isEmpty())
+                .distinct()
+                .toList();
+        return parsed.isEmpty() ? List.of(defaultModel) : parsed;
+    }
+
+    /**
+     * Разбирает список chatId через запятую.
+     * @param chatIds идентификаторы чатов (может быть пустым)
+     * @return множество идентификаторов
+     */
+    private static Set<Long> parseChatIds(String chatIds) {
+        return (chatIds == null) ? Set.of() : Arrays.stream(chatIds.split(","))
+                .map(String::strip)
+                .filter(id -> !id.isEmpty())
+                .map(Long::parseLong)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Регистрирует показатели сервиса: запросы в работе, скорость ограничителя и счётчики кэша ответов.
+     */
+    private void registerMetrics() {
+        metrics.gauge("gigachat.requests.in_flight", "Запросы к Chat API, выполняемые сейчас", inFlight, AtomicInteger::get);
+        metrics.gauge("gigachat.rate_limit.rate", "Текущая скорость адаптивного ограничителя, запросов в секунду",
+                rateLimiter, AdaptiveRateLimiter::getRate);
+        metrics.gauge("bot.cache.size", "Записи в кэше ответов", responseCache, ResponseCache::size);
+        metrics.gauge("bot.cache.bytes", "Оценочный объём кэша ответов", responseCache, ResponseCache::usedBytes);
+        metrics.counter("bot.cache.requests", "Обращения к кэшу ответов", "result", "hit", responseCache, ResponseCache::hits);
+        metrics.counter("bot.cache.requests", "Обращения к кэшу ответов", "result", "miss", responseCache, ResponseCache::misses);
+        metrics.counter("bot.cache.requests", "Обращения к кэшу ответов", "result", "coalesced", responseCache,
+                ResponseCache::coalesced);
+        metrics.counter("bot.cache.evictions", "Записи, вытесненные из кэша ответов", "reason", "size_or_ttl",
+                responseCache, ResponseCache::evictions);
     }
 
     /**
-     * Отправляет prompt в GigaChat и возвращает ответ.
-     * Генерирует уникальный rqUid для запроса, получает token и вызывает API.
+     * Отправляет prompt в GigaChat вместе с историей чата и возвращает ответ.
+     * Синхронная обёртка над {@link #sendAsync(long, String)}: ошибки превращаются в текст для пользователя.
+     * Прерывание ожидающего потока отменяет запрос.
+     * @param chatId идентификатор чата
      * @param prompt текст запроса
-     * @return ответ от GigaChat
+     * @return ответ от GigaChat или текст ошибки
      */
-    public String askGigaChat(String prompt) {
-        logger.info("Метод askGigaChat вызван с prompt: {}", prompt);
+    public String askGigaChat(long chatId, String prompt) {
+        return askGigaChat(chatId, prompt, List.of());
+    }
+
+    /**
+     * Отправляет prompt вместе с файлами, загруженными в GigaChat, и возвращает ответ.
+     * @param chatId идентификатор чата
+     * @param prompt текст запроса
+     * @param attachments идентификаторы файлов в GigaChat (см. {@link #uploadFileAsync})
+     * @return ответ от GigaChat или текст ошибки
+     */
+    public String askGigaChat(long chatId, String prompt, List<String> attachments) {
+        logger.debug("Метод askGigaChat вызван для chatId={} с prompt: {}", chatId, prompt);
+        String response = replyText(await(chatId, sendAsync(chatId, prompt, attachments, answerTimeout)));
+        logger.debug("Ответ от GigaChat API: {}", response);
+        return response;
+    }
+
+    /**
+     * Асинхронно отправляет prompt в GigaChat с таймаутом по умолчанию (gigachat.answer-timeout-seconds).
+     * @param chatId идентификатор чата
+     * @param prompt текст запроса
+     * @return future с результатом
+     * @see #sendAsync(long, String, Duration)
+     */
+    public CompletableFuture<ChatResult> sendAsync(long chatId, String prompt) {
+        return sendAsync(chatId, prompt, answerTimeout);
+    }
+
+    /**
+     * Асинхронно отправляет prompt в GigaChat вместе с историей чата.
+     * Токен, очередь ограничителя, HTTP-обмен, повторы и переход на запасную модель выполняются цепочкой стадий
+     * CompletableFuture, поэтому запрос, ожидающий ответа, не занимает поток.
+     * Вопрос без истории может быть взят из кэша ответов; успешный обмен репликами сохраняется в историю чата.
+     * Отмена future прерывает HTTP-обмен, и обмен в историю не попадает. По истечении timeout запрос тоже
+     * прерывается, а future завершается результатом со статусом TIMEOUT.
+     * @param chatId идентификатор чата
+     * @param prompt текст запроса
+     * @param timeout сколько всего ждать ответа
+     * @return future с результатом; ошибки GigaChat передаются статусом результата, а не исключением
+     */
+    public CompletableFuture<ChatResult> sendAsync(long chatId, String prompt, Duration timeout) {
+        return sendAsync(chatId, prompt, List.of(), timeout);
+    }
+
+    /**
+     * Асинхронно отправляет prompt вместе с файлами, загруженными в GigaChat.
+     * Вопрос с файлами не кэшируется; в историю чата попадает только его текст.
+     * @param chatId идентификатор чата
+     * @param prompt текст запроса
+     * @param attachments идентификаторы файлов в GigaChat
+     * @param timeout сколько всего ждать ответа
+     * @return future с результатом
+     * @see #sendAsync(long, String, Duration)
+     */
+    public CompletableFuture<ChatResult> sendAsync(long chatId, String prompt, List<String> attachments, Duration timeout) {
+        AsyncCall call = new AsyncCall(chatId, timeout);
+        CompletableFuture<ChatResult> answer;
         try {
-            String rqUid = UUID.randomUUID().toString();
-            String accessToken = gigaChatAPI.getAccessToken(rqUid);
-            if (accessToken == null) {
-                logger.error("Не удалось получить access token");
-                return "Ошибка: не удалось получить access token";
+            List<ChatMessage> history = conversationStore.history(chatId);
+            List<ChatMessage> messages = buildMessages(history, prompt, attachments);
+            call.cost = estimateTokens(messages);
+            ModelRouter.Route route = modelRouter.route(chatId, prompt.length());
+            answer = attachments.isEmpty() && isCacheable(chatId, history)
+                    ? completeCached(call, route, prompt, messages)
+                    : complete(call, route, messages);
+        } catch (RuntimeException e) {
+            answer = CompletableFuture.failedFuture(e);
+        }
+        answer.whenComplete((result, error) -> finish(call, chatId, prompt, result, error));
+        return call.result;
+    }
+
+    /**
+     * Берёт ответ из кэша или выполняет запрос к Chat API. Если модель так и не была вызвана
+     * (ответ из кэша или от одновременного запроса), маршрутизатор освобождает выданное ей разрешение.
+     * Если одновременный запрос другого чата отменили, ответ загружается заново — уже в рамках этого запроса.
+     * Ответ кэшируется под моделью, которая его дала: после перехода на запасную модель — под её именем.
+     * @param call состояние запроса
+     * @param route выбранная модель и запасная
+     * @param prompt текст вопроса
+     * @param messages сообщения запроса
+     * @return future с результатом
+     */
+    private CompletableFuture<ChatResult> completeCached(AsyncCall call, ModelRouter.Route route, String prompt,
+                                                         List<ChatMessage> messages) {
+        AtomicReference<CompletableFuture<ChatResult>> loaded = new AtomicReference<>();
+        CompletableFuture<String> answer = responseCache.getAsync(ResponseCache.key(route.model(), prompt), () -> {
+            CompletableFuture<ChatResult> load = complete(call, route, messages);
+            loaded.set(load);
+            return load.thenApply(result -> new ResponseCache.Loaded(ResponseCache.key(result.model(), prompt), result.content()));
+        });
+        if (loaded.get() != null) {
+            return loaded.get();
+        }
+        return answer.handle((content, error) -> {
+            CompletableFuture<ChatResult> own = loaded.get();
+            if (own != null) {
+                return own; // Чужую загрузку отменили, и ответ загружен этим запросом
             }
-            String response = gigaChatAPI.sendChatRequest(accessToken, prompt);
-            logger.info("Ответ от GigaChat API: {}", response);
-            return response;
-        } catch (Exception e) {
-            logger.error("Ошибка в методе askGigaChat: {}", e.getMessage(), e);
-            return "Ошибка при вызове GigaChat: " + e.getMessage();
+            modelRouter.onSkipped(route.model());
+            return (error == null)
+                    ? CompletableFuture.completedFuture(ChatResult.cached(route.model(), content))
+                    : CompletableFuture.<ChatResult>failedFuture(error);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Выполняет обычный (не потоковый) запрос к Chat API.
+     * @param call состояние запроса
+     * @param route выбранная модель и запасная
+     * @param messages сообщения запроса
+     * @return future с результатом; с IOException, если в ответе нет текста или запрос не удался
+     */
+    private CompletableFuture<ChatResult> complete(AsyncCall call, ModelRouter.Route route, List<ChatMessage> messages) {
+        return sendRouted(call, route, (token, model) -> gigaChatAPI.requestChatCompletionAsync(token, model, messages),
+                () -> true).thenApply(result -> {
+                    if (result.content() == null) {
+                        throw Futures.wrap(new IOException("Не удалось найти ответ в JSON."));
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Отправляет prompt в GigaChat в потоковом режиме вместе с историей чата.
+     * Синхронная обёртка над {@link #sendStreamingAsync(long, String, Consumer)}.
+     * @param chatId идентификатор чата
+     * @param prompt текст запроса
+     * @param onDelta получатель фрагментов ответа
+     * @return полный ответ от GigaChat или текст ошибки
+     */
+    public String askGigaChatStreaming(long chatId, String prompt, Consumer<String> onDelta) {
+        return askGigaChatStreaming(chatId, prompt, List.of(), onDelta);
+    }
+
+    /**
+     * Потоковый вариант {@link #askGigaChat(long, String, List)}: вопрос вместе с файлами, загруженными в GigaChat.
+     * @param chatId идентификатор чата
+     * @param prompt текст запроса
+     * @param attachments идентификаторы файлов в GigaChat
+     * @param onDelta получатель фрагментов ответа
+     * @return полный ответ от GigaChat или текст ошибки
+     */
+    public String askGigaChatStreaming(long chatId, String prompt, List<String> attachments, Consumer<String> onDelta) {
+        logger.debug("Метод askGigaChatStreaming вызван для chatId={} с prompt: {}", chatId, prompt);
+        String response = replyText(await(chatId, sendStreamingAsync(chatId, prompt, attachments, onDelta, answerTimeout)));
+        logger.debug("Ответ от GigaChat API (stream): {}", response);
+        return response;
+    }
+
+    /**
+     * Асинхронно отправляет prompt в GigaChat в потоковом режиме с таймаутом по умолчанию.
+     * @param chatId идентификатор чата
+     * @param prompt текст запроса
+     * @param onDelta получатель фрагментов ответа
+     * @return future с результатом
+     * @see #sendStreamingAsync(long, String, Consumer, Duration)
+     */
+    public CompletableFuture<ChatResult> sendStreamingAsync(long chatId, String prompt, Consumer<String> onDelta) {
+        return sendStreamingAsync(chatId, prompt, onDelta, answerTimeout);
+    }
+
+    /**
+     * Асинхронно отправляет prompt в GigaChat в потоковом режиме вместе с историей чата.
+     * Фрагменты ответа передаются в onDelta по мере генерации (из потока HttpClient);
+     * ответ из кэша передаётся одним фрагментом. Отмена и таймаут — как в {@link #sendAsync(long, String, Duration)}.
+     * @param chatId идентификатор чата
+     * @param prompt текст запроса
+     * @param onDelta получатель фрагментов ответа
+     * @param timeout сколько всего ждать ответа
+     * @return future с результатом; content содержит полный текст ответа
+     */
+    public CompletableFuture<ChatResult> sendStreamingAsync(long chatId, String prompt, Consumer<String> onDelta,
+                                                            Duration timeout) {
+        return sendStreamingAsync(chatId, prompt, List.of(), onDelta, timeout);
+    }
+
+    /**
+     * Потоковый вариант {@link #sendAsync(long, String, List, Duration)}: вопрос вместе с файлами, загруженными в GigaChat.
+     * @param chatId идентификатор чата
+     * @param prompt текст запроса
+     * @param attachments идентификаторы файлов в GigaChat
+     * @param onDelta получатель фрагментов ответа
+     * @param timeout сколько всего ждать ответа
+     * @return future с результатом; content содержит полный текст ответа
+     */
+    public CompletableFuture<ChatResult> sendStreamingAsync(long chatId, String prompt, List<String> attachments,
+                                                            Consumer<String> onDelta, Duration timeout) {
+        AsyncCall call = new AsyncCall(chatId, timeout);
+        CompletableFuture<ChatResult> answer;
+        try {
+            List<ChatMessage> history = conversationStore.history(chatId);
+            ModelRouter.Route route = modelRouter.route(chatId, prompt.length());
+            ResponseCache.Key cacheKey = attachments.isEmpty() && isCacheable(chatId, history)
+                    ? ResponseCache.key(route.model(), prompt) : null;
+            String cached = (cacheKey != null) ? responseCache.getIfPresent(cacheKey) : null;
+            if (cached != null) {
+                modelRouter.onSkipped(route.model());
+                onDelta.accept(cached);
+                answer = CompletableFuture.completedFuture(ChatResult.cached(route.model(), cached));
+            } else {
+                List<ChatMessage> messages = buildMessages(history, prompt, attachments);
+                call.cost = estimateTokens(messages);
+                AtomicBoolean emitted = new AtomicBoolean();
+                Consumer<String> trackedDelta = delta -> {
+                    emitted.set(true);
+                    onDelta.accept(delta);
+                };
+                // На запасную модель можно перейти, только пока пользователь не увидел ни одного фрагмента
+                answer = sendRouted(call, route,
+                        (token, model) -> gigaChatAPI.streamChatRequestAsync(token, model, messages, trackedDelta),
+                        () -> !emitted.get());
+                if (cacheKey != null) {
+                    answer = answer.thenApply(result -> {
+                        if (!result.content().isEmpty()) {
+                            responseCache.put(ResponseCache.key(result.model(), prompt), result.content());
+                        }
+                        return result;
+                    });
+                }
+            }
+        } catch (RuntimeException e) {
+            answer = CompletableFuture.failedFuture(e);
+        }
+        answer.whenComplete((result, error) -> finish(call, chatId, prompt, result, error));
+        return call.result;
+    }
+
+    /**
+     * Завершает запрос: сохраняет успешный обмен в историю и передаёт результат вызывающему коду.
+     * Если запрос уже отменён или завершён по таймауту, обмен в историю не сохраняется:
+     * при вытеснении вопроса новым сообщением он войдёт в новый, склеенный.
+     */
+    private void finish(AsyncCall call, long chatId, String prompt, ChatResult result, Throwable error) {
+        ChatResult outcome = (error == null) ? result : failure(chatId, call.model, error);
+        if (outcome.isSuccess() && !outcome.content().isEmpty() && !call.result.isDone()) {
+            remember(chatId, prompt, outcome.content());
+        }
+        call.result.complete(outcome);
+    }
+
+    /**
+     * Превращает ошибку цепочки в типизированный результат и пишет её в лог.
+     * @param chatId идентификатор чата
+     * @param model последняя модель, к которой ушёл запрос
+     * @param error ошибка стадии
+     * @return неуспешный результат
+     */
+    private ChatResult failure(long chatId, String model, Throwable error) {
+        Throwable cause = Futures.unwrap(error);
+        if (cause instanceof CircuitOpenException) {
+            logger.warn("Запрос chatId={} отклонён: {}", chatId, cause.getMessage());
+            return ChatResult.failure(ChatResult.Status.UNAVAILABLE, model, 0, cause);
+        }
+        if (cause instanceof RateLimitExceededException) {
+            metrics.recordGigaChatError("rate_limited");
+            logger.warn("Запрос chatId={} отклонён: {}", chatId, cause.getMessage());
+            return ChatResult.failure(ChatResult.Status.RATE_LIMITED, model, 0, cause);
+        }
+        if (cause instanceof GigaChatApiException e) {
+            if (e.isRateLimited()) {
+                return ChatResult.failure(ChatResult.Status.RATE_LIMITED, model, e.getStatusCode(), e);
+            }
+            logger.error("Ошибка GigaChat для chatId={}: {} {}", chatId, e.getStatusCode(), e.getResponseBody());
+            return ChatResult.failure(ChatResult.Status.FAILED, model, e.getStatusCode(), e);
+        }
+        if (cause instanceof HttpTimeoutException) {
+            logger.warn("Запрос chatId={} не уложился в таймаут: {}", chatId, cause.getMessage());
+            return ChatResult.failure(ChatResult.Status.TIMEOUT, model, 0, cause);
+        }
+        if (cause instanceof CancellationException || cause instanceof InterruptedException) {
+            logger.debug("Запрос chatId={} отменён", chatId);
+            return ChatResult.failure(ChatResult.Status.FAILED, model, 0, cause);
         }
+        logger.error("Ошибка запроса к GigaChat для chatId={}: {}", chatId, cause.getMessage(), cause);
+        return ChatResult.failure(ChatResult.Status.FAILED, model, 0, cause);
+    }
+
+    /**
+     * Ждёт результат асинхронного запроса в синхронных обёртках. При прерывании потока отменяет запрос.
+     */
+    private ChatResult await(long chatId, CompletableFuture<ChatResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            return failure(chatId, null, e);
+        } catch (ExecutionException | CancellationException e) {
+            return failure(chatId, null, e);
+        }
+    }
+
+    /**
+     * Текст для пользователя: ответ GigaChat или короткое сообщение об ошибке без технических подробностей.
+     * @param result результат запроса
+     * @return текст ответа
+     */
+    public static String replyText(ChatResult result) {
+        return switch (result.status()) {
+            case OK -> result.content();
+            case RATE_LIMITED -> BUSY_MESSAGE;
+            case UNAVAILABLE -> UNAVAILABLE_MESSAGE;
+            case TIMEOUT, FAILED -> ERROR_MESSAGE;
+        };
+    }
+
+    /**
+     * Собирает сообщения запроса: системный промпт, история чата и новый вопрос.
+     * @param history история чата
+     * @param prompt текст нового вопроса
+     * @param attachments идентификаторы файлов, к которым относится вопрос
+     * @return сообщения в порядке следования
+     */
+    private List<ChatMessage> buildMessages(List<ChatMessage> history, String prompt, List<String> attachments) {
+        List<ChatMessage> messages = new ArrayList<>(history.size() + 2);
+        if (systemPrompt != null) {
+            messages.add(systemPrompt);
+        }
+        messages.addAll(history);
+        messages.add(ChatMessage.user(prompt, attachments));
+        return messages;
+    }
+
+    /**
+     * Оценивает размер запроса в токенах — его стоимость в очереди планировщика.
+     */
+    private static int estimateTokens(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += TokenEstimator.estimate(message.content()) + message.attachments().size() * ATTACHMENT_TOKENS;
+        }
+        return tokens;
+    }
+
+    /**
+     * Сохраняет вопрос и ответ в историю чата.
+     */
+    private void remember(long chatId, String prompt, String answer) {
+        conversationStore.append(chatId, List.of(ChatMessage.user(prompt), ChatMessage.assistant(answer)));
+    }
+
+    /**
+     * Кэшировать можно только вопросы без контекста: с историей ответ зависит от предыдущих реплик.
+     */
+    private boolean isCacheable(long chatId, List<ChatMessage> history) {
+        return history.isEmpty() && isCacheEnabled(chatId);
+    }
+
+    /**
+     * @param chatId идентификатор чата
+     * @return true, если кэш ответов включён для чата (командой /cache или глобальной настройкой)
+     */
+    public boolean isCacheEnabled(long chatId) {
+        return cacheOverrides.getOrDefault(chatId, cacheEnabledByDefault);
+    }
+
+    /**
+     * Включает или выключает кэш ответов для чата.
+     * @param chatId идентификатор чата
+     * @param enabled новое значение
+     */
+    public void setCacheEnabled(long chatId, boolean enabled) {
+        cacheOverrides.put(chatId, enabled);
+    }
+
+    /**
+     * @return кэш ответов (счётчики попаданий, промахов и вытеснений)
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return маршрутизатор моделей (список моделей и настройка /model для чатов)
+     */
+    public ModelRouter getModelRouter() {
+        return modelRouter;
+    }
+
+    /**
+     * @return true, если включён потоковый режим ответа
+     */
+    public boolean isStreamingEnabled() {
+        return streamingEnabled;
+    }
+
+    /**
+     * Вызывает Chat API в модели, выбранной маршрутизатором. Если модель не ответила (сетевой сбой, таймаут, 5xx)
+     * и есть запасная модель, запрос один раз повторяется в ней.
+     * @param call состояние запроса
+     * @param route выбранная модель и запасная
+     * @param modelCall вызов Chat API с переданными токеном и моделью
+     * @param canFallback можно ли ещё повторить запрос в другой модели
+     * @return future с ответом от GigaChat
+     */
+    private CompletableFuture<ChatResult> sendRouted(AsyncCall call, ModelRouter.Route route, ModelCall modelCall,
+                                                     BooleanSupplier canFallback) {
+        return sendToModel(call, route.model(), modelCall).exceptionallyCompose(error -> {
+            Throwable cause = Futures.unwrap(error);
+            if (route.fallback() == null || !(cause instanceof IOException e) || !isModelFailure(e)
+                    || !canFallback.getAsBoolean() || call.result.isDone()) {
+                return CompletableFuture.failedFuture(cause);
+            }
+            logger.warn("Модель {} не ответила ({}), повторяем запрос в {}", route.model(), e.getMessage(), route.fallback());
+            modelRouter.onFallback(route.fallback());
+            return sendToModel(call, route.fallback(), modelCall);
+        });
+    }
+
+    /**
+     * Вызывает Chat API в одной модели и сообщает маршрутизатору задержку и исход.
+     */
+    private CompletableFuture<ChatResult> sendToModel(AsyncCall call, String model, ModelCall modelCall) {
+        long start = System.nanoTime();
+        call.model = model;
+        return sendRateLimited(call, token -> modelCall.send(token, model), 1)
+                .whenComplete((completion, error) -> {
+                    long elapsed = System.nanoTime() - start;
+                    Throwable cause = (error == null) ? null : Futures.unwrap(error);
+                    if (cause == null) {
+                        modelRouter.onSuccess(model, elapsed);
+                    } else if (cause instanceof IOException e && isModelFailure(e)) {
+                        modelRouter.onFailure(model, elapsed);
+                    } else if (cause instanceof GigaChatApiException) {
+                        modelRouter.onSuccess(model, elapsed); // Сервер ответил (4xx, 429) — модель доступна
+                    } else {
+                        modelRouter.onSkipped(model);
+                    }
+                })
+                .thenApply(completion -> ChatResult.success(model, completion));
+    }
+
+    /**
+     * Сбой, в котором виновата модель: сетевая ошибка, таймаут или 5xx.
+     * Лимит частоты и разомкнутая цепь HTTP-клиента общие для всех моделей, переход на другую модель не поможет.
+     */
+    private static boolean isModelFailure(IOException e) {
+        if (e instanceof GigaChatApiException apiException) {
+            return apiException.getStatusCode() >= 500;
+        }
+        return !(e instanceof RateLimitExceededException) && !(e instanceof CircuitOpenException);
+    }
+
+    /**
+     * Вызывает Chat API, дождавшись своей очереди в планировщике и разрешения адаптивного ограничителя частоты.
+     * Планировщик решает, чей запрос идёт следующим (честно между чатами), ограничитель — когда его можно отправить.
+     * На 429 ограничитель снижает скорость и выдерживает паузу из Retry-After, после чего запрос снова встаёт в очередь;
+     * если ждать пришлось бы слишком долго — запрос отклоняется сразу. Ожидание не занимает поток.
+     * @param call состояние запроса
+     * @param chatCall вызов Chat API с переданным токеном
+     * @param attempt номер попытки, начиная с 1
+     * @return future с ответом от GigaChat; с RateLimitExceededException, если ожидание очереди превысило лимит
+     */
+    private CompletableFuture<ChatCompletion> sendRateLimited(AsyncCall call, ChatCall chatCall, int attempt) {
+        return call.start(() -> scheduler.acquire(call.chatId, call.cost))
+                .thenCompose(permit -> rateLimiter.whenAllowed(rateLimitMaxWaitMillis)
+                        .thenCompose(ignored -> {
+                            inFlight.incrementAndGet();
+                            return sendWithTokenRetry(call, chatCall)
+                                    .whenComplete((completion, error) -> inFlight.decrementAndGet());
+                        })
+                        .whenComplete((completion, error) -> permit.release()))
+                .thenApply(completion -> {
+                    rateLimiter.onSuccess();
+                    return completion;
+                })
+                .exceptionallyCompose(error -> {
+                    Throwable cause = Futures.unwrap(error);
+                    if (!(cause instanceof GigaChatApiException e) || !e.isRateLimited()) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    rateLimiter.onThrottled(e.getRetryAfterMillis());
+                    if (attempt >= MAX_THROTTLED_ATTEMPTS || call.result.isDone()) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    return sendRateLimited(call, chatCall, attempt + 1);
+                });
+    }
+
+    /**
+     * Вызывает Chat API с закэшированным токеном.
+     * Если сервер ответил 401, сбрасывает токен и повторяет запрос один раз со свежим.
+     * @param call состояние запроса
+     * @param chatCall вызов Chat API с переданным токеном
+     * @return future с ответом от GigaChat
+     */
+    private CompletableFuture<ChatCompletion> sendWithTokenRetry(AsyncCall call, ChatCall chatCall) {
+        return tokenManager.getTokenAsync().thenCompose(accessToken -> call.start(() -> chatCall.send(accessToken))
+                .exceptionallyCompose(error -> {
+                    Throwable cause = Futures.unwrap(error);
+                    if (!(cause instanceof GigaChatApiException e) || !e.isUnauthorized()) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    logger.warn("GigaChat отклонил access token (401), обновляем и повторяем запрос");
+                    tokenManager.invalidate(accessToken);
+                    return tokenManager.getTokenAsync().thenCompose(fresh -> call.start(() -> chatCall.send(fresh)));
+                }));
+    }
+
+    /**
+     * Состояние одного асинхронного запроса: итоговый future и ожидание, выполняемое сейчас (очередь или HTTP-обмен).
+     * Отмена итогового future или таймаут прерывают текущее ожидание, а новые после этого не начинаются.
+     */
+    private final class AsyncCall {
+        private final long chatId;  // Идентификатор чата
+        private final CompletableFuture<ChatResult> result = new CompletableFuture<>();  // Итог, который получает вызывающий код
+        private volatile Future<?> current;  // Заявка в очереди или HTTP-обмен, выполняемые сейчас
+        private volatile String model;  // Последняя модель, к которой ушёл запрос
+        private int cost;  // Оценка токенов запроса — стоимость в очереди планировщика
+
+        /**
+         * @param chatId идентификатор чата
+         * @param timeout сколько всего ждать ответа
+         */
+        private AsyncCall(long chatId, Duration timeout) {
+            this.chatId = chatId;
+            CompletableFuture<Void> deadline = new CompletableFuture<Void>()
+                    .completeOnTimeout(null, timeout.toMillis(), TimeUnit.MILLISECONDS);
+            deadline.thenRun(() -> {
+                if (result.complete(ChatResult.failure(ChatResult.Status.TIMEOUT, model, 0, null))) {
+                    metrics.recordGigaChatError("answer_timeout");
+                    logger.warn("Ответ GigaChat не получен за {} с, запрос прерван", timeout.toSeconds());
+                }
+            });
+            result.whenComplete((outcome, error) -> {
+                deadline.cancel(false);
+                Future<?> running = current;
+                if (running != null) {
+                    running.cancel(true);
+                }
+            });
+        }
+
+        /**
+         * Начинает ожидание (заявку в очереди или HTTP-обмен), если запрос ещё не отменён.
+         * @param step запуск ожидания
+         * @return future ожидания; с CancellationException, если запрос уже отменён
+         */
+        private <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> step) {
+            if (result.isDone()) {
+                return CompletableFuture.failedFuture(new CancellationException("Запрос отменён"));
+            }
+            CompletableFuture<T> running = step.get();
+            current = running;
+            if (result.isDone()) {
+                running.cancel(true);
+            }
+            return running;
+        }
+    }
+
+    /**
+     * Вызов Chat API, которому нужен только access token.
+     */
+    @FunctionalInterface
+    private interface ChatCall {
+        CompletableFuture<ChatCompletion> send(String accessToken);
+    }
+
+    /**
+     * Вызов Chat API, которому нужны access token и модель.
+     */
+    @FunctionalInterface
+    private interface ModelCall {
+        CompletableFuture<ChatCompletion> send(String accessToken, String model);
+    }
+
+    /**
+     * Загружает файл в хранилище GigaChat, чтобы сослаться на него в вопросе (attachments).
+     * Содержимое читается из потока по мере отправки и в памяти целиком не держится.
+     * Повтор при 401 невозможен — поток уже прочитан, — поэтому отклонённый токен только сбрасывается.
+     * @param fileName имя файла
+     * @param mimeType MIME-тип содержимого
+     * @param content источник содержимого
+     * @param timeout сколько ждать ответа на загрузку
+     * @return future с идентификатором файла в GigaChat
+     */
+    public CompletableFuture<String> uploadFileAsync(String fileName, String mimeType, Supplier<InputStream> content,
+                                                     Duration timeout) {
+        return tokenManager.getTokenAsync().thenCompose(accessToken -> {
+            CompletableFuture<String> upload = gigaChatAPI.uploadFileAsync(accessToken, fileName, mimeType, content, timeout);
+            upload.whenComplete((fileId, error) -> {
+                if (error != null && Futures.unwrap(error) instanceof GigaChatApiException e && e.isUnauthorized()) {
+                    tokenManager.invalidate(accessToken);
+                }
+            });
+            return upload;
+        });
+    }
+
+    /**
+     * Прогрев при старте: загружает классы и заполняет буферы JSON-кодека.
+     * @throws IOException если пробный JSON не разобран
+     */
+    public void warmUpCodec() throws IOException {
+        gigaChatAPI.warmUpCodec();
+    }
+
+    /**
+     * Прогрев при старте: получает OAuth-токен заранее, чтобы первый вопрос не ждал OAuth endpoint.
+     * @return future с токеном
+     */
+    public CompletableFuture<String> warmUpTokenAsync() {
+        return tokenManager.getTokenAsync();
+    }
+
+    /**
+     * Прогрев при старте: открывает соединение HTTP/2 с Chat API.
+     * @param accessToken Bearer-токен
+     * @return future с HTTP-статусом пробного запроса
+     */
+    public CompletableFuture<Integer> warmUpConnectionAsync(String accessToken) {
+        return gigaChatAPI.openConnectionAsync(accessToken);
+    }
+
+    /**
+     * Останавливает фоновое обновление токена и закрывает HTTP-соединения при остановке контекста Spring.
+     */
+    @PreDestroy
+    public void shutdown() {
+        tokenManager.close();
+        gigaChatAPI.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.GigaChatMyBot.service;
+
+import com.GigaChatMyBot.model.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище истории диалогов в памяти.
+ * История каждого чата — компактный кольцевой буфер (роль одним байтом, текст, оценка токенов)
+ * и обрезается до бюджета токенов. Чаты хранятся в LRU-порядке: давно неактивные вытесняются
+ * по времени простоя, а при превышении лимита числа чатов или общего объёма памяти — самые старые.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class InMemoryConversationStore implements ConversationStore {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryConversationStore.class); // Логгер для вытеснения
+    private static final int TURN_OVERHEAD_BYTES = 48; // Оценка накладных расходов на одну реплику (String + ячейки массивов)
+    private static final int CHAT_OVERHEAD_BYTES = 160; // Оценка накладных расходов на один чат (запись LRU + буфер)
+
+    private final int tokenBudget; // Бюджет токенов на историю одного чата
+    private final int maxChats; // Максимальное число чатов в памяти
+    private final long idleTimeoutMillis; // Через сколько простоя история чата вытесняется
+    private final long maxMemoryBytes; // Жёсткий лимит оценочного объёма всех историй
+    private final LinkedHashMap<Long, ChatHistory> chats = new LinkedHashMap<>(256, 0.75f, true); // Чаты в LRU-порядке
+    private long usedBytes; // Текущий оценочный объём всех историй
+
+    /**
+     * Конструктор.
+     * @param tokenBudget бюджет токенов на историю одного чата
+     * @param maxChats максимальное число чатов в памяти
+     * @param idleTimeoutMillis время простоя, после которого история вытесняется
+     * @param maxMemoryBytes лимит оценочного объёма всех историй в байтах
+     */
+    public InMemoryConversationStore(int tokenBudget, int maxChats, long idleTimeoutMillis, long maxMemoryBytes) {
+        this.tokenBudget = tokenBudget;
+        this.maxChats = maxChats;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    @Override
+    public synchronized List<ChatMessage> history(long chatId) {
+        ChatHistory history = chats.get(chatId);
+        if (history == null) {
+            return List.of();
+        }
+        history.lastAccessMillis = System.currentTimeMillis();
+        return history.toMessages();
+    }
+
+    @Override
+    public synchronized void append(long chatId, List<ChatMessage> messages) {
+        long now = System.currentTimeMillis();
+        ChatHistory history = chats.get(chatId);
+        if (history == null) {
+            history = new ChatHistory();
+            chats.put(chatId, history);
+            usedBytes += CHAT_OVERHEAD_BYTES;
+        }
+        history.lastAccessMillis = now;
+        long before = history.bytes;
+        for (ChatMessage message : messages) {
+            history.add(message);
+        }
+        history.trimTo(tokenBudget);
+        usedBytes += history.bytes - before;
+        evict(now);
+    }
+
+    @Override
+    public synchronized void clear(long chatId) {
+        ChatHistory history = chats.remove(chatId);
+        if (history != null) {
+            usedBytes -= history.bytes + CHAT_OVERHEAD_BYTES;
+        }
+    }
+
+    /**
+     * Вытесняет чаты, начиная с давно неиспользуемых: сначала простаивающие дольше idleTimeout,
+     * затем лишние сверх лимита числа чатов и объёма памяти.
+     */
+    private void evict(long now) {
+        int evicted = 0;
+        Iterator<Map.Entry<Long, ChatHistory>> iterator = chats.entrySet().iterator();
+        while (iterator.hasNext()) {
+            ChatHistory eldest = iterator.next().getValue();
+            boolean idle = now - eldest.lastAccessMillis > idleTimeoutMillis;
+            if (!idle && chats.size() <= maxChats && usedBytes <= maxMemoryBytes) {
+                break;
+            }
+            if (chats.size() == 1 && !idle) {
+                break; // Единственный активный чат не вытесняем, даже если он сам превысил лимит
+            }
+            usedBytes -= eldest.bytes + CHAT_OVERHEAD_BYTES;
+            iterator.remove();
+            evicted++;
+        }
+        if (evicted > 0) {
+            logger.debug("Вытеснено историй чатов: {}, осталось: {}, объём: {} байт", evicted, chats.size(), usedBytes);
+        }
+    }
+
+    /**
+     * @return число чатов в памяти
+     */
+    public synchronized int size() {
+        return chats.size();
+    }
+
+    /**
+     * @return оценочный объём всех историй в байтах
+     */
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * История одного чата: кольцевой буфер на параллельных массивах.
+     */
+    private static final class ChatHistory {
+        private static final byte USER = 0;
+        private static final byte ASSISTANT = 1;
+
+        private byte[] roles = new byte[4]; // Роль реплики
+        private String[] texts = new String[4]; // Текст реплики
+        private int[] tokens = new int[4]; // Оценка токенов реплики
+        private int head; // Индекс самой старой реплики
+        private int size; // Число реплик
+        private int totalTokens; // Сумма оценок токенов
+        private long bytes; // Оценочный объём в байтах
+        private long lastAccessMillis; // Время последнего обращения
+
+        void add(ChatMessage message) {
+            if (size == texts.length) {
+                grow();
+            }
+            int index = (head + size) % texts.length;
+            roles[index] = ChatMessage.ASSISTANT.equals(message.role()) ? ASSISTANT : USER;
+            texts[index] = message.content();
+            tokens[index] = TokenEstimator.estimate(message.content());
+            totalTokens += tokens[index];
+            bytes += sizeOf(message.content());
+            size++;
+        }
+
+        /**
+         * Удаляет старые реплики, пока история не уложится в бюджет.
+         * Вместе с вопросом пользователя удаляется и ответ на него, чтобы история не начиналась с ответа.
+         */
+        void trimTo(int tokenBudget) {
+            while (size > 0 && totalTokens > tokenBudget) {
+                removeOldest();
+                if (size > 0 && roles[head] == ASSISTANT) {
+                    removeOldest();
+                }
+            }
+        }
+
+        private void removeOldest() {
+            totalTokens -= tokens[head];
+            bytes -= sizeOf(texts[head]);
+            texts[head] = null;
+            head = (head + 1) % texts.length;
+            size--;
+        }
+
+        private void grow() {
+            int capacity = texts.length * 2;
+            byte[] newRoles = new byte[capacity];
+            String[] newTexts = new String[capacity];
+            int[] newTokens = new int[capacity];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % texts.length;
+                newRoles[i] = roles[index];
+                newTexts[i] = texts[index];
+                newTokens[i] = tokens[index];
+            }
+            roles = newRoles;
+            texts = newTexts;
+            tokens = newTokens;
+            head = 0;
+        }
+
+        List<ChatMessage> toMessages() {
+            List<ChatMessage> messages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % texts.length;
+                messages.add(new ChatMessage(roles[index] == ASSISTANT ? ChatMessage.ASSISTANT : ChatMessage.USER, texts[index]));
+            }
+            return messages;
+        }
+
+        private static long sizeOf(String text) {
+            return 2L * text.length() + TURN_OVERHEAD_BYTES;
+        }
+    }
+}
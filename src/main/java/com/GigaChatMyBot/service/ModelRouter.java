@@ -0,0 +1,293 @@
+package com.GigaChatMyBot.service;
+
+import com.GigaChatMyBot.gigachat.CircuitBreaker;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выбор модели GigaChat для каждого запроса.
+ * Модели перечисляются в настройках от быстрой к сильной (например, GigaChat, GigaChat-Pro, GigaChat-Max).
+ * Короткие реплики идут в быструю модель, длинные аналитические вопросы — в сильную, остальные — в среднюю;
+ * команда /model закрепляет модель за чатом.
+ * Для каждой модели ведётся окно последних ответов (p95 задержки и доля ошибок за STATS_WINDOW_MILLIS)
+ * и свой circuit breaker. Если выбранная модель медленная, часто ошибается или её цепь разомкнута,
+ * запрос уходит в ближайшую по силе здоровую модель — сначала в более быструю, затем в более сильную.
+ * Каждое решение учитывается в метрике gigachat.routing.decisions.
+ * Класс потокобезопасен.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class ModelRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ModelRouter.class); // Логгер для смены моделей
+    private static final int WINDOW_SIZE = 128; // Сколько последних ответов модели хранить
+    private static final int MIN_SAMPLES = 10; // Меньше ответов в окне — модель считается здоровой
+    private static final long STATS_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5); // Старые ответы не учитываются
+
+    private final List<String> models; // Модели от быстрой к сильной
+    private final ModelHealth[] health; // Состояние моделей в том же порядке
+    private final int shortPromptChars; // Вопросы короче — в быструю модель
+    private final int longPromptChars; // Вопросы не короче — в сильную модель
+    private final long maxP95Millis; // Модель с большим p95 считается медленной
+    private final double maxErrorRate; // Модель с большей долей ошибок считается нездоровой
+    private final Map<Long, String> overrides = new ConcurrentHashMap<>(); // Модель, закреплённая за чатом командой /model
+    private final BotMetrics metrics; // Метрика решений
+
+    /**
+     * Конструктор.
+     * @param models модели от быстрой к сильной (не пустой список)
+     * @param shortPromptChars вопросы короче этой длины идут в быструю модель
+     * @param longPromptChars вопросы не короче этой длины идут в сильную модель
+     * @param maxP95Millis порог p95 задержки, выше которого модель считается медленной
+     * @param maxErrorRate порог доли ошибок, выше которого модель считается нездоровой
+     * @param failureThreshold сколько ошибок подряд размыкают цепь модели
+     * @param openDurationMillis сколько цепь модели остаётся разомкнутой
+     * @param metrics метрики
+     */
+    public ModelRouter(List<String> models, int shortPromptChars, int longPromptChars, long maxP95Millis,
+                       double maxErrorRate, int failureThreshold, long openDurationMillis, BotMetrics metrics) {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("Не задано ни одной модели GigaChat");
+        }
+        this.models = List.copyOf(models);
+        this.health = new ModelHealth[models.size()];
+        for (int i = 0; i < health.length; i++) {
+            health[i] = new ModelHealth(new CircuitBreaker("model " + models.get(i), failureThreshold, openDurationMillis));
+        }
+        this.shortPromptChars = shortPromptChars;
+        this.longPromptChars = longPromptChars;
+        this.maxP95Millis = maxP95Millis;
+        this.maxErrorRate = maxErrorRate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Выбирает модель для запроса и запасную модель на случай его сбоя.
+     * @param chatId идентификатор чата
+     * @param promptChars длина вопроса в символах
+     * @return маршрут; fallback равен null, если запасной здоровой модели нет
+     */
+    public Route route(long chatId, int promptChars) {
+        String override = overrides.get(chatId);
+        int preferred = (override != null) ? models.indexOf(override) : tierFor(promptChars);
+        String reason = (override != null) ? "override" : "prompt_length";
+        long now = System.currentTimeMillis();
+        int chosen = -1;
+        int fallback = -1;
+        for (int index : candidates(preferred)) {
+            ModelHealth model = health[index];
+            if (chosen < 0) {
+                if (isHealthy(model, now) && model.breaker.allowRequest()) {
+                    chosen = index;
+                }
+            } else if (isHealthy(model, now) && model.breaker.getState() == CircuitBreaker.State.CLOSED) {
+                fallback = index;
+                break;
+            }
+        }
+        if (chosen < 0) {
+            chosen = preferred; // Здоровых моделей нет — решение остаётся за circuit breaker HTTP-клиента
+            reason = "no_healthy";
+        } else if (chosen != preferred) {
+            reason = "fallback_unhealthy";
+            logger.info("Модель {} нездорова, запрос chatId={} направлен в {}", models.get(preferred), chatId, models.get(chosen));
+        }
+        metrics.recordRoutingDecision(models.get(chosen), reason);
+        return new Route(models.get(chosen), (fallback < 0) ? null : models.get(fallback));
+    }
+
+    /**
+     * Учитывает переход на запасную модель после сбоя основной.
+     * @param model запасная модель
+     */
+    public void onFallback(String model) {
+        metrics.recordRoutingDecision(model, "fallback_error");
+    }
+
+    /**
+     * Учитывает ответ модели (в том числе 4xx и 429: сервер отвечает, значит, модель доступна).
+     * @param model модель
+     * @param nanos длительность запроса
+     */
+    public void onSuccess(String model, long nanos) {
+        ModelHealth stats = healthOf(model);
+        if (stats != null) {
+            stats.breaker.onSuccess();
+            stats.record(TimeUnit.NANOSECONDS.toMillis(nanos), false);
+        }
+    }
+
+    /**
+     * Учитывает сбой модели: сетевую ошибку, таймаут или ответ 5xx.
+     * @param model модель
+     * @param nanos длительность запроса
+     */
+    public void onFailure(String model, long nanos) {
+        ModelHealth stats = healthOf(model);
+        if (stats != null) {
+            stats.breaker.onFailure();
+            stats.record(TimeUnit.NANOSECONDS.toMillis(nanos), true);
+        }
+    }
+
+    /**
+     * Учитывает, что запрос в модель не был отправлен или не дошёл до неё по причинам, не связанным с моделью
+     * (ответ из кэша, лимит частоты, разомкнутая цепь HTTP-клиента, прерывание).
+     * @param model модель
+     */
+    public void onSkipped(String model) {
+        ModelHealth stats = healthOf(model);
+        if (stats != null) {
+            stats.breaker.release();
+        }
+    }
+
+    /**
+     * Закрепляет модель за чатом.
+     * @param chatId идентификатор чата
+     * @param model имя модели или null, чтобы вернуть автоматический выбор
+     * @return false, если такой модели нет в настройках
+     */
+    public boolean setOverride(long chatId, String model) {
+        if (model == null) {
+            overrides.remove(chatId);
+            return true;
+        }
+        for (String known : models) {
+            if (known.equalsIgnoreCase(model)) {
+                overrides.put(chatId, known);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param chatId идентификатор чата
+     * @return модель, закреплённая за чатом, или null при автоматическом выборе
+     */
+    public String getOverride(long chatId) {
+        return overrides.get(chatId);
+    }
+
+    /**
+     * @return модели от быстрой к сильной
+     */
+    public List<String> getModels() {
+        return models;
+    }
+
+    /**
+     * @param model модель
+     * @return p95 задержки модели за окно в миллисекундах или -1, если ответов мало
+     */
+    public long p95Millis(String model) {
+        ModelHealth stats = healthOf(model);
+        return (stats == null) ? -1 : stats.snapshot(System.currentTimeMillis()).p95Millis;
+    }
+
+    /**
+     * Уровень модели по длине вопроса: быстрая, средняя или сильная.
+     */
+    private int tierFor(int promptChars) {
+        if (promptChars < shortPromptChars) {
+            return 0;
+        }
+        if (promptChars >= longPromptChars) {
+            return models.size() - 1;
+        }
+        return (models.size() - 1) / 2;
+    }
+
+    /**
+     * Порядок проверки моделей: выбранная, затем соседние по силе — сначала более быстрая.
+     */
+    private List<Integer> candidates(int preferred) {
+        List<Integer> order = new ArrayList<>(models.size());
+        order.add(preferred);
+        for (int step = 1; order.size() < models.size(); step++) {
+            if (preferred - step >= 0) {
+                order.add(preferred - step);
+            }
+            if (preferred + step < models.size()) {
+                order.add(preferred + step);
+            }
+        }
+        return order;
+    }
+
+    private boolean isHealthy(ModelHealth model, long now) {
+        Snapshot snapshot = model.snapshot(now);
+        return snapshot.samples < MIN_SAMPLES
+                || (snapshot.p95Millis <= maxP95Millis && snapshot.errorRate <= maxErrorRate);
+    }
+
+    private ModelHealth healthOf(String model) {
+        int index = models.indexOf(model);
+        return (index < 0) ? null : health[index];
+    }
+
+    /**
+     * Маршрут запроса.
+     * @param model модель для запроса
+     * @param fallback запасная модель на случай сбоя или null
+     */
+    public record Route(String model, String fallback) {
+    }
+
+    private record Snapshot(int samples, long p95Millis, double errorRate) {
+    }
+
+    /**
+     * Кольцевое окно последних ответов модели и её circuit breaker.
+     */
+    private static final class ModelHealth {
+        private final CircuitBreaker breaker; // Размыкается после ошибок модели подряд
+        private final long[] latencies = new long[WINDOW_SIZE]; // Задержки ответов, мс
+        private final long[] timestamps = new long[WINDOW_SIZE]; // Время ответов
+        private final boolean[] failures = new boolean[WINDOW_SIZE]; // Был ли ответ сбоем
+        private int next; // Позиция следующей записи
+        private int count; // Заполненные позиции
+
+        private ModelHealth(CircuitBreaker breaker) {
+            this.breaker = breaker;
+        }
+
+        private synchronized void record(long latencyMillis, boolean failure) {
+            latencies[next] = latencyMillis;
+            timestamps[next] = System.currentTimeMillis();
+            failures[next] = failure;
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+        }
+
+        /**
+         * Считает p95 и долю ошибок по ответам за последние STATS_WINDOW_MILLIS.
+         */
+        private synchronized Snapshot snapshot(long now) {
+            long[] recent = new long[count];
+            int samples = 0;
+            int errors = 0;
+            for (int i = 0; i < count; i++) {
+                if (now - timestamps[i] <= STATS_WINDOW_MILLIS) {
+                    recent[samples++] = latencies[i];
+                    if (failures[i]) {
+                        errors++;
+                    }
+                }
+            }
+            if (samples == 0) {
+                return new Snapshot(0, -1, 0);
+            }
+            Arrays.sort(recent, 0, samples);
+            long p95 = recent[Math.min(samples - 1, (int) Math.ceil(samples * 0.95) - 1)];
+            return new Snapshot(samples, p95, (double) errors / samples);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.GigaChatMyBot.service;
+
+import com.GigaChatMyBot.gigachat.Futures;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Кэш точных ответов на повторяющиеся вопросы без контекста ("/start", "привет", FAQ).
+ * Ключ — хэш нормализованного текста вопроса (регистр, пробелы) плюс имя модели.
+ * Размер ограничен числом записей и общим объёмом, каждая запись — TTL и лимитом размера.
+ * Одинаковые вопросы, пришедшие одновременно, склеиваются: в GigaChat уходит один запрос,
+ * остальные ждут его результат (single-flight).
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class ResponseCache {
+    private static final int ENTRY_OVERHEAD_BYTES = 96; // Оценка накладных расходов на запись (ключ, запись LRU)
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+"); // Последовательности пробельных символов
+
+    private final int maxEntries; // Максимальное число записей
+    private final long maxBytes; // Лимит общего оценочного объёма
+    private final int maxEntryBytes; // Ответы больше этого размера не кэшируются
+    private final long ttlMillis; // Время жизни записи
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true); // Записи в LRU-порядке
+    private final ConcurrentHashMap<Key, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>(); // Запросы, выполняемые сейчас
+    private long usedBytes; // Текущий оценочный объём
+
+    private final AtomicLong hits = new AtomicLong(); // Ответы из кэша
+    private final AtomicLong misses = new AtomicLong(); // Запросы, ушедшие в GigaChat
+    private final AtomicLong coalesced = new AtomicLong(); // Запросы, дождавшиеся чужого одновременного запроса
+    private final AtomicLong evictions = new AtomicLong(); // Записи, вытесненные по размеру или TTL
+
+    /**
+     * Конструктор.
+     * @param maxEntries максимальное число записей
+     * @param maxBytes лимит общего объёма в байтах
+     * @param maxEntryBytes лимит размера одной записи в байтах
+     * @param ttlMillis время жизни записи
+     */
+    public ResponseCache(int maxEntries, long maxBytes, int maxEntryBytes, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Строит ключ кэша для вопроса.
+     * @param model имя модели
+     * @param prompt текст вопроса
+     * @return ключ
+     */
+    public static Key key(String model, String prompt) {
+        String normalized = WHITESPACE.matcher(prompt.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            return new Key(model, buffer.getLong(), buffer.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Возвращает ответ из кэша.
+     * @param key ключ
+     * @return ответ или null, если его нет или он устарел
+     */
+    public String getIfPresent(Key key) {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtMillis > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            if (entry != null) {
+                remove(key, entry);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Возвращает ответ из кэша или запускает загрузку, склеивая одновременные запросы
+     * с одинаковым ключом. Загрузка запускается в вызывающем потоке, ожидание чужой загрузки поток не занимает.
+     * Ошибки загрузки не кэшируются и передаются всем ожидающим. Если же чужую загрузку отменили (запрос,
+     * который её запустил, отменён или вышел по таймауту), ожидающий не получает чужую отмену,
+     * а повторяет попытку и при необходимости загружает ответ сам.
+     * Загруженный ответ кэшируется под ключом, который вернул loader: если ответила запасная модель,
+     * ответ ложится под её имя, а не под имя модели, по которой склеивались запросы.
+     * @param key ключ, по которому склеиваются одновременные запросы
+     * @param loader запуск загрузки ответа из GigaChat
+     * @return future с ответом; ошибки загрузки не кэшируются и передаются всем ожидающим
+     */
+    public CompletableFuture<String> getAsync(Key key, Supplier<CompletableFuture<Loaded>> loader) {
+        String cached = peek(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.copy().exceptionallyCompose(error -> isAborted(Futures.unwrap(error))
+                    ? getAsync(key, loader)
+                    : CompletableFuture.failedFuture(error));
+        }
+        misses.incrementAndGet();
+        CompletableFuture<Loaded> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((loaded, error) -> {
+            if (error == null) {
+                put(loaded.key(), loaded.value());
+            }
+            inFlight.remove(key, mine);
+            if (error == null) {
+                mine.complete(loaded.value());
+            } else {
+                mine.completeExceptionally(error);
+            }
+        });
+        return mine.copy();
+    }
+
+    /**
+     * @return true, если загрузка не завершилась сама, а была прервана тем, кто её запустил
+     */
+    private static boolean isAborted(Throwable cause) {
+        return cause instanceof InterruptedException || cause instanceof CancellationException;
+    }
+
+    /**
+     * Кладёт ответ в кэш, если он укладывается в лимит размера записи.
+     * @param key ключ
+     * @param value ответ
+     */
+    public synchronized void put(Key key, String value) {
+        int bytes = 2 * value.length() + ENTRY_OVERHEAD_BYTES;
+        if (bytes > maxEntryBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis, bytes));
+        if (previous != null) {
+            usedBytes -= previous.bytes;
+        }
+        usedBytes += bytes;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || usedBytes > maxBytes) && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            usedBytes -= eldest.bytes;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized String peek(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis <= System.currentTimeMillis()) {
+            remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private void remove(Key key, Entry entry) {
+        entries.remove(key);
+        usedBytes -= entry.bytes;
+        evictions.incrementAndGet();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Ключ кэша: модель и 128 бит SHA-256 нормализованного вопроса.
+     */
+    public record Key(String model, long hashHigh, long hashLow) {
+    }
+
+    /**
+     * Загруженный ответ.
+     * @param key ключ, под которым ответ кэшируется (модель, которая действительно ответила)
+     * @param value ответ
+     */
+    public record Loaded(Key key, String value) {
+    }
+
+    private record Entry(String value, long expiresAtMillis, int bytes) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.GigaChatMyBot.service;
+
+/**
+ * Дешёвая оценка числа токенов без вызова токенизатора.
+ * Для русского и английского текста один токен GigaChat — примерно 3–4 символа;
+ * берём 3, чтобы оценка была с запасом. К каждой реплике добавляется служебная надбавка на роль и разметку.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public final class TokenEstimator {
+    private static final int CHARS_PER_TOKEN = 3; // Символов на токен (с запасом)
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4; // Надбавка на роль и разметку реплики
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * Оценивает число токенов, которое займёт реплика с таким текстом.
+     * @param text текст реплики
+     * @return оценка числа токенов
+     */
+    public static int estimate(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN + MESSAGE_OVERHEAD_TOKENS;
+    }
+}
@@ -0,0 +1,170 @@
+package com.GigaChatMyBot.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Сегмент журнала: файл фиксированного размера, отображённый в память.
+ * Формат записи: [int длина данных][int CRC32][byte тип][long chatId][long seq][данные].
+ * Длина пишется последней, поэтому оборванная при сбое запись выглядит как конец данных (длина 0)
+ * или не проходит проверку CRC — и в обоих случаях отбрасывается при восстановлении.
+ * Класс не потокобезопасен: синхронизация — на стороне владельца.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+final class LogSegment implements Closeable {
+    static final int HEADER_SIZE = 25; // Длина + CRC + тип + chatId + seq
+    private static final int CRC_START = 8; // CRC считается от поля типа до конца данных
+
+    private final int id; // Номер сегмента (определяет порядок)
+    private final Path path; // Файл сегмента
+    private final FileChannel channel; // Канал файла
+    private final MappedByteBuffer buffer; // Отображение файла в память
+    private int writePosition; // Позиция следующей записи
+
+    private LogSegment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Открывает сегмент, создавая файл нужного размера, если его ещё нет.
+     * @param path файл сегмента
+     * @param id номер сегмента
+     * @param capacity размер нового файла в байтах
+     * @return открытый сегмент; позиция записи — 0 до вызова scan()
+     */
+    static LogSegment open(Path path, int id, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size() > 0 ? channel.size() : capacity;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new LogSegment(id, path, channel, buffer);
+    }
+
+    /**
+     * Дописывает запись в конец сегмента.
+     * @return смещение записи или -1, если в сегменте не хватает места
+     */
+    int append(byte type, long chatId, long seq, byte[] payload) {
+        int size = HEADER_SIZE + payload.length;
+        if (writePosition + size > buffer.capacity()) {
+            return -1;
+        }
+        int offset = writePosition;
+        buffer.put(offset + 8, type);
+        buffer.putLong(offset + 9, chatId);
+        buffer.putLong(offset + 17, seq);
+        buffer.put(offset + HEADER_SIZE, payload);
+        buffer.putInt(offset + 4, crc(offset, payload.length));
+        buffer.putInt(offset, payload.length); // Длина последней: запись становится видимой целиком
+        writePosition += size;
+        return offset;
+    }
+
+    /**
+     * Читает запись по смещению без проверки CRC (смещение взято из индекса и уже проверено).
+     */
+    LogRecord read(int offset) {
+        int length = buffer.getInt(offset);
+        byte[] payload = new byte[length];
+        buffer.get(offset + HEADER_SIZE, payload);
+        return new LogRecord(buffer.get(offset + 8), buffer.getLong(offset + 9), buffer.getLong(offset + 17), payload, offset);
+    }
+
+    /**
+     * Проходит по всем корректным записям от начала сегмента.
+     * Останавливается на первой пустой или повреждённой записи, ставит туда позицию записи
+     * и зануляет хвост, чтобы остатки оборванной записи не смешались с новыми.
+     * @param visitor получатель записей
+     * @return true, если сегмент прочитан без повреждений
+     */
+    boolean scan(Consumer<LogRecord> visitor) {
+        int offset = 0;
+        boolean clean = true;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || offset + HEADER_SIZE + length > buffer.capacity()
+                    || buffer.getInt(offset + 4) != crc(offset, length)) {
+                clean = false;
+                break;
+            }
+            visitor.accept(read(offset));
+            offset += HEADER_SIZE + length;
+        }
+        writePosition = offset;
+        if (!clean) {
+            byte[] zeros = new byte[Math.min(64 * 1024, buffer.capacity() - offset)];
+            for (int i = offset; i < buffer.capacity(); i += zeros.length) {
+                buffer.put(i, zeros, 0, Math.min(zeros.length, buffer.capacity() - i));
+            }
+        }
+        return clean;
+    }
+
+    private int crc(int offset, int payloadLength) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + CRC_START, HEADER_SIZE - CRC_START + payloadLength));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Сбрасывает изменённые страницы на диск.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    int id() {
+        return id;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Закрывает и удаляет файл сегмента.
+     * Отображение освобождается сборщиком мусора; на Linux файл удаляется сразу.
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Запись журнала.
+     * @param type тип записи
+     * @param chatId идентификатор чата
+     * @param seq глобальный порядковый номер
+     * @param payload данные
+     * @param offset смещение в сегменте
+     */
+    record LogRecord(byte type, long chatId, long seq, byte[] payload, int offset) {
+        int size() {
+            return HEADER_SIZE + payload.length;
+        }
+    }
+}
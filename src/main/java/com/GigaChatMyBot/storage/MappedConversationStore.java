@@ -0,0 +1,424 @@
+package com.GigaChatMyBot.storage;
+
+import com.GigaChatMyBot.model.ChatMessage;
+import com.GigaChatMyBot.service.ConversationStore;
+import com.GigaChatMyBot.service.TokenEstimator;
+import com.GigaChatMyBot.storage.LogSegment.LogRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище истории диалогов на диске: append-only журнал из сегментов, отображённых в память.
+ * В памяти держится только индекс (chatId → номера и смещения реплик), сами тексты читаются из сегментов.
+ * Обрезка по бюджету токенов и очистка чата пишутся в журнал как записи-надгробия (TRIM):
+ * "реплики этого чата с seq меньше N удалены".
+ * При старте индекс восстанавливается проходом по сегментам; оборванная при сбое запись отбрасывается.
+ * Фоновая компакция переписывает живые записи из сегментов, где их мало, в активный сегмент и удаляет старые файлы.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public final class MappedConversationStore implements ConversationStore, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MappedConversationStore.class); // Логгер для восстановления и компакции
+    private static final byte TURN = 1; // Запись-реплика: [byte роль][UTF-8 текст]
+    private static final byte TRIM = 2; // Запись-надгробие: [long keepFromSeq]
+    private static final byte ROLE_USER = 0;
+    private static final byte ROLE_ASSISTANT = 1;
+    private static final double COMPACTION_LIVE_RATIO = 0.5; // Сегмент компактится, если живых данных в нём меньше этой доли
+    private static final long FLUSH_INTERVAL_MILLIS = 1000; // Период сброса активного сегмента на диск
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{10})\\.log");
+
+    private final Path directory; // Каталог с сегментами
+    private final int segmentSize; // Размер нового сегмента в байтах
+    private final int tokenBudget; // Бюджет токенов на историю одного чата
+    private final TreeMap<Integer, LogSegment> segments = new TreeMap<>(); // Сегменты по номеру
+    private final Map<Integer, Long> liveBytes = new HashMap<>(); // Объём живых записей в каждом сегменте
+    private final Map<Long, ChatIndex> chats = new HashMap<>(); // Индекс реплик по chatId
+    private final Map<Long, Tombstone> tombstones = new HashMap<>(); // Последнее надгробие каждого чата
+    private final ScheduledExecutorService background; // Фоновый сброс на диск и компакция
+    private LogSegment active; // Сегмент, в который идёт запись
+    private long nextSeq; // Следующий порядковый номер записи
+
+    /**
+     * Открывает хранилище: восстанавливает индекс из существующих сегментов и запускает фоновые задачи.
+     * @param directory каталог с сегментами (создаётся при необходимости)
+     * @param segmentSize размер сегмента в байтах
+     * @param tokenBudget бюджет токенов на историю одного чата
+     * @param compactionIntervalMillis период фоновой компакции
+     * @throws IOException если каталог или сегменты недоступны
+     */
+    public MappedConversationStore(Path directory, int segmentSize, int tokenBudget, long compactionIntervalMillis)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.tokenBudget = tokenBudget;
+        Files.createDirectories(directory);
+        recover();
+        this.background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversation-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        background.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        background.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized List<ChatMessage> history(long chatId) {
+        ChatIndex chat = chats.get(chatId);
+        if (chat == null) {
+            return List.of();
+        }
+        List<ChatMessage> messages = new ArrayList<>(chat.turns.size());
+        for (TurnRef ref : chat.turns.values()) {
+            byte[] payload = segments.get(ref.segmentId).read(ref.offset).payload();
+            String text = new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8);
+            messages.add(new ChatMessage(payload[0] == ROLE_ASSISTANT ? ChatMessage.ASSISTANT : ChatMessage.USER, text));
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized void append(long chatId, List<ChatMessage> messages) {
+        ChatIndex chat = chats.computeIfAbsent(chatId, id -> new ChatIndex());
+        for (ChatMessage message : messages) {
+            byte role = ChatMessage.ASSISTANT.equals(message.role()) ? ROLE_ASSISTANT : ROLE_USER;
+            byte[] text = message.content().getBytes(StandardCharsets.UTF_8);
+            byte[] payload = new byte[text.length + 1];
+            payload[0] = role;
+            System.arraycopy(text, 0, payload, 1, text.length);
+            long seq = nextSeq++;
+            long location = write(TURN, chatId, seq, payload);
+            TurnRef ref = new TurnRef(segmentOf(location), offsetOf(location), LogSegment.HEADER_SIZE + payload.length,
+                    role, TokenEstimator.estimate(message.content()));
+            chat.turns.put(seq, ref);
+            chat.totalTokens += ref.tokens;
+        }
+        if (chat.totalTokens > tokenBudget) {
+            trim(chatId, chat);
+        }
+    }
+
+    @Override
+    public synchronized void clear(long chatId) {
+        ChatIndex chat = chats.remove(chatId);
+        if (chat == null) {
+            return;
+        }
+        for (TurnRef ref : chat.turns.values()) {
+            addLive(ref.segmentId, -ref.size);
+        }
+        writeTombstone(chatId, nextSeq);
+    }
+
+    /**
+     * Удаляет старые реплики чата до бюджета токенов (вопрос вместе с ответом на него)
+     * и фиксирует удаление надгробием.
+     */
+    private void trim(long chatId, ChatIndex chat) {
+        while (!chat.turns.isEmpty() && chat.totalTokens > tokenBudget) {
+            removeOldest(chat);
+            if (!chat.turns.isEmpty() && chat.turns.firstEntry().getValue().role == ROLE_ASSISTANT) {
+                removeOldest(chat);
+            }
+        }
+        long keepFromSeq = chat.turns.isEmpty() ? nextSeq : chat.turns.firstKey();
+        if (chat.turns.isEmpty()) {
+            chats.remove(chatId);
+        }
+        writeTombstone(chatId, keepFromSeq);
+    }
+
+    private void removeOldest(ChatIndex chat) {
+        TurnRef ref = chat.turns.pollFirstEntry().getValue();
+        chat.totalTokens -= ref.tokens;
+        addLive(ref.segmentId, -ref.size);
+    }
+
+    private void writeTombstone(long chatId, long keepFromSeq) {
+        byte[] payload = ByteBuffer.allocate(Long.BYTES).putLong(keepFromSeq).array();
+        long location = write(TRIM, chatId, nextSeq++, payload);
+        Tombstone previous = tombstones.put(chatId, new Tombstone(segmentOf(location), keepFromSeq));
+        if (previous != null) {
+            addLive(previous.segmentId, -(LogSegment.HEADER_SIZE + Long.BYTES));
+        }
+    }
+
+    /**
+     * Пишет запись в активный сегмент, при нехватке места открывает следующий.
+     * @return позиция записи: номер сегмента в старших 32 битах, смещение — в младших
+     */
+    private long write(byte type, long chatId, long seq, byte[] payload) {
+        int size = LogSegment.HEADER_SIZE + payload.length;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("Запись длиной " + size + " байт не помещается в сегмент " + segmentSize + " байт");
+        }
+        try {
+            int offset = active.append(type, chatId, seq, payload);
+            if (offset < 0) {
+                roll();
+                offset = active.append(type, chatId, seq, payload);
+            }
+            addLive(active.id(), size);
+            return ((long) active.id() << 32) | offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать в журнал истории", e);
+        }
+    }
+
+    /**
+     * Закрывает заполненный сегмент и открывает следующий.
+     */
+    private void roll() throws IOException {
+        active.force();
+        int id = active.id() + 1;
+        active = LogSegment.open(segmentPath(id), id, segmentSize);
+        segments.put(id, active);
+        logger.debug("Открыт новый сегмент журнала истории: {}", id);
+    }
+
+    /**
+     * Восстанавливает индекс: проходит все сегменты по порядку и применяет записи.
+     * Повреждённый хвост отбрасывается, запись продолжается с последней корректной позиции.
+     */
+    private void recover() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    ids.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        ids.sort(null);
+        long started = System.nanoTime();
+        long records = 0;
+        for (int id : ids) {
+            LogSegment segment = LogSegment.open(segmentPath(id), id, segmentSize);
+            segments.put(id, segment);
+            long[] count = new long[1];
+            if (!segment.scan(record -> {
+                applyRecovered(segment.id(), record);
+                count[0]++;
+            })) {
+                logger.warn("Сегмент журнала истории {} повреждён начиная со смещения {}, хвост отброшен", id, segment.writePosition());
+            }
+            records += count[0];
+        }
+        chats.values().removeIf(chat -> chat.turns.isEmpty());
+        if (segments.isEmpty()) {
+            active = LogSegment.open(segmentPath(0), 0, segmentSize);
+            segments.put(0, active);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+        logger.info("Журнал истории восстановлен: сегментов {}, записей {}, чатов {} за {} мс",
+                segments.size(), records, chats.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Применяет запись при восстановлении. Записи одного чата могут идти не по порядку seq
+     * (компакция переносит старые реплики в новые сегменты), поэтому реплики упорядочиваются по seq,
+     * а дубликаты после прерванной компакции заменяются более поздней копией.
+     */
+    private void applyRecovered(int segmentId, LogRecord record) {
+        nextSeq = Math.max(nextSeq, record.seq() + 1);
+        ChatIndex chat = chats.computeIfAbsent(record.chatId(), id -> new ChatIndex());
+        if (record.type() == TURN) {
+            if (record.seq() < chat.minLiveSeq) {
+                return;
+            }
+            TurnRef ref = new TurnRef(segmentId, record.offset(), record.size(), record.payload()[0],
+                    TokenEstimator.estimate(new String(record.payload(), 1, record.payload().length - 1, StandardCharsets.UTF_8)));
+            TurnRef previous = chat.turns.put(record.seq(), ref);
+            if (previous != null) {
+                chat.totalTokens -= previous.tokens;
+                addLive(previous.segmentId, -previous.size);
+            }
+            chat.totalTokens += ref.tokens;
+            addLive(segmentId, ref.size);
+        } else if (record.type() == TRIM) {
+            long keepFromSeq = ByteBuffer.wrap(record.payload()).getLong();
+            if (keepFromSeq <= chat.minLiveSeq) {
+                return;
+            }
+            chat.minLiveSeq = keepFromSeq;
+            Iterator<TurnRef> dropped = chat.turns.headMap(keepFromSeq).values().iterator();
+            while (dropped.hasNext()) {
+                TurnRef ref = dropped.next();
+                chat.totalTokens -= ref.tokens;
+                addLive(ref.segmentId, -ref.size);
+                dropped.remove();
+            }
+            Tombstone previous = tombstones.put(record.chatId(), new Tombstone(segmentId, keepFromSeq));
+            if (previous != null) {
+                addLive(previous.segmentId, -record.size());
+            }
+            addLive(segmentId, record.size());
+        }
+    }
+
+    /**
+     * Компактит заполненные сегменты, в которых мало живых данных.
+     */
+    public synchronized void compact() throws IOException {
+        List<LogSegment> candidates = new ArrayList<>();
+        for (LogSegment segment : segments.values()) {
+            if (segment != active && liveBytes.getOrDefault(segment.id(), 0L) < segment.writePosition() * COMPACTION_LIVE_RATIO) {
+                candidates.add(segment);
+            }
+        }
+        for (LogSegment segment : candidates) {
+            compactSegment(segment);
+        }
+    }
+
+    /**
+     * Переносит живые записи сегмента в активный сегмент и удаляет файл.
+     * Надгробие переносится, только если ещё остались более старые сегменты, где могут лежать удалённые им реплики.
+     */
+    private void compactSegment(LogSegment segment) throws IOException {
+        boolean hasOlder = segments.firstKey() < segment.id();
+        int[] moved = new int[1];
+        segment.scan(record -> {
+            if (record.type() == TURN) {
+                ChatIndex chat = chats.get(record.chatId());
+                TurnRef ref = (chat == null) ? null : chat.turns.get(record.seq());
+                if (ref != null && ref.segmentId == segment.id() && ref.offset == record.offset()) {
+                    long location = write(TURN, record.chatId(), record.seq(), record.payload());
+                    ref.segmentId = segmentOf(location);
+                    ref.offset = offsetOf(location);
+                    moved[0]++;
+                }
+            } else if (record.type() == TRIM) {
+                Tombstone tombstone = tombstones.get(record.chatId());
+                if (tombstone != null && tombstone.segmentId == segment.id()) {
+                    if (hasOlder) {
+                        byte[] payload = ByteBuffer.allocate(Long.BYTES).putLong(tombstone.keepFromSeq).array();
+                        long location = write(TRIM, record.chatId(), nextSeq++, payload);
+                        tombstone.segmentId = segmentOf(location);
+                    } else {
+                        tombstones.remove(record.chatId());
+                    }
+                }
+            }
+        });
+        segments.remove(segment.id());
+        liveBytes.remove(segment.id());
+        active.force();
+        segment.delete();
+        logger.info("Сегмент журнала истории {} скомпактирован, перенесено реплик: {}", segment.id(), moved[0]);
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Ошибка компакции журнала истории: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Сбрасывает активный сегмент на диск.
+     */
+    @Override
+    public synchronized void flush() {
+        active.force();
+    }
+
+    private void addLive(int segmentId, long delta) {
+        liveBytes.merge(segmentId, delta, Long::sum);
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve("segment-%010d.log".formatted(id));
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * @return число сегментов на диске
+     */
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Останавливает фоновые задачи, сбрасывает и закрывает все сегменты.
+     */
+    @Override
+    public void close() throws IOException {
+        background.shutdownNow();
+        synchronized (this) {
+            for (LogSegment segment : segments.values()) {
+                segment.close();
+            }
+        }
+        logger.info("Журнал истории закрыт");
+    }
+
+    /**
+     * Индекс одного чата: ссылки на реплики по seq.
+     */
+    private static final class ChatIndex {
+        private final TreeMap<Long, TurnRef> turns = new TreeMap<>(); // Реплики по порядковому номеру
+        private int totalTokens; // Сумма оценок токенов
+        private long minLiveSeq; // Реплики с меньшим seq удалены (используется при восстановлении)
+    }
+
+    /**
+     * Положение реплики в журнале.
+     */
+    private static final class TurnRef {
+        private int segmentId; // Номер сегмента (меняется при компакции)
+        private int offset; // Смещение в сегменте (меняется при компакции)
+        private final int size; // Размер записи в байтах
+        private final byte role; // Роль автора
+        private final int tokens; // Оценка токенов
+
+        private TurnRef(int segmentId, int offset, int size, byte role, int tokens) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.size = size;
+            this.role = role;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Последнее надгробие чата и сегмент, где оно записано.
+     */
+    private static final class Tombstone {
+        private int segmentId; // Номер сегмента (меняется при компакции)
+        private final long keepFromSeq; // Реплики с меньшим seq удалены
+
+        private Tombstone(int segmentId, long keepFromSeq) {
+            this.segmentId = segmentId;
+            this.keepFromSeq = keepFromSeq;
+        }
+    }
+}
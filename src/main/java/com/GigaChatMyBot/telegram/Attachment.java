@@ -0,0 +1,56 @@
+package com.GigaChatMyBot.telegram;
+
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+
+/**
+ * Файл из сообщения Telegram: фотография или документ.
+ * @param fileId идентификатор для getFile (может меняться между сообщениями)
+ * @param fileUniqueId постоянный идентификатор файла — ключ кэша загрузок в GigaChat
+ * @param fileName имя файла
+ * @param mimeType MIME-тип содержимого
+ * @param size размер в байтах по данным Telegram или -1, если неизвестен
+ * @param photo фотография ли это (иначе документ)
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public record Attachment(String fileId, String fileUniqueId, String fileName, String mimeType, long size, boolean photo) {
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream"; // Тип документа, если Telegram его не сообщил
+
+    /**
+     * Извлекает файл из сообщения.
+     * Telegram присылает фотографию в нескольких размерах — выбирается самый большой, укладывающийся в лимит.
+     * @param message сообщение
+     * @param maxBytes лимит размера файла
+     * @return файл или null, если в сообщении нет фотографии или документа
+     */
+    public static Attachment of(Message message, long maxBytes) {
+        if (message.hasPhoto() && message.getPhoto() != null && !message.getPhoto().isEmpty()) {
+            PhotoSize best = null;
+            for (PhotoSize size : message.getPhoto()) {
+                if (best == null || fits(size, maxBytes) && (!fits(best, maxBytes) || area(size) > area(best))) {
+                    best = size;
+                }
+            }
+            return new Attachment(best.getFileId(), best.getFileUniqueId(), "photo.jpg", "image/jpeg",
+                    best.getFileSize() != null ? best.getFileSize() : -1, true);
+        }
+        if (message.hasDocument()) {
+            Document document = message.getDocument();
+            return new Attachment(document.getFileId(), document.getFileUniqueId(),
+                    document.getFileName() != null ? document.getFileName() : "document",
+                    document.getMimeType() != null ? document.getMimeType() : DEFAULT_MIME_TYPE,
+                    document.getFileSize() != null ? document.getFileSize() : -1, false);
+        }
+        return null;
+    }
+
+    private static boolean fits(PhotoSize size, long maxBytes) {
+        return size.getFileSize() == null || size.getFileSize() <= maxBytes;
+    }
+
+    private static long area(PhotoSize size) {
+        return (long) size.getWidth() * size.getHeight();
+    }
+}
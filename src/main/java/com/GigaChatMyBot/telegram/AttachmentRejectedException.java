@@ -0,0 +1,21 @@
+package com.GigaChatMyBot.telegram;
+
+import java.io.IOException;
+
+/**
+ * Файл из сообщения не будет отправлен в GigaChat: слишком большой, неподдерживаемого типа
+ * или сейчас идёт слишком много загрузок. Сообщение исключения предназначено пользователю.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public class AttachmentRejectedException extends IOException {
+    private static final long serialVersionUID = 1L; // Версия сериализованной формы
+
+    /**
+     * Конструктор.
+     * @param message причина отказа для пользователя
+     */
+    public AttachmentRejectedException(String message) {
+        super(message);
+    }
+}
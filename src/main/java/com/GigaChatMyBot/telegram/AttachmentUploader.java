@@ -0,0 +1,376 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.gigachat.Futures;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.service.GigaChatService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.objects.File;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Передача файлов из Telegram в хранилище GigaChat.
+ * Скачивание из Telegram (GET /file/bot{token}/{path}) сразу становится телом загрузки в GigaChat (POST /files):
+ * HttpClient отдаёт тело ответа потоком с ограниченным буфером, а тело запроса читает этот поток частями
+ * по мере отправки, поэтому файл целиком в памяти не держится, и медленная сторона притормаживает быструю.
+ * Размер проверяется до скачивания (по данным Telegram) и по ходу передачи; типы файлов ограничены списком.
+ * Загрузка в GigaChat не повторяется: тело читается из скачивания один раз. Идентификатор файла принимается,
+ * только если в GigaChat ушло ровно столько байт, сколько отдал Telegram (getFile или Content-Length),
+ * и скачивание дочитано до конца — обрезанный файл не используется и не запоминается.
+ * Одновременных передач больших файлов — не больше maxLargeTransfers: каждая занимает соединения и поток
+ * на всё время передачи. Загруженные файлы запоминаются по file_unique_id — повторно присланный файл
+ * в GigaChat не загружается; одновременные передачи одного файла склеиваются в одну.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@Component // Регистрирует загрузчик файлов как компонент Spring для инъекции в бота
+public final class AttachmentUploader {
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentUploader.class); // Логгер передач и отказов
+
+    private final GigaChatService gigaChatService; // Загрузка файлов в GigaChat
+    private final HttpClient http; // Скачивание файлов из Telegram
+    private final String fileUrlPrefix; // Адрес скачивания файлов вместе с токеном бота: .../file/bot{token}/
+    private final long maxBytes; // Лимит размера файла
+    private final long largeBytes; // Файлы больше этого размера (или неизвестного размера) — большие
+    private final int maxLargeTransfers; // Сколько больших файлов передаётся одновременно
+    private final Semaphore largeTransfers; // Места для передачи больших файлов
+    private final long transferWaitMillis; // Сколько ждать места для передачи большого файла
+    private final Duration transferTimeout; // Сколько ждать скачивания и загрузки файла
+    private final Set<String> allowedTypes; // Поддерживаемые GigaChat MIME-типы
+    private final int cacheMaxEntries; // Сколько загруженных файлов помнить
+    private final long cacheTtlMillis; // Сколько помнить загруженный файл
+    private final LinkedHashMap<String, CachedFile> uploaded = new LinkedHashMap<>(256, 0.75f, true); // file_unique_id → файл в GigaChat, в LRU-порядке
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>(); // Передачи, выполняемые сейчас
+
+    private final AtomicLong transferred = new AtomicLong(); // Переданные файлы
+    private final AtomicLong transferredBytes = new AtomicLong(); // Переданные байты
+    private final AtomicLong cacheHits = new AtomicLong(); // Файлы, уже загруженные раньше
+    private final AtomicLong rejected = new AtomicLong(); // Файлы, отклонённые по размеру, типу или нехватке мест
+
+    /**
+     * Конструктор.
+     * @param gigaChatService сервис GigaChat
+     * @param metrics метрики
+     * @param botToken токен бота
+     * @param apiUrl адрес Bot API с префиксом /bot; файлы скачиваются с того же хоста по пути /file/bot
+     * @param maxSizeMb лимит размера файла (Bot API отдаёт через getFile файлы до 20 МБ)
+     * @param largeFileKb с какого размера файл считается большим
+     * @param maxLargeTransfers сколько больших файлов передавать одновременно
+     * @param transferWaitMillis сколько ждать места для передачи большого файла
+     * @param transferTimeoutSeconds сколько ждать скачивания и загрузки одного файла
+     * @param allowedTypes поддерживаемые MIME-типы через запятую
+     * @param cacheMaxEntries сколько загруженных файлов помнить
+     * @param cacheTtlHours сколько часов помнить загруженный файл
+     */
+    public AttachmentUploader(GigaChatService gigaChatService, BotMetrics metrics,
+                              @Value("${telegram.bot.token:default_token}") String botToken,
+                              @Value("${telegram.bot.api-url:https://api.telegram.org/bot}") String apiUrl,
+                              @Value("${telegram.files.max-size-mb:20}") long maxSizeMb,
+                              @Value("${telegram.files.large-file-kb:1024}") long largeFileKb,
+                              @Value("${telegram.files.max-large-transfers:4}") int maxLargeTransfers,
+                              @Value("${telegram.files.transfer-wait-ms:10000}") long transferWaitMillis,
+                              @Value("${telegram.files.transfer-timeout-seconds:120}") long transferTimeoutSeconds,
+                              @Value("${telegram.files.allowed-types:image/jpeg,image/png,image/tiff,image/bmp,"
+                                      + "application/pdf,text/plain,application/msword,"
+                                      + "application/vnd.openxmlformats-officedocument.wordprocessingml.document,"
+                                      + "application/epub+zip,application/vnd.ms-powerpoint,"
+                                      + "application/vnd.openxmlformats-officedocument.presentationml.presentation}")
+                              String allowedTypes,
+                              @Value("${telegram.files.cache-max-entries:10000}") int cacheMaxEntries,
+                              @Value("${telegram.files.cache-ttl-hours:24}") long cacheTtlHours) {
+        this.gigaChatService = gigaChatService;
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        int bot = apiUrl.lastIndexOf("/bot");
+        this.fileUrlPrefix = (bot >= 0 ? apiUrl.substring(0, bot) : apiUrl) + "/file/bot" + botToken + "/";
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+        this.largeBytes = largeFileKb * 1024;
+        this.maxLargeTransfers = maxLargeTransfers;
+        this.largeTransfers = new Semaphore(maxLargeTransfers);
+        this.transferWaitMillis = transferWaitMillis;
+        this.transferTimeout = Duration.ofSeconds(transferTimeoutSeconds);
+        this.allowedTypes = Arrays.stream(allowedTypes.split(","))
+                .map(type -> type.strip().toLowerCase(Locale.ROOT))
+                .filter(type -> !type.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.cacheTtlMillis = TimeUnit.HOURS.toMillis(cacheTtlHours);
+        metrics.gauge("telegram.files.large_transfers", "Большие файлы, передаваемые сейчас", this,
+                AttachmentUploader::activeLargeTransfers);
+        metrics.counter("telegram.files.transferred", "Файлы, переданные из Telegram в GigaChat", "unit", "files",
+                transferred, AtomicLong::get);
+        metrics.counter("telegram.files.transferred", "Файлы, переданные из Telegram в GigaChat", "unit", "bytes",
+                transferredBytes, AtomicLong::get);
+        metrics.counter("telegram.files.cache", "Файлы из сообщений, уже загруженные в GigaChat раньше", "result", "hit",
+                cacheHits, AtomicLong::get);
+        metrics.counter("telegram.files.rejected", "Файлы, не переданные в GigaChat", "reason", "limits",
+                rejected, AtomicLong::get);
+    }
+
+    /**
+     * @return лимит размера файла в байтах
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Передаёт файл из Telegram в GigaChat или возвращает идентификатор файла, загруженного раньше.
+     * Блокирует вызывающий поток (виртуальный поток диспетчера) до конца передачи.
+     * @param sender бот, через которого вызывается getFile
+     * @param attachment файл из сообщения
+     * @return идентификатор файла в GigaChat
+     * @throws AttachmentRejectedException если файл слишком большой, неподдерживаемого типа или мест для передачи нет
+     * @throws IOException при ошибке скачивания или загрузки
+     * @throws InterruptedException при прерывании ожидания
+     */
+    public String upload(AbsSender sender, Attachment attachment) throws IOException, InterruptedException {
+        check(attachment.mimeType(), attachment.size());
+        String cached = cachedFileId(attachment.fileUniqueId());
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            logger.debug("Файл {} уже загружен в GigaChat: {}", attachment.fileUniqueId(), cached);
+            return cached;
+        }
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(attachment.fileUniqueId(), mine);
+        if (existing != null) {
+            return Futures.await(existing.copy());
+        }
+        try {
+            String fileId = transfer(sender, attachment);
+            remember(attachment.fileUniqueId(), fileId);
+            mine.complete(fileId);
+            return fileId;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(attachment.fileUniqueId(), mine);
+        }
+    }
+
+    /**
+     * Проверяет тип и размер файла.
+     */
+    private void check(String mimeType, long size) throws AttachmentRejectedException {
+        if (!allowedTypes.contains(mimeType.toLowerCase(Locale.ROOT))) {
+            throw reject("Этот тип файлов не поддерживается. Можно отправить изображение (JPEG, PNG, TIFF, BMP) "
+                    + "или документ (PDF, TXT, DOC, DOCX, EPUB, PPT, PPTX).");
+        }
+        if (size > maxBytes) {
+            throw reject(tooLargeMessage());
+        }
+    }
+
+    /**
+     * Скачивает файл из Telegram и одновременно загружает его в GigaChat.
+     * Для больших файлов сначала занимает место передачи.
+     */
+    private String transfer(AbsSender sender, Attachment attachment) throws IOException, InterruptedException {
+        boolean large = attachment.size() < 0 || attachment.size() > largeBytes;
+        if (large && !largeTransfers.tryAcquire(transferWaitMillis, TimeUnit.MILLISECONDS)) {
+            throw reject("Сейчас загружается много файлов, попробуйте отправить файл позже.");
+        }
+        long start = System.nanoTime();
+        try {
+            File file = getFile(sender, attachment.fileId());
+            if (file.getFileSize() != null && file.getFileSize() > maxBytes) {
+                throw reject(tooLargeMessage());
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(fileUrlPrefix + file.getFilePath()))
+                    .timeout(transferTimeout)
+                    .GET()
+                    .build();
+            HttpResponse<InputStream> download = Futures.await(http.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()));
+            try (LimitedInputStream content = new LimitedInputStream(download.body(), maxBytes)) {
+                if (download.statusCode() != 200) {
+                    throw new IOException("Скачивание файла из Telegram: HTTP " + download.statusCode());
+                }
+                long expected = (file.getFileSize() != null)
+                        ? file.getFileSize()
+                        : download.headers().firstValueAsLong("Content-Length").orElse(-1);
+                String fileId;
+                try {
+                    fileId = Futures.await(gigaChatService.uploadFileAsync(attachment.fileName(), attachment.mimeType(),
+                            () -> content, transferTimeout));
+                } catch (IOException e) {
+                    if (content.exceeded()) {
+                        throw reject(tooLargeMessage());
+                    }
+                    throw e;
+                }
+                if (!content.finished() || (expected >= 0 && content.count() != expected)) {
+                    logger.warn("Файл {} передан не полностью ({} байт из {}), загруженный {} не используется",
+                            attachment.fileName(), content.count(), expected, fileId);
+                    throw new IOException("Файл передан не полностью: " + content.count() + " байт из " + expected);
+                }
+                transferred.incrementAndGet();
+                transferredBytes.addAndGet(content.count());
+                logger.info("Файл {} ({} байт) загружен в GigaChat за {} мс: {}", attachment.fileName(), content.count(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), fileId);
+                return fileId;
+            }
+        } finally {
+            if (large) {
+                largeTransfers.release();
+            }
+        }
+    }
+
+    /**
+     * Запрашивает путь файла через getFile.
+     * Вызов идёт через executeAsync — на платформенном потоке отправителя (telegram.sender.max-threads),
+     * а виртуальный поток только ждёт future: блокирующий execute ждёт соединение пула Apache HttpClient,
+     * закрепив виртуальный поток за потоком-носителем, и несколько таких ожиданий занимают все носители —
+     * остальные виртуальные потоки перестают выполняться.
+     */
+    private static File getFile(AbsSender sender, String fileId) throws IOException, InterruptedException {
+        CompletableFuture<File> file;
+        try {
+            file = sender.executeAsync(new GetFile(fileId));
+        } catch (TelegramApiException e) {
+            throw new IOException("getFile: " + e.getMessage(), e);
+        }
+        try {
+            return Futures.await(file);
+        } catch (IOException e) {
+            throw (e.getCause() instanceof TelegramApiException api) ? new IOException("getFile: " + api.getMessage(), api) : e;
+        }
+    }
+
+    private AttachmentRejectedException reject(String message) {
+        rejected.incrementAndGet();
+        return new AttachmentRejectedException(message);
+    }
+
+    private String tooLargeMessage() {
+        return "Файл слишком большой: можно отправить файл до " + maxBytes / (1024 * 1024) + " МБ.";
+    }
+
+    private synchronized String cachedFileId(String fileUniqueId) {
+        CachedFile file = uploaded.get(fileUniqueId);
+        if (file == null) {
+            return null;
+        }
+        if (file.expiresAtMillis <= System.currentTimeMillis()) {
+            uploaded.remove(fileUniqueId);
+            return null;
+        }
+        return file.fileId;
+    }
+
+    private synchronized void remember(String fileUniqueId, String fileId) {
+        uploaded.put(fileUniqueId, new CachedFile(fileId, System.currentTimeMillis() + cacheTtlMillis));
+        if (uploaded.size() > cacheMaxEntries) {
+            uploaded.remove(uploaded.keySet().iterator().next());
+        }
+    }
+
+    public int activeLargeTransfers() {
+        return maxLargeTransfers - largeTransfers.availablePermits();
+    }
+
+    public long cacheHits() {
+        return cacheHits.get();
+    }
+
+    public long transferred() {
+        return transferred.get();
+    }
+
+    /**
+     * Закрывает соединения с Telegram при остановке контекста Spring.
+     */
+    @PreDestroy
+    public void close() {
+        http.close();
+    }
+
+    /**
+     * Поток с ограничением размера: превышение лимита прерывает передачу, а не только проверяется после неё.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit; // Сколько байт можно прочитать
+        private volatile long count; // Сколько байт прочитано (читается после загрузки в другом потоке)
+        private volatile boolean exceeded; // Превышен ли лимит (читается после ошибки загрузки в другом потоке)
+        private volatile boolean finished; // Дочитан ли поток до конца
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                add(1);
+            } else {
+                finished = true;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                add(n);
+            } else if (n < 0) {
+                finished = true;
+            }
+            return n;
+        }
+
+        private void add(int n) throws IOException {
+            count += n;
+            if (count > limit) {
+                exceeded = true;
+                throw new IOException("Файл больше " + limit + " байт");
+            }
+        }
+
+        private long count() {
+            return count;
+        }
+
+        private boolean exceeded() {
+            return exceeded;
+        }
+
+        private boolean finished() {
+            return finished;
+        }
+    }
+
+    private record CachedFile(String fileId, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,109 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.cluster.ClusterMembership;
+import com.GigaChatMyBot.cluster.ClusterRouter;
+import com.GigaChatMyBot.config.TelegramBotConfig;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Внутренние запросы узлов кластера (bot.cluster.enabled=true) на встроенном веб-сервере.
+ * /cluster/health отвечает 200, пока узел принимает updates, — по нему другие узлы строят кольцо чатов.
+ * /cluster/updates принимает update, пересланный узлом, получившим его от Telegram: проверяет общий секрет
+ * из заголовка X-Cluster-Secret, отбрасывает повторы (пересылка могла повториться после таймаута)
+ * и обрабатывает update здесь, не пересылая дальше, — так update не ходит по кругу, пока узлы расходятся
+ * во мнении о составе кластера.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@RestController // Регистрирует контроллер во встроенном веб-сервере
+@ConditionalOnProperty(name = "bot.cluster.enabled", havingValue = "true") // Только в режиме кластера
+public class ClusterUpdateController {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterUpdateController.class); // Логгер для отклонённых запросов
+
+    private final GigaChatTelegramBot bot; // Бот: обрабатывает update на этом узле
+    private final TelegramBotConfig ingestion; // Запущен ли приём updates
+    private final ClusterMembership membership; // Идентификатор этого узла
+    private final byte[] secret; // Общий секрет узлов (пустым быть не может — это проверяет ClusterRouter)
+    private final UpdateDeduplicator deduplicator; // Отсев повторных пересылок
+    private final BotMetrics metrics; // Счётчики принятых, повторных и отклонённых updates
+
+    /**
+     * Конструктор.
+     * @param bot бот
+     * @param ingestion управление приёмом updates
+     * @param membership состав кластера
+     * @param secret общий секрет узлов
+     * @param dedupWindow сколько последних update_id помнить для отсева повторов
+     * @param metrics метрики
+     */
+    public ClusterUpdateController(GigaChatTelegramBot bot, TelegramBotConfig ingestion, ClusterMembership membership,
+                                   @Value("${bot.cluster.secret:}") String secret,
+                                   @Value("${telegram.webhook.dedup-window:10000}") int dedupWindow,
+                                   BotMetrics metrics) {
+        this.bot = bot;
+        this.ingestion = ingestion;
+        this.membership = membership;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.deduplicator = new UpdateDeduplicator(dedupWindow);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return 200 с идентификатором узла, пока узел принимает updates; иначе 503
+     */
+    @GetMapping(ClusterMembership.HEALTH_PATH)
+    public ResponseEntity<String> health() {
+        return ingestion.isIngesting()
+                ? ResponseEntity.ok(membership.selfId())
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(membership.selfId());
+    }
+
+    /**
+     * Принимает update, пересланный другим узлом.
+     * @param secret значение заголовка X-Cluster-Secret
+     * @param update update, разобранный из JSON
+     * @return 200 — update принят или уже был получен; 401 — неверный секрет;
+     * 503 — приём updates ещё не запущен или уже остановлен (узел-отправитель перешлёт update другому узлу)
+     */
+    @PostMapping(ClusterMembership.UPDATES_PATH)
+    public ResponseEntity<Void> onUpdate(@RequestHeader(name = ClusterRouter.SECRET_HEADER, required = false) String secret,
+                                         @RequestBody Update update) {
+        if (!isAuthorized(secret)) {
+            metrics.recordClusterUpdate("unauthorized");
+            logger.warn("Пересланный update отклонён: неверный секрет кластера");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!ingestion.isIngesting()) {
+            metrics.recordClusterUpdate("not_ready");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        if (update.getUpdateId() != null && !deduplicator.firstSeen(update.getUpdateId())) {
+            metrics.recordClusterUpdate("duplicate");
+            return ResponseEntity.ok().build();
+        }
+        metrics.recordClusterUpdate("accepted");
+        bot.processUpdate(update); // Только ставит update в очередь диспетчера
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Сравнивает секрет за постоянное время, чтобы его нельзя было подобрать по времени ответа.
+     */
+    private boolean isAuthorized(String value) {
+        return secret.length > 0 && value != null && MessageDigest.isEqual(secret, value.getBytes(StandardCharsets.UTF_8));
+    }
+}
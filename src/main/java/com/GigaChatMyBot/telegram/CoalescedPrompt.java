@@ -0,0 +1,89 @@
+package com.GigaChatMyBot.telegram;
+
+import java.util.List;
+
+/**
+ * Вопрос, собранный MessageCoalescer из одного или нескольких сообщений чата, пришедших подряд.
+ * Проходит фазы QUEUED → RUNNING (запрос к GigaChat) → REPLYING (отправка ответа) → DONE.
+ * Пока ответ не начал отправляться, вопрос может быть вытеснен новым сообщением того же чата:
+ * тогда поток обработчика прерывается (это отменяет HTTP-запрос), а ответ не отправляется.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public final class CoalescedPrompt {
+    private enum Phase { QUEUED, RUNNING, REPLYING, DONE, SUPERSEDED }
+
+    private final long chatId; // Идентификатор чата
+    private final List<String> parts; // Сообщения в порядке прихода
+    private Phase phase = Phase.QUEUED; // Текущая фаза
+    private Thread worker; // Поток, выполняющий запрос (в фазе RUNNING)
+
+    CoalescedPrompt(long chatId, List<String> parts) {
+        this.chatId = chatId;
+        this.parts = List.copyOf(parts);
+    }
+
+    public long chatId() {
+        return chatId;
+    }
+
+    /**
+     * @return текст вопроса: сообщения через перевод строки
+     */
+    public String text() {
+        return String.join("\n", parts);
+    }
+
+    List<String> parts() {
+        return parts;
+    }
+
+    /**
+     * Переводит вопрос к отправке ответа. После этого вопрос уже нельзя вытеснить.
+     * @return false, если вопрос вытеснен и ответ отправлять не нужно
+     */
+    public synchronized boolean beginReply() {
+        if (phase != Phase.RUNNING) {
+            return false;
+        }
+        phase = Phase.REPLYING;
+        worker = null;
+        return true;
+    }
+
+    /**
+     * Начинает обработку в текущем потоке.
+     * @return false, если вопрос вытеснен, пока ждал в очереди
+     */
+    synchronized boolean start() {
+        if (phase != Phase.QUEUED) {
+            return false;
+        }
+        phase = Phase.RUNNING;
+        worker = Thread.currentThread();
+        return true;
+    }
+
+    /**
+     * Вытесняет вопрос, если ответ на него ещё не отправляется.
+     * @return true, если вопрос вытеснен и его текст нужно объединить с новым сообщением
+     */
+    synchronized boolean supersede() {
+        if (phase != Phase.QUEUED && phase != Phase.RUNNING) {
+            return false;
+        }
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+        phase = Phase.SUPERSEDED;
+        return true;
+    }
+
+    synchronized void finish() {
+        if (phase != Phase.SUPERSEDED) {
+            phase = Phase.DONE;
+        }
+        worker = null;
+    }
+}
@@ -1,40 +1,130 @@
 package com.GigaChatMyBot.telegram;
 
+import com.GigaChatMyBot.cluster.ClusterRouter;
+import com.GigaChatMyBot.metrics.BotMetrics;
 import com.GigaChatMyBot.service.GigaChatService;
+import com.GigaChatMyBot.service.ModelRouter;
+import com.GigaChatMyBot.service.ResponseCache;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 
 /**
  * Telegram-бот на базе GigaChat.
  * Обрабатывает входящие сообщения и отправляет их в GigaChat с помощью gigaChatService.
  * Получает ответы через askGigaChat и отправляет их обратно в Telegram через sendMessage.
+ * Фотографии и документы передаются в GigaChat через AttachmentUploader, а подпись к ним становится вопросом.
+ * В режиме кластера update чата, принадлежащего другому узлу, пересылается ему через ClusterRouter.
  * @author vladimir_shi
  * @since 24.09.2025
  */
 @Component // Регистрирует класс как компонент Spring, чтобы бот автоматически инжектировался и регистрировался
-public class GigaChatTelegramBot extends TelegramLongPollingBot {
+public final class GigaChatTelegramBot extends TelegramLongPollingBot {
     private final GigaChatService gigaChatService; // Сервис для обработки запросов к GigaChat
+    private final UpdateDispatcher dispatcher; // Диспетчер: обработка вне потока поллинга, по очереди внутри чата
+    private final MessageCoalescer coalescer; // Склейка сообщений, отправленных подряд, в один вопрос
+    private final TelegramRateLimiter rateLimiter; // Лимиты исходящих сообщений Telegram (всего и на чат)
+    private final BotMetrics metrics; // Метрики задержек вызовов Telegram
+    private final MessageDelivery delivery; // Отправка длинных ответов частями, по порядку
+    private final AttachmentUploader attachments; // Передача фотографий и документов в GigaChat
+    private final ClusterRouter router; // Пересылка updates чатов других узлов кластера
     private static final Logger logger = LoggerFactory.getLogger(GigaChatTelegramBot.class); // Логгер для сообщений об ошибках
 
     @Value("${telegram.bot.username:default_bot_username}") // Инжектирует имя бота из application.properties
     private String botUsername;
 
-    @Value("${telegram.bot.token:default_token}") // Инжектирует токен бота из application.properties
-    private String botToken;
+    private final String botToken; // Токен бота из application.properties
+
+    @Value("${telegram.stream.edit-interval-ms:1000}") // Минимальный интервал между правками сообщения в потоковом режиме
+    private long streamEditIntervalMillis;
 
     /**
      * Конструктор Telegram-бота.
      * @param gigaChatService - сервис для обработки запросов к GigaChat
+     * @param dispatcher - диспетчер обработки сообщений на виртуальных потоках
+     * @param coalescer - склейка сообщений, отправленных подряд
+     * @param rateLimiter - лимиты исходящих сообщений Telegram
+     * @param metrics - метрики задержек вызовов Telegram
+     * @param attachments - передача фотографий и документов в GigaChat
+     * @param router - пересылка updates узлу-владельцу чата в режиме кластера
+     * @param botToken - токен бота
+     * @param apiUrl - адрес Bot API вместе с префиксом /bot (другой адрес — для локального Bot API или заглушки в бенчмарках)
+     * @param senderThreads - сколько вызовов Bot API может выполняться одновременно (потоки executeAsync и соединения)
      */
-    public GigaChatTelegramBot(GigaChatService gigaChatService) {
+    public GigaChatTelegramBot(GigaChatService gigaChatService, UpdateDispatcher dispatcher, MessageCoalescer coalescer,
+                               TelegramRateLimiter rateLimiter, BotMetrics metrics, AttachmentUploader attachments,
+                               ClusterRouter router,
+                               @Value("${telegram.bot.token:default_token}") String botToken,
+                               @Value("${telegram.bot.api-url:https://api.telegram.org/bot}") String apiUrl,
+                               @Value("${telegram.sender.max-threads:30}") int senderThreads) {
+        super(botOptions(apiUrl, senderThreads), botToken);
+        if (!widenConnectionPool(this, senderThreads)) {
+            logger.warn("Не удалось расширить пул соединений Bot API: одновременно выполняются не больше двух вызовов");
+        }
+        this.botToken = botToken;
         this.gigaChatService = gigaChatService;
+        this.dispatcher = dispatcher;
+        this.coalescer = coalescer;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+        this.attachments = attachments;
+        this.router = router;
+        this.delivery = new MessageDelivery(this, rateLimiter, metrics);
+    }
+
+    /**
+     * Настройки отправителя. По умолчанию DefaultBotOptions даёт executeAsync один поток,
+     * и все ответы, правки и getFile выстраиваются в одну очередь.
+     * @param apiUrl - адрес Bot API
+     * @param senderThreads - размер пула потоков executeAsync
+     */
+    private static DefaultBotOptions botOptions(String apiUrl, int senderThreads) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(apiUrl);
+        options.setMaxThreads(senderThreads);
+        return options;
+    }
+
+    /**
+     * Расширяет пул соединений Apache HttpClient отправителя до числа его потоков.
+     * Клиент собирается внутри DefaultAbsSender с пулом по умолчанию — два соединения на хост,
+     * поэтому без этого с api.telegram.org одновременно обмениваются только два потока, а остальные ждут соединение.
+     * Настроек пула в DefaultBotOptions нет, поэтому он берётся из закрытых полей; если библиотека устроена иначе,
+     * бот работает с пулом по умолчанию.
+     * @param sender - отправитель Bot API
+     * @param connections - сколько соединений с Bot API держать
+     * @return false, если пул расширить не удалось
+     */
+    static boolean widenConnectionPool(DefaultAbsSender sender, int connections) {
+        try {
+            Field clientField = DefaultAbsSender.class.getDeclaredField("httpClient");
+            clientField.setAccessible(true);
+            Object client = clientField.get(sender);
+            Field managerField = client.getClass().getDeclaredField("connManager");
+            managerField.setAccessible(true);
+            if (managerField.get(client) instanceof PoolingHttpClientConnectionManager pool) {
+                pool.setMaxTotal(Math.max(pool.getMaxTotal(), connections));
+                pool.setDefaultMaxPerRoute(connections);
+                return true;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Пул соединений Bot API недоступен: {}", e.toString());
+        }
+        return false;
     }
 
     @PostConstruct // @PostConstruct Вызывается Spring после инъекции зависимостей и свойств
@@ -57,42 +147,258 @@ public class GigaChatTelegramBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Обрабатывает входящие сообщения из Telegram-бота и отправляет их в GigaChat с помощью gigaChatService.
+     * Принимает входящие сообщения из Telegram (long polling или webhook).
+     * В режиме кластера update чата, принадлежащего другому узлу, пересылается ему, остальные обрабатываются здесь.
      * @param update - входящее сообщение
      */
     @Override // Переопределён от TelegramLongPollingBot — основной метод для обработки updates
     public void onUpdateReceived(Update update) {
+        if (!router.forward(update)) {
+            processUpdate(update);
+        }
+    }
+
+    /**
+     * Обрабатывает update на этом узле: передаёт сообщение в диспетчер.
+     * Поток поллинга не блокируется: запрос в GigaChat выполняется на виртуальном потоке,
+     * сообщения одного чата обрабатываются по порядку. Если очередь заполнена — сразу отвечает «занято».
+     * Вопросы сначала проходят MessageCoalescer: сообщения, отправленные подряд, склеиваются в один вопрос;
+     * команды передаются в диспетчер сразу. Фотографии и документы тоже передаются в диспетчер сразу,
+     * не склеиваясь с текстом: их передача в GigaChat сама занимает время. Текст, накопленный до файла,
+     * уходит в диспетчер перед ним, чтобы вопросы чата обрабатывались в порядке отправки.
+     * @param update - входящее сообщение
+     */
+    public void processUpdate(Update update) {
         if (update.hasMessage() && update.getMessage().hasText()) {
             String prompt = update.getMessage().getText();
             Long chatId = update.getMessage().getChatId();
-            logger.info("Получено сообщение от пользователя chatId={}: {}", chatId, prompt);  // Логируем входящее сообщение
-            String response;
-            try {
-                response = gigaChatService.askGigaChat(prompt);
-                logger.info("Отправляем ответ в Telegram для chatId={}: {}", chatId, response);  // Отправка в Telegram
-                sendMessage(chatId, response);
-            } catch (Exception e) {
-                logger.error("Ошибка при обработке сообщения от chatId={}: {}", chatId, e.getMessage(), e);  // Логируем ошибки
-                sendMessage(chatId, "Произошла ошибка при обработке запроса. Попробуйте ещё раз.");
+            logger.debug("Получено сообщение от пользователя chatId={}: {}", chatId, prompt);  // Полный текст — только на DEBUG
+            if (isCommand(prompt)) {
+                if (!dispatcher.dispatch(chatId, () -> handleCommand(chatId, prompt))) {
+                    logger.warn("Сообщение от chatId={} не принято: очередь заполнена или бот останавливается", chatId);
+                    replyBusy(chatId);
+                }
+            } else {
+                coalescer.submit(chatId, prompt, this::handleMessage, () -> replyBusy(chatId));
+            }
+        } else if (update.hasMessage() && (update.getMessage().hasPhoto() || update.getMessage().hasDocument())) {
+            Message message = update.getMessage();
+            Long chatId = message.getChatId();
+            Attachment attachment = Attachment.of(message, attachments.maxBytes());
+            String caption = message.getCaption();
+            coalescer.flush(chatId);
+            if (!dispatcher.dispatch(chatId, () -> handleAttachment(chatId, attachment, caption))) {
+                logger.warn("Файл от chatId={} не принят: очередь заполнена или бот останавливается", chatId);
+                replyBusy(chatId);
             }
         } else {
-            logger.warn("Получено обновление без текста или сообщения: {}", update);  // Логируем непредвиденные обновления
+            logger.debug("Получено обновление без текста или сообщения: {}", update);  // Логируем непредвиденные обновления
         }
     }
 
+    private boolean isCommand(String text) {
+        return commandArgument(text, "/cache") != null || commandArgument(text, "/model") != null;
+    }
+
     /**
-     * Отправляет сообщение в Telegram.
+     * Выполняет команду бота.
      * @param chatId - идентификатор чата
+     * @param command - текст команды
+     */
+    private void handleCommand(Long chatId, String command) {
+        String cacheArgument = commandArgument(command, "/cache");
+        if (cacheArgument != null) {
+            handleCacheCommand(chatId, cacheArgument);
+        } else {
+            handleModelCommand(chatId, commandArgument(command, "/model"));
+        }
+    }
+
+    /**
+     * Отправляет вопрос в GigaChat с помощью gigaChatService и возвращает ответ в чат.
+     * Если за время запроса пришло новое сообщение, вопрос вытесняется и ответ не отправляется.
+     * @param message - вопрос, склеенный из сообщений пользователя
+     */
+    private void handleMessage(CoalescedPrompt message) {
+        Long chatId = message.chatId();
+        String prompt = message.text();
+        if (gigaChatService.isStreamingEnabled()) {
+            handleMessageStreaming(message);
+            return;
+        }
+        try {
+            String response = gigaChatService.askGigaChat(chatId, prompt);
+            if (!message.beginReply()) {
+                logger.debug("Ответ для chatId={} не отправлен: вопрос вытеснен новым сообщением", chatId);
+                return;
+            }
+            logger.debug("Отправляем ответ в Telegram для chatId={}: {}", chatId, response);  // Отправка в Telegram
+            sendMessage(chatId, response);
+        } catch (Exception e) {
+            logger.error("Ошибка при обработке сообщения от chatId={}: {}", chatId, e.getMessage(), e);  // Логируем ошибки
+            sendMessage(chatId, "Произошла ошибка при обработке запроса. Попробуйте ещё раз.");
+        }
+    }
+
+    /**
+     * Разбирает команду бота. Команда — первое слово сообщения целиком, в группах — с суффиксом @ИмяБота
+     * ("/cache" и "/cache@MyBot" — команда, "/cached" и "/cache@OtherBot" — нет).
      * @param text - текст сообщения
+     * @param command - команда вместе с "/"
+     * @return аргумент команды без пробелов по краям или null, если сообщение не является этой командой
      */
-    private void sendMessage(Long chatId, String text) {
+    private String commandArgument(String text, String command) {
+        String stripped = text.strip();
+        int end = 0;
+        while (end < stripped.length() && !Character.isWhitespace(stripped.charAt(end))) {
+            end++;
+        }
+        String token = stripped.substring(0, end);
+        int at = token.indexOf('@');
+        if (at >= 0) {
+            if (!token.substring(at + 1).equalsIgnoreCase(botUsername)) {
+                return null;
+            }
+            token = token.substring(0, at);
+        }
+        return token.equals(command) ? stripped.substring(end).strip() : null;
+    }
+
+    /**
+     * Передаёт фотографию или документ в GigaChat и задаёт вопрос о нём: подпись к сообщению
+     * или, если её нет, просьбу описать изображение или пересказать документ.
+     * @param chatId - идентификатор чата
+     * @param attachment - файл из сообщения
+     * @param caption - подпись к сообщению (может отсутствовать)
+     */
+    private void handleAttachment(Long chatId, Attachment attachment, String caption) {
+        String prompt = (caption != null && !caption.isBlank()) ? caption
+                : attachment.photo() ? "Опиши, что изображено на картинке." : "Кратко перескажи содержание документа.";
+        List<String> fileIds;
+        try {
+            fileIds = List.of(attachments.upload(this, attachment));
+        } catch (AttachmentRejectedException e) {
+            sendMessage(chatId, e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException e) {
+            logger.error("Не удалось передать файл от chatId={} в GigaChat: {}", chatId, e.getMessage(), e);
+            sendMessage(chatId, "Не удалось загрузить файл. Попробуйте отправить его ещё раз.");
+            return;
+        }
+        if (!gigaChatService.isStreamingEnabled()) {
+            sendMessage(chatId, gigaChatService.askGigaChat(chatId, prompt, fileIds));
+            return;
+        }
+        StreamingReply reply = new StreamingReply(delivery, chatId, streamEditIntervalMillis);
+        try {
+            reply.start();
+        } catch (TelegramApiException e) {
+            logger.error("Не удалось отправить сообщение в чат chatId={}: {}", chatId, e.getMessage(), e);
+            return;
+        }
+        reply.finish(gigaChatService.askGigaChatStreaming(chatId, prompt, fileIds, reply));
+    }
+
+    /**
+     * Команда /cache on|off — включает или выключает кэш ответов для чата; без аргумента показывает состояние.
+     * @param chatId - идентификатор чата
+     * @param argument - аргумент команды
+     */
+    private void handleCacheCommand(Long chatId, String argument) {
+        if (argument.equals("on") || argument.equals("off")) {
+            gigaChatService.setCacheEnabled(chatId, argument.equals("on"));
+        } else if (!argument.isEmpty()) {
+            sendMessage(chatId, "Использование: /cache on | /cache off");
+            return;
+        }
+        ResponseCache cache = gigaChatService.getResponseCache();
+        sendMessage(chatId, "Кэш ответов " + (gigaChatService.isCacheEnabled(chatId) ? "включён" : "выключен")
+                + ". Попаданий: " + cache.hits() + ", промахов: " + cache.misses()
+                + ", вытеснено: " + cache.evictions() + ".");
+    }
+
+    /**
+     * Команда /model имя|auto — закрепляет модель за чатом или возвращает автоматический выбор;
+     * без аргумента показывает текущую настройку и доступные модели.
+     * @param chatId - идентификатор чата
+     * @param argument - аргумент команды
+     */
+    private void handleModelCommand(Long chatId, String argument) {
+        ModelRouter router = gigaChatService.getModelRouter();
+        if (!argument.isEmpty() && !router.setOverride(chatId, argument.equals("auto") ? null : argument)) {
+            sendMessage(chatId, "Неизвестная модель. Доступны: " + String.join(", ", router.getModels()) + ", auto");
+            return;
+        }
+        String current = router.getOverride(chatId);
+        sendMessage(chatId, "Модель: " + (current != null ? current : "выбирается автоматически по длине вопроса")
+                + ". Доступны: " + String.join(", ", router.getModels()) + ", auto.");
+    }
+
+    /**
+     * Потоковый вариант обработки: отправляет заглушку и дописывает её по мере генерации ответа.
+     * Если вопрос вытеснен новым сообщением, уже показанная часть ответа помечается как прерванная.
+     * @param message - вопрос, склеенный из сообщений пользователя
+     */
+    private void handleMessageStreaming(CoalescedPrompt message) {
+        Long chatId = message.chatId();
+        String prompt = message.text();
+        StreamingReply reply = new StreamingReply(delivery, chatId, streamEditIntervalMillis);
+        try {
+            reply.start();
+        } catch (TelegramApiException e) {
+            logger.error("Не удалось отправить сообщение в чат chatId={}: {}", chatId, e.getMessage(), e);
+            return;
+        }
+        String response = gigaChatService.askGigaChatStreaming(chatId, prompt, reply);
+        if (!message.beginReply()) {
+            Thread.interrupted(); // Прерывание отменило запрос; правка сообщения должна пройти
+            reply.abort();
+            return;
+        }
+        logger.debug("Потоковый ответ в Telegram для chatId={} завершён: {}", chatId, response);
+        reply.finish(response);
+    }
+
+    /**
+     * Быстрый асинхронный отказ из потока поллинга. Отправляется, только если лимит чата позволяет сделать это
+     * без ожидания: пользователю, засыпающему бота сообщениями, хватит и одного ответа «занято».
+     * @param chatId - идентификатор чата
+     */
+    private void replyBusy(Long chatId) {
+        if (!rateLimiter.tryAcquire(chatId)) {
+            return;
+        }
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
-        message.setText(text);
+        message.setText("Бот сейчас занят, попробуйте повторить запрос позже.");
+        long start = System.nanoTime();
         try {
-            execute(message);
+            executeAsync(message).whenComplete((sent, e) -> {
+                metrics.recordTelegramSend("sendMessage", System.nanoTime() - start, e == null);
+                if (e != null) {
+                    logger.error("Не удалось отправить сообщение в чат chatId={}: {}", chatId, e.getMessage());
+                }
+            });
         } catch (TelegramApiException e) {
-            logger.error("Не удалось отправить сообщение в чат chatId={}: {}", chatId, e.getMessage(), e);  // Ошибка отправки
+            metrics.recordTelegramSend("sendMessage", System.nanoTime() - start, false);
+            logger.error("Не удалось отправить сообщение в чат chatId={}: {}", chatId, e.getMessage());
+        }
+    }
+
+    /**
+     * Отправляет сообщение в Telegram. Текст длиннее лимита Telegram уходит несколькими сообщениями по порядку;
+     * метод возвращается после отправки последнего, чтобы следующий ответ в этот чат не обогнал текущий.
+     * @param chatId - идентификатор чата
+     * @param text - текст сообщения
+     */
+    private void sendMessage(Long chatId, String text) {
+        try {
+            delivery.send(chatId, text).join();
+        } catch (CompletionException e) {
+            // Ошибка отправки уже залогирована в MessageDelivery
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Склейка сообщений, которые пользователь отправляет подряд (например, длинный вопрос, разбитый Telegram на части).
+ * Сообщения чата, пришедшие с интервалом меньше windowMillis, объединяются в один вопрос, который уходит
+ * в UpdateDispatcher после паузы (но не позже maxDelayMillis после первого сообщения или сразу при превышении maxChars).
+ * Если на предыдущий вопрос чата ответ ещё не начал отправляться, он вытесняется: запрос к GigaChat отменяется,
+ * а его текст становится началом нового вопроса.
+ * При windowMillis = 0 сообщения передаются в диспетчер сразу и не склеиваются.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@Component // Регистрирует склейку как компонент Spring для инъекции в бота
+public class MessageCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(MessageCoalescer.class); // Логгер для отказов и вытеснений
+
+    private final UpdateDispatcher dispatcher; // Диспетчер, в который уходят склеенные вопросы
+    private final long windowMillis; // Пауза, после которой вопрос считается законченным
+    private final long maxDelayMillis; // Максимальная задержка вопроса от первого сообщения
+    private final int maxChars; // При такой длине вопрос отправляется, не дожидаясь паузы
+    private final ConcurrentHashMap<Long, ChatState> chats = new ConcurrentHashMap<>(); // Состояние склейки по chatId
+    private final ScheduledExecutorService scheduler; // Таймеры отправки склеенных вопросов
+    private final AtomicLong merged = new AtomicLong(); // Сообщения, присоединённые к уже начатому вопросу
+    private final AtomicLong superseded = new AtomicLong(); // Вопросы, вытесненные новым сообщением
+
+    /**
+     * Конструктор.
+     * @param windowMillis пауза между сообщениями, после которой вопрос отправляется (0 — не склеивать)
+     * @param maxDelayMillis максимальная задержка вопроса от первого сообщения
+     * @param maxChars длина склеенного вопроса, при которой он отправляется сразу
+     * @param dispatcher диспетчер обработки сообщений
+     * @param metrics метрики склейки
+     */
+    public MessageCoalescer(@Value("${telegram.coalesce.window-ms:1000}") long windowMillis,
+                            @Value("${telegram.coalesce.max-delay-ms:3000}") long maxDelayMillis,
+                            @Value("${telegram.coalesce.max-chars:16000}") int maxChars,
+                            UpdateDispatcher dispatcher,
+                            BotMetrics metrics) {
+        this.dispatcher = dispatcher;
+        this.windowMillis = windowMillis;
+        this.maxDelayMillis = Math.max(windowMillis, maxDelayMillis);
+        this.maxChars = maxChars;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metrics.counter("bot.coalescer.messages", "Сообщения, склеенные с предыдущими", "result", "merged",
+                merged, AtomicLong::get);
+        metrics.counter("bot.coalescer.messages", "Сообщения, склеенные с предыдущими", "result", "superseded",
+                superseded, AtomicLong::get);
+        logger.info("MessageCoalescer инициализирован: окно {} мс, максимум {} мс", windowMillis, this.maxDelayMillis);
+    }
+
+    /**
+     * Принимает сообщение чата.
+     * @param chatId идентификатор чата
+     * @param text текст сообщения
+     * @param handler обработчик склеенного вопроса (выполняется в UpdateDispatcher)
+     * @param onRejected вызывается, если диспетчер не принял вопрос
+     */
+    public void submit(long chatId, String text, Consumer<CoalescedPrompt> handler, Runnable onRejected) {
+        if (windowMillis <= 0) {
+            dispatch(new CoalescedPrompt(chatId, List.of(text)), handler, onRejected);
+            return;
+        }
+        boolean[] flushNow = new boolean[1];
+        chats.compute(chatId, (id, state) -> {
+            ChatState current = (state != null) ? state : new ChatState();
+            long now = System.currentTimeMillis();
+            if (current.parts.isEmpty()) {
+                current.firstAtMillis = now;
+                if (current.inFlight != null && current.inFlight.supersede()) {
+                    current.parts.addAll(current.inFlight.parts());
+                    current.chars += current.inFlight.text().length();
+                    current.inFlight = null;
+                    superseded.incrementAndGet();
+                    logger.debug("Вопрос chatId={} вытеснен новым сообщением", chatId);
+                }
+            } else {
+                merged.incrementAndGet();
+            }
+            current.parts.add(text);
+            current.chars += text.length();
+            current.handler = handler;
+            current.onRejected = onRejected;
+            if (current.timer != null) {
+                current.timer.cancel(false);
+                current.timer = null;
+            }
+            long delay = Math.min(windowMillis, current.firstAtMillis + maxDelayMillis - now);
+            if (current.chars >= maxChars || delay <= 0) {
+                flushNow[0] = true;
+            } else {
+                current.timer = scheduler.schedule(() -> flush(chatId), delay, TimeUnit.MILLISECONDS);
+            }
+            return current;
+        });
+        if (flushNow[0]) {
+            flush(chatId);
+        }
+    }
+
+    /**
+     * Забирает склеенный вопрос чата и передаёт его в диспетчер, не дожидаясь паузы.
+     * Бот вызывает его перед сообщением, которое не склеивается (фотография, документ),
+     * чтобы текст, отправленный раньше, и обработан был раньше.
+     * @param chatId идентификатор чата
+     */
+    public void flush(long chatId) {
+        CoalescedPrompt[] prompt = new CoalescedPrompt[1];
+        ChatState[] taken = new ChatState[1];
+        chats.computeIfPresent(chatId, (id, state) -> {
+            if (state.parts.isEmpty()) {
+                return state;
+            }
+            prompt[0] = new CoalescedPrompt(chatId, state.parts);
+            taken[0] = state;
+            state.parts = new ArrayList<>();
+            state.chars = 0;
+            if (state.timer != null) {
+                state.timer.cancel(false);
+                state.timer = null;
+            }
+            state.inFlight = prompt[0];
+            return state;
+        });
+        if (prompt[0] != null) {
+            dispatch(prompt[0], taken[0].handler, taken[0].onRejected);
+        }
+    }
+
+    private void dispatch(CoalescedPrompt prompt, Consumer<CoalescedPrompt> handler, Runnable onRejected) {
+        if (!dispatcher.dispatch(prompt.chatId(), () -> run(prompt, handler))) {
+            logger.warn("Сообщение от chatId={} не принято: очередь заполнена или бот останавливается", prompt.chatId());
+            release(prompt);
+            onRejected.run();
+        }
+    }
+
+    /**
+     * Выполняет обработчик, если вопрос не вытеснен, пока ждал в очереди.
+     */
+    private void run(CoalescedPrompt prompt, Consumer<CoalescedPrompt> handler) {
+        try {
+            if (prompt.start()) {
+                handler.accept(prompt);
+            }
+        } finally {
+            prompt.finish();
+            Thread.interrupted(); // Прерывание при вытеснении не должно достаться следующей задаче этого потока
+            release(prompt);
+        }
+    }
+
+    /**
+     * Забывает обработанный вопрос и удаляет состояние чата, если в нём больше ничего нет.
+     */
+    private void release(CoalescedPrompt prompt) {
+        chats.computeIfPresent(prompt.chatId(), (id, state) -> {
+            if (state.inFlight == prompt) {
+                state.inFlight = null;
+            }
+            return (state.inFlight == null && state.parts.isEmpty()) ? null : state;
+        });
+    }
+
+    /**
+     * @return число чатов, у которых есть накопленные сообщения или вопрос в обработке
+     */
+    public int size() {
+        return chats.size();
+    }
+
+    /**
+     * Отправляет накопленные вопросы и останавливает таймеры.
+     * Spring вызывает его до остановки UpdateDispatcher, от которого зависит этот компонент.
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Long chatId : chats.keySet()) {
+            flush(chatId);
+        }
+    }
+
+    /**
+     * Состояние склейки одного чата. Изменяется только внутри compute по ключу чата.
+     */
+    private static final class ChatState {
+        private List<String> parts = new ArrayList<>(); // Сообщения, ещё не отправленные в диспетчер
+        private int chars; // Суммарная длина накопленных сообщений
+        private long firstAtMillis; // Когда пришло первое из накопленных сообщений
+        private ScheduledFuture<?> timer; // Таймер отправки
+        private CoalescedPrompt inFlight; // Вопрос, который сейчас в очереди или обрабатывается
+        private Consumer<CoalescedPrompt> handler; // Обработчик вопроса
+        private Runnable onRejected; // Действие при отказе диспетчера
+    }
+}
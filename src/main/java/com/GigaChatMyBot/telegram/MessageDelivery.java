@@ -0,0 +1,122 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Доставка ответа в чат частями, которые Telegram примет (см. MessageSplitter).
+ * Части отправляются через executeAsync строго по порядку: следующая уходит, когда Telegram подтвердил предыдущую.
+ * Разрешение TelegramRateLimiter на следующую часть резервируется, когда уходит текущая, поэтому ожидание лимита
+ * идёт параллельно с отправкой, а не добавляется к ней. Вперёд занимается не больше одного разрешения:
+ * каждое ждёт не дольше max-wait-ms от своего резервирования, так что длинный ответ не упирается в таймаут
+ * целиком. Если часть не отправлена, остальные не отправляются, чтобы пользователь не получил ответ с дырой
+ * посередине, а зарезервированное разрешение возвращается.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class MessageDelivery {
+    private static final Logger logger = LoggerFactory.getLogger(MessageDelivery.class); // Логгер для ошибок отправки
+
+    private final AbsSender sender; // Отправитель запросов в Telegram
+    private final TelegramRateLimiter rateLimiter; // Лимиты исходящих сообщений Telegram
+    private final BotMetrics metrics; // Метрики задержек вызовов Telegram
+
+    /**
+     * Конструктор.
+     * @param sender отправитель запросов в Telegram
+     * @param rateLimiter лимиты исходящих сообщений Telegram
+     * @param metrics метрики задержек вызовов Telegram
+     */
+    MessageDelivery(AbsSender sender, TelegramRateLimiter rateLimiter, BotMetrics metrics) {
+        this.sender = sender;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Разбивает текст на части и отправляет их по порядку.
+     * @param chatId идентификатор чата
+     * @param text текст ответа
+     * @return future, завершающийся после отправки последней части (или с ошибкой первой неотправленной)
+     */
+    CompletableFuture<Void> send(Long chatId, String text) {
+        return sendChunks(chatId, MessageSplitter.split(text));
+    }
+
+    /**
+     * Отправляет готовые части по порядку.
+     * @param chatId идентификатор чата
+     * @param chunks части не длиннее лимита Telegram
+     * @return future, завершающийся после отправки последней части (или с ошибкой первой неотправленной)
+     */
+    CompletableFuture<Void> sendChunks(Long chatId, List<String> chunks) {
+        if (chunks.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return sendFrom(chatId, chunks, 0, rateLimiter.whenAllowed(chatId)).whenComplete((ignored, e) -> {
+            if (e != null) {
+                logger.error("Не удалось отправить ответ в чат chatId={}: {}", chatId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Отправляет части, начиная с index, когда придёт разрешение на первую из них.
+     * @param permit разрешение на часть index
+     */
+    private CompletableFuture<Void> sendFrom(Long chatId, List<String> chunks, int index, CompletableFuture<Void> permit) {
+        return permit.thenCompose(allowed -> {
+            CompletableFuture<Void> sent = sendChunk(chatId, chunks.get(index));
+            if (index + 1 == chunks.size()) {
+                return sent;
+            }
+            CompletableFuture<Void> nextPermit = rateLimiter.whenAllowed(chatId);
+            sent.whenComplete((ignored, e) -> {
+                // Отказ лимита завершает future сразу, и тогда возвращать нечего
+                if (e != null && !nextPermit.isCompletedExceptionally()) {
+                    rateLimiter.refund(chatId);
+                }
+            });
+            return sent.thenCompose(ignored -> sendFrom(chatId, chunks, index + 1, nextPermit));
+        });
+    }
+
+    private CompletableFuture<Void> sendChunk(Long chatId, String chunk) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(chunk);
+        long start = System.nanoTime();
+        CompletableFuture<Message> sent;
+        try {
+            sent = sender.executeAsync(message);
+        } catch (TelegramApiException e) {
+            sent = CompletableFuture.failedFuture(e); // Цепочка частей останавливается так же, как при асинхронной ошибке
+        }
+        return sent.handle((result, e) -> {
+            metrics.recordTelegramSend("sendMessage", System.nanoTime() - start, e == null);
+            if (e != null) {
+                throw (e instanceof RuntimeException runtime) ? runtime : new IllegalStateException(e);
+            }
+            return null;
+        });
+    }
+
+    TelegramRateLimiter rateLimiter() {
+        return rateLimiter;
+    }
+
+    BotMetrics metrics() {
+        return metrics;
+    }
+
+    AbsSender sender() {
+        return sender;
+    }
+}
@@ -0,0 +1,223 @@
+package com.GigaChatMyBot.telegram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбивает длинный ответ на части, которые Telegram примет в одном сообщении (не длиннее 4096 символов UTF-16).
+ * Место разреза выбирается во второй половине допустимого окна, по убыванию предпочтения:
+ * граница блока кода (```), конец абзаца, конец строки, конец предложения, пробел.
+ * Внутри строки не режет посередине inline-разметки (`код`, **жирный**, __курсив__).
+ * Если разрезать приходится внутри блока кода, часть закрывается ``` и следующая открывается тем же
+ * заголовком блока (с языком), чтобы обе части остались корректной разметкой; слишком длинный заголовок
+ * заменяется простым ```.
+ * Жёсткий разрез, когда подходящего места нет, не разбивает суррогатную пару UTF-16.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+public final class MessageSplitter {
+    public static final int TELEGRAM_MAX_LENGTH = 4096; // Лимит длины текста сообщения Telegram
+    private static final String FENCE = "```"; // Граница блока кода
+    private static final String CLOSE_FENCE = "\n" + FENCE; // Закрытие блока кода в конце части
+    private static final int MAX_REOPEN_SHARE = 4; // Заголовок блока кода повторяется, если он короче 1/4 части
+
+    private MessageSplitter() {
+    }
+
+    /**
+     * Разбивает текст на части не длиннее лимита Telegram.
+     * @param text текст ответа
+     * @return части в порядке отправки (один элемент, если текст помещается целиком)
+     */
+    public static List<String> split(String text) {
+        return split(text, TELEGRAM_MAX_LENGTH);
+    }
+
+    /**
+     * Разбивает текст на части не длиннее maxLength.
+     * @param text текст ответа
+     * @param maxLength максимальная длина части (не меньше 64)
+     * @return части в порядке отправки
+     */
+    public static List<String> split(String text, int maxLength) {
+        List<String> chunks = new ArrayList<>();
+        String reopen = ""; // Заголовок блока кода, который нужно повторить в начале следующей части
+        int start = 0;
+        while (start < text.length()) {
+            int budget = maxLength - reopen.length();
+            if (text.length() - start <= budget) {
+                addChunk(chunks, reopen + text.substring(start));
+                break;
+            }
+            int limit = start + budget - CLOSE_FENCE.length(); // Оставляем место под закрытие блока кода
+            int cut = findCut(text, start, limit, !reopen.isEmpty());
+            String openFence = openFenceAt(text, start, cut, reopen);
+            if (openFence == null) {
+                addChunk(chunks, reopen + text.substring(start, cut).stripTrailing());
+                reopen = "";
+                start = skipWhitespace(text, cut);
+            } else {
+                addChunk(chunks, reopen + stripTrailingNewline(text.substring(start, cut)) + CLOSE_FENCE);
+                // Слишком длинный заголовок (язык) не повторяется, иначе он не оставит места под текст части
+                reopen = (openFence.length() < maxLength / MAX_REOPEN_SHARE) ? openFence + "\n" : FENCE + "\n";
+                start = (cut < text.length() && text.charAt(cut) == '\n') ? cut + 1 : cut;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Выбирает место разреза в окне [start, limit].
+     * Сначала ищет места вне блоков кода, затем — любые, и только потом режет жёстко по limit.
+     */
+    private static int findCut(String text, int start, int limit, boolean insideAtStart) {
+        int min = start + (limit - start) / 2;
+        List<int[]> fences = fenceLines(text, start, limit);
+        int best = lastFenceBoundary(fences, min, insideAtStart);
+        if (best > 0) {
+            return best;
+        }
+        for (boolean allowInsideCode : new boolean[]{false, true}) {
+            int cut = lastBoundary(text, min, limit, fences, insideAtStart, allowInsideCode);
+            if (cut > 0) {
+                return cut;
+            }
+        }
+        return Character.isHighSurrogate(text.charAt(limit - 1)) ? limit - 1 : limit;
+    }
+
+    /**
+     * Ищет последнюю границу блока кода в окне: перед открывающей ``` или после закрывающей.
+     */
+    private static int lastFenceBoundary(List<int[]> fences, int min, boolean insideAtStart) {
+        int best = -1;
+        boolean inside = insideAtStart;
+        for (int[] fence : fences) {
+            int candidate = inside ? fence[1] : fence[0]; // После закрывающей строки или перед открывающей
+            if (candidate >= min) {
+                best = candidate;
+            }
+            inside = !inside;
+        }
+        return best;
+    }
+
+    /**
+     * Ищет последнюю границу абзаца, строки, предложения или слова (по убыванию предпочтения).
+     */
+    private static int lastBoundary(String text, int min, int limit, List<int[]> fences, boolean insideAtStart,
+                                    boolean allowInsideCode) {
+        int[] best = new int[4]; // Лучшая позиция для абзаца, строки, предложения и пробела
+        for (int p = limit; p > min; p--) {
+            if (!allowInsideCode && insideCode(fences, p, insideAtStart)) {
+                continue;
+            }
+            char c = text.charAt(p - 1);
+            int kind;
+            if (c == '\n') {
+                kind = (p >= 2 && text.charAt(p - 2) == '\n') ? 0 : 1;
+            } else if (text.charAt(p) == ' ' && (c == '.' || c == '!' || c == '?' || c == '…')) {
+                kind = 2;
+            } else if (text.charAt(p) == ' ') {
+                kind = 3;
+            } else {
+                continue;
+            }
+            if (best[kind] == 0 && (kind < 2 || !splitsInlineEntity(text, p))) {
+                best[kind] = p;
+            }
+        }
+        for (int cut : best) {
+            if (cut > 0) {
+                return cut;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Находит строки-границы блоков кода (начинаются с ```) в [start, limit).
+     * @return пары [начало строки, конец строки включая перевод строки]
+     */
+    private static List<int[]> fenceLines(String text, int start, int limit) {
+        List<int[]> fences = new ArrayList<>();
+        int lineStart = start;
+        while (lineStart < limit) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            lineEnd = (lineEnd < 0) ? text.length() : lineEnd + 1;
+            if (text.startsWith(FENCE, lineStart + leadingSpaces(text, lineStart))) {
+                fences.add(new int[]{lineStart, Math.min(lineEnd, limit)});
+            }
+            lineStart = lineEnd;
+        }
+        return fences;
+    }
+
+    private static boolean insideCode(List<int[]> fences, int position, boolean insideAtStart) {
+        boolean inside = insideAtStart;
+        for (int[] fence : fences) {
+            if (fence[0] >= position) {
+                break;
+            }
+            if (fence[1] > position) {
+                return true; // Посередине строки ``` резать нельзя
+            }
+            inside = !inside;
+        }
+        return inside;
+    }
+
+    /**
+     * Проверяет, остаётся ли до позиции в строке незакрытая inline-разметка.
+     */
+    private static boolean splitsInlineEntity(String text, int position) {
+        int lineStart = text.lastIndexOf('\n', position - 1) + 1;
+        String line = text.substring(lineStart, position);
+        return count(line, "`") % 2 != 0 || count(line, "**") % 2 != 0 || count(line, "__") % 2 != 0;
+    }
+
+    /**
+     * Если часть [start, cut) заканчивается внутри блока кода — возвращает строку, открывшую этот блок.
+     */
+    private static String openFenceAt(String text, int start, int cut, String reopen) {
+        String open = reopen.isEmpty() ? null : reopen.stripTrailing();
+        for (int[] fence : fenceLines(text, start, cut)) {
+            open = (open == null) ? text.substring(fence[0], fence[1]).strip() : null;
+        }
+        return open;
+    }
+
+    private static int leadingSpaces(String text, int from) {
+        int i = from;
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i - from;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String stripTrailingNewline(String chunk) {
+        return chunk.endsWith("\n") ? chunk.substring(0, chunk.length() - 1) : chunk;
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void addChunk(List<String> chunks, String chunk) {
+        if (!chunk.isBlank()) {
+            chunks.add(chunk);
+        }
+    }
+}
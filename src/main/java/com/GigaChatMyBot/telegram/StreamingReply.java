@@ -0,0 +1,191 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Ответ в Telegram, который дописывается по мере генерации текста GigaChat.
+ * Сначала отправляет сообщение-заглушку, затем обновляет его через EditMessageText.
+ * Правки идут не чаще одной за minEditIntervalMillis и не более одной одновременно,
+ * а каждая отправка берёт разрешение TelegramRateLimiter, чтобы не упираться в лимиты Telegram.
+ * Промежуточная правка без свободного разрешения пропускается — текст догонит следующая.
+ * Пока ответ длиннее лимита Telegram, в сообщении показывается только его первая часть;
+ * после завершения остальные части отправляются новыми сообщениями через MessageDelivery.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class StreamingReply implements Consumer<String> {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingReply.class); // Логгер для ошибок правки сообщения
+    private static final String PLACEHOLDER = "…"; // Текст сообщения до прихода первого фрагмента
+    private static final String ABORTED_NOTE = "(ответ прерван: пришло новое сообщение)"; // Пометка вытесненного ответа
+
+    private final MessageDelivery delivery; // Отправка частей ответа, не поместившихся в сообщение
+    private final AbsSender sender; // Отправитель запросов в Telegram
+    private final TelegramRateLimiter rateLimiter; // Лимиты исходящих сообщений Telegram
+    private final BotMetrics metrics; // Метрики задержек вызовов Telegram
+    private final Long chatId; // Идентификатор чата
+    private final long minEditIntervalMillis; // Минимальный интервал между правками сообщения
+    private final StringBuilder text = new StringBuilder(); // Накопленный текст ответа
+    private Integer messageId; // Идентификатор сообщения-заглушки
+    private String lastSentText = PLACEHOLDER; // Текст, который сейчас показан пользователю
+    private long lastEditMillis; // Время последней правки
+    private CompletableFuture<Serializable> pendingEdit = CompletableFuture.completedFuture(null); // Правка, отправленная последней
+
+    /**
+     * Конструктор.
+     * @param delivery отправка сообщений: отправитель, лимиты и метрики Telegram
+     * @param chatId идентификатор чата
+     * @param minEditIntervalMillis минимальный интервал между правками
+     */
+    StreamingReply(MessageDelivery delivery, Long chatId, long minEditIntervalMillis) {
+        this.delivery = delivery;
+        this.sender = delivery.sender();
+        this.rateLimiter = delivery.rateLimiter();
+        this.metrics = delivery.metrics();
+        this.chatId = chatId;
+        this.minEditIntervalMillis = minEditIntervalMillis;
+    }
+
+    /**
+     * Отправляет сообщение-заглушку, которое затем будет обновляться.
+     * @throws TelegramApiException если сообщение отправить не удалось
+     */
+    void start() throws TelegramApiException {
+        if (!rateLimiter.acquire(chatId)) {
+            throw new TelegramApiException("Превышен лимит отправки сообщений в чат");
+        }
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(PLACEHOLDER);
+        long start = System.nanoTime();
+        try {
+            messageId = sender.execute(message).getMessageId();
+        } finally {
+            metrics.recordTelegramSend("sendMessage", System.nanoTime() - start, messageId != null);
+        }
+        lastEditMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Принимает очередной фрагмент ответа. Правку отправляет асинхронно,
+     * только если прошёл интервал и предыдущая правка уже завершилась.
+     * @param delta фрагмент текста
+     */
+    @Override
+    public synchronized void accept(String delta) {
+        text.append(delta);
+        long now = System.currentTimeMillis();
+        if (now - lastEditMillis < minEditIntervalMillis || !pendingEdit.isDone() || !rateLimiter.tryAcquire(chatId)) {
+            return;
+        }
+        lastEditMillis = now;
+        pendingEdit = edit(text.toString());
+    }
+
+    /**
+     * Показывает окончательный текст ответа после завершения генерации.
+     * @param finalText полный ответ (или текст ошибки)
+     */
+    void finish(String finalText) {
+        CompletableFuture<Serializable> last;
+        synchronized (this) {
+            last = pendingEdit;
+        }
+        try {
+            last.join(); // Дожидаемся последней промежуточной правки, чтобы она не перезаписала итоговый текст
+        } catch (RuntimeException e) {
+            // Ошибка промежуточной правки уже залогирована
+        }
+        String target = (finalText == null || finalText.isBlank()) ? text.toString() : finalText;
+        if (target.isBlank()) {
+            return;
+        }
+        List<String> chunks = MessageSplitter.split(target);
+        if (!chunks.get(0).equals(lastSentText) && !finishEdit(chunks.get(0))) {
+            return;
+        }
+        if (chunks.size() > 1) {
+            try {
+                delivery.sendChunks(chatId, chunks.subList(1, chunks.size())).join();
+            } catch (RuntimeException e) {
+                // Ошибка отправки уже залогирована в MessageDelivery
+            }
+        }
+    }
+
+    /**
+     * Помечает уже показанную часть ответа как прерванную, когда вопрос вытеснен новым сообщением.
+     */
+    void abort() {
+        String shown;
+        synchronized (this) {
+            shown = text.toString();
+        }
+        finish(shown.isBlank() ? ABORTED_NOTE : shown + "\n\n" + ABORTED_NOTE);
+    }
+
+    /**
+     * Синхронно заменяет текст сообщения итоговым.
+     * @return true, если правка прошла
+     */
+    private boolean finishEdit(String newText) {
+        if (!rateLimiter.acquire(chatId)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            sender.execute(buildEdit(newText));
+            metrics.recordTelegramSend("editMessageText", System.nanoTime() - start, true);
+            lastSentText = newText;
+            return true;
+        } catch (TelegramApiException e) {
+            metrics.recordTelegramSend("editMessageText", System.nanoTime() - start, false);
+            logger.error("Не удалось обновить сообщение в чате chatId={}: {}", chatId, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Асинхронно меняет текст сообщения (не больше первой части ответа), если он отличается от показанного.
+     */
+    private CompletableFuture<Serializable> edit(String fullText) {
+        String newText = (fullText.length() > MessageSplitter.TELEGRAM_MAX_LENGTH)
+                ? MessageSplitter.split(fullText).get(0)
+                : fullText;
+        if (newText.equals(lastSentText)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        lastSentText = newText;
+        long start = System.nanoTime();
+        CompletableFuture<Serializable> sent;
+        try {
+            sent = sender.executeAsync(buildEdit(newText));
+        } catch (TelegramApiException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.handle((result, e) -> {
+            metrics.recordTelegramSend("editMessageText", System.nanoTime() - start, e == null);
+            if (e != null) {
+                logger.warn("Не удалось обновить сообщение в чате chatId={}: {}", chatId, e.getMessage());
+            }
+            return result;
+        });
+    }
+
+    private EditMessageText buildEdit(String newText) {
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId.toString());
+        edit.setMessageId(messageId);
+        edit.setText(newText);
+        return edit;
+    }
+}
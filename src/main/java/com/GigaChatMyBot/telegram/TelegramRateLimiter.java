@@ -0,0 +1,145 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.ratelimit.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограничитель исходящих сообщений в Telegram.
+ * Telegram допускает около 30 сообщений в секунду на бота и около одного в секунду в один чат;
+ * каждое отправляемое сообщение или правка берёт токен и из общей корзины, и из корзины чата.
+ * Корзины простаивающих чатов периодически удаляются.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@Component // Регистрирует ограничитель как компонент Spring для инъекции в бота
+public class TelegramRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(TelegramRateLimiter.class); // Логгер для отказов
+    private static final int CLEANUP_EVERY = 4096; // Через сколько вызовов чистить корзины простаивающих чатов
+
+    private final TokenBucket global; // Общий лимит бота
+    private final ConcurrentHashMap<Long, TokenBucket> chats = new ConcurrentHashMap<>(); // Лимиты по chatId
+    private final double perChatPerSecond; // Скорость для одного чата
+    private final int perChatBurst; // Сколько сообщений в чат можно отправить подряд
+    private final long maxWaitMillis; // Сколько ждать токена, прежде чем отказаться от отправки
+    private final AtomicInteger calls = new AtomicInteger(); // Счётчик вызовов для периодической очистки
+
+    /**
+     * Конструктор.
+     * @param globalPerSecond общий лимит, сообщений в секунду
+     * @param perChatPerSecond лимит одного чата, сообщений в секунду
+     * @param perChatBurst сколько сообщений в чат можно отправить подряд
+     * @param maxWaitMillis сколько ждать токена при отправке
+     */
+    public TelegramRateLimiter(@Value("${telegram.rate-limit.global-per-second:30}") double globalPerSecond,
+                               @Value("${telegram.rate-limit.per-chat-per-second:1}") double perChatPerSecond,
+                               @Value("${telegram.rate-limit.per-chat-burst:3}") int perChatBurst,
+                               @Value("${telegram.rate-limit.max-wait-ms:10000}") long maxWaitMillis) {
+        this.global = new TokenBucket(globalPerSecond, globalPerSecond);
+        this.perChatPerSecond = perChatPerSecond;
+        this.perChatBurst = perChatBurst;
+        this.maxWaitMillis = maxWaitMillis;
+        logger.info("TelegramRateLimiter инициализирован: {} сообщ/с всего, {} сообщ/с на чат", globalPerSecond, perChatPerSecond);
+    }
+
+    /**
+     * Дожидается разрешения на отправку в чат (не дольше maxWaitMillis).
+     * @param chatId идентификатор чата
+     * @return false, если разрешение не получено и сообщение отправлять не нужно
+     */
+    public boolean acquire(long chatId) {
+        long waitNanos = reserve(chatId, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+        if (waitNanos < 0) {
+            logger.warn("Сообщение в чат chatId={} не отправлено: лимит Telegram", chatId);
+            return false;
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Резервирует разрешение на отправку сразу, а ждать его предлагает асинхронно.
+     * Несколько вызовов подряд резервируют места в очереди корзины заранее, поэтому ожидание
+     * следующей части сообщения идёт параллельно с отправкой предыдущей.
+     * @param chatId идентификатор чата
+     * @return future, завершающийся, когда отправлять можно; с ошибкой, если ждать пришлось бы дольше maxWaitMillis
+     */
+    public CompletableFuture<Void> whenAllowed(long chatId) {
+        long waitNanos = reserve(chatId, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+        if (waitNanos < 0) {
+            logger.warn("Сообщение в чат chatId={} не отправлено: лимит Telegram", chatId);
+            return CompletableFuture.failedFuture(new TelegramApiException("Превышен лимит отправки сообщений в чат"));
+        }
+        if (waitNanos == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Берёт разрешение на отправку, только если оно доступно без ожидания.
+     * Подходит для необязательных сообщений: промежуточных правок и быстрых отказов.
+     * @param chatId идентификатор чата
+     * @return true, если отправлять можно прямо сейчас
+     */
+    public boolean tryAcquire(long chatId) {
+        return reserve(chatId, 0) == 0;
+    }
+
+    /**
+     * Возвращает разрешение, зарезервированное через whenAllowed, но не использованное:
+     * например, на часть ответа, которая не будет отправлена, потому что не ушла предыдущая.
+     * @param chatId идентификатор чата
+     */
+    public void refund(long chatId) {
+        chats.computeIfPresent(chatId, (id, bucket) -> {
+            bucket.refund();
+            return bucket;
+        });
+        global.refund();
+    }
+
+    /**
+     * Резервирует токены в корзине чата и в общей корзине.
+     * Корзина чата резервируется внутри compute, а простаивающие корзины удаляются через computeIfPresent:
+     * обе операции держат блокировку ключа, поэтому корзину нельзя удалить между её получением и резервированием.
+     * @return время ожидания в наносекундах или -1, если ждать пришлось бы дольше таймаута
+     */
+    private long reserve(long chatId, long timeoutNanos) {
+        if (calls.incrementAndGet() % CLEANUP_EVERY == 0) {
+            for (Long id : chats.keySet()) {
+                chats.computeIfPresent(id, (key, bucket) -> bucket.isFull() ? null : bucket);
+            }
+        }
+        long now = System.nanoTime();
+        long[] chatWait = new long[1];
+        TokenBucket chat = chats.compute(chatId, (id, bucket) -> {
+            TokenBucket current = (bucket != null) ? bucket : new TokenBucket(perChatPerSecond, perChatBurst);
+            chatWait[0] = current.reserve(now, timeoutNanos);
+            return current;
+        });
+        if (chatWait[0] < 0) {
+            return -1;
+        }
+        long globalWait = global.reserve(now, timeoutNanos);
+        if (globalWait < 0) {
+            chat.refund();
+            return -1;
+        }
+        return Math.max(chatWait[0], globalWait);
+    }
+}
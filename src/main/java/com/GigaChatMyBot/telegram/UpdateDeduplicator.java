@@ -0,0 +1,37 @@
+package com.GigaChatMyBot.telegram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Отсеивает повторно доставленные updates по update_id.
+ * Telegram повторяет доставку webhook, если не дождался ответа 200, поэтому один update может прийти дважды.
+ * Хранит последние capacity идентификаторов: update_id растут монотонно, и повторы приходят вскоре после оригинала.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class UpdateDeduplicator {
+    private final LinkedHashMap<Integer, Boolean> seen; // Недавние update_id в порядке поступления
+
+    /**
+     * Конструктор.
+     * @param capacity сколько последних update_id помнить
+     */
+    UpdateDeduplicator(int capacity) {
+        this.seen = new LinkedHashMap<>(Math.min(capacity, 1 << 16), 0.75f) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Отмечает update как полученный.
+     * @param updateId идентификатор update
+     * @return true, если update пришёл впервые
+     */
+    synchronized boolean firstSeen(int updateId) {
+        return seen.put(updateId, Boolean.TRUE) == null;
+    }
+}
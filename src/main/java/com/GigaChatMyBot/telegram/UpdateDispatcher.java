@@ -0,0 +1,195 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Диспетчер обработки updates на виртуальных потоках.
+ * Сообщения одного чата обрабатываются строго по очереди, разные чаты — параллельно.
+ * Общее число одновременно обрабатываемых сообщений ограничено семафором,
+ * а очереди — лимитами на чат и на всех: при переполнении сообщение сразу отклоняется,
+ * чтобы бот быстро ответил «занято», а не копил ожидающие потоки.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@Component // Регистрирует диспетчер как компонент Spring для инъекции в бота
+public class UpdateDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(UpdateDispatcher.class); // Логгер для ошибок обработчиков и остановки
+
+    // Очереди ожидающих задач по chatId. Наличие ключа означает, что для чата уже работает виртуальный поток
+    private final ConcurrentHashMap<Long, ArrayDeque<Runnable>> queues = new ConcurrentHashMap<>();
+    private final ExecutorService executor; // Исполнитель: новый виртуальный поток на каждую серию задач чата
+    private final Semaphore permits; // Глобальный лимит одновременно выполняемых задач
+    private final long shutdownTimeoutSeconds; // Сколько ждать завершения задач при остановке
+    private final int maxQueuePerChat; // Сколько сообщений одного чата может ждать обработки
+    private final int maxPending; // Сколько сообщений всего может быть принято и не обработано
+    private final AtomicInteger pending = new AtomicInteger(); // Принятые, но ещё не обработанные сообщения
+    private final BotMetrics metrics; // Метрики очередей
+    private volatile boolean accepting = true; // Принимает ли диспетчер новые задачи
+
+    /**
+     * Конструктор.
+     * @param maxConcurrency максимальное число одновременно обрабатываемых сообщений
+     * @param shutdownTimeoutSeconds сколько секунд ждать завершения задач при остановке
+     * @param maxQueuePerChat сколько сообщений одного чата может ждать обработки
+     * @param maxPending сколько сообщений всего может быть принято и не обработано
+     * @param metrics метрики очередей
+     */
+    public UpdateDispatcher(@Value("${telegram.dispatcher.max-concurrency:200}") int maxConcurrency,
+                            @Value("${telegram.dispatcher.shutdown-timeout-seconds:30}") long shutdownTimeoutSeconds,
+                            @Value("${telegram.dispatcher.max-queue-per-chat:5}") int maxQueuePerChat,
+                            @Value("${telegram.dispatcher.max-pending:2000}") int maxPending,
+                            BotMetrics metrics) {
+        this.permits = new Semaphore(maxConcurrency);
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+        this.maxQueuePerChat = maxQueuePerChat;
+        this.maxPending = maxPending;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("update-", 0).factory());
+        this.metrics = metrics;
+        metrics.gauge("bot.dispatcher.pending", "Принятые, но ещё не обработанные сообщения", pending, AtomicInteger::get);
+        metrics.gauge("bot.dispatcher.active", "Сообщения, обрабатываемые сейчас", permits,
+                p -> maxConcurrency - p.availablePermits());
+        metrics.gauge("bot.dispatcher.chats", "Чаты с сообщениями в обработке", queues, ConcurrentHashMap::size);
+        logger.info("UpdateDispatcher инициализирован: maxConcurrency={}, maxPending={}", maxConcurrency, maxPending);
+    }
+
+    /**
+     * Ставит задачу в очередь чата.
+     * Если для чата нет активного потока — запускает новый виртуальный поток.
+     * @param chatId идентификатор чата
+     * @param task обработчик сообщения
+     * @return false, если задача не принята: очередь чата или общая очередь заполнена либо диспетчер останавливается
+     */
+    public boolean dispatch(long chatId, Runnable task) {
+        if (!accepting) {
+            return false;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            return false;
+        }
+        boolean[] start = new boolean[1];
+        boolean[] rejected = new boolean[1];
+        queues.compute(chatId, (id, queue) -> {
+            metrics.recordChatQueueLength((queue == null) ? 0 : queue.size() + 1);
+            if (queue == null) {
+                start[0] = true;
+                return new ArrayDeque<>();
+            }
+            if (queue.size() >= maxQueuePerChat) {
+                rejected[0] = true;
+                return queue;
+            }
+            queue.add(task);
+            return queue;
+        });
+        if (rejected[0]) {
+            pending.decrementAndGet();
+            return false;
+        }
+        if (start[0]) {
+            try {
+                executor.execute(() -> drain(chatId, task));
+            } catch (RejectedExecutionException e) {
+                queues.remove(chatId);
+                pending.decrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Выполняет задачи чата по порядку, пока очередь не опустеет.
+     * @param chatId идентификатор чата
+     * @param first первая задача
+     */
+    private void drain(long chatId, Runnable first) {
+        Runnable task = first;
+        while (task != null) {
+            try {
+                runWithPermit(chatId, task);
+            } finally {
+                pending.decrementAndGet();
+            }
+            task = pollNext(chatId);
+        }
+    }
+
+    /**
+     * Забирает следующую задачу чата. Если очередь пуста — удаляет её,
+     * чтобы следующий dispatch запустил новый поток.
+     * @param chatId идентификатор чата
+     * @return следующая задача или null
+     */
+    private Runnable pollNext(long chatId) {
+        Runnable[] next = new Runnable[1];
+        queues.computeIfPresent(chatId, (id, queue) -> {
+            next[0] = queue.poll();
+            return (next[0] == null) ? null : queue;
+        });
+        return next[0];
+    }
+
+    /**
+     * Выполняет задачу, заняв место в глобальном лимите.
+     */
+    private void runWithPermit(long chatId, Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            logger.error("Ошибка в обработчике сообщения chatId={}: {}", chatId, e.getMessage(), e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return принятые, но ещё не обработанные сообщения
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Перестаёт принимать задачи и дожидается выполнения уже принятых.
+     * Если задачи не уложились в таймаут — прерывает их.
+     * Первым вызывает BotLifecycle при остановке приложения; повторный вызов из @PreDestroy ничего не делает.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (!accepting) {
+            return;
+        }
+        accepting = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Не все сообщения обработаны за {} с, прерываем оставшиеся", shutdownTimeoutSeconds);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        logger.info("UpdateDispatcher остановлен");
+    }
+}
@@ -0,0 +1,101 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.config.TelegramBotConfig;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Приём updates через webhook (telegram.bot.mode=webhook) на встроенном веб-сервере.
+ * Проверяет секретный токен из заголовка X-Telegram-Bot-Api-Secret-Token, отбрасывает повторные доставки
+ * и передаёт update в ограниченный UpdateDispatcher через бота. Ответ 200 возвращается сразу,
+ * не дожидаясь обработки: долгий ответ GigaChat не задерживает Telegram и не вызывает повторных доставок.
+ * Пока приём updates не запущен (прогрев при старте) или уже остановлен (выключение), возвращается 503:
+ * Telegram повторит доставку, и update обработает готовый экземпляр.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+@RestController // Регистрирует контроллер во встроенном веб-сервере
+@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook") // Только в режиме webhook
+public class WebhookController {
+    private static final Logger logger = LoggerFactory.getLogger(WebhookController.class); // Логгер для отклонённых запросов
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token"; // Заголовок с секретным токеном webhook
+
+    private final GigaChatTelegramBot bot; // Бот: передаёт update в диспетчер
+    private final TelegramBotConfig ingestion; // Запущен ли приём updates
+    private final byte[] secretToken; // Ожидаемый секретный токен (пустой — проверка отключена)
+    private final UpdateDeduplicator deduplicator; // Отсев повторных доставок
+    private final BotMetrics metrics; // Счётчики принятых, повторных и отклонённых updates
+
+    /**
+     * Конструктор.
+     * @param bot бот
+     * @param ingestion управление приёмом updates
+     * @param secretToken секретный токен, переданный Telegram в setWebhook
+     * @param dedupWindow сколько последних update_id помнить для отсева повторов
+     * @param metrics метрики
+     */
+    public WebhookController(GigaChatTelegramBot bot, TelegramBotConfig ingestion,
+                             @Value("${telegram.webhook.secret-token:}") String secretToken,
+                             @Value("${telegram.webhook.dedup-window:10000}") int dedupWindow,
+                             BotMetrics metrics) {
+        this.bot = bot;
+        this.ingestion = ingestion;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+        this.deduplicator = new UpdateDeduplicator(dedupWindow);
+        this.metrics = metrics;
+        if (secretToken.isBlank()) {
+            logger.warn("telegram.webhook.secret-token не задан: webhook принимает запросы от кого угодно");
+        }
+    }
+
+    /**
+     * Принимает update от Telegram.
+     * @param secret значение заголовка X-Telegram-Bot-Api-Secret-Token
+     * @param update update, разобранный из JSON
+     * @return 200 — update принят или уже был получен; 401 — неверный секретный токен;
+     * 503 — приём updates ещё не запущен или уже остановлен
+     */
+    @PostMapping("${telegram.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(@RequestHeader(name = SECRET_HEADER, required = false) String secret,
+                                         @RequestBody Update update) {
+        if (!isAuthorized(secret)) {
+            metrics.recordWebhookUpdate("unauthorized");
+            logger.warn("Запрос к webhook отклонён: неверный секретный токен");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!ingestion.isIngesting()) {
+            metrics.recordWebhookUpdate("not_ready");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        if (update.getUpdateId() != null && !deduplicator.firstSeen(update.getUpdateId())) {
+            metrics.recordWebhookUpdate("duplicate");
+            logger.debug("Повторная доставка update_id={} отброшена", update.getUpdateId());
+            return ResponseEntity.ok().build();
+        }
+        metrics.recordWebhookUpdate("accepted");
+        bot.onUpdateReceived(update); // Только ставит update в очередь диспетчера
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Сравнивает токен за постоянное время, чтобы его нельзя было подобрать по времени ответа.
+     */
+    private boolean isAuthorized(String secret) {
+        if (secretToken.length == 0) {
+            return true;
+        }
+        return secret != null && MessageDigest.isEqual(secretToken, secret.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,156 @@
+package com.GigaChatMyBot.cluster;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ClusterMembership против узлов-заглушек на HttpServer: вход узлов в кольцо по проверкам готовности,
+ * выбор ведущего узла, выход узла после пропущенных проверок и немедленное исключение через markDead.
+ * Узел под проверкой — "b", узлы-заглушки — "a" и "c".
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class ClusterMembershipTest {
+    private static final int FAILURE_THRESHOLD = 2; // Пропущенных проверок до исключения узла
+
+    private StubPeer a; // Узел с наименьшим идентификатором
+    private StubPeer c; // Второй узел-заглушка
+    private ClusterMembership membership; // Состав кластера узла "b"
+
+    @BeforeEach
+    void setUp() throws IOException {
+        a = new StubPeer("a");
+        c = new StubPeer("c");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (membership != null) {
+            membership.close();
+        }
+        a.close();
+        c.close();
+    }
+
+    private ClusterMembership membership(long heartbeatIntervalMillis) {
+        String nodes = a.node() + ",b=http://127.0.0.1:1," + c.node();
+        membership = new ClusterMembership(true, "b", nodes, 128, heartbeatIntervalMillis, FAILURE_THRESHOLD,
+                BotMetrics.standalone());
+        return membership;
+    }
+
+    /**
+     * Первый чат, который принадлежит узлу-заглушке.
+     */
+    private long chatOwnedBy(StubPeer peer) {
+        for (long chatId = 0; ; chatId++) {
+            ClusterMembership.Peer owner = membership.owner(chatId);
+            if (owner != null && owner.id().equals(peer.id())) {
+                return chatId;
+            }
+        }
+    }
+
+    @Test
+    void disabledClusterOwnsEveryChat() {
+        ClusterMembership local = new ClusterMembership(false, "", "", 128, 1000, 3, BotMetrics.standalone());
+        assertThat(local.owner(42)).isNull();
+        assertThat(local.isLeader()).isTrue();
+        assertThat(local.alive()).isEqualTo(1);
+        local.close();
+    }
+
+    @Test
+    void enabledClusterRequiresNodeId() {
+        assertThatThrownBy(() -> new ClusterMembership(true, " ", a.node(), 128, 1000, 3, BotMetrics.standalone()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void healthyPeersJoinAndSmallestIdLeads() {
+        membership(1000);
+        assertThat(membership.alive()).as("до первой проверки узлы не в кольце").isEqualTo(1);
+        assertThat(membership.isLeader()).isTrue();
+
+        membership.refresh();
+        assertThat(membership.alive()).isEqualTo(3);
+        assertThat(membership.isLeader()).as("ведёт узел \"a\"").isFalse();
+        assertThat(membership.owner(chatOwnedBy(a)).id()).isEqualTo("a");
+        assertThat(membership.owner(chatOwnedBy(c)).id()).isEqualTo("c");
+    }
+
+    @Test
+    void peerLeavesAfterFailureThresholdAndOthersKeepTheirChats() {
+        membership(1000);
+        membership.refresh();
+        AtomicInteger changes = new AtomicInteger();
+        membership.addListener(changes::incrementAndGet);
+        long chatOfA = chatOwnedBy(a);
+        long chatOfC = chatOwnedBy(c);
+
+        a.healthStatus(503); // Узел "a" останавливается
+        membership.refresh();
+        assertThat(membership.alive()).as("один пропуск меньше порога").isEqualTo(3);
+        membership.refresh();
+        assertThat(membership.alive()).isEqualTo(2);
+        assertThat(changes).hasValue(1);
+        assertThat(membership.isLeader()).as("ведущим становится \"b\"").isTrue();
+        ClusterMembership.Peer newOwner = membership.owner(chatOfA);
+        assertThat(newOwner == null || newOwner.id().equals("c")).as("чат \"a\" перешёл к живому узлу").isTrue();
+        assertThat(membership.owner(chatOfC).id()).as("чаты \"c\" остались у него").isEqualTo("c");
+
+        a.healthStatus(200);
+        membership.refresh();
+        assertThat(membership.alive()).isEqualTo(3);
+        assertThat(membership.owner(chatOfA).id()).as("вернувшийся узел получает свои чаты обратно").isEqualTo("a");
+    }
+
+    @Test
+    void markDeadRemovesPeerImmediately() {
+        membership(1000);
+        membership.refresh();
+        AtomicInteger changes = new AtomicInteger();
+        membership.addListener(changes::incrementAndGet);
+        long chatOfA = chatOwnedBy(a);
+        ClusterMembership.Peer peerA = membership.owner(chatOfA);
+
+        membership.markDead(peerA); // Пересылка узлу "a" не удалась
+        assertThat(changes).hasValue(1);
+        assertThat(membership.alive()).isEqualTo(2);
+        ClusterMembership.Peer newOwner = membership.owner(chatOfA);
+        assertThat(newOwner == null || newOwner.id().equals("c")).as("чат \"a\" перешёл к живому узлу").isTrue();
+
+        membership.markDead(peerA);
+        assertThat(changes).as("повторное исключение ничего не меняет").hasValue(1);
+
+        membership.refresh();
+        assertThat(membership.alive()).as("узел ответил на проверку и вернулся").isEqualTo(3);
+        assertThat(changes).hasValue(2);
+    }
+
+    @Test
+    void heartbeatStartsOnStart() throws InterruptedException {
+        membership(200);
+        membership.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (membership.alive() < 3 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(membership.alive()).isEqualTo(3);
+
+        c.healthStatus(503);
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (membership.alive() > 2 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(membership.alive()).isEqualTo(2);
+    }
+}
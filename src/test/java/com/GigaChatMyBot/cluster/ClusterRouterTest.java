@@ -0,0 +1,159 @@
+package com.GigaChatMyBot.cluster;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ClusterRouter.forward против узлов-заглушек на HttpServer: пересылка владельцу чата с общим секретом,
+ * исключение не принявшего update владельца и переход к следующему, обработка на этом узле,
+ * когда update не принял никто. Узел под проверкой — "b", узлы-заглушки — "a" и "c".
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class ClusterRouterTest {
+    private static final String SECRET = "cluster-secret"; // Общий секрет узлов
+    private static final int VIRTUAL_NODES = 128; // Точек кольца на узел
+
+    private StubPeer a; // Первый узел-заглушка
+    private StubPeer c; // Второй узел-заглушка
+    private ClusterMembership membership; // Состав кластера узла "b"
+    private ClusterRouter router; // Проверяемый маршрутизатор
+
+    @BeforeEach
+    void setUp() throws IOException {
+        a = new StubPeer("a");
+        c = new StubPeer("c");
+        String nodes = a.node() + "," + c.node();
+        membership = new ClusterMembership(true, "b", nodes, VIRTUAL_NODES, 1000, 3, BotMetrics.standalone());
+        membership.refresh();
+        router = new ClusterRouter(membership, SECRET, 2000, BotMetrics.standalone());
+    }
+
+    @AfterEach
+    void tearDown() {
+        router.close();
+        membership.close();
+        a.close();
+        c.close();
+    }
+
+    private static Update update(int updateId, long chatId) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        chat.setType("private");
+        Message message = new Message();
+        message.setMessageId(updateId);
+        message.setChat(chat);
+        message.setText("Привет");
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+
+    private long chatOwnedBy(StubPeer peer) {
+        for (long chatId = 0; ; chatId++) {
+            ClusterMembership.Peer owner = membership.owner(chatId);
+            if (owner != null && owner.id().equals(peer.id())) {
+                return chatId;
+            }
+        }
+    }
+
+    /**
+     * Чат узла "a", который после выхода "a" из кольца достаётся узлу to.
+     */
+    private static long chatOfAMovingTo(String to) {
+        HashRing full = new HashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+        HashRing withoutA = new HashRing(List.of("b", "c"), VIRTUAL_NODES);
+        for (long chatId = 0; ; chatId++) {
+            if (full.owner(chatId).equals("a") && withoutA.owner(chatId).equals(to)) {
+                return chatId;
+            }
+        }
+    }
+
+    @Test
+    void enabledClusterRequiresSecret() {
+        assertThatThrownBy(() -> new ClusterRouter(membership, " ", 2000, BotMetrics.standalone()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void disabledClusterProcessesLocally() {
+        ClusterMembership local = new ClusterMembership(false, "", "", 128, 1000, 3, BotMetrics.standalone());
+        ClusterRouter localRouter = new ClusterRouter(local, "", 2000, BotMetrics.standalone());
+        assertThat(localRouter.forward(update(1, 42))).isFalse();
+        localRouter.close();
+        local.close();
+    }
+
+    @Test
+    void updateWithoutMessageIsProcessedLocally() {
+        Update update = new Update();
+        update.setUpdateId(1);
+        assertThat(router.forward(update)).isFalse();
+        assertThat(a.updates()).isEmpty();
+        assertThat(c.updates()).isEmpty();
+    }
+
+    @Test
+    void updateIsForwardedToOwnerWithSecret() {
+        long chatId = chatOwnedBy(a);
+        assertThat(router.forward(update(7, chatId))).isTrue();
+
+        assertThat(a.updates()).singleElement().asString().contains("\"update_id\":7");
+        assertThat(a.secrets()).containsExactly(SECRET);
+        assertThat(c.updates()).isEmpty();
+    }
+
+    @Test
+    void ownerThatRejectsUpdateIsMarkedDeadAndNextOwnerGetsIt() {
+        long chatId = chatOfAMovingTo("c");
+        long chatOfC = chatOwnedBy(c);
+        a.updateStatus(503); // Узел "a" останавливается, но ещё не пропустил проверку готовности
+
+        assertThat(router.forward(update(7, chatId))).isTrue();
+
+        assertThat(a.updates()).isEmpty();
+        assertThat(c.updates()).singleElement().asString().contains("\"update_id\":7");
+        assertThat(membership.alive()).as("узел \"a\" исключён из кольца").isEqualTo(2);
+        assertThat(membership.owner(chatId).id()).isEqualTo("c");
+        assertThat(membership.owner(chatOfC).id()).as("чаты \"c\" не сдвинулись").isEqualTo("c");
+    }
+
+    @Test
+    void chatOfRejectingOwnerThatMovesHereIsProcessedLocally() {
+        long chatId = chatOfAMovingTo("b");
+        a.updateStatus(503);
+
+        assertThat(router.forward(update(7, chatId))).isFalse();
+
+        assertThat(membership.owner(chatId)).isNull();
+        assertThat(c.updates()).as("чат не принадлежит \"c\"").isEmpty();
+    }
+
+    @Test
+    void updateIsProcessedLocallyWhenNoPeerAcceptsIt() {
+        long chatId = chatOfAMovingTo("c");
+        a.updateStatus(503);
+        c.updateStatus(503);
+
+        assertThat(router.forward(update(7, chatId))).isFalse();
+
+        assertThat(membership.alive()).as("оба узла исключены").isEqualTo(1);
+        assertThat(membership.owner(chatId)).isNull();
+        assertThat(a.updates()).isEmpty();
+        assertThat(c.updates()).isEmpty();
+    }
+}
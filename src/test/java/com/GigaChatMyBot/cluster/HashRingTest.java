@@ -0,0 +1,62 @@
+package com.GigaChatMyBot.cluster;
+
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * HashRing: одинаковое кольцо при одинаковом составе, равномерное деление чатов
+ * и переход к остальным узлам только чатов выбывшего узла.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class HashRingTest {
+    private static final int VIRTUAL_NODES = 128; // Точек кольца на узел
+    private static final int CHATS = 10_000; // Сколько чатов раскладывать
+
+    @Test
+    void emptyRingHasNoOwner() {
+        assertThat(new HashRing(List.of(), VIRTUAL_NODES).owner(1)).isNull();
+    }
+
+    @Test
+    void ringDependsOnlyOnNodeIds() {
+        HashRing first = new HashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+        HashRing second = new HashRing(List.of("c", "a", "b"), VIRTUAL_NODES);
+        for (long chatId = 0; chatId < CHATS; chatId++) {
+            assertThat(second.owner(chatId)).isEqualTo(first.owner(chatId));
+        }
+    }
+
+    @Test
+    void chatsAreSpreadAcrossNodes() {
+        HashRing ring = new HashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+        Map<String, Integer> counts = new HashMap<>();
+        for (long chatId = 0; chatId < CHATS; chatId++) {
+            counts.merge(ring.owner(chatId), 1, Integer::sum);
+        }
+        assertThat(counts).containsOnlyKeys("a", "b", "c");
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(CHATS / 5, CHATS / 2));
+    }
+
+    @Test
+    void onlyChatsOfLeavingNodeMove() {
+        HashRing full = new HashRing(List.of("a", "b", "c"), VIRTUAL_NODES);
+        HashRing withoutB = new HashRing(List.of("a", "c"), VIRTUAL_NODES);
+        int moved = 0;
+        for (long chatId = 0; chatId < CHATS; chatId++) {
+            String before = full.owner(chatId);
+            String after = withoutB.owner(chatId);
+            if (before.equals("b")) {
+                assertThat(after).isIn("a", "c");
+                moved++;
+            } else {
+                assertThat(after).as("чат %d остаётся у своего узла", chatId).isEqualTo(before);
+            }
+        }
+        assertThat(moved).isBetween(CHATS / 5, CHATS / 2);
+    }
+}
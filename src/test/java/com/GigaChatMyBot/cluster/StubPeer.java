@@ -0,0 +1,81 @@
+package com.GigaChatMyBot.cluster;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+/**
+ * Заглушка узла кластера для тестов: отвечает на /cluster/health и /cluster/updates заданными кодами
+ * и запоминает пересланные ей updates вместе с заголовком секрета.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+final class StubPeer implements AutoCloseable {
+    private final String id; // Идентификатор узла
+    private final HttpServer server; // Веб-сервер узла
+    private final List<String> updates = new CopyOnWriteArrayList<>(); // Тела принятых updates
+    private final List<String> secrets = new CopyOnWriteArrayList<>(); // Заголовки X-Cluster-Secret принятых updates
+    private volatile int healthStatus = 200; // Ответ на проверку готовности
+    private volatile int updateStatus = 200; // Ответ на пересланный update
+
+    StubPeer(String id) throws IOException {
+        this.id = id;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext(ClusterMembership.HEALTH_PATH, exchange -> respond(exchange, healthStatus));
+        server.createContext(ClusterMembership.UPDATES_PATH, this::update);
+        server.start();
+    }
+
+    private void update(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        int status = updateStatus;
+        if (status == 200) {
+            updates.add(body);
+            secrets.add(exchange.getRequestHeaders().getFirst(ClusterRouter.SECRET_HEADER));
+        }
+        respond(exchange, status);
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    /**
+     * @return запись узла для bot.cluster.nodes: id=http://host:port
+     */
+    String node() {
+        return id + "=http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    String id() {
+        return id;
+    }
+
+    void healthStatus(int status) {
+        healthStatus = status;
+    }
+
+    void updateStatus(int status) {
+        updateStatus = status;
+    }
+
+    List<String> updates() {
+        return updates;
+    }
+
+    List<String> secrets() {
+        return secrets;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
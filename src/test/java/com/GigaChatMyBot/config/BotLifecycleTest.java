@@ -0,0 +1,287 @@
+package com.GigaChatMyBot.config;
+
+import com.GigaChatMyBot.cluster.ClusterMembership;
+import com.GigaChatMyBot.cluster.ClusterRouter;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.service.GigaChatService;
+import com.GigaChatMyBot.service.InMemoryConversationStore;
+import com.GigaChatMyBot.telegram.AttachmentUploader;
+import com.GigaChatMyBot.telegram.GigaChatTelegramBot;
+import com.GigaChatMyBot.telegram.MessageCoalescer;
+import com.GigaChatMyBot.telegram.TelegramRateLimiter;
+import com.GigaChatMyBot.telegram.UpdateDispatcher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * BotLifecycle с настоящими GigaChatService и GigaChatTelegramBot против заглушки GigaChat и Bot API:
+ * без прогрева при bot.lifecycle.warmup-required=true старт прерывается, пробный запуск не включает приём updates,
+ * а остановка идёт по порядку — приём updates, склейка, дообработка в диспетчере и только затем сброс истории.
+ * Приём updates, склейка, диспетчер и хранилище записывают свои вызовы в общий журнал.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class BotLifecycleTest {
+    private static final String TOKEN = "stub"; // Токен бота в путях Bot API
+
+    private final List<String> events = new CopyOnWriteArrayList<>(); // Журнал вызовов компонентов
+    private final BotMetrics metrics = BotMetrics.standalone(); // Метрики фаз старта
+    private HttpServer server; // Заглушка OAuth, Chat API и Bot API
+    private ExecutorService handlers; // Обработчики заглушки
+    private GigaChatService service; // Сервис GigaChat
+    private AttachmentUploader attachments; // Загрузка вложений (для конструктора бота)
+    private GigaChatTelegramBot bot; // Бот, которым проверяется getMe
+    private UpdateDispatcher dispatcher; // Диспетчер, записывающий остановку
+    private MessageCoalescer coalescer; // Склейка, записывающая остановку
+    private RecordingIngestion ingestion; // Приём updates, записывающий запуск и остановку
+    private RecordingStore store; // История диалогов, записывающая сброс
+
+    @BeforeEach
+    void setUp() throws IOException {
+        handlers = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/", this::handle);
+        server.start();
+        dispatcher = new RecordingDispatcher(events, metrics);
+        coalescer = new RecordingCoalescer(events, dispatcher, metrics);
+        store = new RecordingStore(events);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (bot != null) {
+            bot.onClosing();
+        }
+        if (attachments != null) {
+            attachments.close();
+        }
+        if (service != null) {
+            service.shutdown();
+        }
+        dispatcher.shutdown();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath().toLowerCase(Locale.ROOT);
+        if (path.endsWith("/oauth")) {
+            long expiresAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30);
+            respond(exchange, "{\"access_token\":\"stub-token\",\"expires_at\":" + expiresAt + "}");
+        } else if (path.endsWith("/getme")) {
+            respond(exchange, "{\"ok\":true,\"result\":{\"id\":1,\"is_bot\":true,\"first_name\":\"stub\",\"username\":\"stub_bot\"}}");
+        } else {
+            respond(exchange, "{\"object\":\"list\",\"data\":[]}"); // Список моделей — пробный запрос соединения
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private String stubUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static String closedUrl() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return "http://127.0.0.1:" + socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Собирает жизненный цикл, у которого GigaChat и Bot API находятся по адресу base.
+     */
+    private BotLifecycle lifecycle(String base, boolean warmupRequired, boolean trainingRun) {
+        GigaChatSpringConfig config = new GigaChatSpringConfig();
+        config.setOauthUrl(base + "/api/v2/oauth");
+        config.setChatUrl(base + "/api/v1/chat/completions");
+        config.setAuthorizationKeyBasic("Basic c3R1YjpzdHVi");
+        config.setScope("GIGACHAT_API_PERS");
+        config.setModelName("GigaChat");
+        config.setHttpMaxRetries(0);
+        service = new GigaChatService(config, store, metrics);
+        attachments = new AttachmentUploader(service, metrics, TOKEN, base + "/bot", 20, 1024, 1, 1000, 30,
+                "application/pdf", 100, 1);
+        ClusterMembership membership = new ClusterMembership(false, "", "", 128, 1000, 3, metrics);
+        bot = new GigaChatTelegramBot(service, dispatcher, coalescer, new TelegramRateLimiter(30, 30, 30, 1000), metrics,
+                attachments, new ClusterRouter(membership, "", 2000, metrics), TOKEN, base + "/bot", 4);
+        ingestion = new RecordingIngestion(events, bot, membership);
+        return new BotLifecycle(service, bot, ingestion, coalescer, dispatcher, store, metrics, 2, warmupRequired,
+                trainingRun);
+    }
+
+    @Test
+    void warmedUpStartBeginsIngestion() {
+        BotLifecycle lifecycle = lifecycle(stubUrl(), true, false);
+
+        lifecycle.start();
+
+        assertThat(lifecycle.isRunning()).isTrue();
+        assertThat(events).containsExactly("startIngestion");
+    }
+
+    @Test
+    void requiredWarmupFailsStartWhenUpstreamsAreDown() throws IOException {
+        BotLifecycle lifecycle = lifecycle(closedUrl(), true, false);
+
+        assertThatThrownBy(lifecycle::start).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("warmup-required");
+        assertThat(lifecycle.isRunning()).isFalse();
+        assertThat(events).as("приём updates не запущен").isEmpty();
+    }
+
+    @Test
+    void optionalWarmupStartsIngestionWhenUpstreamsAreDown() throws IOException {
+        BotLifecycle lifecycle = lifecycle(closedUrl(), false, false);
+
+        lifecycle.start();
+
+        assertThat(lifecycle.isRunning()).isTrue();
+        assertThat(events).containsExactly("startIngestion");
+    }
+
+    @Test
+    void trainingRunSkipsIngestion() {
+        BotLifecycle lifecycle = lifecycle(stubUrl(), true, true);
+
+        lifecycle.start();
+
+        assertThat(lifecycle.isRunning()).isTrue();
+        assertThat(events).as("прогрев выполнен, приём updates не запущен").isEmpty();
+    }
+
+    @Test
+    void stopDrainsDispatcherBeforeFlushingHistory() {
+        BotLifecycle lifecycle = lifecycle(stubUrl(), true, false);
+        lifecycle.start();
+        events.clear();
+        dispatcher.dispatch(1, () -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add("task");
+        });
+
+        lifecycle.stop();
+
+        assertThat(events).containsExactly("stopIngestion", "coalescer", "task", "dispatcher", "flush");
+        assertThat(lifecycle.isRunning()).isFalse();
+        lifecycle.stop();
+        assertThat(events).as("повторная остановка ничего не делает").hasSize(5);
+    }
+
+    @Test
+    void stopBeforeStartDoesNothing() {
+        BotLifecycle lifecycle = lifecycle(stubUrl(), true, false);
+
+        lifecycle.stop();
+
+        assertThat(events).isEmpty();
+    }
+
+    /**
+     * Приём updates без Telegram: только записывает запуск и остановку.
+     */
+    private static final class RecordingIngestion extends TelegramBotConfig {
+        private final List<String> events; // Журнал вызовов
+
+        RecordingIngestion(List<String> events, GigaChatTelegramBot bot, ClusterMembership membership) {
+            super(bot, "polling", "", "/telegram/webhook", "", 40, membership);
+            this.events = events;
+        }
+
+        @Override
+        public void startIngestion() {
+            events.add("startIngestion");
+        }
+
+        @Override
+        public synchronized void stopIngestion() {
+            events.add("stopIngestion");
+        }
+    }
+
+    /**
+     * Склейка без задержки, записывающая остановку.
+     */
+    private static final class RecordingCoalescer extends MessageCoalescer {
+        private final List<String> events; // Журнал вызовов
+
+        RecordingCoalescer(List<String> events, UpdateDispatcher dispatcher, BotMetrics metrics) {
+            super(0, 0, Integer.MAX_VALUE, dispatcher, metrics);
+            this.events = events;
+        }
+
+        @Override
+        public void shutdown() {
+            super.shutdown();
+            events.add("coalescer");
+        }
+    }
+
+    /**
+     * Диспетчер, записывающий остановку после дообработки принятых сообщений.
+     */
+    private static final class RecordingDispatcher extends UpdateDispatcher {
+        private final List<String> events; // Журнал вызовов
+        private boolean stopped; // Остановка уже записана
+
+        RecordingDispatcher(List<String> events, BotMetrics metrics) {
+            super(10, 5, 5, 100, metrics);
+            this.events = events;
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            super.shutdown();
+            if (!stopped) {
+                stopped = true;
+                events.add("dispatcher");
+            }
+        }
+    }
+
+    /**
+     * История в памяти, записывающая сброс.
+     */
+    private static final class RecordingStore extends InMemoryConversationStore {
+        private final List<String> events; // Журнал вызовов
+
+        RecordingStore(List<String> events) {
+            super(2000, 100, TimeUnit.HOURS.toMillis(1), 1024 * 1024);
+            this.events = events;
+        }
+
+        @Override
+        public void flush() {
+            events.add("flush");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.GigaChatMyBot.gigachat;
+
+import com.GigaChatMyBot.model.ChatCompletion;
+import com.GigaChatMyBot.model.ChatMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GigaChatJsonCodec: экранирование при записи запроса (табуляция, управляющие символы, коды символов, суррогатные пары)
+ * с разбором обратно полноценным JSON-парсером, чтение только choices[0].message.content при ключах "content"
+ * в других местах ответа и null вместо исключения на некорректном SSE-событии.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class GigaChatJsonCodecTest {
+    private static final String TRICKY = "таб\tперевод\nвозврат\rкавычка\"слэш\\ bell\u0007 us\u001f"
+            + " разделитель\u2028 эмодзи😀 ноль\u0000 конец"; // Всё, что требует экранирования
+
+    private final GigaChatJsonCodec codec = new GigaChatJsonCodec(); // Проверяемый кодек
+    private final ObjectMapper mapper = new ObjectMapper(); // Эталонный разбор JSON
+
+    @Test
+    void requestRoundTripsEscapesAndSurrogatePairs() throws IOException {
+        byte[] json = codec.encodeChatRequest("GigaChat", List.of(ChatMessage.system("системный"),
+                ChatMessage.user(TRICKY, List.of("file-1"))), true);
+
+        JsonNode root = mapper.readTree(json);
+        assertThat(root.path("model").asText()).isEqualTo("GigaChat");
+        assertThat(root.path("stream").asBoolean()).isTrue();
+        assertThat(root.path("messages")).hasSize(2);
+        assertThat(root.path("messages").get(1).path("content").asText()).isEqualTo(TRICKY);
+        assertThat(root.path("messages").get(1).path("attachments").get(0).asText()).isEqualTo("file-1");
+        String raw = new String(json, StandardCharsets.UTF_8);
+        assertThat(raw).doesNotContain("\t", "\u0007", "\u0000").contains("\\t", "\\n", "\\u0007");
+    }
+
+    @Test
+    void responseEscapesAreDecoded() throws IOException {
+        byte[] json = ("{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":"
+                + "\"a\\tb\\u0416\\n\\\"q\\\" \\ud83d\\ude00\\u0001\"},\"finish_reason\":\"stop\"}]}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        ChatCompletion completion = codec.decodeChatResponse(json);
+
+        assertThat(completion.content()).isEqualTo("a\tbЖ\n\"q\" 😀\u0001");
+        assertThat(completion.finishReason()).isEqualTo("stop");
+    }
+
+    @Test
+    void textEscapedByJacksonIsDecodedUnchanged() throws IOException {
+        // Текст, экранированный эталонным сериализатором, кодек читает без потерь и в ответе, и в SSE-событии
+        String response = "{\"choices\":[{\"message\":" + mapper.writeValueAsString(
+                mapper.createObjectNode().put("role", "assistant").put("content", TRICKY)) + "}]}";
+
+        assertThat(codec.decodeChatResponse(response.getBytes(StandardCharsets.UTF_8)).content()).isEqualTo(TRICKY);
+        assertThat(codec.decodeStreamChunk(response.replace("\"message\"", "\"delta\"")).content()).isEqualTo(TRICKY);
+    }
+
+    @Test
+    void earlierContentKeysDoNotConfuseFirstChoice() throws IOException {
+        byte[] json = ("{\"id\":\"1\",\"content\":\"корень\",\"meta\":{\"content\":\"вложенный\","
+                + "\"list\":[{\"message\":{\"content\":\"в массиве\"}}]},"
+                + "\"choices\":[{\"content\":\"у choice\",\"index\":0,"
+                + "\"message\":{\"content_type\":\"text\",\"extra\":{\"content\":\"глубже\"},\"content\":\"верный\"}},"
+                + "{\"message\":{\"content\":\"второй choice\"}}],"
+                + "\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":2,\"total_tokens\":3,\"content\":\"нет\"}}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        ChatCompletion completion = codec.decodeChatResponse(json);
+
+        assertThat(completion.content()).isEqualTo("верный");
+        assertThat(completion.usage().totalTokens()).isEqualTo(3);
+    }
+
+    @Test
+    void malformedStreamChunkDecodesToNull() {
+        assertThat(codec.decodeStreamChunk("{\"choices\":[{\"delta\":")).isNull();
+        assertThat(codec.decodeStreamChunk("{\"choices\":[]")).isNull();
+        assertThat(codec.decodeStreamChunk("не json")).isNull();
+        assertThat(codec.decodeStreamChunk("{\"choices\":[{\"delta\":{\"content\":\"без кавычки}}]}")).isNull();
+        assertThat(codec.decodeStreamDelta("{\"choices\":")).isNull();
+    }
+
+    @Test
+    void streamChunkWithoutTextHasNullContent() {
+        ChatCompletion chunk = codec.decodeStreamChunk("{\"choices\":[{\"delta\":{\"role\":\"assistant\"},"
+                + "\"finish_reason\":\"stop\"}],\"usage\":{\"total_tokens\":7}}");
+
+        assertThat(chunk.content()).isNull();
+        assertThat(chunk.finishReason()).isEqualTo("stop");
+        assertThat(chunk.usage().totalTokens()).isEqualTo(7);
+    }
+}
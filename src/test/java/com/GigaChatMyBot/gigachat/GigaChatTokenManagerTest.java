@@ -0,0 +1,117 @@
+package com.GigaChatMyBot.gigachat;
+
+import com.GigaChatMyBot.model.GigaChatModel;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GigaChatTokenManager против заглушки OAuth endpoint, считающей вызовы.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class GigaChatTokenManagerTest {
+    private static final int CONCURRENT_REQUESTS = 1000; // Одновременные запросы токена
+
+    private final AtomicInteger oauthCalls = new AtomicInteger(); // Сколько раз заглушка выдала токен
+    private volatile long responseDelayMillis = 200; // Задержка ответа: все запросы успевают прийти, пока первый в работе
+    private HttpServer server; // Заглушка OAuth endpoint
+    private GigaChatAPI api; // Клиент, подключённый к заглушке
+    private GigaChatTokenManager tokens; // Проверяемый менеджер токенов
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/oauth", this::oauth);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        api = new GigaChatAPI(new GigaChatModel(base + "/oauth", base + "/api/v1/chat/completions",
+                "Basic c3R1YjpzdHVi", "GIGACHAT_API_PERS", "GigaChat"));
+        tokens = new GigaChatTokenManager(api, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokens.close();
+        server.stop(0);
+    }
+
+    private void oauth(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        int call = oauthCalls.incrementAndGet();
+        try {
+            TimeUnit.MILLISECONDS.sleep(responseDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long expiresAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30);
+        byte[] body = ("{\"access_token\":\"token-" + call + "\",\"expires_at\":" + expiresAt + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    void concurrentRequestsShareOneOAuthCall() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<String>> results = new ArrayList<>(CONCURRENT_REQUESTS);
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                        return tokens.getToken();
+                    } catch (IOException | InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, callers));
+            }
+            start.countDown();
+            for (CompletableFuture<String> result : results) {
+                assertThat(result.get(30, TimeUnit.SECONDS)).isEqualTo("token-1");
+            }
+        }
+        assertThat(oauthCalls).hasValue(1);
+    }
+
+    @Test
+    void freshTokenIsServedFromCache() throws Exception {
+        responseDelayMillis = 0;
+        String first = tokens.getToken();
+        for (int i = 0; i < 100; i++) {
+            assertThat(tokens.getToken()).isEqualTo(first);
+        }
+        assertThat(oauthCalls).hasValue(1);
+    }
+
+    @Test
+    void invalidatedTokenIsRequestedAgain() throws Exception {
+        responseDelayMillis = 0;
+        String first = tokens.getToken();
+        tokens.invalidate(first);
+        assertThat(tokens.getToken()).isEqualTo("token-2");
+        tokens.invalidate(first); // Устаревшее значение не сбрасывает новый токен
+        assertThat(tokens.getToken()).isEqualTo("token-2");
+        assertThat(oauthCalls).hasValue(2);
+    }
+}
@@ -0,0 +1,238 @@
+package com.GigaChatMyBot.gigachat;
+
+import com.GigaChatMyBot.gigachat.ResilientHttpClient.RetryPolicy;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ResilientHttpClient против заглушки, внедряющей сбои: коды 5xx, обрыв соединения без ответа и задержку.
+ * Проверяет число попыток для каждого вида сбоя и политики повторов и переходы circuit breaker.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class ResilientHttpClientTest {
+    private static final int MAX_RETRIES = 2; // Повторов после первой попытки
+    private static final int DROP = -1; // Вместо ответа закрыть соединение
+
+    private final AtomicInteger hits = new AtomicInteger(); // Запросы, дошедшие до заглушки
+    private volatile int status = 200; // Что отвечает заглушка
+    private volatile long delayMillis; // Задержка перед ответом
+    private volatile CountDownLatch hold; // Если задан, ответ ждёт его открытия
+    private HttpServer server; // Заглушка
+    private URI uri; // Адрес заглушки
+    private ResilientHttpClient client; // Проверяемый клиент
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/fault", this::fault);
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/fault");
+        client = new ResilientHttpClient(settings(100, Duration.ofSeconds(30), Duration.ofSeconds(10)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    private static HttpClientSettings settings(int failureThreshold, Duration openDuration, Duration exchangeTimeout) {
+        return new HttpClientSettings(Duration.ofSeconds(2), Duration.ofSeconds(10), exchangeTimeout,
+                MAX_RETRIES, Duration.ofMillis(1), Duration.ofMillis(5), failureThreshold, openDuration);
+    }
+
+    private void fault(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        hits.incrementAndGet();
+        try {
+            CountDownLatch latch = hold;
+            if (latch != null) {
+                latch.await(10, TimeUnit.SECONDS);
+            }
+            TimeUnit.MILLISECONDS.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (status == DROP) {
+            exchange.close(); // Соединение закрывается без строки статуса — клиент видит обрыв
+            return;
+        }
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    private HttpRequest request() {
+        return HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString("{}")).build();
+    }
+
+    private int call(RetryPolicy retry) throws Exception {
+        return client.send(request(), HttpResponse.BodyHandlers.discarding(), retry).statusCode();
+    }
+
+    @Test
+    void badGatewayAndUnavailableAreRetriedEvenIfNotIdempotent() throws Exception {
+        for (int code : new int[] {502, 503}) {
+            status = code;
+            hits.set(0);
+            assertThat(call(RetryPolicy.NON_IDEMPOTENT)).isEqualTo(code);
+            assertThat(hits).as("HTTP %d", code).hasValue(MAX_RETRIES + 1);
+        }
+    }
+
+    @Test
+    void internalErrorAndGatewayTimeoutAreRetriedOnlyIfIdempotent() throws Exception {
+        for (int code : new int[] {500, 504}) {
+            status = code;
+            hits.set(0);
+            assertThat(call(RetryPolicy.IDEMPOTENT)).isEqualTo(code);
+            assertThat(hits).as("HTTP %d, идемпотентный", code).hasValue(MAX_RETRIES + 1);
+            hits.set(0);
+            assertThat(call(RetryPolicy.NON_IDEMPOTENT)).isEqualTo(code);
+            assertThat(hits).as("HTTP %d, неидемпотентный", code).hasValue(1);
+        }
+    }
+
+    @Test
+    void successAndClientErrorsAreNotRetried() throws Exception {
+        for (int code : new int[] {200, 400, 404, 429}) {
+            status = code;
+            hits.set(0);
+            assertThat(call(RetryPolicy.IDEMPOTENT)).isEqualTo(code);
+            assertThat(hits).as("HTTP %d", code).hasValue(1);
+        }
+    }
+
+    @Test
+    void droppedConnectionIsRetriedOnlyIfIdempotent() {
+        status = DROP;
+        assertThatThrownBy(() -> call(RetryPolicy.IDEMPOTENT)).isInstanceOf(IOException.class);
+        assertThat(hits).hasValue(MAX_RETRIES + 1);
+        hits.set(0);
+        assertThatThrownBy(() -> call(RetryPolicy.NON_IDEMPOTENT)).isInstanceOf(IOException.class);
+        assertThat(hits).hasValue(1);
+    }
+
+    @Test
+    void slowExchangeTimesOutWithoutRetryIfNotIdempotent() throws Exception {
+        client.close();
+        client = new ResilientHttpClient(settings(100, Duration.ofSeconds(30), Duration.ofMillis(200)));
+        delayMillis = 1000;
+        assertThatThrownBy(() -> call(RetryPolicy.NON_IDEMPOTENT)).isInstanceOf(HttpTimeoutException.class);
+        // Под нагрузкой таймаут может истечь раньше, чем заглушка примет запрос: ждём его, а затем возможного повтора
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (hits.get() == 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertThat(hits).hasValue(1);
+    }
+
+    @Test
+    void refusedConnectionIsRetriedAndReported() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + closedPort + "/fault"))
+                .POST(HttpRequest.BodyPublishers.ofString("{}")).build();
+        assertThatThrownBy(() -> client.send(request, HttpResponse.BodyHandlers.discarding(), RetryPolicy.NON_IDEMPOTENT))
+                .isInstanceOf(ConnectException.class);
+    }
+
+    @Test
+    void requestWithoutRetriesIsSentOnce() throws Exception {
+        for (int code : new int[] {500, 502, 503, 504}) {
+            status = code;
+            hits.set(0);
+            assertThat(call(RetryPolicy.NONE)).isEqualTo(code);
+            assertThat(hits).as("HTTP %d", code).hasValue(1);
+        }
+        status = DROP;
+        hits.set(0);
+        assertThatThrownBy(() -> call(RetryPolicy.NONE)).isInstanceOf(IOException.class);
+        assertThat(hits).hasValue(1);
+    }
+
+    @Test
+    void streamedBodyIsNotResentAfterFailure() {
+        status = 503;
+        AtomicInteger opened = new AtomicInteger(); // Сколько раз HttpClient запросил поток тела
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> {
+                    opened.incrementAndGet();
+                    return new ByteArrayInputStream(new byte[64 * 1024]);
+                }))
+                .build();
+        assertThat(client.sendAsync(request, HttpResponse.BodyHandlers.discarding(), RetryPolicy.NONE).join().statusCode())
+                .isEqualTo(503);
+        assertThat(opened).hasValue(1);
+        assertThat(hits).hasValue(1);
+    }
+
+    @Test
+    void breakerOpensAfterThresholdAndClosesAfterSuccessfulProbe() throws Exception {
+        client.close();
+        client = new ResilientHttpClient(settings(3, Duration.ofMillis(300), Duration.ofSeconds(10)));
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            assertThat(call(RetryPolicy.NON_IDEMPOTENT)).isEqualTo(500);
+        }
+        assertThat(client.circuitState("127.0.0.1")).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> call(RetryPolicy.IDEMPOTENT)).isInstanceOf(CircuitOpenException.class);
+        assertThat(hits).as("разомкнутая цепь не пропускает запросы").hasValue(3);
+
+        TimeUnit.MILLISECONDS.sleep(400);
+        status = 200;
+        hold = new CountDownLatch(1);
+        CompletableFuture<HttpResponse<Void>> probe = client.sendAsync(request(), HttpResponse.BodyHandlers.discarding(),
+                RetryPolicy.IDEMPOTENT);
+        while (hits.get() < 4) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertThat(client.circuitState("127.0.0.1")).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThatThrownBy(() -> call(RetryPolicy.IDEMPOTENT)).as("пока идёт пробный запрос, остальные отклоняются")
+                .isInstanceOf(CircuitOpenException.class);
+        hold.countDown();
+        assertThat(probe.get(10, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+        assertThat(client.circuitState("127.0.0.1")).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(hits).hasValue(4);
+    }
+
+    @Test
+    void failedProbeReopensBreaker() throws Exception {
+        client.close();
+        client = new ResilientHttpClient(settings(3, Duration.ofMillis(300), Duration.ofSeconds(10)));
+        status = 503;
+        assertThat(call(RetryPolicy.NON_IDEMPOTENT)).isEqualTo(503); // Три попытки — три ошибки подряд
+        assertThat(client.circuitState("127.0.0.1")).isEqualTo(CircuitBreaker.State.OPEN);
+        TimeUnit.MILLISECONDS.sleep(400);
+        hits.set(0);
+        assertThatThrownBy(() -> call(RetryPolicy.NON_IDEMPOTENT)).as("повтор пробного запроса отклоняет снова разомкнутая цепь")
+                .isInstanceOf(CircuitOpenException.class);
+        assertThat(hits).hasValue(1);
+        assertThat(client.circuitState("127.0.0.1")).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,195 @@
+package com.GigaChatMyBot.gigachat;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.model.ChatCompletion;
+import com.GigaChatMyBot.model.ChatMessage;
+import com.GigaChatMyBot.model.GigaChatModel;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Потоковый ответ GigaChatAPI против заглушки, которая пишет тело text/event-stream частями:
+ * разбор строк "data:", завершение по [DONE], события, разрезанные между чтениями (в том числе посреди
+ * символа UTF-8), пропуск некорректных событий и запасной разбор обычного JSON-ответа на потоковый запрос.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class SseLineSubscriberTest {
+    private static final List<ChatMessage> MESSAGES = List.of(new ChatMessage("user", "Привет")); // Диалог запроса
+
+    private final List<String> requests = new CopyOnWriteArrayList<>(); // Тела запросов, дошедших до заглушки
+    private volatile List<byte[]> parts = List.of(); // Части тела ответа; каждая отправляется отдельным flush
+    private volatile String contentType = "text/event-stream"; // Content-Type ответа
+    private volatile int status = 200; // Что отвечает заглушка
+    private volatile CountDownLatch hold; // Если задан, вторая и следующие части ждут его открытия
+    private HttpServer server; // Заглушка Chat API
+    private ExecutorService handlers; // Обработчики заглушки
+    private GigaChatAPI api; // Проверяемый клиент
+
+    @BeforeEach
+    void setUp() throws IOException {
+        handlers = Executors.newCachedThreadPool(); // Потоки тела HttpServer закрепляют виртуальный поток за носителем
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/api/v1/chat/completions", this::completions);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        api = new GigaChatAPI(new GigaChatModel(base + "/oauth", base + "/api/v1/chat/completions",
+                "Basic c3R1YjpzdHVi", "GIGACHAT_API_PERS", "GigaChat"), HttpClientSettings.defaults(),
+                BotMetrics.standalone());
+    }
+
+    @AfterEach
+    void tearDown() {
+        api.close();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void completions(HttpExchange exchange) throws IOException {
+        requests.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            boolean first = true;
+            for (byte[] part : parts) {
+                CountDownLatch latch = hold;
+                if (!first && latch != null) {
+                    latch.await(10, TimeUnit.SECONDS);
+                }
+                body.write(part);
+                body.flush();
+                first = false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<byte[]> utf8(String... parts) {
+        return Arrays.stream(parts).map(part -> part.getBytes(StandardCharsets.UTF_8)).toList();
+    }
+
+    private static String event(String json) {
+        return "data: " + json + "\n\n";
+    }
+
+    private static String delta(String content) {
+        return event("{\"choices\":[{\"delta\":{\"content\":\"" + content + "\"},\"index\":0}]}");
+    }
+
+    private ChatCompletion stream(List<String> deltas) throws Exception {
+        return api.streamChatRequestAsync("token", "GigaChat", MESSAGES, deltas::add).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void dataEventsAreDeliveredInOrderAndDoneEndsStream() throws Exception {
+        parts = utf8(
+                ": keep-alive\n\n",
+                "event: message\n" + delta("При"),
+                delta("вет"),
+                event("{\"choices\":[{\"delta\":{\"content\":\"!\"},\"finish_reason\":\"stop\",\"index\":0}],"
+                        + "\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":2,\"total_tokens\":5}}"),
+                "data: [DONE]\n\n",
+                delta(" после конца"));
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        ChatCompletion completion = stream(deltas);
+
+        assertThat(deltas).as("после [DONE] ничего не принимается").containsExactly("При", "вет", "!");
+        assertThat(completion.content()).isEqualTo("Привет!");
+        assertThat(completion.finishReason()).isEqualTo("stop");
+        assertThat(completion.usage().totalTokens()).isEqualTo(5);
+        assertThat(requests).singleElement().asString().contains("\"stream\":true");
+    }
+
+    @Test
+    void eventSplitAcrossReadsIsJoined() throws Exception {
+        String events = delta("Ёжик") + delta(" в тумане");
+        byte[] bytes = events.getBytes(StandardCharsets.UTF_8);
+        int split = events.substring(0, events.indexOf('Ё')).getBytes(StandardCharsets.UTF_8).length + 1; // Посреди «Ё»
+        parts = List.of(Arrays.copyOfRange(bytes, 0, split), Arrays.copyOfRange(bytes, split, bytes.length),
+                "data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        ChatCompletion completion = stream(deltas);
+
+        assertThat(deltas).containsExactly("Ёжик", " в тумане");
+        assertThat(completion.content()).isEqualTo("Ёжик в тумане");
+    }
+
+    @Test
+    void deltasArriveBeforeStreamEnds() throws Exception {
+        hold = new CountDownLatch(1);
+        parts = utf8(delta("Первый"), delta(" второй"), "data: [DONE]\n\n");
+        CountDownLatch firstDelta = new CountDownLatch(1);
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<ChatCompletion> answer = api.streamChatRequestAsync("token", "GigaChat", MESSAGES, delta -> {
+            deltas.add(delta);
+            firstDelta.countDown();
+        });
+
+        assertThat(firstDelta.await(10, TimeUnit.SECONDS)).as("первый фрагмент пришёл до конца ответа").isTrue();
+        assertThat(answer).isNotDone();
+        hold.countDown();
+        assertThat(answer.get(10, TimeUnit.SECONDS).content()).isEqualTo("Первый второй");
+        assertThat(deltas).containsExactly("Первый", " второй");
+    }
+
+    @Test
+    void malformedEventIsSkipped() throws Exception {
+        parts = utf8(delta("до"), event("{\"choices\":[{\"delta\":"), delta(" и после"), "data: [DONE]\n\n");
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        assertThat(stream(deltas).content()).isEqualTo("до и после");
+        assertThat(deltas).containsExactly("до", " и после");
+    }
+
+    @Test
+    void plainJsonAnswerIsDeliveredAsSingleDelta() throws Exception {
+        contentType = "application/json";
+        parts = utf8("{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"Обычный ответ\"},"
+                + "\"finish_reason\":\"stop\",\"index\":0}],\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":2,"
+                + "\"total_tokens\":5}}");
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        ChatCompletion completion = stream(deltas);
+
+        assertThat(deltas).containsExactly("Обычный ответ");
+        assertThat(completion.content()).isEqualTo("Обычный ответ");
+        assertThat(completion.finishReason()).isEqualTo("stop");
+        assertThat(completion.usage().totalTokens()).isEqualTo(5);
+    }
+
+    @Test
+    void errorStatusFailsWithResponseBody() {
+        status = 400;
+        contentType = "application/json";
+        parts = utf8("{\"status\":400,\"message\":\"bad request\"}");
+
+        assertThatThrownBy(() -> stream(new CopyOnWriteArrayList<>()))
+                .cause().isInstanceOfSatisfying(GigaChatApiException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(400);
+                    assertThat(e.getResponseBody()).contains("bad request");
+                });
+    }
+}
@@ -0,0 +1,181 @@
+package com.GigaChatMyBot.ratelimit;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * FairRequestScheduler: разрешение выдаётся синхронно в момент освобождения места, поэтому порядок запуска
+ * проверяется без ожиданий — по тому, какой future завершился после очередного release.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class FairRequestSchedulerTest {
+    private static final long ADMIN = 7; // Чат администратора
+    private static final double ADMIN_WEIGHT = 4; // Вес чата администратора
+    private static final long NO_TIMEOUT = TimeUnit.MINUTES.toMillis(1); // Ожидание, которое в тесте не истекает
+
+    private static FairRequestScheduler scheduler(int maxConcurrency, int maxInFlightPerChat, long maxWaitMillis,
+                                                  int maxQueued) {
+        return new FairRequestScheduler(maxConcurrency, maxInFlightPerChat, maxWaitMillis, maxQueued,
+                Set.of(ADMIN), ADMIN_WEIGHT, BotMetrics.standalone());
+    }
+
+    /**
+     * При одном месте выполнения освобождает его и по очереди запускает все ждущие заявки.
+     * @param running разрешение заявки, занимающей место
+     * @param waiting ждущие заявки
+     * @return индексы заявок в порядке запуска
+     */
+    private static List<Integer> startOrder(FairRequestScheduler.Permit running,
+                                            List<CompletableFuture<FairRequestScheduler.Permit>> waiting) {
+        List<Integer> order = new ArrayList<>();
+        FairRequestScheduler.Permit current = running;
+        while (order.size() < waiting.size()) {
+            current.release();
+            int started = -1;
+            for (int i = 0; i < waiting.size(); i++) {
+                if (!order.contains(i) && waiting.get(i).isDone()) {
+                    assertThat(started).as("после release запускается ровно одна заявка").isEqualTo(-1);
+                    started = i;
+                }
+            }
+            assertThat(started).as("после release запускается заявка").isNotEqualTo(-1);
+            order.add(started);
+            current = waiting.get(started).join();
+        }
+        current.release();
+        return order;
+    }
+
+    @Test
+    void concurrencyIsLimited() {
+        FairRequestScheduler scheduler = scheduler(2, 2, NO_TIMEOUT, 10);
+        CompletableFuture<FairRequestScheduler.Permit> first = scheduler.acquire(1, 10);
+        CompletableFuture<FairRequestScheduler.Permit> second = scheduler.acquire(2, 10);
+        CompletableFuture<FairRequestScheduler.Permit> third = scheduler.acquire(3, 10);
+        assertThat(first).isDone();
+        assertThat(second).isDone();
+        assertThat(third).isNotDone();
+        assertThat(scheduler.active()).isEqualTo(2);
+        assertThat(scheduler.queued()).isEqualTo(1);
+
+        first.join().release();
+        assertThat(third).isDone();
+        second.join().release();
+        third.join().release();
+        assertThat(scheduler.active()).isZero();
+        assertThat(scheduler.queued()).isZero();
+        assertThat(scheduler.chats()).isZero();
+    }
+
+    @Test
+    void chatCannotExceedItsInFlightLimit() {
+        FairRequestScheduler scheduler = scheduler(4, 1, NO_TIMEOUT, 10);
+        CompletableFuture<FairRequestScheduler.Permit> first = scheduler.acquire(1, 10);
+        CompletableFuture<FairRequestScheduler.Permit> second = scheduler.acquire(1, 10);
+        CompletableFuture<FairRequestScheduler.Permit> other = scheduler.acquire(2, 10);
+        assertThat(first).isDone();
+        assertThat(second).as("второй запрос чата ждёт первый, хотя места есть").isNotDone();
+        assertThat(other).isDone();
+
+        first.join().release();
+        assertThat(second).isDone();
+    }
+
+    @Test
+    void cheaperRequestsGoFirst() {
+        FairRequestScheduler scheduler = scheduler(1, 1, NO_TIMEOUT, 10);
+        FairRequestScheduler.Permit running = scheduler.acquire(0, 1).join();
+        List<CompletableFuture<FairRequestScheduler.Permit>> waiting = List.of(
+                scheduler.acquire(1, 1000),
+                scheduler.acquire(2, 10),
+                scheduler.acquire(3, 100));
+        assertThat(startOrder(running, waiting)).containsExactly(1, 2, 0);
+    }
+
+    @Test
+    void heavyChatDoesNotCrowdOutOthers() {
+        FairRequestScheduler scheduler = scheduler(1, 1, NO_TIMEOUT, 10);
+        FairRequestScheduler.Permit running = scheduler.acquire(0, 1).join();
+        List<CompletableFuture<FairRequestScheduler.Permit>> waiting = List.of(
+                scheduler.acquire(1, 100),
+                scheduler.acquire(1, 100),
+                scheduler.acquire(1, 100),
+                scheduler.acquire(2, 150)); // Пришёл последним, но встаёт между заявками первого чата
+        assertThat(startOrder(running, waiting)).containsExactly(0, 3, 1, 2);
+    }
+
+    @Test
+    void adminWeightLowersEffectiveCost() {
+        FairRequestScheduler scheduler = scheduler(1, 1, NO_TIMEOUT, 10);
+        FairRequestScheduler.Permit running = scheduler.acquire(0, 1).join();
+        List<CompletableFuture<FairRequestScheduler.Permit>> waiting = List.of(
+                scheduler.acquire(8, 200),
+                scheduler.acquire(ADMIN, 400)); // 400 / 4 = 100 < 200
+        assertThat(startOrder(running, waiting)).containsExactly(1, 0);
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() {
+        FairRequestScheduler scheduler = scheduler(1, 1, NO_TIMEOUT, 1);
+        scheduler.acquire(1, 10).join();
+        CompletableFuture<FairRequestScheduler.Permit> queued = scheduler.acquire(2, 10);
+        CompletableFuture<FairRequestScheduler.Permit> rejected = scheduler.acquire(3, 10);
+        assertThat(queued).isNotDone();
+        assertThatThrownBy(rejected::get).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RateLimitExceededException.class);
+        assertThat(scheduler.queued()).isEqualTo(1);
+    }
+
+    @Test
+    void longWaitIsRejectedAndLeavesQueue() throws Exception {
+        FairRequestScheduler scheduler = scheduler(1, 1, 50, 10);
+        FairRequestScheduler.Permit running = scheduler.acquire(1, 10).join();
+        CompletableFuture<FairRequestScheduler.Permit> waiting = scheduler.acquire(2, 10);
+        assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(RateLimitExceededException.class);
+        assertThat(scheduler.queued()).isZero();
+
+        running.release();
+        assertThat(scheduler.active()).isZero();
+        assertThat(scheduler.chats()).isZero();
+    }
+
+    @Test
+    void cancelledRequestLeavesQueueAndNextOneStarts() {
+        FairRequestScheduler scheduler = scheduler(1, 1, NO_TIMEOUT, 10);
+        FairRequestScheduler.Permit running = scheduler.acquire(1, 10).join();
+        CompletableFuture<FairRequestScheduler.Permit> cancelled = scheduler.acquire(2, 10);
+        CompletableFuture<FairRequestScheduler.Permit> next = scheduler.acquire(3, 20);
+        cancelled.cancel(true);
+        assertThat(scheduler.queued()).isEqualTo(1);
+
+        running.release();
+        assertThat(next).isDone();
+        next.join().release();
+        assertThat(scheduler.active()).isZero();
+        assertThat(scheduler.chats()).isZero();
+    }
+
+    @Test
+    void repeatedReleaseFreesOnePlace() {
+        FairRequestScheduler scheduler = scheduler(1, 1, NO_TIMEOUT, 10);
+        FairRequestScheduler.Permit running = scheduler.acquire(1, 10).join();
+        CompletableFuture<FairRequestScheduler.Permit> second = scheduler.acquire(2, 10);
+        CompletableFuture<FairRequestScheduler.Permit> third = scheduler.acquire(3, 10);
+        running.release();
+        running.release();
+        assertThat(second).isDone();
+        assertThat(third).as("повторный release не освобождает чужое место").isNotDone();
+        assertThat(scheduler.active()).isEqualTo(1);
+    }
+}
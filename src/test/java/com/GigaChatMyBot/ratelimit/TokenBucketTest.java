@@ -0,0 +1,86 @@
+package com.GigaChatMyBot.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * TokenBucket: время передаётся явно через reserve(nowNanos, timeoutNanos), поэтому тесты не зависят от часов.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class TokenBucketTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1); // Секунда в наносекундах
+    private static final long TENTH = SECOND / 10; // Интервал пополнения при 10 запросах в секунду
+
+    private TokenBucket bucket; // 10 запросов в секунду, до 3 подряд
+    private long now; // Момент, от которого отсчитывается время в тесте
+
+    @BeforeEach
+    void setUp() {
+        bucket = new TokenBucket(10, 3);
+        now = System.nanoTime();
+    }
+
+    @Test
+    void burstIsServedImmediatelyThenCallersGoIntoDebt() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.reserve(now, 0)).isZero();
+        }
+        assertThat(bucket.reserve(now, 0)).isEqualTo(-1); // Без ожидания токена нет
+        assertThat(bucket.reserve(now, SECOND)).isEqualTo(TENTH);
+        assertThat(bucket.reserve(now, SECOND)).isEqualTo(2 * TENTH); // Следующий встаёт за предыдущим
+    }
+
+    @Test
+    void rejectedReservationDoesNotTakeToken() {
+        drain();
+        assertThat(bucket.reserve(now, TENTH - 1)).isEqualTo(-1);
+        assertThat(bucket.reserve(now, TENTH)).isEqualTo(TENTH);
+    }
+
+    @Test
+    void tokensRefillWithTimeUpToBurst() {
+        drain();
+        assertThat(bucket.reserve(now + TENTH, 0)).isZero();
+        long later = now + 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.reserve(later, 0)).isZero();
+        }
+        assertThat(bucket.reserve(later, 0)).isEqualTo(-1); // Простой не копит больше ёмкости
+    }
+
+    @Test
+    void refundReturnsUnusedToken() {
+        drain();
+        bucket.refund();
+        assertThat(bucket.reserve(now, 0)).isZero();
+    }
+
+    @Test
+    void pauseBurnsReserveAndDelaysRefill() {
+        long pauseStart = System.nanoTime();
+        bucket.pauseUntil(pauseStart + SECOND);
+        long after = System.nanoTime();
+        assertThat(bucket.tryAcquire()).isFalse();
+        long wait = bucket.reserve(after, 2 * SECOND);
+        assertThat(wait).isBetween(SECOND + TENTH - (after - pauseStart), SECOND + TENTH);
+    }
+
+    @Test
+    void rateChangeAppliesToNextReservation() {
+        drain();
+        bucket.setRate(1);
+        long at = Math.max(now, System.nanoTime());
+        assertThat(bucket.reserve(at, 2 * SECOND)).isBetween(SECOND - TENTH, SECOND);
+        assertThat(bucket.getRate()).isEqualTo(1);
+    }
+
+    private void drain() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.reserve(now, 0)).isZero();
+        }
+    }
+}
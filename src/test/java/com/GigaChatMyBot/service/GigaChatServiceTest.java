@@ -0,0 +1,302 @@
+package com.GigaChatMyBot.service;
+
+import com.GigaChatMyBot.config.GigaChatSpringConfig;
+import com.GigaChatMyBot.gigachat.CircuitOpenException;
+import com.GigaChatMyBot.gigachat.GigaChatApiException;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.model.ChatResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Асинхронный API GigaChatService против заглушки OAuth и Chat API: отмена future доходит до HTTP-обмена,
+ * общий таймаут ответа завершает запрос статусом TIMEOUT, на 401 токен сбрасывается и запрос повторяется ровно
+ * один раз, а ошибки GigaChat передаются статусом ChatResult, а не исключением.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class GigaChatServiceTest {
+    private static final long CHAT = 42; // Идентификатор чата
+    private static final String ANSWER = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"Ответ\"},"
+            + "\"finish_reason\":\"stop\",\"index\":0}],\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":1,"
+            + "\"total_tokens\":4}}"; // Обычный ответ Chat API
+
+    private final AtomicInteger tokens = new AtomicInteger(); // Выданные OAuth-токены
+    private final AtomicInteger chatRequests = new AtomicInteger(); // Запросы, дошедшие до Chat API
+    private final List<String> authorizations = new CopyOnWriteArrayList<>(); // Заголовки Authorization запросов к Chat API
+    private final Set<String> rejectedTokens = ConcurrentHashMap.newKeySet(); // Токены, на которые Chat API отвечает 401
+    private final CountDownLatch disconnected = new CountDownLatch(1); // Клиент закрыл соединение посреди ответа
+    private volatile int status = 200; // Что отвечает Chat API
+    private volatile long headersDelayMillis; // Задержка перед заголовками ответа
+    private volatile boolean trickle; // Отдавать ли тело бесконечно, по событию каждые 20 мс
+    private HttpServer server; // Заглушка OAuth и Chat API
+    private ExecutorService handlers; // Обработчики заглушки
+    private InMemoryConversationStore store; // История диалогов
+    private GigaChatService service; // Проверяемый сервис
+
+    @BeforeEach
+    void setUp() throws IOException {
+        handlers = Executors.newCachedThreadPool(); // Потоки тела HttpServer закрепляют виртуальный поток за носителем
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/api/v2/oauth", this::oauth);
+        server.createContext("/api/v1/chat/completions", this::completions);
+        server.start();
+        store = new InMemoryConversationStore(2000, 100, TimeUnit.HOURS.toMillis(1), 1024 * 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    /**
+     * Настройки без повторов HTTP-клиента и кэша ответов: каждый запрос сервиса — ровно один обмен с заглушкой.
+     */
+    private GigaChatSpringConfig config() {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        GigaChatSpringConfig config = new GigaChatSpringConfig();
+        config.setOauthUrl(base + "/api/v2/oauth");
+        config.setChatUrl(base + "/api/v1/chat/completions");
+        config.setAuthorizationKeyBasic("Basic c3R1YjpzdHVi");
+        config.setScope("GIGACHAT_API_PERS");
+        config.setModelName("GigaChat");
+        config.setHttpMaxRetries(0);
+        config.setCircuitFailureThreshold(100);
+        return config;
+    }
+
+    private GigaChatService start(GigaChatSpringConfig config) {
+        service = new GigaChatService(config, store, BotMetrics.standalone());
+        return service;
+    }
+
+    private void oauth(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        long expiresAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30);
+        respond(exchange, 200, "{\"access_token\":\"token-" + tokens.incrementAndGet() + "\",\"expires_at\":" + expiresAt + "}");
+    }
+
+    private void completions(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        chatRequests.incrementAndGet();
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        authorizations.add(authorization);
+        try {
+            TimeUnit.MILLISECONDS.sleep(headersDelayMillis);
+            if (rejectedTokens.contains(authorization.substring("Bearer ".length()))) {
+                respond(exchange, 401, "{\"status\":401,\"message\":\"Unauthorized\"}");
+            } else if (trickle) {
+                trickle(exchange);
+            } else {
+                respond(exchange, status, status == 200 ? ANSWER : "{\"status\":" + status + ",\"message\":\"ошибка\"}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Пишет события text/event-stream, пока клиент не закроет соединение; разрыв отмечает в disconnected.
+     */
+    private void trickle(HttpExchange exchange) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        byte[] event = "data: {\"choices\":[{\"delta\":{\"content\":\"часть \"},\"index\":0}]}\n\n"
+                .getBytes(StandardCharsets.UTF_8);
+        OutputStream body = exchange.getResponseBody();
+        try {
+            for (int i = 0; i < 500; i++) {
+                body.write(event);
+                body.flush();
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+        } catch (IOException e) {
+            disconnected.countDown();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static ChatResult result(CompletableFuture<ChatResult> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void answerIsReturnedAndRemembered() throws Exception {
+        ChatResult result = result(start(config()).sendAsync(CHAT, "Вопрос"));
+
+        assertThat(result.status()).isEqualTo(ChatResult.Status.OK);
+        assertThat(result.content()).isEqualTo("Ответ");
+        assertThat(result.usage().totalTokens()).isEqualTo(4);
+        assertThat(result.model()).isEqualTo("GigaChat");
+        assertThat(store.history(CHAT)).hasSize(2);
+    }
+
+    @Test
+    void cancellationAbortsHttpExchange() throws Exception {
+        trickle = true;
+        CompletableFuture<ChatResult> answer = start(config()).sendAsync(CHAT, "Вопрос");
+        awaitChatRequests(1);
+
+        answer.cancel(true);
+
+        assertThat(disconnected.await(5, TimeUnit.SECONDS)).as("заглушка увидела разрыв соединения").isTrue();
+        assertThat(store.history(CHAT)).as("отменённый обмен не попадает в историю").isEmpty();
+    }
+
+    @Test
+    void streamingCancellationAbortsHttpExchange() throws Exception {
+        trickle = true;
+        CountDownLatch firstDelta = new CountDownLatch(1);
+        CompletableFuture<ChatResult> answer = start(config()).sendStreamingAsync(CHAT, "Вопрос",
+                delta -> firstDelta.countDown());
+        assertThat(firstDelta.await(5, TimeUnit.SECONDS)).isTrue();
+
+        answer.cancel(true);
+
+        assertThat(disconnected.await(5, TimeUnit.SECONDS)).as("заглушка увидела разрыв соединения").isTrue();
+        assertThat(store.history(CHAT)).isEmpty();
+    }
+
+    @Test
+    void answerTimeoutCompletesWithTimeoutAndAbortsExchange() throws Exception {
+        trickle = true;
+        long start = System.nanoTime();
+
+        ChatResult result = result(start(config()).sendAsync(CHAT, "Вопрос", Duration.ofMillis(300)));
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+        assertThat(result.status()).isEqualTo(ChatResult.Status.TIMEOUT);
+        assertThat(result.error()).as("общий таймаут ответа, а не HTTP-обмена").isNull();
+        assertThat(disconnected.await(5, TimeUnit.SECONDS)).as("обмен прерван по таймауту").isTrue();
+        assertThat(store.history(CHAT)).isEmpty();
+    }
+
+    @Test
+    void unauthorizedTokenIsInvalidatedAndRequestRetriedOnce() throws Exception {
+        rejectedTokens.add("token-1");
+
+        ChatResult result = result(start(config()).sendAsync(CHAT, "Вопрос"));
+
+        assertThat(result.status()).isEqualTo(ChatResult.Status.OK);
+        assertThat(tokens).as("после 401 получен новый токен").hasValue(2);
+        assertThat(authorizations).containsExactly("Bearer token-1", "Bearer token-2");
+    }
+
+    @Test
+    void secondUnauthorizedIsNotRetriedAgain() throws Exception {
+        rejectedTokens.addAll(List.of("token-1", "token-2", "token-3"));
+
+        ChatResult result = result(start(config()).sendAsync(CHAT, "Вопрос"));
+
+        assertThat(result.status()).isEqualTo(ChatResult.Status.FAILED);
+        assertThat(result.httpStatus()).isEqualTo(401);
+        assertThat(chatRequests).as("один повтор со свежим токеном").hasValue(2);
+        assertThat(tokens).hasValue(2);
+    }
+
+    @Test
+    void tooManyRequestsMapsToRateLimited() throws Exception {
+        status = 429;
+        GigaChatSpringConfig config = config();
+        config.setRateLimitMaxWaitMs(100); // Пауза после 429 длиннее — повтор отклоняется, не дожидаясь её
+
+        ChatResult result = result(start(config).sendAsync(CHAT, "Вопрос"));
+
+        assertThat(result.status()).isEqualTo(ChatResult.Status.RATE_LIMITED);
+        assertThat(chatRequests).hasValue(1);
+        assertThat(GigaChatService.replyText(result)).contains("перегружен");
+    }
+
+    @Test
+    void serverErrorMapsToFailedWithHttpStatus() throws Exception {
+        status = 500;
+        GigaChatSpringConfig config = config();
+        config.setHttpMaxRetries(2);
+        config.setHttpRetryBaseDelayMs(1);
+
+        ChatResult result = result(start(config).sendAsync(CHAT, "Вопрос"));
+
+        assertThat(result.status()).isEqualTo(ChatResult.Status.FAILED);
+        assertThat(result.httpStatus()).isEqualTo(500);
+        assertThat(result.error()).isInstanceOf(GigaChatApiException.class);
+        assertThat(result.content()).isNull();
+        assertThat(chatRequests).as("генерация не повторяется после 500").hasValue(1);
+        assertThat(store.history(CHAT)).isEmpty();
+    }
+
+    @Test
+    void openCircuitMapsToUnavailable() throws Exception {
+        status = 503;
+        GigaChatSpringConfig config = config();
+        config.setCircuitFailureThreshold(2);
+        config.setCircuitOpenSeconds(60);
+        GigaChatService service = start(config);
+        for (int i = 0; i < 2; i++) {
+            assertThat(result(service.sendAsync(CHAT, "Вопрос " + i)).httpStatus()).isEqualTo(503);
+        }
+
+        ChatResult result = result(service.sendAsync(CHAT, "Вопрос"));
+
+        assertThat(result.status()).isEqualTo(ChatResult.Status.UNAVAILABLE);
+        assertThat(result.error()).isInstanceOf(CircuitOpenException.class);
+        assertThat(chatRequests).as("при разомкнутой цепи запрос не отправляется").hasValue(2);
+    }
+
+    @Test
+    void httpRequestTimeoutMapsToTimeout() throws Exception {
+        headersDelayMillis = 3000;
+        GigaChatSpringConfig config = config();
+        config.setHttpRequestTimeoutSeconds(1);
+
+        ChatResult result = result(start(config).sendAsync(CHAT, "Вопрос"));
+
+        assertThat(result.status()).isEqualTo(ChatResult.Status.TIMEOUT);
+        assertThat(result.error()).isInstanceOf(HttpTimeoutException.class);
+        assertThat(chatRequests).hasValue(1);
+    }
+
+    private void awaitChatRequests(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (chatRequests.get() < expected && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertThat(chatRequests).hasValue(expected);
+    }
+}
@@ -0,0 +1,127 @@
+package com.GigaChatMyBot.service;
+
+import com.GigaChatMyBot.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * InMemoryConversationStore: обрезка истории до бюджета токенов парами вопрос-ответ,
+ * вытеснение чатов по простою, по LRU при лимите числа чатов и по лимиту объёма памяти.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class InMemoryConversationStoreTest {
+    private static final String TEXT_30 = "а".repeat(30); // Реплика на 14 токенов: 30 / 3 + 4
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1); // Простой, до которого чаты не вытесняются
+    private static final long UNLIMITED = Long.MAX_VALUE; // Без лимита объёма
+
+    private static List<ChatMessage> exchange(String question, String answer) {
+        return List.of(ChatMessage.user(question), ChatMessage.assistant(answer));
+    }
+
+    @Test
+    void historyKeepsOrderAndRoles() {
+        InMemoryConversationStore store = new InMemoryConversationStore(1000, 10, HOUR, UNLIMITED);
+        for (int i = 0; i < 10; i++) { // Больше начальной ёмкости кольцевого буфера
+            store.append(1, exchange("вопрос " + i, "ответ " + i));
+        }
+
+        List<ChatMessage> history = store.history(1);
+
+        assertThat(history).hasSize(20);
+        assertThat(history.get(0)).isEqualTo(ChatMessage.user("вопрос 0"));
+        assertThat(history.get(19)).isEqualTo(ChatMessage.assistant("ответ 9"));
+        assertThat(store.history(2)).isEmpty();
+    }
+
+    @Test
+    void trimDropsQuestionTogetherWithItsAnswer() {
+        InMemoryConversationStore store = new InMemoryConversationStore(40, 10, HOUR, UNLIMITED);
+        store.append(1, exchange(TEXT_30, TEXT_30)); // 28 токенов
+        store.append(1, exchange("второй " + TEXT_30, "ответ")); // Ещё 17 + 6: бюджет превышен
+
+        assertThat(store.history(1)).as("история не начинается с ответа")
+                .containsExactly(ChatMessage.user("второй " + TEXT_30), ChatMessage.assistant("ответ"));
+    }
+
+    @Test
+    void trimKeepsQuestionsWithoutAnswers() {
+        InMemoryConversationStore store = new InMemoryConversationStore(25, 10, HOUR, UNLIMITED); // 14 + 6 + 6 токенов не влезают
+        store.append(1, List.of(ChatMessage.user(TEXT_30), ChatMessage.user("второй"), ChatMessage.assistant("ответ")));
+
+        assertThat(store.history(1)).as("снят только самый старый вопрос")
+                .containsExactly(ChatMessage.user("второй"), ChatMessage.assistant("ответ"));
+    }
+
+    @Test
+    void idleChatIsEvicted() throws InterruptedException {
+        InMemoryConversationStore store = new InMemoryConversationStore(1000, 10, 50, UNLIMITED);
+        store.append(1, exchange("вопрос", "ответ"));
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        store.append(2, exchange("вопрос", "ответ"));
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.history(1)).isEmpty();
+        assertThat(store.history(2)).hasSize(2);
+    }
+
+    @Test
+    void leastRecentlyUsedChatIsEvictedOverChatLimit() {
+        InMemoryConversationStore store = new InMemoryConversationStore(1000, 2, HOUR, UNLIMITED);
+        store.append(1, exchange("вопрос", "ответ"));
+        store.append(2, exchange("вопрос", "ответ"));
+        store.history(1); // Чат 1 снова активен, самым старым становится чат 2
+
+        store.append(3, exchange("вопрос", "ответ"));
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.history(2)).isEmpty();
+        assertThat(store.history(1)).hasSize(2);
+        assertThat(store.history(3)).hasSize(2);
+    }
+
+    @Test
+    void oldestChatsAreEvictedOverMemoryLimit() {
+        String text = "б".repeat(100);
+        InMemoryConversationStore store = new InMemoryConversationStore(1000, 100, HOUR, 1000);
+        store.append(1, exchange(text, text));
+        long oneChat = store.usedBytes();
+        assertThat(oneChat).as("две реплики по 100 символов и накладные расходы").isBetween(400L, 1000L);
+
+        store.append(2, exchange(text, text));
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.usedBytes()).isEqualTo(oneChat).isLessThanOrEqualTo(1000);
+        assertThat(store.history(1)).isEmpty();
+        assertThat(store.history(2)).hasSize(2);
+    }
+
+    @Test
+    void onlyChatIsKeptEvenOverMemoryLimit() {
+        InMemoryConversationStore store = new InMemoryConversationStore(1000, 100, HOUR, 100);
+        store.append(1, exchange("в".repeat(200), "г".repeat(200)));
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.history(1)).hasSize(2);
+    }
+
+    @Test
+    void usedBytesFollowTrimAndClear() {
+        InMemoryConversationStore store = new InMemoryConversationStore(40, 10, HOUR, UNLIMITED);
+        for (int i = 0; i < 5; i++) {
+            store.append(1, exchange(TEXT_30, TEXT_30));
+        }
+        long afterTrim = store.usedBytes();
+        store.clear(1);
+        store.append(1, exchange(TEXT_30, TEXT_30));
+        assertThat(store.usedBytes()).as("обрезанные реплики вычтены из объёма").isEqualTo(afterTrim);
+
+        store.clear(1);
+        assertThat(store.usedBytes()).isZero();
+        assertThat(store.size()).isZero();
+    }
+}
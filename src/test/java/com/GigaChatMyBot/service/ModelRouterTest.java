@@ -0,0 +1,103 @@
+package com.GigaChatMyBot.service;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ModelRouter: уровень модели по длине вопроса, закрепление модели командой /model,
+ * обход медленной или часто ошибающейся модели и освобождение пробного запроса через onSkipped.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class ModelRouterTest {
+    private static final List<String> MODELS = List.of("GigaChat", "GigaChat-Pro", "GigaChat-Max"); // От быстрой к сильной
+    private static final int SHORT = 100; // Вопросы короче — в быструю модель
+    private static final int LONG = 1000; // Вопросы не короче — в сильную модель
+    private static final long MAX_P95_MILLIS = 500; // Порог медленной модели
+    private static final double MAX_ERROR_RATE = 0.2; // Порог доли ошибок
+    private static final int SAMPLES = 10; // Сколько ответов нужно, чтобы статистика модели учитывалась
+    private static final long CHAT = 1; // Идентификатор чата
+
+    private static ModelRouter router(int failureThreshold, long openDurationMillis) {
+        return new ModelRouter(MODELS, SHORT, LONG, MAX_P95_MILLIS, MAX_ERROR_RATE,
+                failureThreshold, openDurationMillis, BotMetrics.standalone());
+    }
+
+    private static ModelRouter router() {
+        return router(100, TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @Test
+    void tierIsChosenByPromptLength() {
+        ModelRouter router = router();
+        assertThat(router.route(CHAT, 10)).isEqualTo(new ModelRouter.Route("GigaChat", "GigaChat-Pro"));
+        assertThat(router.route(CHAT, 500)).isEqualTo(new ModelRouter.Route("GigaChat-Pro", "GigaChat"));
+        assertThat(router.route(CHAT, 5000)).isEqualTo(new ModelRouter.Route("GigaChat-Max", "GigaChat-Pro"));
+    }
+
+    @Test
+    void overrideWinsOverPromptLengthUntilReset() {
+        ModelRouter router = router();
+        assertThat(router.setOverride(CHAT, "gigachat-max")).isTrue();
+        assertThat(router.getOverride(CHAT)).isEqualTo("GigaChat-Max");
+        assertThat(router.route(CHAT, 10).model()).isEqualTo("GigaChat-Max");
+        assertThat(router.route(CHAT + 1, 10).model()).as("другой чат").isEqualTo("GigaChat");
+
+        assertThat(router.setOverride(CHAT, "GigaChat-Ultra")).isFalse();
+        assertThat(router.getOverride(CHAT)).isEqualTo("GigaChat-Max");
+
+        assertThat(router.setOverride(CHAT, null)).isTrue();
+        assertThat(router.route(CHAT, 10).model()).isEqualTo("GigaChat");
+    }
+
+    @Test
+    void slowModelIsSkipped() {
+        ModelRouter router = router();
+        for (int i = 0; i < SAMPLES; i++) {
+            router.onSuccess("GigaChat", TimeUnit.MILLISECONDS.toNanos(MAX_P95_MILLIS * 4));
+        }
+        assertThat(router.p95Millis("GigaChat")).isEqualTo(MAX_P95_MILLIS * 4);
+        assertThat(router.route(CHAT, 10)).isEqualTo(new ModelRouter.Route("GigaChat-Pro", "GigaChat-Max"));
+    }
+
+    @Test
+    void modelWithHighErrorRateIsSkippedInFavourOfFasterOne() {
+        ModelRouter router = router();
+        for (int i = 0; i < SAMPLES; i++) {
+            if (i % 2 == 0) {
+                router.onFailure("GigaChat-Pro", TimeUnit.MILLISECONDS.toNanos(10));
+            } else {
+                router.onSuccess("GigaChat-Pro", TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+        assertThat(router.route(CHAT, 500)).isEqualTo(new ModelRouter.Route("GigaChat", "GigaChat-Max"));
+    }
+
+    @Test
+    void fewSamplesDoNotMakeModelUnhealthy() {
+        ModelRouter router = router();
+        for (int i = 0; i < SAMPLES - 1; i++) {
+            router.onFailure("GigaChat", TimeUnit.MILLISECONDS.toNanos(MAX_P95_MILLIS * 4));
+        }
+        assertThat(router.route(CHAT, 10).model()).isEqualTo("GigaChat");
+    }
+
+    @Test
+    void skippedRequestReleasesHalfOpenProbe() throws InterruptedException {
+        ModelRouter router = router(2, 50);
+        router.onFailure("GigaChat", TimeUnit.MILLISECONDS.toNanos(10));
+        router.onFailure("GigaChat", TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(router.route(CHAT, 10).model()).as("цепь разомкнута").isEqualTo("GigaChat-Pro");
+
+        TimeUnit.MILLISECONDS.sleep(80);
+        assertThat(router.route(CHAT, 10).model()).as("пробный запрос").isEqualTo("GigaChat");
+        assertThat(router.route(CHAT, 10).model()).as("пока идёт проба").isEqualTo("GigaChat-Pro");
+
+        router.onSkipped("GigaChat"); // Ответ взят из кэша — проба так и не ушла в модель
+        assertThat(router.route(CHAT, 10).model()).isEqualTo("GigaChat");
+    }
+}
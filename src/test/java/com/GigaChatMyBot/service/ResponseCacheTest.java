@@ -0,0 +1,101 @@
+package com.GigaChatMyBot.service;
+
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ResponseCache: склейка одновременных запросов, ошибки загрузки и отменённая загрузка владельца.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class ResponseCacheTest {
+    private static final ResponseCache.Key KEY = ResponseCache.key("GigaChat", "Привет"); // Общий ключ запросов
+
+    private static ResponseCache cache() {
+        return new ResponseCache(100, 1024 * 1024, 16 * 1024, TimeUnit.HOURS.toMillis(1));
+    }
+
+    private static CompletableFuture<ResponseCache.Loaded> loaded(ResponseCache.Key key, String value) {
+        return CompletableFuture.completedFuture(new ResponseCache.Loaded(key, value));
+    }
+
+    @Test
+    void keyIgnoresCaseAndWhitespace() {
+        assertThat(ResponseCache.key("GigaChat", "  привет \n ")).isEqualTo(KEY);
+        assertThat(ResponseCache.key("GigaChat-Pro", "Привет")).isNotEqualTo(KEY);
+    }
+
+    @Test
+    void concurrentRequestsShareOneLoad() throws Exception {
+        ResponseCache cache = cache();
+        CompletableFuture<ResponseCache.Loaded> load = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> owner = cache.getAsync(KEY, () -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        CompletableFuture<String> waiter = cache.getAsync(KEY, () -> {
+            loads.incrementAndGet();
+            return loaded(KEY, "чужой ответ");
+        });
+        assertThat(cache.coalesced()).isEqualTo(1);
+        assertThat(waiter).isNotDone();
+        load.complete(new ResponseCache.Loaded(KEY, "ответ"));
+
+        assertThat(owner.get(5, TimeUnit.SECONDS)).isEqualTo("ответ");
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo("ответ");
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getAsync(KEY, () -> loaded(KEY, "не загружается")).get()).isEqualTo("ответ");
+        assertThat(cache.hits()).isEqualTo(1);
+    }
+
+    @Test
+    void answerIsStoredUnderKeyReturnedByLoader() throws Exception {
+        ResponseCache cache = cache();
+        ResponseCache.Key fallbackKey = ResponseCache.key("GigaChat-Pro", "Привет");
+        assertThat(cache.getAsync(KEY, () -> loaded(fallbackKey, "ответ запасной модели")).get())
+                .isEqualTo("ответ запасной модели");
+
+        assertThat(cache.getIfPresent(KEY)).isNull();
+        assertThat(cache.getIfPresent(fallbackKey)).isEqualTo("ответ запасной модели");
+    }
+
+    @Test
+    void loadFailureIsNotCached() throws Exception {
+        ResponseCache cache = cache();
+        CompletableFuture<String> failed = cache.getAsync(KEY, () -> CompletableFuture.failedFuture(new IOException("сбой")));
+        assertThatThrownBy(failed::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IOException.class);
+
+        assertThat(cache.getAsync(KEY, () -> loaded(KEY, "ответ")).get()).isEqualTo("ответ");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void waiterLoadsItselfWhenOwnerLoadIsCancelled() throws Exception {
+        ResponseCache cache = cache();
+        CompletableFuture<ResponseCache.Loaded> ownerLoad = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> owner = cache.getAsync(KEY, () -> {
+            loads.incrementAndGet();
+            return ownerLoad.thenApply(loaded -> loaded); // Как в GigaChatService: отмена приходит через цепочку
+        });
+        CompletableFuture<String> waiter = cache.getAsync(KEY, () -> {
+            loads.incrementAndGet();
+            return loaded(KEY, "ответ ожидающего");
+        });
+        ownerLoad.cancel(true); // Запрос владельца отменён или вышел по таймауту
+
+        assertThat(owner).isCompletedExceptionally();
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo("ответ ожидающего");
+        assertThat(loads).hasValue(2);
+        assertThat(cache.misses()).isEqualTo(2);
+        assertThat(cache.getIfPresent(KEY)).isEqualTo("ответ ожидающего");
+    }
+}
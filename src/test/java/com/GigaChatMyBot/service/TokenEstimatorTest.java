@@ -0,0 +1,36 @@
+package com.GigaChatMyBot.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * TokenEstimator: оценка с округлением вверх и надбавкой на разметку реплики.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class TokenEstimatorTest {
+
+    @Test
+    void emptyMessageCostsOnlyOverhead() {
+        assertThat(TokenEstimator.estimate("")).isEqualTo(4);
+    }
+
+    @Test
+    void charactersAreRoundedUpToTokens() {
+        assertThat(TokenEstimator.estimate("а")).isEqualTo(5);
+        assertThat(TokenEstimator.estimate("абв")).isEqualTo(5);
+        assertThat(TokenEstimator.estimate("абвг")).isEqualTo(6);
+        assertThat(TokenEstimator.estimate("a".repeat(300))).isEqualTo(104);
+    }
+
+    @Test
+    void estimateGrowsWithText() {
+        int previous = TokenEstimator.estimate("");
+        for (int length = 1; length < 100; length++) {
+            int estimate = TokenEstimator.estimate("x".repeat(length));
+            assertThat(estimate).isGreaterThanOrEqualTo(previous);
+            previous = estimate;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.GigaChatMyBot.storage;
+
+import com.GigaChatMyBot.model.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MappedConversationStore: восстановление индекса после перезапуска и сбоя, надгробия и компакция.
+ * Фоновая компакция в тестах не успевает сработать — compact() вызывается явно.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class MappedConversationStoreTest {
+    private static final int SEGMENT_SIZE = 4096; // Маленькие сегменты, чтобы журнал быстро занимал несколько файлов
+    private static final int LARGE_BUDGET = 1_000_000; // Бюджет, при котором обрезки нет
+    private static final long NO_COMPACTION = TimeUnit.HOURS.toMillis(1); // Фоновая компакция не мешает тесту
+
+    @TempDir
+    Path directory; // Каталог журнала
+    private MappedConversationStore store; // Открытое хранилище
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private MappedConversationStore open(int tokenBudget) throws IOException {
+        if (store != null) {
+            store.close();
+        }
+        store = new MappedConversationStore(directory, SEGMENT_SIZE, tokenBudget, NO_COMPACTION);
+        return store;
+    }
+
+    private static List<ChatMessage> dialog(String prefix, int pairs) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < pairs; i++) {
+            messages.add(ChatMessage.user(prefix + " вопрос " + i));
+            messages.add(ChatMessage.assistant(prefix + " ответ " + i));
+        }
+        return messages;
+    }
+
+    @Test
+    void historySurvivesRestart() throws IOException {
+        open(LARGE_BUDGET).append(1, dialog("чат 1", 3));
+        store.append(2, dialog("чат 2", 2));
+        store.append(1, List.of(ChatMessage.user("ещё вопрос")));
+
+        open(LARGE_BUDGET);
+        List<ChatMessage> expected = new ArrayList<>(dialog("чат 1", 3));
+        expected.add(ChatMessage.user("ещё вопрос"));
+        assertThat(store.history(1)).isEqualTo(expected);
+        assertThat(store.history(2)).isEqualTo(dialog("чат 2", 2));
+        assertThat(store.history(3)).isEmpty();
+    }
+
+    @Test
+    void clearAndTrimSurviveRestart() throws IOException {
+        open(60).append(1, dialog("чат 1 с длинным текстом реплики", 5)); // Реплика ~15 токенов: в бюджет входят две
+        store.append(2, dialog("чат 2", 1));
+        store.clear(2);
+        List<ChatMessage> trimmed = store.history(1);
+        assertThat(trimmed).isEqualTo(dialog("чат 1 с длинным текстом реплики", 5).subList(8, 10));
+
+        open(60);
+        assertThat(store.history(1)).isEqualTo(trimmed);
+        assertThat(store.history(2)).isEmpty();
+    }
+
+    @Test
+    void tornTailIsDroppedAndLogStaysWritable() throws IOException {
+        open(LARGE_BUDGET).append(1, List.of(ChatMessage.user("целая запись")));
+        store.append(1, List.of(ChatMessage.assistant("запись, оборванная при сбое")));
+        store.close();
+        store = null;
+        corruptLastByte(onlySegment());
+
+        open(LARGE_BUDGET);
+        assertThat(store.history(1)).containsExactly(ChatMessage.user("целая запись"));
+        store.append(1, List.of(ChatMessage.assistant("запись после восстановления")));
+
+        open(LARGE_BUDGET);
+        assertThat(store.history(1)).containsExactly(ChatMessage.user("целая запись"),
+                ChatMessage.assistant("запись после восстановления"));
+    }
+
+    @Test
+    void compactionDropsDeadSegmentsAndKeepsLiveRecords() throws IOException {
+        open(LARGE_BUDGET);
+        for (int i = 0; i < 10; i++) {
+            store.append(1, dialog("удаляемый чат, реплика " + "x".repeat(200), 2));
+            store.append(2, List.of(ChatMessage.user("живая реплика " + i)));
+        }
+        int before = store.segmentCount();
+        assertThat(before).isGreaterThan(3);
+        store.clear(1);
+
+        store.compact();
+        assertThat(store.segmentCount()).isLessThan(before);
+        assertThat(segmentFiles()).hasSize(store.segmentCount());
+        List<ChatMessage> live = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            live.add(ChatMessage.user("живая реплика " + i));
+        }
+        assertThat(store.history(2)).isEqualTo(live);
+
+        open(LARGE_BUDGET);
+        assertThat(store.history(2)).as("перенесённые реплики и порядок восстанавливаются").isEqualTo(live);
+        assertThat(store.history(1)).as("надгробие пережило компакцию").isEmpty();
+    }
+
+    @Test
+    void repeatedCompactionIsStable() throws IOException {
+        open(LARGE_BUDGET);
+        for (int i = 0; i < 30; i++) {
+            store.append(i % 3, dialog("чат " + (i % 3) + " реплика " + i + " " + "y".repeat(100), 1));
+            if (i % 3 == 2) {
+                store.clear(0);
+            }
+        }
+        List<ChatMessage> chat1 = store.history(1);
+        List<ChatMessage> chat2 = store.history(2);
+        store.compact();
+        store.compact();
+
+        open(LARGE_BUDGET);
+        assertThat(store.history(0)).isEmpty();
+        assertThat(store.history(1)).isEqualTo(chat1);
+        assertThat(store.history(2)).isEqualTo(chat2);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-")).toList();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> files = segmentFiles();
+        assertThat(files).hasSize(1);
+        return files.get(0);
+    }
+
+    /**
+     * Портит последний ненулевой байт файла — конец данных последней записи, — как если бы запись оборвалась.
+     */
+    private static void corruptLastByte(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+            channel.read(content, 0);
+            int last = content.capacity() - 1;
+            while (content.get(last) == 0) {
+                last--;
+            }
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) ~content.get(last)}), last);
+        }
+    }
+}
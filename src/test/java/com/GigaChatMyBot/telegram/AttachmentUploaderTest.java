@@ -0,0 +1,189 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.config.GigaChatSpringConfig;
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.GigaChatMyBot.service.GigaChatService;
+import com.GigaChatMyBot.service.InMemoryConversationStore;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * AttachmentUploader против заглушки, которая отвечает и за Telegram (getFile и скачивание), и за GigaChat
+ * (OAuth и /files): файл из обрезанного скачивания не принимается и не запоминается, загрузка не повторяется.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class AttachmentUploaderTest {
+    private static final String TOKEN = "stub"; // Токен бота в путях Bot API
+    private static final int FILE_SIZE = 256 * 1024; // Размер файла по данным getFile
+
+    private final AtomicInteger uploads = new AtomicInteger(); // Запросы загрузки, дошедшие до GigaChat
+    private final AtomicLong uploadedBytes = new AtomicLong(); // Байты тел загрузок вместе с multipart-обрамлением
+    private volatile int sentBytes = FILE_SIZE; // Сколько байт отдаёт скачивание
+    private volatile int uploadStatus = 200; // Что отвечает /files
+    private HttpServer server; // Заглушка Telegram и GigaChat
+    private ExecutorService handlers; // Обработчики заглушки
+    private GigaChatService service; // Сервис GigaChat, подключённый к заглушке
+    private StubSender sender; // Отправитель Bot API, подключённый к заглушке
+    private AttachmentUploader uploader; // Проверяемый загрузчик
+
+    @BeforeEach
+    void setUp() throws IOException {
+        handlers = Executors.newCachedThreadPool(); // Потоки тела HttpServer закрепляют виртуальный поток за носителем
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/bot" + TOKEN + "/", this::botApi);
+        server.createContext("/file/bot" + TOKEN + "/", this::download);
+        server.createContext("/api/v2/oauth", this::oauth);
+        server.createContext("/api/v1/files", this::upload);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        GigaChatSpringConfig config = new GigaChatSpringConfig();
+        config.setOauthUrl(base + "/api/v2/oauth");
+        config.setChatUrl(base + "/api/v1/chat/completions");
+        config.setAuthorizationKeyBasic("Basic c3R1YjpzdHVi");
+        config.setScope("GIGACHAT_API_PERS");
+        config.setModelName("GigaChat");
+        config.setHttpMaxRetries(2); // Повторы включены: загрузка не должна ими пользоваться
+        config.setHttpRetryBaseDelayMs(1);
+        config.setHttpRetryMaxDelayMs(5);
+        BotMetrics metrics = BotMetrics.standalone();
+        service = new GigaChatService(config, new InMemoryConversationStore(2000, 100, TimeUnit.HOURS.toMillis(1),
+                1024 * 1024), metrics);
+        sender = new StubSender(base + "/bot");
+        uploader = new AttachmentUploader(service, metrics, TOKEN, base + "/bot", 20, 1024, 4, 1000, 30,
+                "application/pdf", 100, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploader.close();
+        sender.close();
+        service.shutdown();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void botApi(HttpExchange exchange) throws IOException {
+        String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        if (!exchange.getRequestURI().getPath().toLowerCase(Locale.ROOT).endsWith("/getfile")) {
+            respond(exchange, 400, "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request\"}");
+            return;
+        }
+        String fileId = request.replaceAll(".*\"file_id\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+        respond(exchange, 200, "{\"ok\":true,\"result\":{\"file_id\":\"" + fileId + "\",\"file_unique_id\":\"u" + fileId
+                + "\",\"file_size\":" + FILE_SIZE + ",\"file_path\":\"documents/" + fileId + "\"}}");
+    }
+
+    /**
+     * Отдаёт sentBytes байт частями (chunked) и завершает ответ штатно — обрыв виден только по количеству.
+     */
+    private void download(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(new byte[sentBytes]);
+        }
+    }
+
+    private void oauth(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        long expiresAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(30);
+        respond(exchange, 200, "{\"access_token\":\"stub-token\",\"expires_at\":" + expiresAt + "}");
+    }
+
+    private void upload(HttpExchange exchange) throws IOException {
+        int upload = uploads.incrementAndGet(); // До чтения тела: считается и повтор, оборвавшийся на нём
+        long bytes;
+        try (InputStream body = exchange.getRequestBody()) {
+            bytes = body.transferTo(OutputStream.nullOutputStream());
+        }
+        uploadedBytes.addAndGet(bytes);
+        if (uploadStatus != 200) {
+            respond(exchange, uploadStatus, "{\"status\":" + uploadStatus + ",\"message\":\"stub error\"}");
+            return;
+        }
+        respond(exchange, 200, "{\"id\":\"file-" + upload + "\",\"object\":\"file\",\"purpose\":\"general\"}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static Attachment document(String fileId) {
+        return new Attachment(fileId, "u" + fileId, fileId + ".pdf", "application/pdf", FILE_SIZE, false);
+    }
+
+    @Test
+    void completeFileIsUploadedOnceAndRemembered() throws Exception {
+        assertThat(uploader.upload(sender, document("doc"))).isEqualTo("file-1");
+        assertThat(uploadedBytes.get()).as("файл целиком и multipart-обрамление").isGreaterThan(FILE_SIZE);
+        assertThat(uploader.upload(sender, document("doc"))).isEqualTo("file-1");
+        assertThat(uploads).hasValue(1);
+    }
+
+    @Test
+    void truncatedDownloadIsNotAcceptedOrRemembered() throws Exception {
+        sentBytes = FILE_SIZE / 2;
+        assertThatThrownBy(() -> uploader.upload(sender, document("doc"))).isInstanceOf(IOException.class)
+                .hasMessageContaining(FILE_SIZE / 2 + " байт из " + FILE_SIZE);
+        assertThat(uploads).as("обрезанный файл дошёл до GigaChat, но его id не используется").hasValue(1);
+
+        sentBytes = FILE_SIZE;
+        assertThat(uploader.upload(sender, document("doc"))).as("id обрезанного файла не запомнен").isEqualTo("file-2");
+        assertThat(uploads).hasValue(2);
+    }
+
+    @Test
+    void failedUploadIsNotRetried() {
+        for (int status : new int[] {502, 503}) {
+            uploadStatus = status;
+            uploads.set(0);
+            assertThatThrownBy(() -> uploader.upload(sender, document("doc-" + status))).isInstanceOf(IOException.class);
+            assertThat(uploads).as("HTTP %d", status).hasValue(1);
+        }
+    }
+
+    /**
+     * Отправитель Bot API с адресом заглушки; close останавливает его пул executeAsync.
+     */
+    private static final class StubSender extends DefaultAbsSender {
+        StubSender(String apiUrl) {
+            super(options(apiUrl), TOKEN);
+        }
+
+        private static DefaultBotOptions options(String apiUrl) {
+            DefaultBotOptions options = new DefaultBotOptions();
+            options.setBaseUrl(apiUrl);
+            return options;
+        }
+
+        void close() {
+            exe.shutdownNow();
+        }
+    }
+}
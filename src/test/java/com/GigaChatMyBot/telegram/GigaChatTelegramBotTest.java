@@ -0,0 +1,120 @@
+package com.GigaChatMyBot.telegram;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Отправитель бота против медленной заглушки Bot API: после расширения пула соединений
+ * вызовы executeAsync выполняются одновременно всеми потоками отправителя, а не по два.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class GigaChatTelegramBotTest {
+    private static final String TOKEN = "stub"; // Токен бота в путях Bot API
+    private static final int THREADS = 8; // Потоки отправителя
+
+    private final AtomicInteger active = new AtomicInteger(); // Вызовы, которые заглушка обрабатывает сейчас
+    private final AtomicInteger maxActive = new AtomicInteger(); // Наибольшее число одновременных вызовов
+    private HttpServer server; // Заглушка Telegram
+    private ExecutorService handlers; // Обработчики заглушки
+
+    @BeforeEach
+    void setUp() throws IOException {
+        handlers = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/bot" + TOKEN + "/", this::slowSend);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void slowSend(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            TimeUnit.MILLISECONDS.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+        }
+        byte[] body = "{\"ok\":true,\"result\":{\"message_id\":1,\"date\":0,\"chat\":{\"id\":1,\"type\":\"private\"}}}"
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private int maxConcurrentSends(boolean widen) throws Exception {
+        StubSender sender = new StubSender("http://127.0.0.1:" + server.getAddress().getPort() + "/bot");
+        try {
+            if (widen) {
+                assertThat(GigaChatTelegramBot.widenConnectionPool(sender, THREADS)).isTrue();
+            }
+            List<CompletableFuture<?>> sends = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                sends.add(sender.executeAsync(new SendMessage("1", "ответ " + i)));
+            }
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+            return maxActive.get();
+        } finally {
+            sender.close();
+        }
+    }
+
+    @Test
+    void defaultPoolAllowsOnlyTwoConnections() throws Exception {
+        assertThat(maxConcurrentSends(false)).isEqualTo(2);
+    }
+
+    @Test
+    void widenedPoolRunsAllSenderThreads() throws Exception {
+        assertThat(maxConcurrentSends(true)).isEqualTo(THREADS);
+    }
+
+    /**
+     * Отправитель Bot API с адресом заглушки и THREADS потоками executeAsync; close останавливает его пул.
+     */
+    private static final class StubSender extends DefaultAbsSender {
+        StubSender(String apiUrl) {
+            super(options(apiUrl), TOKEN);
+        }
+
+        private static DefaultBotOptions options(String apiUrl) {
+            DefaultBotOptions options = new DefaultBotOptions();
+            options.setBaseUrl(apiUrl);
+            options.setMaxThreads(THREADS);
+            return options;
+        }
+
+        void close() {
+            exe.shutdownNow();
+        }
+    }
+}
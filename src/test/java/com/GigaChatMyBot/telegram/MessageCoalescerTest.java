@@ -0,0 +1,224 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MessageCoalescer и CoalescedPrompt поверх настоящего UpdateDispatcher: склейка в окне,
+ * отправка по максимальной задержке, длине и по flush(), вытеснение вопроса в очереди и в обработке,
+ * запрет вытеснения после beginReply() и удаление состояния чата после обработки.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class MessageCoalescerTest {
+    private static final long CHAT = 42; // Идентификатор чата
+    private static final long LONG_WINDOW = TimeUnit.SECONDS.toMillis(30); // Окно, которое в тесте не истекает
+
+    private final BlockingQueue<CoalescedPrompt> handled = new LinkedBlockingQueue<>(); // Вопросы, дошедшие до обработчика
+    private final AtomicBoolean rejected = new AtomicBoolean(); // Диспетчер отказал в приёме
+    private UpdateDispatcher dispatcher; // Настоящий диспетчер на виртуальных потоках
+    private MessageCoalescer coalescer; // Проверяемая склейка
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new UpdateDispatcher(10, 5, 5, 100, BotMetrics.standalone());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+        dispatcher.shutdown();
+    }
+
+    private MessageCoalescer coalescer(long windowMillis, long maxDelayMillis, int maxChars) {
+        coalescer = new MessageCoalescer(windowMillis, maxDelayMillis, maxChars, dispatcher, BotMetrics.standalone());
+        return coalescer;
+    }
+
+    private void submit(String text, Consumer<CoalescedPrompt> handler) {
+        coalescer.submit(CHAT, text, handler, () -> rejected.set(true));
+    }
+
+    private void submit(String text) {
+        submit(text, handled::add);
+    }
+
+    private CoalescedPrompt next() throws InterruptedException {
+        CoalescedPrompt prompt = handled.poll(5, TimeUnit.SECONDS);
+        assertThat(prompt).as("вопрос дошёл до обработчика").isNotNull();
+        return prompt;
+    }
+
+    private void awaitReleased() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescer.size() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertThat(coalescer.size()).as("состояние чата удалено").isZero();
+    }
+
+    @Test
+    void messagesWithinWindowAreMergedAndStateIsReleased() throws InterruptedException {
+        coalescer(200, LONG_WINDOW, 1000);
+        submit("первая часть");
+        submit("вторая часть");
+
+        CoalescedPrompt prompt = next();
+        assertThat(prompt.text()).isEqualTo("первая часть\nвторая часть");
+        assertThat(prompt.chatId()).isEqualTo(CHAT);
+        awaitReleased();
+        assertThat(handled).isEmpty();
+        assertThat(rejected).isFalse();
+    }
+
+    @Test
+    void zeroWindowDispatchesEachMessage() throws InterruptedException {
+        coalescer(0, 0, 1000);
+        submit("раз");
+        submit("два");
+        assertThat(next().text()).isEqualTo("раз");
+        assertThat(next().text()).isEqualTo("два");
+        awaitReleased();
+    }
+
+    @Test
+    void maxDelayFlushesWhileMessagesKeepComing() throws InterruptedException {
+        coalescer(300, 500, 100_000);
+        long start = System.nanoTime();
+        int sent = 0;
+        CoalescedPrompt prompt = null;
+        while (prompt == null && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3)) {
+            submit("часть " + sent++);
+            prompt = handled.poll(100, TimeUnit.MILLISECONDS); // Паузы короче окна — ждать тишины бесполезно
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(prompt).isNotNull();
+        assertThat(prompt.text()).startsWith("часть 0\nчасть 1");
+        assertThat(elapsedMillis).isBetween(400L, 1500L);
+    }
+
+    @Test
+    void maxCharsFlushesImmediately() throws InterruptedException {
+        coalescer(LONG_WINDOW, LONG_WINDOW, 10);
+        submit("12345");
+        assertThat(handled.poll(200, TimeUnit.MILLISECONDS)).as("короткое сообщение ждёт окна").isNull();
+        submit("67890");
+        assertThat(next().text()).isEqualTo("12345\n67890");
+    }
+
+    @Test
+    void flushDispatchesPendingTextBeforeNextTask() throws InterruptedException {
+        coalescer(LONG_WINDOW, LONG_WINDOW, 1000);
+        submit("текст перед файлом");
+        coalescer.flush(CHAT);
+        dispatcher.dispatch(CHAT, () -> handled.add(new CoalescedPrompt(CHAT, List.of("файл"))));
+
+        assertThat(next().text()).isEqualTo("текст перед файлом");
+        assertThat(next().text()).isEqualTo("файл");
+        awaitReleased();
+    }
+
+    @Test
+    void queuedPromptIsSupersededAndMergedIntoNextOne() throws InterruptedException {
+        coalescer(50, LONG_WINDOW, 1000);
+        CountDownLatch busy = new CountDownLatch(1);
+        dispatcher.dispatch(CHAT, () -> { // Занимает очередь чата, чтобы вопрос остался в фазе QUEUED
+            try {
+                busy.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submit("первый вопрос");
+        TimeUnit.MILLISECONDS.sleep(200); // Окно истекло — вопрос ушёл в очередь диспетчера
+        submit("уточнение");
+        TimeUnit.MILLISECONDS.sleep(200);
+        busy.countDown();
+
+        assertThat(next().text()).isEqualTo("первый вопрос\nуточнение");
+        awaitReleased();
+        assertThat(handled).as("вытесненный вопрос не обработан").isEmpty();
+    }
+
+    @Test
+    void runningPromptIsInterruptedAndDoesNotReply() throws InterruptedException {
+        coalescer(50, LONG_WINDOW, 1000);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicBoolean firstReplied = new AtomicBoolean(true);
+        submit("первый вопрос", prompt -> {
+            started.countDown();
+            try {
+                TimeUnit.SECONDS.sleep(10); // Запрос к GigaChat
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            firstReplied.set(prompt.beginReply());
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        submit("уточнение", prompt -> {
+            assertThat(prompt.beginReply()).isTrue();
+            handled.add(prompt);
+        });
+
+        assertThat(next().text()).isEqualTo("первый вопрос\nуточнение");
+        assertThat(interrupted).as("поток запроса прерван").isTrue();
+        assertThat(firstReplied).as("вытесненный вопрос не отвечает").isFalse();
+        awaitReleased();
+    }
+
+    @Test
+    void promptIsNotSupersededAfterReplyBegins() throws InterruptedException {
+        coalescer(50, LONG_WINDOW, 1000);
+        CountDownLatch replying = new CountDownLatch(1);
+        CountDownLatch sent = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        submit("первый вопрос", prompt -> {
+            assertThat(prompt.beginReply()).isTrue();
+            replying.countDown();
+            try {
+                sent.await(5, TimeUnit.SECONDS); // Отправка ответа в Telegram
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            handled.add(prompt);
+        });
+        assertThat(replying.await(5, TimeUnit.SECONDS)).isTrue();
+        submit("следующий вопрос");
+        TimeUnit.MILLISECONDS.sleep(200);
+        sent.countDown();
+
+        assertThat(next().text()).isEqualTo("первый вопрос");
+        assertThat(next().text()).as("новое сообщение — отдельный вопрос").isEqualTo("следующий вопрос");
+        assertThat(interrupted).isFalse();
+        awaitReleased();
+    }
+
+    @Test
+    void supersedeTransitionsFollowPhases() {
+        CoalescedPrompt queued = new CoalescedPrompt(CHAT, List.of("a"));
+        assertThat(queued.supersede()).isTrue();
+        assertThat(queued.start()).as("вытеснен в очереди").isFalse();
+
+        CoalescedPrompt replying = new CoalescedPrompt(CHAT, List.of("a", "b"));
+        assertThat(replying.start()).isTrue();
+        assertThat(replying.beginReply()).isTrue();
+        assertThat(replying.supersede()).isFalse();
+        assertThat(replying.text()).isEqualTo("a\nb");
+        replying.finish();
+        assertThat(replying.supersede()).isFalse();
+    }
+}
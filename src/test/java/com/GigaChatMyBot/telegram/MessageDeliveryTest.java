@@ -0,0 +1,143 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * MessageDelivery против заглушки Bot API: длинный ответ не упирается в max-wait-ms целиком,
+ * потому что разрешения резервируются по одному вперёд, а после неотправленной части остальные не уходят
+ * и зарезервированное разрешение возвращается в лимит.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class MessageDeliveryTest {
+    private static final String TOKEN = "stub"; // Токен бота в путях Bot API
+    private static final long CHAT = 42; // Идентификатор чата
+
+    private final ObjectMapper mapper = new ObjectMapper(); // Разбор тел запросов Bot API
+    private final List<String> sent = new CopyOnWriteArrayList<>(); // Тексты сообщений, принятых заглушкой
+    private volatile int failAt = -1; // Номер сообщения (с нуля), на котором заглушка отвечает ошибкой
+    private HttpServer server; // Заглушка Telegram
+    private ExecutorService handlers; // Обработчики заглушки
+    private StubSender sender; // Отправитель Bot API, подключённый к заглушке
+
+    @BeforeEach
+    void setUp() throws IOException {
+        handlers = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/bot" + TOKEN + "/", this::botApi);
+        server.start();
+        sender = new StubSender("http://127.0.0.1:" + server.getAddress().getPort() + "/bot");
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.close();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void botApi(HttpExchange exchange) throws IOException {
+        String text = mapper.readTree(exchange.getRequestBody()).path("text").asText();
+        boolean fail;
+        synchronized (sent) {
+            fail = sent.size() == failAt;
+            if (!fail) {
+                sent.add(text);
+            }
+        }
+        String json = fail
+                ? "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: stub\"}"
+                : "{\"ok\":true,\"result\":{\"message_id\":1,\"date\":0,\"chat\":{\"id\":" + CHAT + ",\"type\":\"private\"}}}";
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(fail ? 400 : 200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static List<String> chunks(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "часть " + i).toList();
+    }
+
+    @Test
+    void longAnswerIsNotLimitedByMaxWaitAsAWhole() {
+        // 20 сообщений/с в чат без запаса: все 15 разрешений сразу потребовали бы ждать 700 мс при лимите 100 мс
+        TelegramRateLimiter rateLimiter = new TelegramRateLimiter(1000, 20, 1, 100);
+        MessageDelivery delivery = new MessageDelivery(sender, rateLimiter, BotMetrics.standalone());
+        long start = System.nanoTime();
+
+        delivery.sendChunks(CHAT, chunks(15)).join();
+
+        assertThat(sent).containsExactlyElementsOf(chunks(15));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).as("лимит чата соблюдён")
+                .isGreaterThanOrEqualTo(600);
+    }
+
+    @Test
+    void failedChunkStopsAnswerAndRefundsReservedPermit() {
+        // Запас в 3 сообщения почти не пополняется за время теста
+        TelegramRateLimiter rateLimiter = new TelegramRateLimiter(1000, 0.01, 3, 100);
+        MessageDelivery delivery = new MessageDelivery(sender, rateLimiter, BotMetrics.standalone());
+        failAt = 1;
+
+        assertThatThrownBy(() -> delivery.sendChunks(CHAT, chunks(5)).join()).isInstanceOf(CompletionException.class);
+
+        assertThat(sent).containsExactly("часть 0");
+        // Взяты три разрешения: на часть 0, на часть 1 (не отправлена) и вперёд на часть 2 — последнее возвращено
+        assertThat(rateLimiter.tryAcquire(CHAT)).as("возвращённое разрешение доступно").isTrue();
+        assertThat(rateLimiter.tryAcquire(CHAT)).isFalse();
+    }
+
+    @Test
+    void emptyAnswerSendsNothing() {
+        MessageDelivery delivery = new MessageDelivery(sender, new TelegramRateLimiter(30, 1, 3, 100),
+                BotMetrics.standalone());
+
+        delivery.sendChunks(CHAT, List.of()).join();
+
+        assertThat(sent).isEmpty();
+    }
+
+    /**
+     * Отправитель Bot API с адресом заглушки; close останавливает его пул executeAsync.
+     */
+    private static final class StubSender extends DefaultAbsSender {
+        StubSender(String apiUrl) {
+            super(options(apiUrl), TOKEN);
+        }
+
+        private static DefaultBotOptions options(String apiUrl) {
+            DefaultBotOptions options = new DefaultBotOptions();
+            options.setBaseUrl(apiUrl);
+            return options;
+        }
+
+        void close() {
+            exe.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.GigaChatMyBot.telegram;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MessageSplitter: лимит длины, выбор места разреза, блоки кода, inline-разметка и суррогатные пары.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class MessageSplitterTest {
+    private static final int MAX = 100; // Малый лимит, чтобы тексты оставались обозримыми
+
+    @Test
+    void shortTextIsNotSplit() {
+        assertThat(MessageSplitter.split("Привет!")).containsExactly("Привет!");
+        assertThat(MessageSplitter.split("")).isEmpty();
+    }
+
+    @Test
+    void proseIsSplitWithinLimitWithoutLosingWords() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("Слово").append(i).append(i % 7 == 6 ? ". " : " ");
+        }
+        List<String> chunks = MessageSplitter.split(text.toString(), MAX);
+        assertThat(chunks).hasSizeGreaterThan(1).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(MAX));
+        assertThat(words(String.join(" ", chunks))).isEqualTo(words(text.toString()));
+    }
+
+    @Test
+    void paragraphBoundaryIsPreferred() {
+        String first = "Первый абзац. " + "a".repeat(40) + " конец";
+        String second = "Второй абзац " + "b".repeat(40) + " конец";
+        assertThat(MessageSplitter.split(first + "\n\n" + second, MAX)).containsExactly(first, second);
+    }
+
+    @Test
+    void codeBlockIsClosedAndReopenedWithItsLanguage() {
+        StringBuilder code = new StringBuilder();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String line = "int value" + i + " = " + i + ";";
+            lines.add(line);
+            code.append(line).append('\n');
+        }
+        List<String> chunks = MessageSplitter.split("```java\n" + code + "```", MAX);
+
+        assertThat(chunks).hasSizeGreaterThan(1).allSatisfy(chunk -> {
+            assertThat(chunk.length()).isLessThanOrEqualTo(MAX);
+            assertThat(chunk).startsWith("```java\n").endsWith("\n```");
+        });
+        List<String> restored = chunks.stream()
+                .flatMap(chunk -> Arrays.stream(chunk.split("\n")))
+                .filter(line -> !line.startsWith("```"))
+                .toList();
+        assertThat(restored).isEqualTo(lines);
+    }
+
+    @Test
+    void textAroundCodeBlockIsSplitAtFence() {
+        String before = "Вот пример:";
+        String block = "```\n" + "x = 1\n".repeat(10) + "```";
+        String after = "Готово. " + "c".repeat(60);
+        List<String> chunks = MessageSplitter.split(before + "\n" + block + "\n" + after, MAX);
+        assertThat(chunks).containsExactly(before + "\n" + block, after);
+    }
+
+    @Test
+    void longFenceHeaderDoesNotBreakSplitting() {
+        // Раньше заголовок длиннее окна части приводил к StringIndexOutOfBoundsException
+        String text = "```" + "x".repeat(5000) + "\n" + "code line\n".repeat(2000) + "```";
+        List<String> chunks = MessageSplitter.split(text);
+        assertThat(chunks).isNotEmpty()
+                .allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(MessageSplitter.TELEGRAM_MAX_LENGTH));
+        assertThat(chunks.subList(1, chunks.size()))
+                .as("длинный заголовок не повторяется, продолжение открывается простым ```")
+                .allSatisfy(chunk -> assertThat(chunk).startsWith("```\n"));
+    }
+
+    @Test
+    void hardCutDoesNotSplitSurrogatePair() {
+        String text = "😀".repeat(200); // Без пробелов: резать можно только жёстко
+        List<String> chunks = MessageSplitter.split(text, MAX + 1);
+        assertThat(chunks).hasSizeGreaterThan(1).allSatisfy(chunk -> {
+            assertThat(chunk.length()).isLessThanOrEqualTo(MAX + 1);
+            assertThat(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1))).isFalse();
+            assertThat(Character.isLowSurrogate(chunk.charAt(0))).isFalse();
+        });
+        assertThat(String.join("", chunks)).isEqualTo(text);
+    }
+
+    @Test
+    void inlineMarkupIsNotCutInHalf() {
+        String text = "Вызовите `client.send(request, handler, true)` и **обязательно проверьте код ответа** потом. ".repeat(6);
+        List<String> chunks = MessageSplitter.split(text, MAX);
+        assertThat(chunks).hasSizeGreaterThan(1).allSatisfy(chunk -> {
+            assertThat(chunk.length()).isLessThanOrEqualTo(MAX);
+            assertThat(count(chunk, "`") % 2).as("`код` в части: %s", chunk).isZero();
+            assertThat(count(chunk, "**") % 2).as("**жирный** в части: %s", chunk).isZero();
+        });
+    }
+
+    private static List<String> words(String text) {
+        return Arrays.asList(text.trim().split("\\s+"));
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+}
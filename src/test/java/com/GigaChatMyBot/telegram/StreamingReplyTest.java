@@ -0,0 +1,161 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * StreamingReply против заглушки Bot API: правки сообщения-заглушки идут не чаще minEditIntervalMillis,
+ * итоговый текст показывается всегда, а ответ, пришедший целиком без фрагментов, заменяет заглушку как обычный,
+ * с продолжением новыми сообщениями, если он длиннее лимита Telegram.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class StreamingReplyTest {
+    private static final String TOKEN = "stub"; // Токен бота в путях Bot API
+    private static final long CHAT = 42; // Идентификатор чата
+    private static final long EDIT_INTERVAL_MILLIS = 200; // Минимальный интервал между правками
+
+    private final ObjectMapper mapper = new ObjectMapper(); // Разбор тел запросов Bot API
+    private final List<Call> calls = new CopyOnWriteArrayList<>(); // Вызовы Bot API, дошедшие до заглушки
+    private HttpServer server; // Заглушка Telegram
+    private ExecutorService handlers; // Обработчики заглушки
+    private StubSender sender; // Отправитель Bot API, подключённый к заглушке
+    private MessageDelivery delivery; // Отправка сообщений с лимитами Telegram
+
+    /**
+     * Вызов Bot API: метод, текст сообщения и время прихода.
+     */
+    private record Call(String method, String text, long atNanos) {
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        handlers = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/bot" + TOKEN + "/", this::botApi);
+        server.start();
+        sender = new StubSender("http://127.0.0.1:" + server.getAddress().getPort() + "/bot");
+        delivery = new MessageDelivery(sender, new TelegramRateLimiter(30, 30, 30, 10_000), BotMetrics.standalone());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.close();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void botApi(HttpExchange exchange) throws IOException {
+        JsonNode request = mapper.readTree(exchange.getRequestBody());
+        String path = exchange.getRequestURI().getPath().toLowerCase(Locale.ROOT);
+        String method = path.substring(path.lastIndexOf('/') + 1);
+        calls.add(new Call(method, request.path("text").asText(), System.nanoTime()));
+        byte[] body = ("{\"ok\":true,\"result\":{\"message_id\":" + calls.size() + ",\"date\":0,"
+                + "\"chat\":{\"id\":" + CHAT + ",\"type\":\"private\"},\"text\":\"ok\"}}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private List<Call> calls(String method) {
+        return calls.stream().filter(call -> call.method().equals(method)).toList();
+    }
+
+    @Test
+    void editsAreThrottledAndFinalTextIsShown() throws Exception {
+        StreamingReply reply = new StreamingReply(delivery, CHAT, EDIT_INTERVAL_MILLIS);
+        reply.start();
+        StringBuilder full = new StringBuilder();
+        long streamStart = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            String delta = "слово" + i + " ";
+            full.append(delta);
+            reply.accept(delta);
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        long streamMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - streamStart);
+        reply.finish(full.toString());
+
+        assertThat(calls("sendmessage")).singleElement().extracting(Call::text).isEqualTo("…");
+        List<Call> edits = calls("editmessagetext");
+        assertThat(edits).as("промежуточные правки и итоговая").hasSizeBetween(2, (int) (streamMillis / EDIT_INTERVAL_MILLIS) + 1);
+        assertThat(edits.get(edits.size() - 1).text()).isEqualTo(MessageSplitter.split(full.toString()).get(0));
+        List<Call> intermediate = edits.subList(0, edits.size() - 1);
+        for (int i = 1; i < intermediate.size(); i++) {
+            long gapMillis = TimeUnit.NANOSECONDS.toMillis(intermediate.get(i).atNanos() - intermediate.get(i - 1).atNanos());
+            assertThat(gapMillis).as("интервал между правками %d и %d", i - 1, i).isGreaterThan(EDIT_INTERVAL_MILLIS / 2);
+        }
+        for (int i = 1; i < edits.size(); i++) {
+            assertThat(edits.get(i).text()).as("каждая правка дописывает текст").startsWith(edits.get(i - 1).text().strip());
+        }
+    }
+
+    @Test
+    void answerWithoutFragmentsReplacesPlaceholderLikeNormalReply() throws Exception {
+        StreamingReply reply = new StreamingReply(delivery, CHAT, EDIT_INTERVAL_MILLIS);
+        reply.start();
+
+        reply.finish("Ответ целиком");
+
+        assertThat(calls("editmessagetext")).singleElement().extracting(Call::text).isEqualTo("Ответ целиком");
+        assertThat(calls("sendmessage")).hasSize(1);
+    }
+
+    @Test
+    void longAnswerContinuesInNewMessages() throws Exception {
+        StreamingReply reply = new StreamingReply(delivery, CHAT, EDIT_INTERVAL_MILLIS);
+        reply.start();
+        String answer = "абзац ".repeat(1500).strip(); // Больше двух лимитов Telegram
+        List<String> chunks = MessageSplitter.split(answer);
+
+        reply.finish(answer);
+
+        assertThat(chunks).hasSizeGreaterThan(2);
+        assertThat(calls("editmessagetext")).singleElement().extracting(Call::text).isEqualTo(chunks.get(0));
+        assertThat(calls("sendmessage")).extracting(Call::text)
+                .containsExactlyElementsOf(Stream.concat(Stream.of("…"), chunks.stream().skip(1)).toList());
+    }
+
+    /**
+     * Отправитель Bot API с адресом заглушки; close останавливает его пул executeAsync.
+     */
+    private static final class StubSender extends DefaultAbsSender {
+        StubSender(String apiUrl) {
+            super(options(apiUrl), TOKEN);
+        }
+
+        private static DefaultBotOptions options(String apiUrl) {
+            DefaultBotOptions options = new DefaultBotOptions();
+            options.setBaseUrl(apiUrl);
+            return options;
+        }
+
+        void close() {
+            exe.shutdownNow();
+        }
+    }
+}
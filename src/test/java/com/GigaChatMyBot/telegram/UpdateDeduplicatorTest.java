@@ -0,0 +1,71 @@
+package com.GigaChatMyBot.telegram;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * UpdateDeduplicator: повторы в окне отсеиваются, старые идентификаторы вытесняются в порядке поступления.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class UpdateDeduplicatorTest {
+
+    @Test
+    void repeatedUpdateIsRejected() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(10);
+        assertThat(deduplicator.firstSeen(100)).isTrue();
+        assertThat(deduplicator.firstSeen(101)).isTrue();
+        assertThat(deduplicator.firstSeen(100)).isFalse();
+        assertThat(deduplicator.firstSeen(101)).isFalse();
+    }
+
+    @Test
+    void oldestIdLeavesWindow() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(3);
+        for (int id = 1; id <= 4; id++) {
+            assertThat(deduplicator.firstSeen(id)).isTrue();
+        }
+        assertThat(deduplicator.firstSeen(4)).isFalse();
+        assertThat(deduplicator.firstSeen(2)).isFalse();
+        assertThat(deduplicator.firstSeen(1)).as("вытеснен четвёртым update").isTrue();
+    }
+
+    @Test
+    void repeatDoesNotExtendLifetime() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(2);
+        deduplicator.firstSeen(1);
+        deduplicator.firstSeen(2);
+        assertThat(deduplicator.firstSeen(1)).isFalse();
+        deduplicator.firstSeen(3);
+        assertThat(deduplicator.firstSeen(1)).as("окно считается по первому поступлению").isTrue();
+    }
+
+    @Test
+    void concurrentDeliveriesAcceptEachIdOnce() {
+        int ids = 10_000;
+        int deliveries = 8; // Сколько раз приходит каждый update
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(ids);
+        AtomicInteger accepted = new AtomicInteger();
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(deliveries)) {
+            for (int d = 0; d < deliveries; d++) {
+                workers.add(CompletableFuture.runAsync(() -> {
+                    for (int id = 0; id < ids; id++) {
+                        if (deduplicator.firstSeen(id)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).join();
+        }
+        assertThat(accepted).hasValue(ids);
+    }
+}
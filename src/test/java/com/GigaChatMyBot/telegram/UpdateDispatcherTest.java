@@ -0,0 +1,170 @@
+package com.GigaChatMyBot.telegram;
+
+import com.GigaChatMyBot.metrics.BotMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * UpdateDispatcher: порядок сообщений чата, общий лимит одновременной обработки,
+ * отказ при переполнении очереди чата и общей очереди, дообработка принятых сообщений при остановке.
+ * @author vladimir_shi
+ * @since 17.10.2026
+ */
+class UpdateDispatcherTest {
+    private static final long CHAT = 1; // Идентификатор чата
+
+    private UpdateDispatcher dispatcher; // Проверяемый диспетчер
+
+    private UpdateDispatcher dispatcher(int maxConcurrency, int maxQueuePerChat, int maxPending) {
+        dispatcher = new UpdateDispatcher(maxConcurrency, 5, maxQueuePerChat, maxPending, BotMetrics.standalone());
+        return dispatcher;
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    /**
+     * Задача, которая ждёт открытия latch, как обработчик, ждущий ответа GigaChat.
+     */
+    private static Runnable blocked(CountDownLatch release, CountDownLatch started) {
+        return () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private static void awaitPending(UpdateDispatcher dispatcher, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.pending() != expected && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertThat(dispatcher.pending()).isEqualTo(expected);
+    }
+
+    @Test
+    void messagesOfChatAreHandledInOrderOneAtATime() throws InterruptedException {
+        dispatcher(10, 100, 1000);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger active = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        for (int i = 0; i < 50; i++) {
+            int index = i;
+            assertThat(dispatcher.dispatch(CHAT, () -> {
+                if (active.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                Thread.yield();
+                handled.add(index);
+                active.decrementAndGet();
+            })).isTrue();
+        }
+        awaitPending(dispatcher, 0);
+        assertThat(handled).containsExactlyElementsOf(IntStream.range(0, 50).boxed().toList());
+        assertThat(overlapped).as("сообщения чата не обрабатываются одновременно").isFalse();
+    }
+
+    @Test
+    void chatsRunInParallelUpToGlobalLimit() throws InterruptedException {
+        dispatcher(2, 5, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(5);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        for (long chatId = 0; chatId < 5; chatId++) {
+            Runnable task = blocked(release, started);
+            dispatcher.dispatch(chatId, () -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                task.run();
+                active.decrementAndGet();
+            });
+        }
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertThat(started.getCount()).as("запущены только два чата").isEqualTo(3);
+        release.countDown();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitPending(dispatcher, 0);
+        assertThat(maxActive).hasValue(2);
+    }
+
+    @Test
+    void fullChatQueueRejectsOnlyThatChat() throws InterruptedException {
+        dispatcher(10, 2, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        assertThat(dispatcher.dispatch(CHAT, blocked(release, started))).isTrue();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatcher.dispatch(CHAT, () -> { })).isTrue();
+        assertThat(dispatcher.dispatch(CHAT, () -> { })).isTrue();
+        assertThat(dispatcher.dispatch(CHAT, () -> { })).as("в очереди чата уже два сообщения").isFalse();
+        assertThat(dispatcher.dispatch(CHAT + 1, () -> { })).as("другой чат принимается").isTrue();
+
+        release.countDown();
+        awaitPending(dispatcher, 0);
+        assertThat(dispatcher.dispatch(CHAT, () -> { })).as("очередь освободилась").isTrue();
+    }
+
+    @Test
+    void maxPendingRejectsAcrossChats() throws InterruptedException {
+        dispatcher(10, 5, 3);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(3);
+        for (long chatId = 0; chatId < 3; chatId++) {
+            assertThat(dispatcher.dispatch(chatId, blocked(release, started))).isTrue();
+        }
+        assertThat(dispatcher.dispatch(3, () -> { })).isFalse();
+        assertThat(dispatcher.pending()).isEqualTo(3);
+
+        release.countDown();
+        awaitPending(dispatcher, 0);
+        assertThat(dispatcher.dispatch(3, () -> { })).isTrue();
+    }
+
+    @Test
+    void failingTaskDoesNotStopChatQueue() throws InterruptedException {
+        dispatcher(10, 5, 100);
+        CountDownLatch done = new CountDownLatch(1);
+        dispatcher.dispatch(CHAT, () -> {
+            throw new IllegalStateException("сбой обработчика");
+        });
+        dispatcher.dispatch(CHAT, done::countDown);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitPending(dispatcher, 0);
+    }
+
+    @Test
+    void shutdownDrainsAcceptedTasksAndRejectsNewOnes() {
+        dispatcher(2, 100, 1000);
+        AtomicInteger handled = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            dispatcher.dispatch(i % 4, () -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                handled.incrementAndGet();
+            });
+        }
+        dispatcher.shutdown();
+
+        assertThat(handled).as("принятые сообщения обработаны").hasValue(20);
+        assertThat(dispatcher.pending()).isZero();
+        assertThat(dispatcher.dispatch(CHAT, () -> { })).isFalse();
+    }
+}